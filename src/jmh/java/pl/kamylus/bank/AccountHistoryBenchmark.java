@@ -0,0 +1,78 @@
+package pl.kamylus.bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording a transfer in {@link AccountHistory} (run with {@code -prof gc} to see that it does not allocate)
+ * and of reading the most recent page while another thread records, with and without the history file.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class AccountHistoryBenchmark {
+    private static final int ACCOUNTS_COUNT = 1024;
+
+    @Param({"false", "true"})
+    public boolean historyFile;
+
+    @Param({"64"})
+    public int capacity;
+
+    private Path file;
+    private AccountHistory history;
+    private int nextAccount;
+
+    @State(Scope.Thread)
+    public static class ReaderState {
+        private final HistoryPage page = new HistoryPage(20);
+        private int nextAccount;
+    }
+
+    @Setup
+    public void prepareHistory() throws IOException {
+        file = historyFile ? Files.createTempFile("accounts", ".history") : null;
+        history = new AccountHistory(ACCOUNTS_COUNT, capacity, file);
+    }
+
+    @TearDown
+    public void closeHistory() throws IOException {
+        history.close();
+        if (file != null)
+            Files.delete(file);
+    }
+
+    @Benchmark
+    @Group("recordAndRead")
+    public void record() {
+        final int source = nextAccount;
+        nextAccount = (nextAccount + 1) & (ACCOUNTS_COUNT - 1);
+        history.record(source, nextAccount, 1);
+    }
+
+    @Benchmark
+    @Group("recordAndRead")
+    public int read(final ReaderState state) {
+        state.nextAccount = (state.nextAccount + 1) & (ACCOUNTS_COUNT - 1);
+        return history.read(state.nextAccount, Long.MAX_VALUE, state.page);
+    }
+}
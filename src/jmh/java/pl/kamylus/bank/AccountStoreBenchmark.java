@@ -0,0 +1,92 @@
+package pl.kamylus.bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Update of the balance of a random account in the {@link AccountStore} implementations, with the lookup of the id
+ * and by an already resolved handle (how engines work after {@link AccountIndex} resolved the id at the boundary).
+ * Run with {@code -prof gc} to compare the heap used after the setup. MAPPED store updates the balances in place in
+ * a temporary file (checkpoints every second).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn"})
+public class AccountStoreBenchmark {
+    private static final CurrencyUnit CURRENCY = new CurrencyUnit("PLN", 2);
+
+    @Param({"HEAP", "OFF_HEAP", "MAPPED"})
+    public String accountStoreType;
+
+    @Param({"1000000"})
+    public int accountsCount;
+
+    private AccountStore store;
+    private String[] accountIds;
+    private Path accountTableFile;
+
+    @Setup
+    public void prepareStore() throws IOException {
+        final List<Account> accounts = new ArrayList<>(accountsCount);
+        accountIds = new String[accountsCount];
+        for (int i = 0; i < accountsCount; ++i) {
+            accountIds[i] = "acc" + i;
+            accounts.add(new Account(accountIds[i], new BigDecimal("100")));
+        }
+
+        final BankConfiguration.Builder builder = BankConfiguration.builder(CURRENCY)
+                .accountStore(AccountStoreType.valueOf(accountStoreType));
+        if (AccountStoreType.valueOf(accountStoreType) == AccountStoreType.MAPPED) {
+            accountTableFile = Files.createTempFile("accounts", ".table");
+            Files.delete(accountTableFile);
+            builder.accountTable(accountTableFile);
+        }
+
+        store = AccountStoreType.valueOf(accountStoreType).create(accounts, builder.build());
+    }
+
+    @TearDown
+    public void closeStore() throws IOException {
+        store.close();
+        if (accountTableFile != null)
+            Files.delete(accountTableFile);
+    }
+
+    @Benchmark
+    public long lookupAndDeposit() {
+        final int index = store.indexOf(accountIds[ThreadLocalRandom.current().nextInt(accountsCount)]);
+        store.deposit(index, 1);
+
+        return store.getBalance(index);
+    }
+
+    @Benchmark
+    public long depositByHandle() {
+        final int index = ThreadLocalRandom.current().nextInt(accountsCount);
+        store.deposit(index, 1);
+
+        return store.getBalance(index);
+    }
+}
@@ -0,0 +1,73 @@
+package pl.kamylus.bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export of a consistent snapshot of all balances while another thread keeps transferring money between random
+ * accounts. Run with {@code -prof gc}: the export allocates per line, but nothing proportional to the number of
+ * accounts stays alive.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn"})
+public class BalanceExportBenchmark {
+    private static final CurrencyUnit CURRENCY = new CurrencyUnit("PLN", 2);
+
+    @Param({"1000000"})
+    public int accountsCount;
+
+    @Param({"MONITOR", "SEQUENCED"})
+    public String engineType;
+
+    private FixedPointBank bank;
+    private int nextAccount;
+
+    @Setup
+    public void prepareBank() {
+        final List<Account> accounts = new ArrayList<>(accountsCount);
+        for (int i = 0; i < accountsCount; ++i)
+            accounts.add(new Account("acc" + i, new BigDecimal("1000")));
+
+        bank = new FixedPointBank(accounts, CURRENCY, TransferEngineType.valueOf(engineType));
+    }
+
+    @TearDown
+    public void closeBank() {
+        bank.close();
+    }
+
+    @Benchmark
+    @Group("exportWhileTransferring")
+    public long export() {
+        return bank.exportBalances(Writer.nullWriter());
+    }
+
+    @Benchmark
+    @Group("exportWhileTransferring")
+    public void transfer() {
+        final int source = nextAccount;
+        nextAccount = (int) ((source * 2_654_435_761L + 1) % accountsCount);
+        bank.transferMoney(source, nextAccount, 1);
+    }
+}
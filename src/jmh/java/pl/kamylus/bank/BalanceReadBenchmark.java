@@ -0,0 +1,84 @@
+package pl.kamylus.bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of transfers between two accounts while other threads keep reading balances of the same accounts. Compare
+ * the {@code transfer} score with and without the readers ({@code transferAlone}): reads do not take the locks of
+ * the transfers, so they should not slow them down.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class BalanceReadBenchmark {
+    private static final CurrencyUnit CURRENCY = new CurrencyUnit("PLN", 2);
+
+    @Param({"MONITOR", "SEQUENCED"})
+    public String engineType;
+
+    private FixedPointBank bank;
+    private int[] handles;
+
+    @State(Scope.Thread)
+    public static class ReaderState {
+        private final long[] balances = new long[2];
+    }
+
+    @Setup
+    public void prepareBank() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("acc1", new BigDecimal("1000000")));
+        accounts.add(new Account("acc2", new BigDecimal("1000000")));
+
+        bank = new FixedPointBank(accounts, CURRENCY, TransferEngineType.valueOf(engineType));
+        handles = new int[]{bank.accountHandle("acc1"), bank.accountHandle("acc2")};
+    }
+
+    @TearDown
+    public void closeBank() {
+        bank.close();
+    }
+
+    @Benchmark
+    @Group("transferAlone")
+    public void transferAlone() {
+        bank.transferMoney(handles[0], handles[1], 1);
+        bank.transferMoney(handles[1], handles[0], 1);
+    }
+
+    @Benchmark
+    @Group("transferWhileReading")
+    @GroupThreads(1)
+    public void transfer() {
+        bank.transferMoney(handles[0], handles[1], 1);
+        bank.transferMoney(handles[1], handles[0], 1);
+    }
+
+    @Benchmark
+    @Group("transferWhileReading")
+    @GroupThreads(3)
+    public long[] readBalances(final ReaderState state) {
+        bank.readBalances(handles, state.balances);
+        return state.balances;
+    }
+}
@@ -0,0 +1,78 @@
+package pl.kamylus.bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link BigDecimal} balances with fixed-point balances. Each invocation transfers the amount there and back,
+ * so the balances stay constant. Run with {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class BalanceRepresentationBenchmark {
+    private static final CurrencyUnit CURRENCY = new CurrencyUnit("PLN", 2);
+    private static final String AMOUNT_TEXT = "100.12";
+
+    private Bank bigDecimalBank;
+    private FixedPointBank fixedPointBank;
+    private BigDecimal bigDecimalAmount;
+    private long fixedPointAmount;
+
+    @Setup
+    public void prepareBanks() {
+        bigDecimalBank = new BigDecimalBank(prepareAccounts());
+        fixedPointBank = new FixedPointBank(prepareAccounts(), CURRENCY);
+        bigDecimalAmount = new BigDecimal(AMOUNT_TEXT);
+        fixedPointAmount = CURRENCY.parseMinorUnits(AMOUNT_TEXT);
+    }
+
+    private static LinkedList<Account> prepareAccounts() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("acc1", new BigDecimal("1000000")));
+        accounts.add(new Account("acc2", new BigDecimal("1000000")));
+
+        return accounts;
+    }
+
+    @Benchmark
+    public void bigDecimalTransfer() {
+        bigDecimalBank.transferMoney("acc1", "acc2", bigDecimalAmount);
+        bigDecimalBank.transferMoney("acc2", "acc1", bigDecimalAmount);
+    }
+
+    @Benchmark
+    public void fixedPointTransfer() {
+        fixedPointBank.transferMoney("acc1", "acc2", fixedPointAmount);
+        fixedPointBank.transferMoney("acc2", "acc1", fixedPointAmount);
+    }
+
+    @Benchmark
+    public void bigDecimalParseAndTransfer() {
+        final BigDecimal amount = new BigDecimal(AMOUNT_TEXT);
+        bigDecimalBank.transferMoney("acc1", "acc2", amount);
+        bigDecimalBank.transferMoney("acc2", "acc1", amount);
+    }
+
+    @Benchmark
+    public void fixedPointParseAndTransfer() {
+        final long amount = CURRENCY.parseMinorUnits(AMOUNT_TEXT);
+        fixedPointBank.transferMoney("acc1", "acc2", amount);
+        fixedPointBank.transferMoney("acc2", "acc1", amount);
+    }
+}
@@ -0,0 +1,118 @@
+package pl.kamylus.bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Baseline of {@link FixedPointBank#transferMoney(CharSequence, CharSequence, long)} (and of the transfer by handles)
+ * for every engine and {@link TransferWorkload}. Measures throughput and the latency distribution (p50, p99, p99.9 in
+ * the sample time mode). Run it at 1..N threads ({@code -t 1}, {@code -t 2}, ..., {@code -t max}) and with
+ * {@code -prof gc} for the allocation rate.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class BankTransferBenchmark {
+    private static final CurrencyUnit CURRENCY = new CurrencyUnit("PLN", 2);
+    private static final int TRANSFERS_PER_THREAD = 1 << 16;
+
+    @State(Scope.Benchmark)
+    public static class BankState {
+        @Param({"MONITOR", "ADAPTIVE", "LOCK_FREE", "SEQUENCED", "PARTITIONED"})
+        public String engineType;
+
+        @Param({"UNIFORM", "ZIPFIAN", "CONTENDED_PAIR"})
+        public String workload;
+
+        @Param({"10000"})
+        public int accountsCount;
+
+        private final AtomicLong nextSeed = new AtomicLong(42);
+        private FixedPointBank bank;
+        private String[] accountIds;
+
+        @Setup
+        public void prepareBank() {
+            final List<Account> accounts = new ArrayList<>(accountsCount);
+            accountIds = new String[accountsCount];
+            for (int i = 0; i < accountsCount; ++i) {
+                accountIds[i] = "acc" + i;
+                accounts.add(new Account(accountIds[i], new BigDecimal("1000000000")));
+            }
+
+            bank = new FixedPointBank(accounts, BankConfiguration.builder(CURRENCY)
+                    .engineType(TransferEngineType.valueOf(engineType))
+                    .build());
+        }
+
+        @TearDown
+        public void closeBank() {
+            bank.close();
+        }
+    }
+
+    /**
+     * Transfers of the thread, generated at the setup and then replayed in a loop.
+     */
+    @State(Scope.Thread)
+    public static class TransfersState {
+        private final String[] sourceIds = new String[TRANSFERS_PER_THREAD];
+        private final String[] destinationIds = new String[TRANSFERS_PER_THREAD];
+        private final int[] sources = new int[TRANSFERS_PER_THREAD];
+        private final int[] destinations = new int[TRANSFERS_PER_THREAD];
+        private int next;
+
+        @Setup
+        public void generateTransfers(final BankState bankState) {
+            TransferWorkload.valueOf(bankState.workload).fill(bankState.accountsCount, sources, destinations,
+                    new SplittableRandom(bankState.nextSeed.getAndIncrement()));
+
+            for (int i = 0; i < TRANSFERS_PER_THREAD; ++i) {
+                sourceIds[i] = bankState.accountIds[sources[i]];
+                destinationIds[i] = bankState.accountIds[destinations[i]];
+                sources[i] = bankState.bank.accountHandle(sourceIds[i]);
+                destinations[i] = bankState.bank.accountHandle(destinationIds[i]);
+            }
+        }
+
+        private int next() {
+            final int current = next;
+            next = (current + 1) & (TRANSFERS_PER_THREAD - 1);
+
+            return current;
+        }
+    }
+
+    @Benchmark
+    public void transferMoney(final BankState bankState, final TransfersState transfersState) {
+        final int i = transfersState.next();
+
+        bankState.bank.transferMoney(transfersState.sourceIds[i], transfersState.destinationIds[i], 1);
+    }
+
+    @Benchmark
+    public void transferMoneyByHandle(final BankState bankState, final TransfersState transfersState) {
+        final int i = transfersState.next();
+
+        bankState.bank.transferMoney(transfersState.sources[i], transfersState.destinations[i], 1);
+    }
+}
@@ -0,0 +1,125 @@
+package pl.kamylus.bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Round trip of a frame of the binary protocol ({@link TransferBinaryServer}): the client sends {@code batchSize}
+ * transfers in one frame, waits for the response and checks the statuses. Every thread has its own
+ * {@link TransferBinaryClient}. One operation is one frame, so the transfers per millisecond are the score multiplied
+ * by {@code batchSize}; compare {@code batchSize=1} with the NIO front end of {@link HttpRoundTripBenchmark}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class BinaryRoundTripBenchmark {
+    private static final CurrencyUnit CURRENCY = new CurrencyUnit("PLN", 2);
+    private static final int SERVER_PORT = 4578;
+    private static final int FRAMES_PER_THREAD = 64;
+
+    @State(Scope.Benchmark)
+    public static class ServerState {
+        @Param({"1", "100"})
+        public int batchSize;
+
+        @Param({"MONITOR"})
+        public String engineType;
+
+        @Param({"UNIFORM", "ZIPFIAN", "CONTENDED_PAIR"})
+        public String workload;
+
+        @Param({"10000"})
+        public int accountsCount;
+
+        private final AtomicLong nextSeed = new AtomicLong(42);
+        private FixedPointBank bank;
+        private TransferBinaryServer server;
+
+        @Setup(Level.Trial)
+        public void startServer() {
+            final List<Account> accounts = new ArrayList<>(accountsCount);
+            for (int i = 0; i < accountsCount; ++i)
+                accounts.add(new Account("acc" + i, new BigDecimal("1000000000")));
+
+            bank = new FixedPointBank(accounts, BankConfiguration.builder(CURRENCY)
+                    .engineType(TransferEngineType.valueOf(engineType))
+                    .build());
+            server = TransferBinaryServer.start(bank, HttpServerConfiguration.builder()
+                    .port(SERVER_PORT)
+                    .build());
+        }
+
+        @TearDown(Level.Trial)
+        public void stopServer() {
+            server.close();
+            bank.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ClientState {
+        private int[][] sources;
+        private int[][] destinations;
+        private long[] amounts;
+        private TransferBinaryClient client;
+        private int next;
+
+        @Setup
+        public void prepareFrames(final ServerState serverState) throws IOException {
+            sources = new int[FRAMES_PER_THREAD][serverState.batchSize];
+            destinations = new int[FRAMES_PER_THREAD][serverState.batchSize];
+            amounts = new long[serverState.batchSize];
+            Arrays.fill(amounts, 1);
+
+            final SplittableRandom random = new SplittableRandom(serverState.nextSeed.getAndIncrement());
+            for (int i = 0; i < FRAMES_PER_THREAD; ++i) {
+                TransferWorkload.valueOf(serverState.workload).fill(serverState.accountsCount, sources[i],
+                        destinations[i], random);
+            }
+
+            client = new TransferBinaryClient("localhost", SERVER_PORT);
+        }
+
+        @TearDown
+        public void closeClient() throws IOException {
+            client.close();
+        }
+    }
+
+    @Benchmark
+    public short[] transferMoney(final ClientState clientState) throws IOException {
+        final int frame = clientState.next;
+        clientState.next = (clientState.next + 1) & (FRAMES_PER_THREAD - 1);
+
+        final short[] statuses = clientState.client.transfer(clientState.sources[frame],
+                clientState.destinations[frame], clientState.amounts);
+        for (final short status : statuses) {
+            if (status != TransferBinaryServer.OK)
+                throw new IllegalStateException("Transfer failed: " + status);
+        }
+
+        return statuses;
+    }
+}
@@ -0,0 +1,84 @@
+package pl.kamylus.bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deposit throughput into a single hot account of ADAPTIVE engine, with the hot account locked by every transfer
+ * ({@code combining=false}) or with its transfers applied by flat combining. Every thread transfers from its own source
+ * account, so the only shared lock is the one of the hot account. Compare at different {@code -t}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class CombiningBenchmark {
+    private static final CurrencyUnit CURRENCY = new CurrencyUnit("PLN", 2);
+    private static final int SOURCE_ACCOUNTS = 256;
+    private static final String HOT_ACCOUNT = "hot";
+
+    @State(Scope.Benchmark)
+    public static class BankState {
+        @Param({"false", "true"})
+        public boolean combining;
+
+        private final AtomicInteger nextSource = new AtomicInteger();
+        private FixedPointBank bank;
+        private int hotAccount;
+
+        @Setup
+        public void prepareBank() {
+            final LinkedList<Account> accounts = new LinkedList<>();
+            accounts.add(new Account(HOT_ACCOUNT, BigDecimal.ZERO));
+            for (int i = 0; i < SOURCE_ACCOUNTS; ++i)
+                accounts.add(new Account("source" + i, new BigDecimal("1000000000")));
+
+            final BankConfiguration.Builder builder = BankConfiguration.builder(CURRENCY)
+                    .engineType(TransferEngineType.ADAPTIVE);
+            if (combining)
+                builder.combiningAccount(HOT_ACCOUNT);
+
+            bank = new FixedPointBank(accounts, builder.build());
+            hotAccount = bank.accountHandle(HOT_ACCOUNT);
+        }
+
+        @TearDown
+        public void closeBank() {
+            bank.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SourceState {
+        private int sourceAccount;
+
+        @Setup
+        public void chooseSource(final BankState bankState) {
+            sourceAccount = bankState.bank.accountHandle(
+                    "source" + bankState.nextSource.getAndIncrement() % SOURCE_ACCOUNTS);
+        }
+    }
+
+    @Benchmark
+    public TransferOutcome depositIntoHotAccount(final BankState bankState, final SourceState sourceState) {
+        return bankState.bank.tryTransferMoney(sourceState.sourceAccount, bankState.hotAccount, 1);
+    }
+}
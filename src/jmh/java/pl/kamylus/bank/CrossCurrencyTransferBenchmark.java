@@ -0,0 +1,96 @@
+package pl.kamylus.bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cross-currency transfers (amount converted by {@link FxRates}) compared with transfers in the same currency, and
+ * the fixed-point conversion alone compared with the conversion of the amount with {@link BigDecimal}. Run it with
+ * {@code -prof gc}: neither the cross-currency transfer nor the fixed-point conversion allocates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class CrossCurrencyTransferBenchmark {
+    private static final CurrencyUnit PLN = new CurrencyUnit("PLN", 2);
+    private static final CurrencyUnit EUR = new CurrencyUnit("EUR", 2);
+    private static final BigDecimal EUR_PLN = new BigDecimal("4.3");
+
+    private FixedPointBank bank;
+    private FxRates fxRates;
+    private int pln1;
+    private int pln2;
+    private int eur;
+    private int plnIndex;
+    private int eurIndex;
+    private boolean reverse;
+    private long amount = 100;
+
+    @Setup
+    public void prepareBank() {
+        final List<Account> accounts = new ArrayList<>();
+        accounts.add(new Account("pln1", new BigDecimal("1000000000")));
+        accounts.add(new Account("pln2", new BigDecimal("1000000000")));
+        accounts.add(new Account("eur", new BigDecimal("1000000000"), EUR));
+
+        bank = new FixedPointBank(accounts, BankConfiguration.builder(PLN)
+                .fxRate(EUR, PLN, EUR_PLN)
+                .fxRate(PLN, EUR, new BigDecimal("0.2325"))
+                .build());
+        fxRates = bank.getFxRates();
+        pln1 = bank.accountHandle("pln1");
+        pln2 = bank.accountHandle("pln2");
+        eur = bank.accountHandle("eur");
+        plnIndex = fxRates.indexOf(PLN);
+        eurIndex = fxRates.indexOf(EUR);
+    }
+
+    @TearDown
+    public void closeBank() {
+        bank.close();
+    }
+
+    @Benchmark
+    public Object sameCurrency() {
+        reverse = !reverse;
+        return reverse ? bank.tryTransferMoney(pln1, pln2, 100) : bank.tryTransferMoney(pln2, pln1, 100);
+    }
+
+    @Benchmark
+    public Object crossCurrency() {
+        reverse = !reverse;
+        return reverse ? bank.tryTransferMoney(pln1, eur, 100) : bank.tryTransferMoney(eur, pln1, 100);
+    }
+
+    @Benchmark
+    public long convert() {
+        amount = amount % 1_000_000 + 1;
+        return fxRates.convert(eurIndex, plnIndex, amount);
+    }
+
+    @Benchmark
+    public long convertBigDecimal() {
+        amount = amount % 1_000_000 + 1;
+        return BigDecimal.valueOf(amount, EUR.getScale()).multiply(EUR_PLN, MathContext.DECIMAL64)
+                .setScale(PLN.getScale(), RoundingMode.DOWN).unscaledValue().longValueExact();
+    }
+}
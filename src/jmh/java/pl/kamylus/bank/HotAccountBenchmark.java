@@ -0,0 +1,96 @@
+package pl.kamylus.bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deposit throughput into a single hot (collection) account. Every thread transfers from its own source account,
+ * so the only shared state is the hot account. Compare {@code stripes=1} with more stripes: with stripes the total
+ * throughput of the 1, 2, 4 and 8 thread variants should grow with the threads (up to the number of cores), as
+ * deposits of different threads touch neither the same balance nor the same version.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class HotAccountBenchmark {
+    private static final CurrencyUnit CURRENCY = new CurrencyUnit("PLN", 2);
+    private static final int SOURCE_ACCOUNTS = 256;
+    private static final String HOT_ACCOUNT = "hot";
+
+    @State(Scope.Benchmark)
+    public static class BankState {
+        @Param({"1", "16"})
+        public int stripes;
+
+        private final AtomicInteger nextSource = new AtomicInteger();
+        private FixedPointBank bank;
+
+        @Setup
+        public void prepareBank() {
+            final LinkedList<Account> accounts = new LinkedList<>();
+            accounts.add(new Account(HOT_ACCOUNT, BigDecimal.ZERO));
+            for (int i = 0; i < SOURCE_ACCOUNTS; ++i)
+                accounts.add(new Account("source" + i, new BigDecimal("1000000000")));
+
+            bank = new FixedPointBank(accounts, BankConfiguration.builder(CURRENCY)
+                    .engineType(TransferEngineType.LOCK_FREE)
+                    .stripedAccount(HOT_ACCOUNT, stripes)
+                    .build());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SourceState {
+        private String sourceAccountId;
+
+        @Setup
+        public void chooseSource(final BankState bankState) {
+            sourceAccountId = "source" + bankState.nextSource.getAndIncrement() % SOURCE_ACCOUNTS;
+        }
+    }
+
+    @Benchmark
+    public void depositIntoHotAccount(final BankState bankState, final SourceState sourceState) {
+        deposit(bankState, sourceState);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void depositIntoHotAccount1Thread(final BankState bankState, final SourceState sourceState) {
+        deposit(bankState, sourceState);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void depositIntoHotAccount2Threads(final BankState bankState, final SourceState sourceState) {
+        deposit(bankState, sourceState);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void depositIntoHotAccount8Threads(final BankState bankState, final SourceState sourceState) {
+        deposit(bankState, sourceState);
+    }
+
+    private static void deposit(final BankState bankState, final SourceState sourceState) {
+        bankState.bank.transferMoney(sourceState.sourceAccountId, HOT_ACCOUNT, 1);
+    }
+}
@@ -0,0 +1,157 @@
+package pl.kamylus.bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Full HTTP round trip of the transfer: the client sends the form to the server started with {@link Server#start}
+ * (SPARK), {@link TransferHttpServer#start} (JDK, JDK_VIRTUAL) or {@link TransferNioServer#start} (NIO), waits for
+ * the response and checks its status.
+ * Every thread has its own client with a kept-alive connection.
+ * <p>
+ * With {@code -p idleConnections=8000} the server additionally holds the given number of open, idle connections
+ * during the whole trial. Client and server share the process, so every connection takes two file descriptors.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class HttpRoundTripBenchmark {
+    private static final CurrencyUnit CURRENCY = new CurrencyUnit("PLN", 2);
+    private static final int SERVER_PORT = 4577;
+    private static final URI TRANSFER_MONEY_URI = URI.create("http://localhost:" + SERVER_PORT + "/transferMoney");
+    private static final int REQUESTS_PER_THREAD = 1024;
+
+    @State(Scope.Benchmark)
+    public static class ServerState {
+        @Param({"SPARK", "JDK", "NIO"})
+        public String frontEnd;
+
+        @Param({"MONITOR"})
+        public String engineType;
+
+        @Param({"UNIFORM", "ZIPFIAN", "CONTENDED_PAIR"})
+        public String workload;
+
+        @Param({"10000"})
+        public int accountsCount;
+
+        @Param({"0"})
+        public int idleConnections;
+
+        private final AtomicLong nextSeed = new AtomicLong(42);
+        private final List<Socket> idleSockets = new ArrayList<>();
+        private FixedPointBank bank;
+        private AutoCloseable server;
+
+        @Setup(Level.Trial)
+        public void startServer() throws IOException {
+            final List<Account> accounts = new ArrayList<>(accountsCount);
+            for (int i = 0; i < accountsCount; ++i)
+                accounts.add(new Account("acc" + i, new BigDecimal("1000000000")));
+
+            bank = new FixedPointBank(accounts, BankConfiguration.builder(CURRENCY)
+                    .engineType(TransferEngineType.valueOf(engineType))
+                    .build());
+
+            switch (frontEnd) {
+                case "SPARK":
+                    Server.start(SERVER_PORT, bank);
+                    break;
+                case "JDK":
+                case "JDK_VIRTUAL":
+                    server = TransferHttpServer.start(bank, HttpServerConfiguration.builder()
+                            .port(SERVER_PORT)
+                            .executorType(frontEnd.equals("JDK") ? HttpExecutorType.PLATFORM
+                                    : HttpExecutorType.VIRTUAL)
+                            .build());
+                    break;
+                case "NIO":
+                    server = TransferNioServer.start(bank, HttpServerConfiguration.builder()
+                            .port(SERVER_PORT)
+                            .build());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown front end: " + frontEnd);
+            }
+
+            for (int i = 0; i < idleConnections; ++i)
+                idleSockets.add(new Socket(TRANSFER_MONEY_URI.getHost(), SERVER_PORT));
+        }
+
+        @TearDown(Level.Trial)
+        public void stopServer() throws Exception {
+            for (final Socket socket : idleSockets)
+                socket.close();
+            idleSockets.clear();
+
+            if (server != null)
+                server.close();
+            else
+                Server.stop();
+            bank.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ClientState {
+        private final HttpRequest[] requests = new HttpRequest[REQUESTS_PER_THREAD];
+        private HttpClient client;
+        private int next;
+
+        @Setup
+        public void prepareRequests(final ServerState serverState) {
+            final int[] sources = new int[REQUESTS_PER_THREAD];
+            final int[] destinations = new int[REQUESTS_PER_THREAD];
+            TransferWorkload.valueOf(serverState.workload).fill(serverState.accountsCount, sources, destinations,
+                    new SplittableRandom(serverState.nextSeed.getAndIncrement()));
+
+            for (int i = 0; i < REQUESTS_PER_THREAD; ++i) {
+                requests[i] = HttpRequest.newBuilder(TRANSFER_MONEY_URI)
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString("sourceAccountId=acc" + sources[i]
+                                + "&destinationAccountId=acc" + destinations[i] + "&amount=0.01"))
+                        .build();
+            }
+
+            client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        }
+    }
+
+    @Benchmark
+    public String transferMoney(final ClientState clientState) throws IOException, InterruptedException {
+        final HttpRequest request = clientState.requests[clientState.next];
+        clientState.next = (clientState.next + 1) & (REQUESTS_PER_THREAD - 1);
+
+        final HttpResponse<String> response = clientState.client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200)
+            throw new IllegalStateException("Transfer failed: " + response.statusCode() + " " + response.body());
+
+        return response.body();
+    }
+}
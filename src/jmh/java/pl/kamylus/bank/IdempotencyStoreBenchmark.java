@@ -0,0 +1,70 @@
+package pl.kamylus.bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cost of {@link IdempotencyStore} in front of the transfer, to be run with many threads ({@code -t max}): a new key
+ * (claim and complete, with the eviction of the oldest keys once the store is full) and a retried key (claim
+ * returning the kept result).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class IdempotencyStoreBenchmark {
+    private static final int RETRIED_KEYS = 1024;
+    private static final long FINGERPRINT = IdempotencyStore.fingerprint("acc1", "acc2", "10");
+
+    private final AtomicInteger nextThread = new AtomicInteger();
+    private final String[] retriedKeys = new String[RETRIED_KEYS];
+    private IdempotencyStore store;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private String prefix;
+        private long nextKey;
+        private int nextRetriedKey;
+
+        @Setup
+        public void preparePrefix(final IdempotencyStoreBenchmark benchmark) {
+            prefix = "thread" + benchmark.nextThread.getAndIncrement() + "-";
+        }
+    }
+
+    @Setup
+    public void prepareStore() {
+        store = new IdempotencyStore(IdempotencyStore.DEFAULT_MAX_KEYS, IdempotencyStore.DEFAULT_TTL_MILLIS);
+        for (int i = 0; i < RETRIED_KEYS; ++i) {
+            retriedKeys[i] = "retried" + i;
+            store.claim(retriedKeys[i], FINGERPRINT);
+            store.complete(retriedKeys[i], TransferResult.OK);
+        }
+    }
+
+    @Benchmark
+    public void newKey(final ThreadState state) {
+        final String key = state.prefix + state.nextKey++;
+        store.claim(key, FINGERPRINT);
+        store.complete(key, TransferResult.OK);
+    }
+
+    @Benchmark
+    public TransferResult retriedKey(final ThreadState state) {
+        state.nextRetriedKey = (state.nextRetriedKey + 1) & (RETRIED_KEYS - 1);
+        return store.claim(retriedKeys[state.nextRetriedKey], FINGERPRINT);
+    }
+}
@@ -0,0 +1,71 @@
+package pl.kamylus.bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.LinkedList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of {@link TransferEngineType#PARTITIONED} engine from 1 to N shards with uniformly distributed transfers.
+ * Keep the thread count ({@code -t}) at least equal to the largest number of shards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class PartitionedLedgerBenchmark {
+    private static final CurrencyUnit CURRENCY = new CurrencyUnit("PLN", 2);
+    private static final int ACCOUNTS = 1024;
+
+    @Param({"1", "2", "4", "8"})
+    public int shards;
+
+    private FixedPointBank bank;
+    private String[] accountIds;
+
+    @Setup
+    public void prepareBank() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accountIds = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; ++i) {
+            accountIds[i] = "acc" + i;
+            accounts.add(new Account(accountIds[i], new BigDecimal("1000000000")));
+        }
+
+        bank = new FixedPointBank(accounts, BankConfiguration.builder(CURRENCY)
+                .engineType(TransferEngineType.PARTITIONED)
+                .shards(shards)
+                .build());
+    }
+
+    @TearDown
+    public void closeBank() {
+        bank.close();
+    }
+
+    @Benchmark
+    public void uniformTransfer() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int source = random.nextInt(ACCOUNTS);
+        final int destination = (source + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+
+        bank.transferMoney(accountIds[source], accountIds[destination], 1);
+    }
+}
@@ -0,0 +1,84 @@
+package pl.kamylus.bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a rejected transfer compared with a successful one, through the request path of
+ * {@link TransferMoneyHandler} (result codes) and through the throwing {@link Bank#transferMoney} API, which is what
+ * every rejection used to cost. Run it with {@code -prof gc}: the rejection by result code allocates only its message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class RejectedTransferBenchmark {
+    private static final CurrencyUnit CURRENCY = new CurrencyUnit("PLN", 2);
+
+    private FixedPointBank bank;
+    private boolean reverse;
+
+    @Setup
+    public void prepareBank() {
+        final List<Account> accounts = new ArrayList<>();
+        accounts.add(new Account("rich1", new BigDecimal("1000000")));
+        accounts.add(new Account("rich2", new BigDecimal("1000000")));
+        accounts.add(new Account("empty", BigDecimal.ZERO));
+
+        bank = new FixedPointBank(accounts, CURRENCY);
+    }
+
+    @TearDown
+    public void closeBank() {
+        bank.close();
+    }
+
+    @Benchmark
+    public Object successful() {
+        reverse = !reverse;
+        return reverse
+                ? TransferMoneyHandler.transferMoney(bank, "rich1", "rich2", "0.01")
+                : TransferMoneyHandler.transferMoney(bank, "rich2", "rich1", "0.01");
+    }
+
+    @Benchmark
+    public Object insufficientFunds() {
+        return TransferMoneyHandler.transferMoney(bank, "empty", "rich1", "0.01");
+    }
+
+    @Benchmark
+    public Object unknownAccount() {
+        return TransferMoneyHandler.transferMoney(bank, "rich1", "unknown", "0.01");
+    }
+
+    @Benchmark
+    public Object insufficientFundsOutcome() {
+        return bank.tryTransferMoney("empty", "rich1", 1);
+    }
+
+    @Benchmark
+    public Object insufficientFundsThrown() {
+        try {
+            bank.transferMoney("empty", "rich1", 1);
+            return null;
+        } catch (final IllegalArgumentException exc) {
+            return exc;
+        }
+    }
+}
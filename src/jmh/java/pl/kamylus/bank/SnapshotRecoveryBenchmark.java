@@ -0,0 +1,98 @@
+package pl.kamylus.bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Restart time of the ledger from the snapshot of all accounts (the journal tail is empty, closing of the persistence
+ * writes the final snapshot), streamed in minor units into the balances of the engine, compared with mapping the
+ * existing account table ({@link MappedAccountStore}) of the same accounts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn"})
+public class SnapshotRecoveryBenchmark {
+    private static final CurrencyUnit CURRENCY = new CurrencyUnit("PLN", 2);
+
+    @Param({"1000000"})
+    public int accountsCount;
+
+    private Path directory;
+    private List<Account> accounts;
+    private BankConfiguration configuration;
+    private Path accountTableFile;
+    private TransferEngine engine;
+
+    @Setup
+    public void prepareFiles() throws IOException {
+        directory = Files.createTempDirectory("snapshot-benchmark");
+        configuration = BankConfiguration.builder(CURRENCY)
+                .journal(directory.resolve("transfers.journal"))
+                .snapshot(directory.resolve("accounts.snapshot"))
+                .build();
+
+        accounts = new ArrayList<>(accountsCount);
+        for (int i = 0; i < accountsCount; ++i)
+            accounts.add(new Account("acc" + i, new BigDecimal("100")));
+
+        try (final LedgerPersistence persistence = new LedgerPersistence(accounts, configuration)) {
+            persistence.append(0, 1, 1);
+            persistence.awaitDurable();
+        }
+
+        accountTableFile = directory.resolve("accounts.table");
+        new MappedAccountStore(accountTableFile, accounts, CURRENCY, 0).close();
+
+        engine = new MonitorTransferEngine(accounts, configuration);
+    }
+
+    @TearDown
+    public void deleteFiles() throws IOException {
+        engine.close();
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long recover() {
+        try (final LedgerPersistence persistence = new LedgerPersistence(accounts, configuration)) {
+            persistence.restoreBalances(engine);
+            return engine.getBalance(1);
+        }
+    }
+
+    @Benchmark
+    public long mapAccountTable() {
+        final AccountStore store = new MappedAccountStore(accountTableFile, accounts, CURRENCY, 0);
+        try {
+            return store.getBalance(0);
+        } finally {
+            store.close();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package pl.kamylus.bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Cost of emitting a transfer event into {@link TransferAuditSink} (what is added to the critical section of
+ * the transfer), compared with formatting it with the logger, which {@link BigDecimalBank} did under the account
+ * monitors. Formatted events are discarded, so the background thread keeps up unless it is starved of the core.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class TransferAuditSinkBenchmark {
+    private static final CurrencyUnit CURRENCY = new CurrencyUnit("PLN", 2);
+    private static final String[] ACCOUNT_IDS = {"acc1", "acc2"};
+    private static final BigDecimal AMOUNT = new BigDecimal("1.50");
+
+    @Param({"BLOCK", "DROP"})
+    public String overflowPolicy;
+
+    private TransferAuditSink sink;
+    private final IntFunction<String> accountIds = handle -> ACCOUNT_IDS[handle];
+
+    @Setup
+    public void prepareSink() {
+        sink = new TransferAuditSink(TransferAuditSink.DEFAULT_CAPACITY, AuditOverflowPolicy.valueOf(overflowPolicy),
+                event -> {
+                });
+    }
+
+    @TearDown
+    public void closeSink() {
+        sink.close();
+    }
+
+    @Benchmark
+    public void emitFixedPoint() {
+        sink.transferred(accountIds, 0, 1, CURRENCY, 150, 850, 1150);
+    }
+
+    @Benchmark
+    public void emitDecimal() {
+        sink.transferred(ACCOUNT_IDS[0], ACCOUNT_IDS[1], AMOUNT, AMOUNT, AMOUNT);
+    }
+
+    @Benchmark
+    public String formatInPlace() {
+        return String.format("Transferred %s from %s to %s. Amount on source: %s. Amount on destination: %s",
+                AMOUNT, ACCOUNT_IDS[0], ACCOUNT_IDS[1], AMOUNT, AMOUNT);
+    }
+}
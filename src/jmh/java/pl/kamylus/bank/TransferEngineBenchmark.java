@@ -0,0 +1,59 @@
+package pl.kamylus.bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link TransferEngine} implementations side by side. Every thread transfers money between the same two
+ * accounts (there and back), which is the worst case for the contention. Change the thread count with {@code -t}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class TransferEngineBenchmark {
+    private static final CurrencyUnit CURRENCY = new CurrencyUnit("PLN", 2);
+
+    @Param({"MONITOR", "LOCK_FREE", "SEQUENCED"})
+    public String engineType;
+
+    private FixedPointBank bank;
+
+    @Setup
+    public void prepareBank() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("acc1", new BigDecimal("1000000")));
+        accounts.add(new Account("acc2", new BigDecimal("1000000")));
+
+        bank = new FixedPointBank(accounts, CURRENCY, TransferEngineType.valueOf(engineType));
+    }
+
+    @TearDown
+    public void closeBank() {
+        bank.close();
+    }
+
+    @Benchmark
+    public void contendedPairTransfer() {
+        bank.transferMoney("acc1", "acc2", 1);
+        bank.transferMoney("acc2", "acc1", 1);
+    }
+}
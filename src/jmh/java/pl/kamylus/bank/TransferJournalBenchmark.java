@@ -0,0 +1,60 @@
+package pl.kamylus.bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Journaled transfers per second with concurrent callers, for every {@link FsyncPolicy}. With
+ * {@link FsyncPolicy#PER_BATCH} the throughput should be many times higher than the number of fsyncs the device can do
+ * per second, thanks to the group commit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(16)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class TransferJournalBenchmark {
+    @Param({"PER_BATCH", "INTERVAL", "NONE"})
+    public String fsyncPolicy;
+
+    private Path directory;
+    private TransferJournal journal;
+
+    @Setup
+    public void openJournal() throws IOException {
+        directory = Files.createTempDirectory("journal-benchmark");
+        journal = new TransferJournal(directory.resolve("transfers.journal"), FsyncPolicy.valueOf(fsyncPolicy), 10,
+                (sequence, sourceAccountId, destinationAccountId, amount) -> {
+                });
+    }
+
+    @TearDown
+    public void closeJournal() throws IOException {
+        journal.close();
+        Files.delete(directory.resolve("transfers.journal"));
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void journaledTransfer() {
+        journal.awaitDurable(journal.append("acc1", "acc2", 1));
+    }
+}
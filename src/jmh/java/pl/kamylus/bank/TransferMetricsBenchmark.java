@@ -0,0 +1,52 @@
+package pl.kamylus.bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording the metrics of a transfer (run with {@code -prof gc} to see that it does not allocate and with
+ * more threads to see the striping) and of formatting them for a scrape.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class TransferMetricsBenchmark {
+    private final TransferMetrics metrics = new TransferMetrics();
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private long nanos = 100;
+    }
+
+    @Benchmark
+    public void recordTransfer(final ThreadState state) {
+        state.nanos = state.nanos * 31 & 0xFFFFF;
+        metrics.locked(state.nanos, state.nanos >>> 2);
+        metrics.transferred();
+        metrics.requested(state.nanos << 4);
+    }
+
+    @Benchmark
+    public void recordReject() {
+        metrics.rejected(RejectReason.INSUFFICIENT_FUNDS);
+    }
+
+    @Benchmark
+    public int scrape() {
+        final StringBuilder builder = new StringBuilder(8192);
+        metrics.writePrometheus(builder);
+        return builder.length();
+    }
+}
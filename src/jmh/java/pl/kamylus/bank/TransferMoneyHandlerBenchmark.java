@@ -0,0 +1,139 @@
+package pl.kamylus.bank;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import spark.Request;
+import spark.Response;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link TransferMoneyHandler#handle(Request, Response)} with mocked Spark request and response, so it measures
+ * parsing of the parameters, the transfer and building of the response without the HTTP stack. Requests of the thread
+ * are mocked at the setup and replayed in a loop. Run it with {@code -prof gc}, but note that the mocks allocate on
+ * every call as well.
+ * <p>
+ * {@link #parseFormAndTransfer} does the same as {@link TransferNioServer} for a request: parses the form bytes from
+ * a direct buffer with {@link TransferFormParser} and performs the transfer.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class TransferMoneyHandlerBenchmark {
+    private static final CurrencyUnit CURRENCY = new CurrencyUnit("PLN", 2);
+    private static final int REQUESTS_PER_THREAD = 1024;
+
+    @State(Scope.Benchmark)
+    public static class HandlerState {
+        @Param({"MONITOR", "LOCK_FREE"})
+        public String engineType;
+
+        @Param({"UNIFORM", "ZIPFIAN", "CONTENDED_PAIR"})
+        public String workload;
+
+        @Param({"10000"})
+        public int accountsCount;
+
+        private final AtomicLong nextSeed = new AtomicLong(42);
+        private FixedPointBank bank;
+        private TransferMoneyHandler handler;
+
+        @Setup
+        public void prepareHandler() {
+            final List<Account> accounts = new ArrayList<>(accountsCount);
+            for (int i = 0; i < accountsCount; ++i)
+                accounts.add(new Account("acc" + i, new BigDecimal("1000000000")));
+
+            bank = new FixedPointBank(accounts, BankConfiguration.builder(CURRENCY)
+                    .engineType(TransferEngineType.valueOf(engineType))
+                    .build());
+            handler = new TransferMoneyHandler(bank);
+        }
+
+        @TearDown
+        public void closeBank() {
+            bank.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class RequestsState {
+        private final Request[] requests = new Request[REQUESTS_PER_THREAD];
+        private final Response response = mock(Response.class);
+        private final int[] formStarts = new int[REQUESTS_PER_THREAD + 1];
+        private final TransferFormParser parser = new TransferFormParser(TransferNioServer.MAX_HEADER_BYTES);
+        private ByteBuffer forms;
+        private int next;
+
+        @Setup
+        public void mockRequests(final HandlerState handlerState) {
+            final int[] sources = new int[REQUESTS_PER_THREAD];
+            final int[] destinations = new int[REQUESTS_PER_THREAD];
+            TransferWorkload.valueOf(handlerState.workload).fill(handlerState.accountsCount, sources, destinations,
+                    new SplittableRandom(handlerState.nextSeed.getAndIncrement()));
+
+            for (int i = 0; i < REQUESTS_PER_THREAD; ++i) {
+                requests[i] = mock(Request.class);
+                when(requests[i].queryParams("sourceAccountId")).thenReturn("acc" + sources[i]);
+                when(requests[i].queryParams("destinationAccountId")).thenReturn("acc" + destinations[i]);
+                when(requests[i].queryParams("amount")).thenReturn("0.01");
+            }
+
+            final StringBuilder formsBuilder = new StringBuilder();
+            for (int i = 0; i < REQUESTS_PER_THREAD; ++i) {
+                formStarts[i] = formsBuilder.length();
+                formsBuilder.append("sourceAccountId=acc").append(sources[i])
+                        .append("&destinationAccountId=acc").append(destinations[i])
+                        .append("&amount=0.01");
+            }
+            formStarts[REQUESTS_PER_THREAD] = formsBuilder.length();
+
+            final byte[] formBytes = formsBuilder.toString().getBytes(StandardCharsets.US_ASCII);
+            forms = ByteBuffer.allocateDirect(formBytes.length).put(formBytes);
+        }
+    }
+
+    @Benchmark
+    public Object handle(final HandlerState handlerState, final RequestsState requestsState) {
+        final Request request = requestsState.requests[requestsState.next];
+        requestsState.next = (requestsState.next + 1) & (REQUESTS_PER_THREAD - 1);
+
+        return handlerState.handler.handle(request, requestsState.response);
+    }
+
+    @Benchmark
+    public Object parseFormAndTransfer(final HandlerState handlerState, final RequestsState requestsState) {
+        final int request = requestsState.next;
+        requestsState.next = (requestsState.next + 1) & (REQUESTS_PER_THREAD - 1);
+
+        final TransferFormParser parser = requestsState.parser;
+        parser.reset();
+        parser.parse(requestsState.forms, requestsState.formStarts[request], requestsState.formStarts[request + 1]);
+        TransferMoneyHandler.transferMoney(handlerState.bank, parser.getSourceAccountId(),
+                parser.getDestinationAccountId(), parser.getAmount());
+
+        return parser;
+    }
+}
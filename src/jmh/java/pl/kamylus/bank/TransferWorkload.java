@@ -0,0 +1,86 @@
+package pl.kamylus.bank;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntSupplier;
+
+/**
+ * Distributions of the source and destination accounts of the benchmarked transfers. Pairs are generated before
+ * the measurement, so the generator does not add to the measured time or allocations.
+ */
+enum TransferWorkload {
+    /**
+     * Every account is equally likely.
+     */
+    UNIFORM {
+        @Override
+        void fill(final int accountsCount, final int[] sources, final int[] destinations,
+                  final SplittableRandom random) {
+            fillDistinct(sources, destinations, () -> random.nextInt(accountsCount));
+        }
+    },
+
+    /**
+     * Accounts drawn from the Zipf distribution (exponent {@value #ZIPF_EXPONENT}), so a few hot accounts take most
+     * of the traffic.
+     */
+    ZIPFIAN {
+        @Override
+        void fill(final int accountsCount, final int[] sources, final int[] destinations,
+                  final SplittableRandom random) {
+            final double[] cumulativeProbabilities = zipfCumulativeProbabilities(accountsCount);
+
+            fillDistinct(sources, destinations, () -> {
+                final int position = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+                return Math.min(position >= 0 ? position : -position - 1, accountsCount - 1);
+            });
+        }
+    },
+
+    /**
+     * All transfers go between the same two accounts, there and back.
+     */
+    CONTENDED_PAIR {
+        @Override
+        void fill(final int accountsCount, final int[] sources, final int[] destinations,
+                  final SplittableRandom random) {
+            for (int i = 0; i < sources.length; ++i) {
+                sources[i] = i % 2;
+                destinations[i] = 1 - i % 2;
+            }
+        }
+    };
+
+    static final double ZIPF_EXPONENT = 0.99;
+
+    /**
+     * Fills the arrays with indexes of the accounts (from 0 to accountsCount - 1). Source and destination of
+     * the transfer are always different.
+     */
+    abstract void fill(int accountsCount, int[] sources, int[] destinations, SplittableRandom random);
+
+    private static void fillDistinct(final int[] sources, final int[] destinations, final IntSupplier nextAccount) {
+        for (int i = 0; i < sources.length; ++i) {
+            sources[i] = nextAccount.getAsInt();
+
+            do {
+                destinations[i] = nextAccount.getAsInt();
+            } while (destinations[i] == sources[i]);
+        }
+    }
+
+    private static double[] zipfCumulativeProbabilities(final int accountsCount) {
+        final double[] result = new double[accountsCount];
+
+        double sum = 0;
+        for (int i = 0; i < accountsCount; ++i) {
+            sum += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+            result[i] = sum;
+        }
+
+        for (int i = 0; i < accountsCount; ++i)
+            result[i] /= sum;
+
+        return result;
+    }
+}
@@ -5,6 +5,7 @@ import java.util.Objects;
 
 class Account {
     private final String id;
+    private final CurrencyUnit currency;
     private BigDecimal moneyAmount;
 
     Account(final String id, final BigDecimal moneyAmount) {
@@ -12,6 +13,21 @@ class Account {
         Objects.requireNonNull(moneyAmount);
 
         this.id = id;
+        this.currency = null;
+        this.moneyAmount = moneyAmount;
+    }
+
+    /**
+     * Creates account of the fixed-point bank kept in the given currency, which may differ from the bank currency (see
+     * {@link FxRates}).
+     */
+    Account(final String id, final BigDecimal moneyAmount, final CurrencyUnit currency) {
+        Objects.requireNonNull(id);
+        Objects.requireNonNull(moneyAmount);
+        Objects.requireNonNull(currency);
+
+        this.id = id;
+        this.currency = currency;
         this.moneyAmount = moneyAmount;
     }
 
@@ -19,10 +35,27 @@ class Account {
         return id;
     }
 
+    /**
+     * Returns currency of the account or null when the account is kept in the bank currency.
+     */
+    CurrencyUnit getCurrency() {
+        return currency;
+    }
+
     BigDecimal getMoneyAmount() {
         return moneyAmount;
     }
 
+    /**
+     * Returns amount of the money in minor units of the account currency, of the given bank currency when the account
+     * does not have its own.
+     *
+     * @throws IllegalArgumentException when the amount cannot be represented in the currency
+     */
+    long toMinorUnits(final CurrencyUnit bankCurrency) {
+        return Objects.requireNonNullElse(currency, bankCurrency).toMinorUnits(moneyAmount);
+    }
+
     void deposit(final BigDecimal amount) {
         validateAmount(amount);
 
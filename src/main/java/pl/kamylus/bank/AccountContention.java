@@ -0,0 +1,54 @@
+package pl.kamylus.bank;
+
+/**
+ * Contention of the lock of an account of {@link AdaptiveLockTransferEngine}, from the moment the bank was created.
+ * Above {@link AdaptiveLockTransferEngine#MAX_LOCKS} accounts the lock is shared by many accounts and the entry is
+ * reported for the first of them.
+ */
+final class AccountContention {
+    private final int handle;
+    private final long acquisitions;
+    private final long contendedAcquisitions;
+    private final long waitNanos;
+    private final AdaptiveLock.Mode mode;
+
+    AccountContention(final int handle, final AdaptiveLock lock) {
+        this.handle = handle;
+        this.acquisitions = lock.getAcquisitions();
+        this.contendedAcquisitions = lock.getContendedAcquisitions();
+        this.waitNanos = lock.getWaitNanos();
+        this.mode = lock.getMode();
+    }
+
+    /**
+     * Handle of the account (see {@link FixedPointBank#accountId(int)}).
+     */
+    int getHandle() {
+        return handle;
+    }
+
+    long getAcquisitions() {
+        return acquisitions;
+    }
+
+    /**
+     * Number of the acquisitions of the lock which had to wait for it.
+     */
+    long getContendedAcquisitions() {
+        return contendedAcquisitions;
+    }
+
+    /**
+     * Total time the transfers waited for the lock in nanoseconds.
+     */
+    long getWaitNanos() {
+        return waitNanos;
+    }
+
+    /**
+     * Current way of waiting for the lock: {@link AdaptiveLock.Mode#QUEUED} when the account is hot.
+     */
+    AdaptiveLock.Mode getMode() {
+        return mode;
+    }
+}
@@ -0,0 +1,331 @@
+package pl.kamylus.bank;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Transaction history of the accounts of the {@link FixedPointBank}: every transfer adds an entry (amount,
+ * counterparty handle, timestamp, sequence) to both of its accounts.
+ * <p>
+ * The most recent entries of every account are kept in a ring buffer of primitive arrays shared by all accounts, so
+ * recording does not create any objects. Entries of an account are added under its own monitor. When half of the ring
+ * of the account (a page) fills up, the thread which filled it reserves space at the end of the history file and,
+ * after leaving the monitor, encodes the page into its own buffer and writes it there, so older entries are read from
+ * the file (without the file only the ring is kept). Pages of the account are linked backwards and published in the
+ * order of the link; the ring slots of a page are not overwritten until it is published.
+ * <p>
+ * Readers never lock: a slot of the ring is stamped with the index of its entry before and after it is written
+ * (a sequence lock), so an entry overwritten during the read is detected and read from the file instead.
+ * <p>
+ * The file is a spill area of the running bank, not a durable record (that is the journal): it is truncated when
+ * the bank starts. Entries are ordered as they are recorded after the transfer, so two concurrent transfers of an
+ * account may appear in either order.
+ */
+final class AccountHistory implements AutoCloseable {
+    static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * Page header: int account, long index of the first entry, long offset of the previous page of the account.
+     */
+    private static final int PAGE_HEADER_BYTES = Integer.BYTES + 2 * Long.BYTES;
+    /**
+     * Entry: long amount, int counterparty, long timestamp, long sequence.
+     */
+    private static final int ENTRY_BYTES = 3 * Long.BYTES + Integer.BYTES;
+    private static final long NO_PAGE = -1;
+    private static final long WRITING = -1;
+
+    private final int capacity;
+    private final int capacityMask;
+    private final int pageEntries;
+    private final int pageBytes;
+
+    private final long[] amounts;
+    private final int[] counterparties;
+    private final long[] timestamps;
+    private final long[] sequences;
+    /**
+     * Index of the entry in the slot, {@link #WRITING} while the slot is being written.
+     */
+    private final AtomicLongArray stamps;
+    /**
+     * Number of entries of every account.
+     */
+    private final AtomicLongArray sizes;
+    /**
+     * Offset of the last page of every account published in the file.
+     */
+    private final AtomicLongArray lastPages;
+    /**
+     * Offsets of the last two pages of every account reserved in the file (by parity of the page), guarded by the
+     * monitor of the account.
+     */
+    private final long[] reservedPages;
+    private final Object[] locks;
+    private final AtomicLong nextSequence = new AtomicLong(1);
+
+    private final Path file;
+    private final FileChannel channel;
+    private final AtomicLong fileEnd = new AtomicLong();
+    private final ThreadLocal<ByteBuffer> pageBuffers;
+    private volatile IOException failure;
+
+    /**
+     * @param capacity number of recent entries of every account kept in memory, a power of 2 (at least 2)
+     * @param file     history file for the older entries or null when they are not kept
+     */
+    AccountHistory(final int accountsCount, final int capacity, final Path file) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("History capacity (" + capacity + ") has to be a power of 2 "
+                    + "not less than 2");
+
+        if ((long) accountsCount * capacity > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("History of " + accountsCount + " accounts cannot keep " + capacity
+                    + " entries per account");
+
+        this.capacity = capacity;
+        this.capacityMask = capacity - 1;
+        this.pageEntries = capacity / 2;
+        this.pageBytes = PAGE_HEADER_BYTES + pageEntries * ENTRY_BYTES;
+
+        final int slots = accountsCount * capacity;
+        this.amounts = new long[slots];
+        this.counterparties = new int[slots];
+        this.timestamps = new long[slots];
+        this.sequences = new long[slots];
+        this.stamps = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; ++i)
+            stamps.set(i, WRITING);
+        this.sizes = new AtomicLongArray(accountsCount);
+        this.lastPages = new AtomicLongArray(accountsCount);
+        this.reservedPages = new long[2 * accountsCount];
+        this.locks = new Object[accountsCount];
+        for (int i = 0; i < accountsCount; ++i) {
+            lastPages.set(i, NO_PAGE);
+            locks[i] = new Object();
+        }
+
+        this.file = file;
+        this.pageBuffers = file == null ? null : ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(pageBytes));
+        try {
+            this.channel = file == null ? null : FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (final IOException exc) {
+            throw new UncheckedIOException("Cannot open the history file " + file, exc);
+        }
+    }
+
+    /**
+     * Adds the entries of the successful transfer to the history of both accounts.
+     *
+     * @throws UncheckedIOException when a page cannot be written to the history file
+     */
+    void record(final int source, final int destination, final long amount) {
+        record(source, destination, amount, amount);
+    }
+
+    /**
+     * Adds the entries of the successful cross-currency transfer: the amount to the history of the source account and
+     * the credit (amount in the currency of the destination account) to the history of the destination account.
+     *
+     * @throws UncheckedIOException when a page cannot be written to the history file
+     */
+    void record(final int source, final int destination, final long amount, final long credit) {
+        final long sequence = nextSequence.getAndIncrement();
+        final long timestamp = System.currentTimeMillis();
+
+        append(source, -amount, destination, timestamp, sequence);
+        append(destination, credit, source, timestamp, sequence);
+    }
+
+    /**
+     * Number of entries in the history of the account.
+     */
+    long size(final int account) {
+        return sizes.get(account);
+    }
+
+    /**
+     * Reads the entries of the account older than {@code beforeIndex} (newest first) into the page, as many as fit.
+     * Use {@link Long#MAX_VALUE} for the most recent entries, then index of the last entry of the page for the next
+     * one. Without the history file entries older than the ring are not returned. Never waits for the writers.
+     *
+     * @return number of the read entries, 0 when there are no more
+     */
+    int read(final int account, final long beforeIndex, final HistoryPage page) {
+        Objects.requireNonNull(page);
+
+        page.clear();
+        final long size = sizes.get(account);
+        long index = Math.min(beforeIndex, size) - 1;
+
+        while (!page.isFull() && index >= 0 && index >= size - capacity && readSlot(account, index, page))
+            --index;
+
+        if (!page.isFull() && index >= 0 && channel != null)
+            readFile(account, index, page);
+
+        return page.size();
+    }
+
+    @Override
+    public void close() {
+        if (channel == null)
+            return;
+
+        try {
+            channel.close();
+        } catch (final IOException exc) {
+            throw new UncheckedIOException("Cannot close the history file " + file, exc);
+        }
+    }
+
+    private void append(final int account, final long amount, final int counterparty, final long timestamp,
+                        final long sequence) {
+        final long index;
+        long pageOffset = NO_PAGE;
+        long previousPage = NO_PAGE;
+
+        synchronized (locks[account]) {
+            index = sizes.get(account);
+            final int slot = account * capacity + (int) (index & capacityMask);
+
+            if (channel != null && index >= capacity && index % pageEntries == 0)
+                awaitPage(account, reservedPages[2 * account + (int) (index / pageEntries & 1)]);
+
+            stamps.set(slot, WRITING);
+            VarHandle.storeStoreFence();
+            amounts[slot] = amount;
+            counterparties[slot] = counterparty;
+            timestamps[slot] = timestamp;
+            sequences[slot] = sequence;
+            stamps.setRelease(slot, index);
+
+            if (channel != null && (index + 1) % pageEntries == 0) {
+                final long page = index / pageEntries;
+                if (page > 0)
+                    previousPage = reservedPages[2 * account + (int) (page - 1 & 1)];
+                pageOffset = fileEnd.getAndAdd(pageBytes);
+                reservedPages[2 * account + (int) (page & 1)] = pageOffset;
+            }
+
+            sizes.setRelease(account, index + 1);
+        }
+
+        // the page stays in the ring until it is published
+        if (pageOffset != NO_PAGE)
+            writePage(account, index + 1 - pageEntries, pageOffset, previousPage);
+    }
+
+    /**
+     * Waits until the page at the offset is published, before its slots of the ring are overwritten.
+     */
+    private void awaitPage(final int account, final long offset) {
+        for (int attempt = 0; lastPages.getAcquire(account) < offset; ++attempt) {
+            checkFailure();
+            WaitStrategy.YIELDING.idle(attempt);
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null)
+            throw new UncheckedIOException("Cannot write the history file " + file, failure);
+    }
+
+    /**
+     * Returns false when the entry has been overwritten.
+     */
+    private boolean readSlot(final int account, final long index, final HistoryPage page) {
+        final int slot = account * capacity + (int) (index & capacityMask);
+
+        if (stamps.getAcquire(slot) != index)
+            return false;
+
+        final long amount = amounts[slot];
+        final int counterparty = counterparties[slot];
+        final long timestamp = timestamps[slot];
+        final long sequence = sequences[slot];
+
+        VarHandle.loadLoadFence();
+        if (stamps.get(slot) != index)
+            return false;
+
+        page.add(index, amount, counterparty, timestamp, sequence);
+        return true;
+    }
+
+    /**
+     * Writes the page of the account starting at the given entry, which is still in the ring, at the reserved offset
+     * of the history file and publishes it after the previous page of the account.
+     */
+    private void writePage(final int account, final long firstIndex, final long offset, final long previousPage) {
+        final ByteBuffer pageBuffer = pageBuffers.get();
+
+        pageBuffer.clear();
+        pageBuffer.putInt(account).putLong(firstIndex).putLong(previousPage);
+        for (long index = firstIndex; index < firstIndex + pageEntries; ++index) {
+            final int slot = account * capacity + (int) (index & capacityMask);
+            pageBuffer.putLong(amounts[slot]).putInt(counterparties[slot]).putLong(timestamps[slot])
+                    .putLong(sequences[slot]);
+        }
+        pageBuffer.flip();
+
+        try {
+            long position = offset;
+            while (pageBuffer.hasRemaining())
+                position += channel.write(pageBuffer, position);
+        } catch (final IOException exc) {
+            failure = exc;
+            throw new UncheckedIOException("Cannot write the history file " + file, exc);
+        }
+
+        // readers follow the links, so a page is published only after the previous one
+        awaitPage(account, previousPage);
+        lastPages.setRelease(account, offset);
+    }
+
+    /**
+     * Reads entries from the given one down from the pages of the account in the history file.
+     */
+    private void readFile(final int account, long index, final HistoryPage page) {
+        final ByteBuffer buffer = page.fileBuffer(pageBytes);
+
+        try {
+            for (long offset = lastPages.getAcquire(account); offset != NO_PAGE && !page.isFull() && index >= 0; ) {
+                buffer.clear().limit(pageBytes);
+                long position = offset;
+                while (buffer.hasRemaining()) {
+                    final int read = channel.read(buffer, position);
+                    if (read < 0)
+                        throw new IOException("History file ends inside the page at " + offset);
+                    position += read;
+                }
+
+                final long firstIndex = buffer.getLong(Integer.BYTES);
+                final long previousPage = buffer.getLong(Integer.BYTES + Long.BYTES);
+
+                for (; index >= firstIndex && index >= 0 && !page.isFull(); --index) {
+                    final int entry = PAGE_HEADER_BYTES + (int) (index - firstIndex) * ENTRY_BYTES;
+                    if (entry + ENTRY_BYTES > pageBytes)
+                        continue;
+
+                    page.add(index, buffer.getLong(entry), buffer.getInt(entry + Long.BYTES),
+                            buffer.getLong(entry + Long.BYTES + Integer.BYTES),
+                            buffer.getLong(entry + 2 * Long.BYTES + Integer.BYTES));
+                }
+
+                offset = previousPage;
+            }
+        } catch (final IOException exc) {
+            throw new UncheckedIOException("Cannot read the history file " + file, exc);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package pl.kamylus.bank;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Interns account ids to dense {@code int} handles (from 0 to {@link #size()} - 1, in the order of the accounts), so
+ * the id is looked up once and afterwards accounts are addressed by handle in flat arrays.
+ * <p>
+ * Open-addressing hash table with linear probing (load factor at most 0.5) kept in a single {@code int} array of pairs:
+ * hash of the id and handle + 1 (0 is an empty entry). A lookup reads consecutive entries of one array and compares
+ * the id only when the whole hash matches, without any node objects or boxed values.
+ */
+final class AccountIndex {
+    private final String[] accountIds;
+    private final int[] table;
+    private final int mask;
+
+    /**
+     * @throws IllegalArgumentException when the account ids are duplicated
+     */
+    AccountIndex(final List<Account> accounts) {
+        Objects.requireNonNull(accounts);
+
+        this.accountIds = new String[accounts.size()];
+
+        final int capacity = Integer.highestOneBit(Math.max(1, accounts.size()) * 2 - 1) << 1;
+        this.table = new int[2 * capacity];
+        this.mask = capacity - 1;
+
+        int handle = 0;
+        for (final Account account : accounts) {
+            if (!insert(account.getId(), handle))
+                throw new IllegalArgumentException("Duplicated account id: " + account.getId());
+
+            accountIds[handle++] = account.getId();
+        }
+    }
+
+    /**
+     * Returns handle of the account or -1 when there is no such account.
+     */
+    int handleOf(final CharSequence accountId) {
+        final int hash = hash(accountId);
+
+        for (int entry = hash & mask; ; entry = (entry + 1) & mask) {
+            final int handle = table[2 * entry + 1] - 1;
+
+            if (handle < 0)
+                return -1;
+
+            if (table[2 * entry] == hash && accountIds[handle].contentEquals(accountId))
+                return handle;
+        }
+    }
+
+    int size() {
+        return accountIds.length;
+    }
+
+    String getAccountId(final int handle) {
+        return accountIds[handle];
+    }
+
+    private boolean insert(final String accountId, final int handle) {
+        final int hash = hash(accountId);
+
+        for (int entry = hash & mask; ; entry = (entry + 1) & mask) {
+            final int existingHandle = table[2 * entry + 1] - 1;
+
+            if (existingHandle < 0) {
+                table[2 * entry] = hash;
+                table[2 * entry + 1] = handle + 1;
+                return true;
+            }
+
+            if (table[2 * entry] == hash && accountIds[existingHandle].equals(accountId))
+                return false;
+        }
+    }
+
+    /**
+     * Spreads {@link String#hashCode()} (cached by the string) over the bits used by the mask. Other character
+     * sequences (for example decoded straight from a request into a reused buffer) are hashed the same way as
+     * the string with the same content.
+     */
+    static int hash(final CharSequence accountId) {
+        int hashCode;
+        if (accountId instanceof String) {
+            hashCode = accountId.hashCode();
+        } else {
+            hashCode = 0;
+            for (int i = 0; i < accountId.length(); ++i)
+                hashCode = 31 * hashCode + accountId.charAt(i);
+        }
+
+        final int hash = hashCode * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,209 @@
+package pl.kamylus.bank;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntFunction;
+import java.util.stream.LongStream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Balances (minor units) of all accounts after the given position of the {@link TransferJournal}. After a restart
+ * only the journal records following this position have to be replayed.
+ * <p>
+ * The file contains a header (magic number, format version, journal sequence and offset, number of accounts),
+ * the accounts (short + bytes of UTF-8 id, long balance) and CRC32C of all the previous bytes. It is written to
+ * a temporary file first and then atomically moved, so a crash cannot leave a partially written snapshot.
+ * <p>
+ * Recovery reads the file with {@link #read(Path, BalanceHandler)}, which passes the balances straight to the caller
+ * without building the accounts on the heap.
+ */
+final class AccountSnapshot {
+    private static final int MAGIC = 0x4D54534E;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + 2 * Long.BYTES + Integer.BYTES;
+    private static final int MAX_ID_BYTES = 0xFFFF;
+
+    /**
+     * Receives balances of the snapshot file. The id is decoded into a reused buffer, valid only during the call.
+     */
+    @FunctionalInterface
+    interface BalanceHandler {
+        void onBalance(CharSequence accountId, long balance);
+    }
+
+    private final TransferJournal.Position journalPosition;
+    private final IntFunction<String> accountIds;
+    private final long[] balances;
+
+    /**
+     * Arrays are not copied, they cannot be modified while the snapshot is used.
+     */
+    AccountSnapshot(final TransferJournal.Position journalPosition, final String[] accountIds, final long[] balances) {
+        this(journalPosition, index -> accountIds[index], balances);
+
+        if (accountIds.length != balances.length)
+            throw new IllegalArgumentException("Number of account ids and balances have to be the same");
+    }
+
+    /**
+     * @param accountIds ids of the accounts by their indexes in the balances, which are not copied
+     */
+    AccountSnapshot(final TransferJournal.Position journalPosition, final IntFunction<String> accountIds,
+                    final long[] balances) {
+        Objects.requireNonNull(journalPosition);
+        Objects.requireNonNull(accountIds);
+        Objects.requireNonNull(balances);
+
+        this.journalPosition = journalPosition;
+        this.accountIds = accountIds;
+        this.balances = balances;
+    }
+
+    TransferJournal.Position getJournalPosition() {
+        return journalPosition;
+    }
+
+    int size() {
+        return balances.length;
+    }
+
+    String getAccountId(final int index) {
+        return accountIds.apply(index);
+    }
+
+    long getBalance(final int index) {
+        return balances[index];
+    }
+
+    /**
+     * Loads the whole snapshot into memory.
+     */
+    static AccountSnapshot load(final Path file) {
+        final List<String> accountIds = new ArrayList<>();
+        final LongStream.Builder balances = LongStream.builder();
+
+        final TransferJournal.Position journalPosition = read(file, (accountId, balance) -> {
+            accountIds.add(accountId.toString());
+            balances.add(balance);
+        });
+
+        return new AccountSnapshot(journalPosition, accountIds.toArray(new String[0]), balances.build().toArray());
+    }
+
+    /**
+     * Reads the snapshot through a memory-mapped, read-only view of the file and passes the balances to the handler,
+     * only when the whole file is valid. Returns position of the journal covered by the snapshot.
+     */
+    static TransferJournal.Position read(final Path file, final BalanceHandler handler) {
+        Objects.requireNonNull(file);
+        Objects.requireNonNull(handler);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Snapshot is too big to be mapped: " + channel.size() + " bytes");
+
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_SIZE + Integer.BYTES || buffer.getInt(0) != MAGIC)
+                throw new IOException("File is not an account snapshot");
+
+            if (buffer.getInt(Integer.BYTES) != VERSION)
+                throw new IOException("Unsupported snapshot version: " + buffer.getInt(Integer.BYTES));
+
+            final int crcOffset = buffer.limit() - Integer.BYTES;
+            final CRC32C crc = new CRC32C();
+            crc.update(buffer.duplicate().limit(crcOffset));
+            if (buffer.getInt(crcOffset) != (int) crc.getValue())
+                throw new IOException("Snapshot is corrupted");
+
+            buffer.position(2 * Integer.BYTES);
+            final TransferJournal.Position journalPosition =
+                    new TransferJournal.Position(buffer.getLong(), buffer.getLong());
+            final int count = buffer.getInt();
+
+            final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+            final CharBuffer accountId = CharBuffer.allocate(MAX_ID_BYTES);
+            for (int i = 0; i < count; ++i) {
+                final int length = Short.toUnsignedInt(buffer.getShort());
+                final int idEnd = buffer.position() + length;
+
+                decoder.reset();
+                accountId.clear();
+                buffer.limit(idEnd);
+                if (decoder.decode(buffer, accountId, true).isError() || decoder.flush(accountId).isError())
+                    throw new IOException("Snapshot is corrupted");
+                buffer.limit(crcOffset);
+                accountId.flip();
+
+                handler.onBalance(accountId, buffer.getLong());
+            }
+
+            if (buffer.position() != crcOffset)
+                throw new IOException("Snapshot is corrupted");
+
+            return journalPosition;
+        } catch (final IOException | RuntimeException exc) {
+            throw new UncheckedIOException("Cannot load the snapshot " + file,
+                    exc instanceof IOException ? (IOException) exc : new IOException("Snapshot is corrupted", exc));
+        }
+    }
+
+    /**
+     * Writes and forces the snapshot to a temporary file and then atomically replaces the given file with it.
+     */
+    void write(final Path file) {
+        Objects.requireNonNull(file);
+
+        final Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                final CRC32C crc = new CRC32C();
+                final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                        new CheckedOutputStream(Channels.newOutputStream(channel), crc)));
+
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(journalPosition.getSequence());
+                output.writeLong(journalPosition.getOffset());
+                output.writeInt(balances.length);
+
+                for (int i = 0; i < balances.length; ++i) {
+                    final String accountId = accountIds.apply(i);
+                    final byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+                    if (id.length > MAX_ID_BYTES)
+                        throw new IOException("Account id is too long for the snapshot: " + accountId);
+
+                    output.writeShort(id.length);
+                    output.write(id);
+                    output.writeLong(balances[i]);
+                }
+
+                output.flush();
+                output.writeInt((int) crc.getValue());
+                output.flush();
+                channel.force(true);
+            }
+
+            Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException exc) {
+            throw new UncheckedIOException("Cannot write the snapshot " + file, exc);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package pl.kamylus.bank;
+
+/**
+ * Balances ({@code long} minor units, see {@link CurrencyUnit}) of the fixed-point accounts, addressed by index (from 0
+ * to {@link #size()} - 1, in the order of the accounts) resolved once with {@link #indexOf(CharSequence)}. Store is
+ * not synchronized, transfer engines guard the accounts themselves.
+ */
+interface AccountStore {
+    /**
+     * Returns index of the account or -1 when there is no such account.
+     */
+    int indexOf(CharSequence accountId);
+
+    int size();
+
+    String getAccountId(int index);
+
+    long getBalance(int index);
+
+    /**
+     * @throws IllegalArgumentException when the amount is less or equal to 0
+     * @throws ArithmeticException      when the balance would overflow
+     */
+    void deposit(int index, long amount);
+
+    /**
+     * Does not check if there is enough money (allows a debit), like {@link Account}.
+     *
+     * @throws IllegalArgumentException when the amount is less or equal to 0
+     * @throws ArithmeticException      when the balance would overflow
+     */
+    void withdraw(int index, long amount);
+
+    /**
+     * Sets the balance, for example recovered after a restart, by depositing or withdrawing the difference.
+     *
+     * @throws ArithmeticException when the difference is out of range
+     */
+    default void setBalance(final int index, final long balance) {
+        final long difference = Math.subtractExact(balance, getBalance(index));
+
+        if (difference > 0)
+            deposit(index, difference);
+        else if (difference < 0)
+            withdraw(index, -difference);
+    }
+
+    /**
+     * Releases resources of the store (for example the mapped file). Store cannot be used afterwards.
+     */
+    default void close() {
+    }
+}
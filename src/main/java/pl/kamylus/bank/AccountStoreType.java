@@ -0,0 +1,60 @@
+package pl.kamylus.bank;
+
+import java.util.List;
+
+/**
+ * Available implementations of {@link AccountStore}, selected with {@link BankConfiguration}.
+ */
+enum AccountStoreType {
+    /**
+     * Flat arrays on the Java heap.
+     */
+    HEAP {
+        @Override
+        AccountStore create(final List<Account> accounts, final CurrencyUnit currency) {
+            return new HeapAccountStore(accounts, currency);
+        }
+    },
+
+    /**
+     * Fixed-width slots in direct memory, outside the Java heap.
+     */
+    OFF_HEAP {
+        @Override
+        AccountStore create(final List<Account> accounts, final CurrencyUnit currency) {
+            return new OffHeapAccountStore(accounts, currency);
+        }
+    },
+
+    /**
+     * Fixed-width records in a memory-mapped file, updated in place (see {@link MappedAccountStore}). Requires
+     * the account table file of {@link BankConfiguration}.
+     */
+    MAPPED {
+        @Override
+        AccountStore create(final List<Account> accounts, final CurrencyUnit currency) {
+            throw new IllegalStateException(MAPPED + " account store requires the account table file");
+        }
+
+        @Override
+        AccountStore create(final List<Account> accounts, final BankConfiguration configuration) {
+            return new MappedAccountStore(configuration.getAccountTableFile(), accounts, configuration.getCurrency(),
+                    configuration.getAccountTableCheckpointMillis());
+        }
+    };
+
+    /**
+     * Creates store with the starting amounts of the accounts converted to minor units of the currency.
+     *
+     * @throws IllegalArgumentException when the account ids are duplicated
+     * @throws IllegalStateException    when the store needs options of the {@link BankConfiguration}
+     */
+    abstract AccountStore create(List<Account> accounts, CurrencyUnit currency);
+
+    /**
+     * Creates store of the accounts with the options of the configuration (currency and the file of the store).
+     */
+    AccountStore create(final List<Account> accounts, final BankConfiguration configuration) {
+        return create(accounts, configuration.getCurrency());
+    }
+}
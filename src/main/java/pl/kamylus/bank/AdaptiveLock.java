@@ -0,0 +1,230 @@
+package pl.kamylus.bank;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+
+/**
+ * Non-reentrant lock of an account (or a stripe of accounts) of {@link AdaptiveLockTransferEngine}, which adapts the
+ * way threads wait for it to the contention it sees.
+ * <p>
+ * A free lock is taken with a single compare-and-set. In {@link Mode#SPINNING} mode a thread which finds the lock taken
+ * spins for a while ({@link #SPINS} attempts), as the transfers hold it only for a moment, and parks when it is still
+ * taken. The lock counts the acquisitions which had to wait and the time they waited and every {@link #WINDOW}
+ * acquisitions compares the share of the waiting ones with the thresholds: a lock which stays hot for
+ * {@link #PROMOTION_WINDOWS} windows is promoted to {@link Mode#QUEUED} mode, a queued lock which stays cold for
+ * as many windows is demoted back. Lock of an account configured for combining ({@link Mode#COMBINING}) keeps its
+ * mode.
+ * <p>
+ * Statistics are written only by the owner of the lock, so they need no atomic updates. Other threads read them
+ * without taking the lock (opaque reads), so they may be a few acquisitions behind.
+ */
+final class AdaptiveLock extends AbstractQueuedSynchronizer {
+    /**
+     * How the threads wait for the taken lock.
+     */
+    enum Mode {
+        /**
+         * Threads spin before they park and may take the lock before the parked ones.
+         */
+        SPINNING,
+        /**
+         * Threads park at once and take the lock in FIFO order: on a hot lock spinning only takes processors from
+         * the owner and barging threads starve the parked ones.
+         */
+        QUEUED,
+        /**
+         * Lock of a hot account whose transfers are applied in batches by {@link TransferCombiner}. Threads which
+         * lock it directly wait like in {@link #SPINNING} mode.
+         */
+        COMBINING
+    }
+
+    static final int SPINS = 100;
+    /**
+     * Number of acquisitions after which the contention of the lock is evaluated.
+     */
+    static final int WINDOW = 256;
+    /**
+     * Percentage of the waiting acquisitions of a window from which the window is hot.
+     */
+    static final int HOT_PERCENT = 25;
+    /**
+     * Percentage of the waiting acquisitions of a window up to which the window is cold.
+     */
+    static final int COLD_PERCENT = 5;
+    /**
+     * Number of consecutive hot (cold) windows after which the lock is promoted (demoted).
+     */
+    static final int PROMOTION_WINDOWS = 2;
+
+    private static final long serialVersionUID = 1L;
+
+    private static final VarHandle ACQUISITIONS;
+    private static final VarHandle CONTENDED_ACQUISITIONS;
+    private static final VarHandle WAIT_NANOS;
+    private static final VarHandle PROMOTIONS;
+
+    static {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            ACQUISITIONS = lookup.findVarHandle(AdaptiveLock.class, "acquisitions", long.class);
+            CONTENDED_ACQUISITIONS = lookup.findVarHandle(AdaptiveLock.class, "contendedAcquisitions", long.class);
+            WAIT_NANOS = lookup.findVarHandle(AdaptiveLock.class, "waitNanos", long.class);
+            PROMOTIONS = lookup.findVarHandle(AdaptiveLock.class, "promotions", long.class);
+        } catch (final ReflectiveOperationException exc) {
+            throw new ExceptionInInitializerError(exc);
+        }
+    }
+
+    private volatile Mode mode;
+
+    private long acquisitions;
+    private long contendedAcquisitions;
+    private long waitNanos;
+    private long promotions;
+
+    private int windowAcquisitions;
+    private int windowContended;
+    /**
+     * Number of the last consecutive windows which were hot (in spinning mode) or cold (in queued mode).
+     */
+    private int streak;
+
+    AdaptiveLock() {
+        this(Mode.SPINNING);
+    }
+
+    AdaptiveLock(final Mode mode) {
+        Objects.requireNonNull(mode);
+
+        this.mode = mode;
+    }
+
+    void lock() {
+        if (tryLock())
+            return;
+
+        final long start = System.nanoTime();
+        if (mode != Mode.QUEUED && spin()) {
+            contended(System.nanoTime() - start);
+            return;
+        }
+
+        acquire(1);
+        contended(System.nanoTime() - start);
+    }
+
+    /**
+     * Takes the lock only when it is free, without waiting.
+     */
+    boolean tryLock() {
+        if (tryAcquire(1)) {
+            if (++windowAcquisitions == WINDOW)
+                adapt();
+            ACQUISITIONS.setOpaque(this, acquisitions + 1);
+            return true;
+        }
+
+        return false;
+    }
+
+    void unlock() {
+        release(1);
+    }
+
+    Mode getMode() {
+        return mode;
+    }
+
+    long getAcquisitions() {
+        return (long) ACQUISITIONS.getOpaque(this);
+    }
+
+    /**
+     * Number of the acquisitions which found the lock taken.
+     */
+    long getContendedAcquisitions() {
+        return (long) CONTENDED_ACQUISITIONS.getOpaque(this);
+    }
+
+    /**
+     * Total time the contended acquisitions waited for the lock in nanoseconds.
+     */
+    long getWaitNanos() {
+        return (long) WAIT_NANOS.getOpaque(this);
+    }
+
+    /**
+     * Number of the promotions to {@link Mode#QUEUED} mode.
+     */
+    long getPromotions() {
+        return (long) PROMOTIONS.getOpaque(this);
+    }
+
+    @Override
+    protected boolean tryAcquire(final int ignored) {
+        // queued lock is handed over in FIFO order, newcomers do not barge in front of the parked threads
+        if (mode == Mode.QUEUED && hasQueuedPredecessors())
+            return false;
+
+        return compareAndSetState(0, 1);
+    }
+
+    @Override
+    protected boolean tryRelease(final int ignored) {
+        setState(0);
+        return true;
+    }
+
+    private boolean spin() {
+        for (int i = 0; i < SPINS; ++i) {
+            Thread.onSpinWait();
+            if (getState() == 0 && tryAcquire(1))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Records the acquisition which found the lock taken, called by the new owner.
+     */
+    private void contended(final long waited) {
+        ++windowContended;
+        if (++windowAcquisitions == WINDOW)
+            adapt();
+
+        ACQUISITIONS.setOpaque(this, acquisitions + 1);
+        CONTENDED_ACQUISITIONS.setOpaque(this, contendedAcquisitions + 1);
+        WAIT_NANOS.setOpaque(this, waitNanos + waited);
+    }
+
+    /**
+     * Evaluates the window which has just ended, called by the owner.
+     */
+    private void adapt() {
+        final int contendedPercent = windowContended * 100 / WINDOW;
+        windowAcquisitions = 0;
+        windowContended = 0;
+
+        if (mode == Mode.COMBINING)
+            return;
+
+        if (mode == Mode.SPINNING) {
+            streak = contendedPercent >= HOT_PERCENT ? streak + 1 : 0;
+            if (streak == PROMOTION_WINDOWS) {
+                streak = 0;
+                mode = Mode.QUEUED;
+                PROMOTIONS.setOpaque(this, promotions + 1);
+            }
+        } else {
+            streak = contendedPercent <= COLD_PERCENT ? streak + 1 : 0;
+            if (streak == PROMOTION_WINDOWS) {
+                streak = 0;
+                mode = Mode.SPINNING;
+            }
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package pl.kamylus.bank;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Fixed-point transfer engine which locks accounts in the same strictly defined order (by lock index) as
+ * {@link MonitorTransferEngine}, but with {@link AdaptiveLock}s instead of monitors: the locks spin briefly before
+ * they park, switch hot accounts to queued (FIFO) handoff and record how often and how long the transfers waited for
+ * every account, which is reported by {@link #topContended(int)} at runtime.
+ * <p>
+ * Up to {@link #MAX_LOCKS} accounts every account has its own lock, above that accounts share locks (lock striping),
+ * like in {@link MonitorTransferEngine}. Balances are read without the locks, through {@link BalanceVersions}.
+ * <p>
+ * Transfers between a hot account configured for combining ({@link BankConfiguration.Builder#combiningAccount}) and
+ * an ordinary account are applied by the {@link TransferCombiner} of the hot account: the thread locks the ordinary
+ * account and posts the transfer. Locks of the combining accounts are ordered after all other locks, so the hot lock
+ * is always taken last, also by batches and by transfers between two combining accounts, which lock both accounts.
+ * <p>
+ * Cross-currency transfers withdraw the amount and deposit the credit converted by {@link FixedPointBank}, like in
+ * {@link MonitorTransferEngine}.
+ */
+class AdaptiveLockTransferEngine implements TransferEngine {
+    static final int MAX_LOCKS = MonitorTransferEngine.MAX_LOCKS;
+
+    private static final Comparator<AccountContention> MOST_CONTENDED_FIRST =
+            Comparator.comparingLong(AccountContention::getWaitNanos)
+                    .thenComparingLong(AccountContention::getContendedAcquisitions)
+                    .reversed()
+                    .thenComparingInt(AccountContention::getHandle);
+
+    private final CurrencyUnit currency;
+    /**
+     * Currencies of the accounts by handle, null when all accounts are in the bank currency.
+     */
+    private final CurrencyUnit[] accountCurrencies;
+    private final AccountStore store;
+    private final TransferAuditSink auditSink;
+    private final IntFunction<String> accountIds;
+    private final AdaptiveLock[] locks;
+    private final int lockMask;
+    /**
+     * Combiner of the lock index, null for the locks of ordinary accounts.
+     */
+    private final TransferCombiner[] combiners;
+    private final BalanceVersions versions;
+    private final TransferMetrics metrics;
+    private final TransferLog transferLog;
+
+    AdaptiveLockTransferEngine(final List<Account> accounts, final BankConfiguration configuration) {
+        this(accounts, configuration, new TransferMetrics());
+    }
+
+    /**
+     * @param metrics receives the time spent waiting for the locks and holding them
+     */
+    AdaptiveLockTransferEngine(final List<Account> accounts, final BankConfiguration configuration,
+                               final TransferMetrics metrics) {
+        this(accounts, configuration, metrics, null);
+    }
+
+    /**
+     * @param transferLog logs the transfers holding the locks of both accounts, may be null
+     */
+    AdaptiveLockTransferEngine(final List<Account> accounts, final BankConfiguration configuration,
+                               final TransferMetrics metrics, final TransferLog transferLog) {
+        Objects.requireNonNull(accounts);
+        Objects.requireNonNull(configuration);
+        Objects.requireNonNull(metrics);
+
+        this.currency = configuration.getCurrency();
+        this.accountCurrencies = FxRates.accountCurrencies(accounts, currency);
+        this.store = configuration.getAccountStoreType().create(accounts, configuration);
+        this.auditSink = configuration.getAuditSink();
+        this.accountIds = store::getAccountId;
+
+        final int lockCount = Integer.highestOneBit(Math.max(1, Math.min(store.size(), MAX_LOCKS)) * 2 - 1);
+        this.locks = new AdaptiveLock[lockCount];
+        for (int i = 0; i < locks.length; ++i)
+            locks[i] = new AdaptiveLock();
+        this.lockMask = lockCount - 1;
+        this.combiners = new TransferCombiner[lockCount];
+
+        int handle = 0;
+        for (final Account account : accounts) {
+            final int lockIndex = handle++ & lockMask;
+            if (configuration.isCombiningAccount(account.getId()) && combiners[lockIndex] == null) {
+                locks[lockIndex] = new AdaptiveLock(AdaptiveLock.Mode.COMBINING);
+                combiners[lockIndex] = new TransferCombiner(locks[lockIndex], this::transferLocked);
+            }
+        }
+
+        this.versions = new BalanceVersions(lockCount, store.size(), store::getBalance);
+        this.metrics = metrics;
+        this.transferLog = transferLog;
+    }
+
+    @Override
+    public int handleOf(final CharSequence accountId) {
+        return store.indexOf(accountId);
+    }
+
+    @Override
+    public String getAccountId(final int account) {
+        return store.getAccountId(account);
+    }
+
+    @Override
+    public int accountsCount() {
+        return store.size();
+    }
+
+    @Override
+    public CurrencyUnit getCurrency() {
+        return currency;
+    }
+
+    @Override
+    public CurrencyUnit getCurrency(final int account) {
+        return accountCurrencies == null ? currency : accountCurrencies[account];
+    }
+
+    @Override
+    public long getBalance(final int account) {
+        return versions.read(account);
+    }
+
+    @Override
+    public void readBalances(final int[] accounts, final long[] balances) {
+        versions.read(accounts, balances);
+    }
+
+    @Override
+    public void restoreBalances(final IntToLongFunction balances) {
+        for (int i = 0; i < store.size(); ++i)
+            store.setBalance(i, balances.applyAsLong(i));
+    }
+
+    @Override
+    public BalanceSnapshot openSnapshot() {
+        return versions.openSnapshot();
+    }
+
+    @Override
+    public TransferOutcome tryTransfer(final int source, final int destination, final long amount) {
+        return tryTransfer(source, destination, amount, amount);
+    }
+
+    @Override
+    public TransferOutcome tryTransfer(final int source, final int destination, final long amount,
+                                       final long credit) {
+        final int sourceLock = source & lockMask;
+        final int destinationLock = destination & lockMask;
+        if (sourceLock != destinationLock && (combiners[sourceLock] == null) != (combiners[destinationLock] == null))
+            return transferCombined(source, destination, amount, credit);
+
+        final int first = orderOf(sourceLock) < orderOf(destinationLock) ? sourceLock : destinationLock;
+        final int second = first == sourceLock ? destinationLock : sourceLock;
+
+        final long start = System.nanoTime();
+        lock(first);
+        if (second != first)
+            lock(second);
+
+        final long locked = System.nanoTime();
+        try {
+            return transferLocked(source, destination, amount, credit);
+        } finally {
+            if (second != first)
+                unlock(second);
+            unlock(first);
+            metrics.locked(locked - start, System.nanoTime() - locked);
+        }
+    }
+
+    /**
+     * Locks all the accounts of the batch once (in the same order as single transfers) and performs the transfers
+     * in the given order.
+     */
+    @Override
+    public void transferBatch(final int[] sources, final int[] destinations, final long[] amounts,
+                              final TransferResult[] results) {
+        transferBatch(sources, destinations, amounts, amounts, results);
+    }
+
+    @Override
+    public void transferBatch(final int[] sources, final int[] destinations, final long[] amounts,
+                              final long[] credits, final TransferResult[] results) {
+        final int[] lockIndexes = new int[2 * results.length];
+        int lockIndexesCount = 0;
+
+        for (int i = 0; i < results.length; ++i) {
+            if (results[i] == null) {
+                lockIndexes[lockIndexesCount++] = sources[i] & lockMask;
+                lockIndexes[lockIndexesCount++] = destinations[i] & lockMask;
+            }
+        }
+
+        final int[] batchLocks = Arrays.stream(lockIndexes, 0, lockIndexesCount)
+                .map(this::orderOf)
+                .sorted()
+                .distinct()
+                .map(order -> order & lockMask)
+                .toArray();
+
+        final long start = System.nanoTime();
+        int lockedCount = 0;
+        try {
+            for (final int lockIndex : batchLocks) {
+                lock(lockIndex);
+                ++lockedCount;
+            }
+
+            final long locked = System.nanoTime();
+            for (int i = 0; i < results.length; ++i) {
+                if (results[i] == null) {
+                    final TransferOutcome outcome = transferLocked(sources[i], destinations[i], amounts[i],
+                            credits[i]);
+                    results[i] = outcome.isSuccess() ? TransferResult.OK : rejection(outcome, sources[i]);
+                }
+            }
+            metrics.locked(locked - start, System.nanoTime() - locked);
+        } finally {
+            while (lockedCount > 0)
+                unlock(batchLocks[--lockedCount]);
+        }
+    }
+
+    /**
+     * Returns contention of at most {@code limit} accounts which waited for their locks the longest, most contended
+     * first. Accounts whose locks were never contended are not reported.
+     */
+    @Override
+    public List<AccountContention> topContended(final int limit) {
+        if (limit < 1)
+            throw new IllegalArgumentException("Limit (" + limit + ") has to be positive");
+
+        final List<AccountContention> contended = new ArrayList<>();
+        for (int i = 0; i < locks.length; ++i) {
+            if (locks[i].getContendedAcquisitions() > 0)
+                contended.add(new AccountContention(i, locks[i]));
+        }
+
+        contended.sort(MOST_CONTENDED_FIRST);
+        return contended.size() > limit ? new ArrayList<>(contended.subList(0, limit)) : contended;
+    }
+
+    /**
+     * Returns the lock guarding the account.
+     */
+    AdaptiveLock lockOf(final int account) {
+        return locks[account & lockMask];
+    }
+
+    /**
+     * Returns the combiner of the account, null when the account is not configured for combining.
+     */
+    TransferCombiner combinerOf(final int account) {
+        return combiners[account & lockMask];
+    }
+
+    /**
+     * Posts the transfer between an ordinary and a combining account to the combiner, holding the lock of the ordinary
+     * account.
+     */
+    private TransferOutcome transferCombined(final int source, final int destination, final long amount,
+                                             final long credit) {
+        final int sourceLock = source & lockMask;
+        final boolean combiningDestination = combiners[sourceLock] == null;
+        final AdaptiveLock ordinaryLock = locks[combiningDestination ? sourceLock : destination & lockMask];
+        final TransferCombiner combiner = combiners[combiningDestination ? destination & lockMask : sourceLock];
+
+        final long start = System.nanoTime();
+        ordinaryLock.lock();
+        final long locked = System.nanoTime();
+        try {
+            return combiner.transfer(source, destination, amount, credit);
+        } finally {
+            ordinaryLock.unlock();
+            metrics.locked(locked - start, System.nanoTime() - locked);
+        }
+    }
+
+    /**
+     * Position of the lock in the locking order: locks of the combining accounts come after all other locks.
+     */
+    private int orderOf(final int lockIndex) {
+        return combiners[lockIndex] == null ? lockIndex : locks.length + lockIndex;
+    }
+
+    private void lock(final int lockIndex) {
+        if (combiners[lockIndex] == null)
+            locks[lockIndex].lock();
+        else
+            combiners[lockIndex].lock();
+    }
+
+    private void unlock(final int lockIndex) {
+        if (combiners[lockIndex] == null)
+            locks[lockIndex].unlock();
+        else
+            combiners[lockIndex].unlock();
+    }
+
+    /**
+     * Closes the account store. Transfers have to be stopped before.
+     */
+    @Override
+    public void close() {
+        store.close();
+    }
+
+    private TransferOutcome transferLocked(final int source, final int destination, final long amount,
+                                           final long credit) {
+        if (store.getBalance(source) < amount)
+            return TransferOutcome.INSUFFICIENT_FUNDS;
+
+        if (store.getBalance(destination) > Long.MAX_VALUE - credit)
+            return TransferOutcome.OVERFLOW;
+
+        if (transferLog != null)
+            transferLog.append(source, destination, amount);
+
+        versions.beginWrite(source, destination);
+        store.withdraw(source, amount);
+        store.deposit(destination, credit);
+        versions.endWrite(source, destination);
+
+        if (auditSink != null) {
+            auditSink.transferred(accountIds, source, destination, currency, amount, store.getBalance(source),
+                    store.getBalance(destination));
+        }
+
+        return TransferOutcome.OK;
+    }
+}
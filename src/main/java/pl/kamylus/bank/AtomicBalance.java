@@ -0,0 +1,38 @@
+package pl.kamylus.bank;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Balance kept in a single {@link AtomicLong}. Withdrawal is a compare-and-set loop which checks the balance on every
+ * attempt, so the balance never goes below zero and concurrent updates are never lost.
+ */
+class AtomicBalance implements ConcurrentBalance {
+    private final AtomicLong balance;
+
+    AtomicBalance(final long balance) {
+        this.balance = new AtomicLong(balance);
+    }
+
+    @Override
+    public long get() {
+        return balance.get();
+    }
+
+    @Override
+    public void deposit(final long amount) {
+        balance.addAndGet(amount);
+    }
+
+    @Override
+    public boolean tryWithdraw(final long amount) {
+        long current;
+        do {
+            current = balance.get();
+
+            if (current < amount)
+                return false;
+        } while (!balance.compareAndSet(current, current - amount));
+
+        return true;
+    }
+}
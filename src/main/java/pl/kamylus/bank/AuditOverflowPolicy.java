@@ -0,0 +1,18 @@
+package pl.kamylus.bank;
+
+/**
+ * What {@link TransferAuditSink} does with a new event when its ring buffer is full (the formatting thread is behind).
+ */
+enum AuditOverflowPolicy {
+    /**
+     * The emitting thread waits for a free slot (backpressure), no event is lost. Transfers are slowed down to
+     * the speed of the output.
+     */
+    BLOCK,
+
+    /**
+     * The new event is dropped and counted, transfers are never slowed down. Number of dropped events is reported by
+     * the formatting thread.
+     */
+    DROP
+}
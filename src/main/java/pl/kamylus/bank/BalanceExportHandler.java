@@ -0,0 +1,51 @@
+package pl.kamylus.bank;
+
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Streams balances of all accounts from a single point of time as CSV ({@code accountId,amount} lines) straight to
+ * the response, while the transfers continue (see {@link FixedPointBank#exportBalances(Writer)}). Errors are reported
+ * with a status only before the first line is sent.
+ */
+class BalanceExportHandler implements Route {
+
+    static final String CONTENT_TYPE = "text/csv";
+
+    private final FixedPointBank bank;
+
+    BalanceExportHandler(final FixedPointBank bank) {
+        Objects.requireNonNull(bank);
+
+        this.bank = bank;
+    }
+
+    @Override
+    public Object handle(final Request request, final Response response) {
+        try {
+            final HttpServletResponse raw = response.raw();
+            raw.setContentType(CONTENT_TYPE);
+
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(raw.getOutputStream(),
+                    StandardCharsets.UTF_8));
+            bank.exportBalances(writer);
+        } catch (final IllegalStateException exc) {
+            response.status(HttpURLConnection.HTTP_CONFLICT);
+            return exc.getMessage();
+        } catch (final Exception exc) {
+            response.status(HttpURLConnection.HTTP_INTERNAL_ERROR);
+            return exc.getMessage();
+        }
+
+        return "";
+    }
+}
@@ -0,0 +1,42 @@
+package pl.kamylus.bank;
+
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.net.HttpURLConnection;
+import java.util.Objects;
+
+/**
+ * Returns balance of the account ({@code accountId}) of the fixed-point bank, formatted in its currency. Reading
+ * the balance never takes the locks of the transfers.
+ */
+class BalanceHandler implements Route {
+
+    private static final int UNPROCESSABLE_ENTITY_ERROR = 422;
+
+    private final FixedPointBank bank;
+
+    BalanceHandler(final FixedPointBank bank) {
+        Objects.requireNonNull(bank);
+
+        this.bank = bank;
+    }
+
+    @Override
+    public Object handle(final Request request, final Response response) {
+        try {
+            final int[] handles = {bank.accountHandle(request.queryParams("accountId"))};
+            final long[] balances = new long[1];
+            bank.readBalances(handles, balances);
+
+            return bank.accountCurrency(handles[0]).format(balances[0]);
+        } catch (final IllegalArgumentException exc) {
+            response.status(UNPROCESSABLE_ENTITY_ERROR);
+            return exc.getMessage();
+        } catch (final Exception exc) {
+            response.status(HttpURLConnection.HTTP_INTERNAL_ERROR);
+            return exc.getMessage();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package pl.kamylus.bank;
+
+/**
+ * Balances of all accounts of the engine from the moment the snapshot was opened, taken while the transfers continue,
+ * for example to check that the sum of all balances did not change. Accounts are addressed by handles, in any order.
+ * <p>
+ * A snapshot is used by one thread at a time and has to be closed, only one snapshot of the engine can be open.
+ */
+interface BalanceSnapshot extends AutoCloseable {
+    /**
+     * Number of the accounts.
+     */
+    int size();
+
+    /**
+     * @throws IllegalStateException     when the snapshot is closed
+     * @throws IndexOutOfBoundsException when the account does not exist
+     */
+    long getBalance(int account);
+
+    @Override
+    void close();
+}
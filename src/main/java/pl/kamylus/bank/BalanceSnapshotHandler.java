@@ -0,0 +1,62 @@
+package pl.kamylus.bank;
+
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.net.HttpURLConnection;
+import java.util.Objects;
+
+/**
+ * Returns balances of the accounts given by repeated {@code accountId} parameters (at most {@link #MAX_ACCOUNTS}), one
+ * account per line: {@code accountId,amount}. Balances are read together, without the locks of the transfers: with
+ * the monitor and sequenced engines they all come from the same point of time (see
+ * {@link TransferEngine#readBalances(int[], long[])}).
+ */
+class BalanceSnapshotHandler implements Route {
+
+    static final int MAX_ACCOUNTS = 1000;
+
+    private static final int UNPROCESSABLE_ENTITY_ERROR = 422;
+
+    private final FixedPointBank bank;
+
+    BalanceSnapshotHandler(final FixedPointBank bank) {
+        Objects.requireNonNull(bank);
+
+        this.bank = bank;
+    }
+
+    @Override
+    public Object handle(final Request request, final Response response) {
+        final StringBuilder responseBuilder = new StringBuilder();
+        try {
+            final String[] accountIds = request.queryParamsValues("accountId");
+            final int count = accountIds != null ? accountIds.length : 0;
+            if (count < 1 || count > MAX_ACCOUNTS) {
+                throw new IllegalArgumentException("Number of accounts (" + count + ") has to be between 1 and "
+                        + MAX_ACCOUNTS);
+            }
+
+            final int[] handles = new int[count];
+            for (int i = 0; i < count; ++i)
+                handles[i] = bank.accountHandle(accountIds[i]);
+
+            final long[] balances = new long[count];
+            bank.readBalances(handles, balances);
+
+            for (int i = 0; i < count; ++i) {
+                responseBuilder.append(accountIds[i]).append(',')
+                        .append(bank.accountCurrency(handles[i]).format(balances[i])).append('\n');
+            }
+        } catch (final IllegalArgumentException exc) {
+            response.status(UNPROCESSABLE_ENTITY_ERROR);
+            return exc.getMessage();
+        } catch (final Exception exc) {
+            response.status(HttpURLConnection.HTTP_INTERNAL_ERROR);
+            return exc.getMessage();
+        }
+
+        return responseBuilder.toString();
+    }
+}
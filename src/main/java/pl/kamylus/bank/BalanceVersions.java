@@ -0,0 +1,510 @@
+package pl.kamylus.bank;
+
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Sequence lock over the balances of an {@link AccountStore}, which lets readers take balances of several accounts
+ * from the same point of time without locking them, so reads never block (or slow down) the transfers.
+ * <p>
+ * Accounts are grouped into stripes (handle modulo the number of stripes) and every stripe has a version. The writer,
+ * which already has exclusive access to the accounts (holds their monitors or is the only thread which modifies
+ * them), makes versions of the stripes of both accounts odd before it changes the balances and even again
+ * afterwards. The reader takes the (even) versions of its stripes, reads the balances and retries when any version
+ * has changed in the meantime.
+ * <p>
+ * The versions also cut snapshots of all balances (see {@link VersionedBalanceSnapshot}) while the transfers
+ * continue. Opening a snapshot publishes a new epoch. A writer which sees the epoch copies the balance of the account
+ * aside (copy on write) before it changes it for the first time in this epoch, unless the snapshot has already read
+ * it. Every account is taken exactly once per epoch, by the writer or by the snapshot (compare-and-set of the epoch of
+ * the account), so the snapshot shows the balances from the moment it was opened.
+ * <p>
+ * With concurrent writers (for lock-free transfers, which do not have exclusive access to the accounts) the low bits
+ * of the version count the writers which are modifying the stripe and the high bits count the finished writes, so
+ * writers never wait for each other and the reader waits until there is no writer and retries when the version has
+ * changed. A concurrent writer cannot copy a balance aside while other writers may be changing it, so it backs off
+ * instead: the account is claimed (by the writer or by the snapshot), the claimer waits until the stripe has no writers
+ * and copies the balance aside, and only then the writers may change it. Writers of a hot stripe could keep it busy
+ * forever, so a reader (or a claimer) which has found its stripe busy raises the flag of that stripe and new writers
+ * of the stripe back off until it is done: they spin for a while and then yield the processor. Writers of the other
+ * stripes never wait for the readers.
+ * <p>
+ * Accounts split into {@link Cells} (hot accounts) are versioned by their cells instead of the stripe: a deposit
+ * counts itself only in the version of the cell it deposits into and a withdrawal (rare for such accounts) in all the
+ * cells, so deposits of different threads never touch the same version. The reader takes the sum of the versions of
+ * all the cells (only when none of them has writers) and retries when the sum has changed.
+ */
+final class BalanceVersions {
+    static final int MAX_STRIPES = 1 << 16;
+
+    private static final long NO_SNAPSHOT = 0;
+    /**
+     * Epoch of the account which is being copied aside by a concurrent writer or the snapshot.
+     */
+    private static final long CLAIMING = -1;
+    /**
+     * Writers of the stripe in the concurrent mode, at most 2^16 - 1 at a time.
+     */
+    private static final long CONCURRENT_WRITERS = (1 << 16) - 1;
+    private static final long CONCURRENT_WRITE = 1 << 16;
+    /**
+     * Spins of the backing off writer before it starts yielding the processor.
+     */
+    private static final int BACK_OFF_SPINS = 100;
+    /**
+     * Version of the account which is being modified.
+     */
+    private static final long BUSY = -1;
+
+    /**
+     * Balance split into cells which are modified independently (see {@link StripedBalance}), with a version per
+     * cell. Versions are changed only by {@link BalanceVersions}.
+     */
+    interface Cells {
+        int cellCount();
+
+        /**
+         * Returns the cell which deposits of the current thread go to.
+         */
+        int localCell();
+
+        long getVersion(int cell);
+
+        void addToVersion(int cell, long delta);
+    }
+
+    private final AtomicLongArray versions;
+    private final int mask;
+    private final boolean concurrentWriters;
+    /**
+     * Bits of the version which are set while the stripe is being modified.
+     */
+    private final long writersMask;
+    private final int accountsCount;
+    private final IntToLongFunction balances;
+    /**
+     * Cells of the accounts by handle (null for the accounts versioned by their stripes), null without concurrent
+     * writers.
+     */
+    private final Cells[] accountCells;
+    /**
+     * Readers of every stripe which wait for the writers of the concurrent mode to finish, new writers of the stripe
+     * back off while there are any. Null without concurrent writers.
+     */
+    private final AtomicIntegerArray waitingReaders;
+
+    private volatile long snapshotEpoch = NO_SNAPSHOT;
+    private long lastEpoch;
+    /**
+     * Epoch in which the balance of the account was taken by the snapshot or copied aside, allocated with the first
+     * snapshot.
+     */
+    private AtomicLongArray takenEpochs;
+    private long[] takenBalances;
+
+    /**
+     * @param stripes  number of the stripes, a power of 2
+     * @param balances reads balance of the account from the store
+     */
+    BalanceVersions(final int stripes, final int accountsCount, final IntToLongFunction balances) {
+        this(stripes, accountsCount, balances, null);
+    }
+
+    /**
+     * Creates versions for writers which may modify the same accounts at the same time, unless the cells are null.
+     *
+     * @param cells returns cells of the account, or null when the account is not split into cells
+     */
+    BalanceVersions(final int stripes, final int accountsCount, final IntToLongFunction balances,
+                    final IntFunction<Cells> cells) {
+        Objects.requireNonNull(balances);
+
+        if (stripes < 1 || stripes > MAX_STRIPES || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Number of stripes (" + stripes + ") has to be a power of 2 not "
+                    + "greater than " + MAX_STRIPES);
+        }
+
+        this.versions = new AtomicLongArray(stripes);
+        this.mask = stripes - 1;
+        this.concurrentWriters = cells != null;
+        this.writersMask = concurrentWriters ? CONCURRENT_WRITERS : 1;
+        this.waitingReaders = concurrentWriters ? new AtomicIntegerArray(stripes) : null;
+        this.accountsCount = accountsCount;
+        this.balances = balances;
+        this.accountCells = concurrentWriters ? prepareAccountCells(accountsCount, cells) : null;
+    }
+
+    private static Cells[] prepareAccountCells(final int accountsCount, final IntFunction<Cells> cells) {
+        final Cells[] result = new Cells[accountsCount];
+        for (int account = 0; account < accountsCount; ++account)
+            result[account] = cells.apply(account);
+
+        return result;
+    }
+
+    /**
+     * Returns number of the stripes for the given number of accounts: one stripe per account, up to
+     * {@link #MAX_STRIPES}.
+     */
+    static int stripesFor(final int accountsCount) {
+        return Integer.highestOneBit(Math.max(1, Math.min(accountsCount, MAX_STRIPES)) * 2 - 1);
+    }
+
+    /**
+     * Marks balances of the accounts as being modified. Pass the same account twice when there is only one.
+     */
+    void beginWrite(final int source, final int destination) {
+        if (concurrentWriters) {
+            beginConcurrentWrite(source, destination);
+            return;
+        }
+
+        final int sourceStripe = source & mask;
+        final int destinationStripe = destination & mask;
+
+        versions.setOpaque(sourceStripe, versions.getPlain(sourceStripe) + 1);
+        if (destinationStripe != sourceStripe)
+            versions.setOpaque(destinationStripe, versions.getPlain(destinationStripe) + 1);
+
+        // the odd versions have to be visible before the epoch is read: either this writer sees the new snapshot
+        // or the snapshot waits for this writer and sees its whole transfer
+        VarHandle.fullFence();
+
+        final long epoch = snapshotEpoch;
+        if (epoch != NO_SNAPSHOT) {
+            copyAside(source, epoch);
+            if (destination != source)
+                copyAside(destination, epoch);
+        }
+    }
+
+    void endWrite(final int source, final int destination) {
+        if (concurrentWriters) {
+            addToVersions(source, destination, CONCURRENT_WRITE - 1);
+            return;
+        }
+
+        final int sourceStripe = source & mask;
+        final int destinationStripe = destination & mask;
+
+        versions.setRelease(sourceStripe, versions.getPlain(sourceStripe) + 1);
+        if (destinationStripe != sourceStripe)
+            versions.setRelease(destinationStripe, versions.getPlain(destinationStripe) + 1);
+    }
+
+    /**
+     * Reads balance of the account without locking it.
+     */
+    long read(final int account) {
+        final int stripe = account & mask;
+        boolean waiting = false;
+
+        try {
+            while (true) {
+                final long version = idleVersion(account);
+                if (version != BUSY) {
+                    final long balance = balances.applyAsLong(account);
+
+                    VarHandle.loadLoadFence();
+                    if (version(account) == version)
+                        return balance;
+                }
+
+                waiting = awaitWriters(stripe, waiting);
+            }
+        } finally {
+            if (waiting)
+                waitingReaders.decrementAndGet(stripe);
+        }
+    }
+
+    /**
+     * Reads balances of the accounts into the array (at the same positions), all of them from the same point of time,
+     * without locking them.
+     */
+    void read(final int[] accounts, final long[] balances) {
+        final long[] readVersions = new long[accounts.length];
+        boolean waiting = false;
+
+        try {
+            while (true) {
+                if (readVersions(accounts, readVersions)) {
+                    for (int i = 0; i < accounts.length; ++i)
+                        balances[i] = this.balances.applyAsLong(accounts[i]);
+
+                    VarHandle.loadLoadFence();
+                    if (validate(accounts, readVersions))
+                        return;
+                }
+
+                waiting = awaitWriters(accounts, waiting);
+            }
+        } finally {
+            if (waiting) {
+                for (final int account : accounts)
+                    waitingReaders.decrementAndGet(account & mask);
+            }
+        }
+    }
+
+    /**
+     * Starts the snapshot of all balances, only one can be open at a time.
+     */
+    synchronized BalanceSnapshot openSnapshot() {
+        if (snapshotEpoch != NO_SNAPSHOT)
+            throw new IllegalStateException("Another balance snapshot is open");
+
+        if (takenEpochs == null) {
+            takenEpochs = new AtomicLongArray(accountsCount);
+            takenBalances = new long[accountsCount];
+        }
+
+        snapshotEpoch = ++lastEpoch;
+        return new VersionedBalanceSnapshot(this, lastEpoch, accountsCount);
+    }
+
+    /**
+     * Returns balance of the account from the moment the snapshot of the given epoch was opened. Called by a single
+     * thread at a time.
+     */
+    long readSnapshot(final int account, final long epoch) {
+        if (concurrentWriters) {
+            take(account, epoch);
+            return takenBalances[account];
+        }
+
+        final long takenEpoch = takenEpochs.get(account);
+        if (takenEpoch == epoch)
+            return takenBalances[account];
+
+        final long balance = read(account);
+        if (!takenEpochs.compareAndSet(account, takenEpoch, epoch))
+            return takenBalances[account];
+
+        // for the next reads of the account, a writer which lost the race copies the same value aside
+        takenBalances[account] = balance;
+        return balance;
+    }
+
+    /**
+     * Adds the amount to the balance of the account in the open snapshot, for a change which the snapshot has to show
+     * although it is applied after the snapshot was opened. Called by the single writer after its write of the
+     * account, before the snapshot is read.
+     */
+    void addToSnapshot(final int account, final long amount) {
+        takenBalances[account] += amount;
+    }
+
+    synchronized void closeSnapshot(final long epoch) {
+        if (snapshotEpoch == epoch)
+            snapshotEpoch = NO_SNAPSHOT;
+    }
+
+    /**
+     * Called by the writer, before it changes the balance.
+     */
+    private void copyAside(final int account, final long epoch) {
+        final long takenEpoch = takenEpochs.get(account);
+        if (takenEpoch == epoch)
+            return;
+
+        takenBalances[account] = balances.applyAsLong(account);
+        takenEpochs.compareAndSet(account, takenEpoch, epoch);
+    }
+
+    private void beginConcurrentWrite(final int source, final int destination) {
+        while (true) {
+            addToVersions(source, destination, 1);
+
+            // the writer is counted before it checks the readers and the epoch: either it sees the waiting reader
+            // (the new snapshot) or the reader (the snapshot) waits for it and sees its whole transfer
+            final boolean readersWaiting = readersWaiting(source, destination);
+            final long epoch = snapshotEpoch;
+            if (!readersWaiting && (epoch == NO_SNAPSHOT
+                    || takenEpochs.get(source) >= epoch && takenEpochs.get(destination) >= epoch)) {
+                return;
+            }
+
+            // nothing has been changed, so the versions go back to the previous values
+            addToVersions(source, destination, -1);
+            if (readersWaiting) {
+                backOff(source, destination);
+            } else {
+                take(source, epoch);
+                take(destination, epoch);
+            }
+        }
+    }
+
+    private boolean readersWaiting(final int source, final int destination) {
+        return waitingReaders.get(source & mask) != 0 || waitingReaders.get(destination & mask) != 0;
+    }
+
+    /**
+     * Waits until no reader waits for the stripes of the accounts: spins for a while and then yields the processor.
+     */
+    private void backOff(final int source, final int destination) {
+        for (int spins = 0; readersWaiting(source, destination); ++spins) {
+            if (spins < BACK_OFF_SPINS)
+                Thread.onSpinWait();
+            else
+                Thread.yield();
+        }
+    }
+
+    /**
+     * Counts the writer in (or out of) the versions of both accounts: in the stripes, in all cells of the source
+     * account and in the local cell of the destination account.
+     */
+    private void addToVersions(final int source, final int destination, final long delta) {
+        final int sourceStripe = source & mask;
+        final int destinationStripe = destination & mask;
+        final Cells sourceCells = accountCells[source];
+        final Cells destinationCells = accountCells[destination];
+
+        if (sourceCells == null) {
+            versions.getAndAdd(sourceStripe, delta);
+        } else {
+            for (int cell = 0; cell < sourceCells.cellCount(); ++cell)
+                sourceCells.addToVersion(cell, delta);
+        }
+
+        if (destinationCells != null)
+            destinationCells.addToVersion(destinationCells.localCell(), delta);
+        else if (destinationStripe != sourceStripe || sourceCells != null)
+            versions.getAndAdd(destinationStripe, delta);
+    }
+
+    /**
+     * Copies the balance aside for the snapshot of the epoch, unless it has already been taken, in the concurrent
+     * mode. Called by a thread which is not counted as a writer.
+     */
+    private void take(final int account, final long epoch) {
+        while (true) {
+            final long takenEpoch = takenEpochs.get(account);
+            if (takenEpoch >= epoch)
+                return;
+
+            if (takenEpoch != CLAIMING && takenEpochs.compareAndSet(account, takenEpoch, CLAIMING)) {
+                // writers which come now see the claim and back off, the ones which are already counted finish
+                awaitIdle(account);
+                takenBalances[account] = balances.applyAsLong(account);
+                takenEpochs.set(account, epoch);
+                return;
+            }
+
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Reads versions of the stripes of the accounts, returns false when any of them is being modified.
+     */
+    private boolean readVersions(final int[] accounts, final long[] readVersions) {
+        for (int i = 0; i < accounts.length; ++i) {
+            readVersions[i] = idleVersion(accounts[i]);
+            if (readVersions[i] == BUSY)
+                return false;
+        }
+
+        return true;
+    }
+
+    private boolean validate(final int[] accounts, final long[] readVersions) {
+        for (int i = 0; i < accounts.length; ++i) {
+            if (version(accounts[i]) != readVersions[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns version of the account (of its stripe or the sum of the versions of its cells), or {@link #BUSY} when
+     * it is being modified.
+     */
+    private long idleVersion(final int account) {
+        final Cells cells = accountCells == null ? null : accountCells[account];
+        if (cells == null) {
+            final long version = versions.getAcquire(account & mask);
+            return (version & writersMask) == 0 ? version : BUSY;
+        }
+
+        long sum = 0;
+        for (int cell = 0; cell < cells.cellCount(); ++cell) {
+            final long version = cells.getVersion(cell);
+            if ((version & writersMask) != 0)
+                return BUSY;
+
+            sum += version;
+        }
+
+        return sum;
+    }
+
+    /**
+     * Returns version of the account for the validation of the read. Versions of the cells never go below the values
+     * read by {@link #idleVersion(int)}, so the same sum means that none of them has changed.
+     */
+    private long version(final int account) {
+        final Cells cells = accountCells == null ? null : accountCells[account];
+        if (cells == null)
+            return versions.get(account & mask);
+
+        long sum = 0;
+        for (int cell = 0; cell < cells.cellCount(); ++cell)
+            sum += cells.getVersion(cell);
+
+        return sum;
+    }
+
+    /**
+     * Waits until no writer is modifying the account.
+     */
+    private void awaitIdle(final int account) {
+        final int stripe = account & mask;
+        boolean waiting = false;
+
+        try {
+            while (idleVersion(account) == BUSY)
+                waiting = awaitWriters(stripe, waiting);
+        } finally {
+            if (waiting)
+                waitingReaders.decrementAndGet(stripe);
+        }
+    }
+
+    /**
+     * Called by the reader which has found its stripe modified. In the concurrent mode it asks new writers of
+     * the stripe to back off (once), so the stripe becomes idle even when there are always some writers.
+     *
+     * @return whether the reader is counted as waiting
+     */
+    private boolean awaitWriters(final int stripe, final boolean waiting) {
+        if (concurrentWriters && !waiting) {
+            waitingReaders.incrementAndGet(stripe);
+            return true;
+        }
+
+        Thread.onSpinWait();
+        return waiting;
+    }
+
+    /**
+     * Like {@link #awaitWriters(int, boolean)}, for the stripes of all the accounts.
+     */
+    private boolean awaitWriters(final int[] accounts, final boolean waiting) {
+        if (concurrentWriters && !waiting) {
+            for (final int account : accounts)
+                waitingReaders.incrementAndGet(account & mask);
+            return true;
+        }
+
+        Thread.onSpinWait();
+        return waiting;
+    }
+}
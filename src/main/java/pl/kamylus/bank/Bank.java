@@ -1,88 +1,162 @@
 package pl.kamylus.bank;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import java.math.BigDecimal;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
-class Bank {
-    private static final Logger logger = LoggerFactory.getLogger(Bank.class);
-    private final Map<String, Account> accounts;
+/**
+ * Accounts and transfers between them with amounts given as {@link BigDecimal}. {@link BigDecimalBank} keeps
+ * the balances as {@link BigDecimal} in the accounts, {@link FixedPointBank} keeps them as {@code long} minor units of
+ * a currency and also transfers amounts in minor units between accounts given by handles.
+ * <p>
+ * Every transfer is counted in the {@link TransferMetrics} of the bank. Rejections are returned as
+ * {@link TransferOutcome} or thrown as {@link IllegalArgumentException} with the message.
+ */
+abstract class Bank implements AutoCloseable {
+    /**
+     * Maximum number of transfers in the batch. All accounts of the batch are locked at once
+     * (see {@link MonitorLocks}).
+     */
+    static final int MAX_BATCH_SIZE = 1000;
+
+    private final IdempotencyStore idempotencyStore;
+    private final TransferMetrics metrics = new TransferMetrics();
+
+    Bank(final IdempotencyStore idempotencyStore) {
+        Objects.requireNonNull(idempotencyStore);
+
+        this.idempotencyStore = idempotencyStore;
+    }
 
-    Bank(final List<Account> accounts) {
-        Objects.requireNonNull(accounts);
+    /**
+     * Releases resources of the bank (for example threads of the transfer engine).
+     */
+    @Override
+    public void close() {
+    }
 
-        this.accounts = prepareAccountsMap(accounts);
+    /**
+     * Returns results of the recent transfers by their idempotency keys.
+     */
+    IdempotencyStore getIdempotencyStore() {
+        return idempotencyStore;
     }
 
-    private static Map<String, Account> prepareAccountsMap(final List<Account> accounts) {
-        return accounts.stream().collect(Collectors.toMap(Account::getId, account -> account,
-                (a1, a2) -> {
-                    throw new IllegalArgumentException("Duplicated account id: " + a1.getId());
-                },
-                HashMap::new));
+    /**
+     * Returns metrics of the transfers of this bank.
+     */
+    TransferMetrics getMetrics() {
+        return metrics;
     }
 
+    /**
+     * @throws IllegalArgumentException when the account does not exist
+     */
+    abstract BigDecimal getMoneyAmount(String accountId);
+
     void transferMoney(final String sourceAccountId, final String destinationAccountId, final BigDecimal amount) {
-        validateTransferParameters(sourceAccountId, destinationAccountId, amount);
-
-        final Account source = accounts.get(sourceAccountId);
-        final Account destination = accounts.get(destinationAccountId);
-
-        Object lock1;
-        Object lock2;
-        if (sourceAccountId.compareTo(destinationAccountId) < 0) {
-            lock1 = source;
-            lock2 = destination;
-        } else {
-            lock1 = destination;
-            lock2 = source;
+        final TransferOutcome outcome = tryTransferMoney(sourceAccountId, destinationAccountId, amount);
+
+        if (!outcome.isSuccess()) {
+            throw new IllegalArgumentException(rejectionMessage(outcome, sourceAccountId, destinationAccountId,
+                    amount));
         }
+    }
 
-        synchronized (lock1) {
-            synchronized (lock2) {
-                if (source.getMoneyAmount().compareTo(amount) < 0) {
-                    throw new IllegalArgumentException("Insufficient amount (" + source.getMoneyAmount()
-                            + ") on the source account");
-                }
+    /**
+     * Performs the transfer like {@link #transferMoney(String, String, BigDecimal)}, but returns
+     * {@link TransferOutcome#OK} or the reason of the rejection instead of throwing, so rejections (for example under
+     * retry storms) do not pay for exceptions. The message is built only when needed, by
+     * {@link #rejectionMessage(TransferOutcome, String, String, BigDecimal)}.
+     */
+    abstract TransferOutcome tryTransferMoney(String sourceAccountId, String destinationAccountId, BigDecimal amount);
+
+    /**
+     * Returns the message of the transfer rejected by {@link #tryTransferMoney(String, String, BigDecimal)}, the same
+     * as the message of the exception of {@link #transferMoney(String, String, BigDecimal)}. Balance in the message of
+     * {@link TransferOutcome#INSUFFICIENT_FUNDS} is read after the rejection.
+     */
+    String rejectionMessage(final TransferOutcome outcome, final String sourceAccountId,
+                            final String destinationAccountId, final BigDecimal amount) {
+        switch (outcome) {
+            case MISSING_AMOUNT:
+                return "Amount cannot be null";
+            case NON_POSITIVE_AMOUNT:
+                return "Amount (" + amount + ") cannot be less or equal to 0";
+            default:
+                return rejectionMessage(outcome, sourceAccountId, destinationAccountId);
+        }
+    }
 
-                source.withdraw(amount);
-                destination.deposit(amount);
+    /**
+     * Performs transfers in the given order and returns result of each of them. Accounts involved in the batch are
+     * locked only once, for the whole batch. Transfer which fails does not stop the batch.
+     */
+    abstract List<TransferResult> transferBatch(List<Transfer> transfers);
+
+    /**
+     * Counts the transfer with the given outcome and returns the outcome.
+     */
+    final TransferOutcome counted(final TransferOutcome outcome) {
+        if (outcome.isSuccess())
+            metrics.transferred();
+        else
+            metrics.rejected(outcome.getReason());
+
+        return outcome;
+    }
 
-                logger.info("Transferred {} from {} to {}. Amount on source: {}. Amount on destination: {}",
-                        amount, sourceAccountId, destinationAccountId, source.getMoneyAmount(), destination.getMoneyAmount());
-            }
+    /**
+     * Returns the message of the rejection which does not depend on the representation of the amount.
+     */
+    String rejectionMessage(final TransferOutcome outcome, final CharSequence sourceAccountId,
+                            final CharSequence destinationAccountId) {
+        switch (outcome) {
+            case MISSING_SOURCE_ACCOUNT_ID:
+                return "SourceAccountId cannot be null or empty";
+            case MISSING_DESTINATION_ACCOUNT_ID:
+                return "DestinationAccountId cannot be null or empty";
+            case SAME_ACCOUNT:
+                return "Source and destination account ids cannot be the same";
+            case UNKNOWN_SOURCE_ACCOUNT:
+                return "Account '" + sourceAccountId + "' does not exist";
+            case UNKNOWN_DESTINATION_ACCOUNT:
+                return "Account '" + destinationAccountId + "' does not exist";
+            case INSUFFICIENT_FUNDS:
+            case OVERFLOW:
+                return balanceRejectionMessage(outcome, sourceAccountId);
+            default:
+                return outcome.toString();
         }
     }
 
-    private void validateTransferParameters(final String sourceAccountId, final String destinationAccountId,
-                                            final BigDecimal amount) {
+    /**
+     * Returns the message of the rejection by the balance of the source or the destination account.
+     */
+    abstract String balanceRejectionMessage(TransferOutcome outcome, CharSequence sourceAccountId);
+
+    static TransferOutcome checkTransferParameters(final String sourceAccountId, final String destinationAccountId,
+                                                   final BigDecimal amount) {
         if (sourceAccountId == null || sourceAccountId.isEmpty())
-            throw new IllegalArgumentException("SourceAccountId cannot be null or empty");
+            return TransferOutcome.MISSING_SOURCE_ACCOUNT_ID;
 
         if (destinationAccountId == null || destinationAccountId.isEmpty())
-            throw new IllegalArgumentException("DestinationAccountId cannot be null or empty");
+            return TransferOutcome.MISSING_DESTINATION_ACCOUNT_ID;
 
         if (amount == null)
-            throw new IllegalArgumentException("Amount cannot be null");
+            return TransferOutcome.MISSING_AMOUNT;
 
         if (sourceAccountId.equals(destinationAccountId))
-            throw new IllegalArgumentException("Source and destination account ids cannot be the same");
+            return TransferOutcome.SAME_ACCOUNT;
 
         if (amount.compareTo(BigDecimal.ZERO) <= 0)
-            throw new IllegalArgumentException("Amount (" + amount + ") cannot be less or equal to 0");
+            return TransferOutcome.NON_POSITIVE_AMOUNT;
 
-        checkAccountExistence(sourceAccountId);
-        checkAccountExistence(destinationAccountId);
+        return TransferOutcome.OK;
     }
 
-    private void checkAccountExistence(final String accountId) {
-        if (accounts.get(accountId) == null)
-            throw new IllegalArgumentException("Account '" + accountId + "' does not exist");
+    static void checkBatchSize(final int size) {
+        if (size > MAX_BATCH_SIZE)
+            throw new IllegalArgumentException("Batch size (" + size + ") cannot be greater than " + MAX_BATCH_SIZE);
     }
 }
@@ -0,0 +1,471 @@
+package pl.kamylus.bank;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Configuration of the {@link FixedPointBank}: currency, transfer engine and its options.
+ */
+final class BankConfiguration {
+    private static final int MAX_RING_SIZE = 1 << 24;
+    private static final int MAX_SHARDS = 1024;
+
+    private final CurrencyUnit currency;
+    private final TransferEngineType engineType;
+    private final AccountStoreType accountStoreType;
+    private final Path accountTableFile;
+    private final long accountTableCheckpointMillis;
+    private final Map<String, Integer> stripedAccounts;
+    private final Set<String> combiningAccounts;
+    private final List<FxRate> fxRates;
+    private final int ringSize;
+    private final WaitStrategy waitStrategy;
+    private final int shards;
+    private final Path journalFile;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMillis;
+    private final Path snapshotFile;
+    private final long snapshotIntervalMillis;
+    private final TransferAuditSink auditSink;
+    private final int idempotencyKeys;
+    private final long idempotencyTtlMillis;
+    private final int historyCapacity;
+    private final Path historyFile;
+
+    private BankConfiguration(final Builder builder) {
+        this.currency = builder.currency;
+        this.engineType = builder.engineType;
+        this.accountStoreType = builder.accountStoreType;
+        this.accountTableFile = builder.accountTableFile;
+        this.accountTableCheckpointMillis = builder.accountTableCheckpointMillis;
+        this.stripedAccounts = Collections.unmodifiableMap(new HashMap<>(builder.stripedAccounts));
+        this.combiningAccounts = Collections.unmodifiableSet(new HashSet<>(builder.combiningAccounts));
+        this.fxRates = Collections.unmodifiableList(new ArrayList<>(builder.fxRates));
+        this.ringSize = builder.ringSize;
+        this.waitStrategy = builder.waitStrategy;
+        this.shards = builder.shards;
+        this.journalFile = builder.journalFile;
+        this.fsyncPolicy = builder.fsyncPolicy;
+        this.fsyncIntervalMillis = builder.fsyncIntervalMillis;
+        this.snapshotFile = builder.snapshotFile;
+        this.snapshotIntervalMillis = builder.snapshotIntervalMillis;
+        this.auditSink = builder.auditSink;
+        this.idempotencyKeys = builder.idempotencyKeys;
+        this.idempotencyTtlMillis = builder.idempotencyTtlMillis;
+        this.historyCapacity = builder.historyCapacity;
+        this.historyFile = builder.historyFile;
+    }
+
+    static Builder builder(final CurrencyUnit currency) {
+        return new Builder(currency);
+    }
+
+    CurrencyUnit getCurrency() {
+        return currency;
+    }
+
+    TransferEngineType getEngineType() {
+        return engineType;
+    }
+
+    AccountStoreType getAccountStoreType() {
+        return accountStoreType;
+    }
+
+    /**
+     * Returns file of the {@link AccountStoreType#MAPPED} account store.
+     */
+    Path getAccountTableFile() {
+        return accountTableFile;
+    }
+
+    long getAccountTableCheckpointMillis() {
+        return accountTableCheckpointMillis;
+    }
+
+    /**
+     * Returns number of balance stripes for the account, 1 when the account is not striped.
+     */
+    int getStripes(final String accountId) {
+        return stripedAccounts.getOrDefault(accountId, 1);
+    }
+
+    boolean hasStripedAccounts() {
+        return !stripedAccounts.isEmpty();
+    }
+
+    /**
+     * Whether transfers of the account are applied by flat combining, see {@link TransferCombiner}.
+     */
+    boolean isCombiningAccount(final String accountId) {
+        return combiningAccounts.contains(accountId);
+    }
+
+    boolean hasCombiningAccounts() {
+        return !combiningAccounts.isEmpty();
+    }
+
+    /**
+     * Returns the starting FX rates of the multi-currency accounts, see {@link FxRates}.
+     */
+    List<FxRate> getFxRates() {
+        return fxRates;
+    }
+
+    int getRingSize() {
+        return ringSize;
+    }
+
+    WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    int getShards() {
+        return shards;
+    }
+
+    /**
+     * Returns file of the {@link TransferJournal} or null when transfers are not journaled.
+     */
+    Path getJournalFile() {
+        return journalFile;
+    }
+
+    FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    long getFsyncIntervalMillis() {
+        return fsyncIntervalMillis;
+    }
+
+    /**
+     * Returns file of the {@link AccountSnapshot} or null when snapshots are not written.
+     */
+    Path getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    long getSnapshotIntervalMillis() {
+        return snapshotIntervalMillis;
+    }
+
+    /**
+     * Returns sink of the transfer events or null when transfers are not audited.
+     */
+    TransferAuditSink getAuditSink() {
+        return auditSink;
+    }
+
+    int getIdempotencyKeys() {
+        return idempotencyKeys;
+    }
+
+    long getIdempotencyTtlMillis() {
+        return idempotencyTtlMillis;
+    }
+
+    /**
+     * Returns number of the recent history entries of every account kept in memory, 0 when the history is not kept.
+     */
+    int getHistoryCapacity() {
+        return historyCapacity;
+    }
+
+    /**
+     * Returns file of the older history entries or null when they are not kept.
+     */
+    Path getHistoryFile() {
+        return historyFile;
+    }
+
+    static final class Builder {
+        private final CurrencyUnit currency;
+        private TransferEngineType engineType = TransferEngineType.MONITOR;
+        private AccountStoreType accountStoreType = AccountStoreType.HEAP;
+        private Path accountTableFile;
+        private long accountTableCheckpointMillis = 1000;
+        private final Map<String, Integer> stripedAccounts = new HashMap<>();
+        private final Set<String> combiningAccounts = new HashSet<>();
+        private final List<FxRate> fxRates = new ArrayList<>();
+        private int ringSize = 1024;
+        private WaitStrategy waitStrategy = WaitStrategy.BLOCKING;
+        private int shards = Runtime.getRuntime().availableProcessors();
+        private Path journalFile;
+        private FsyncPolicy fsyncPolicy = FsyncPolicy.PER_BATCH;
+        private long fsyncIntervalMillis = 10;
+        private Path snapshotFile;
+        private long snapshotIntervalMillis = 60_000;
+        private TransferAuditSink auditSink;
+        private int idempotencyKeys = IdempotencyStore.DEFAULT_MAX_KEYS;
+        private long idempotencyTtlMillis = IdempotencyStore.DEFAULT_TTL_MILLIS;
+        private int historyCapacity;
+        private Path historyFile;
+
+        private Builder(final CurrencyUnit currency) {
+            Objects.requireNonNull(currency);
+
+            this.currency = currency;
+        }
+
+        Builder engineType(final TransferEngineType engineType) {
+            Objects.requireNonNull(engineType);
+
+            this.engineType = engineType;
+            return this;
+        }
+
+        /**
+         * Where balances of the accounts are kept, by default {@link AccountStoreType#HEAP}.
+         * {@link AccountStoreType#OFF_HEAP} store is not supported by {@link TransferEngineType#LOCK_FREE} engine.
+         */
+        Builder accountStore(final AccountStoreType accountStoreType) {
+            Objects.requireNonNull(accountStoreType);
+
+            this.accountStoreType = accountStoreType;
+            return this;
+        }
+
+        /**
+         * Keeps balances in place in the given memory-mapped file (see {@link MappedAccountStore}), which is created
+         * with the starting amounts of the accounts when it does not exist. Sets {@link AccountStoreType#MAPPED}
+         * store, which is not supported by {@link TransferEngineType#LOCK_FREE} and
+         * {@link TransferEngineType#PARTITIONED} engines and replaces the journal.
+         */
+        Builder accountTable(final Path accountTableFile) {
+            Objects.requireNonNull(accountTableFile);
+
+            this.accountStoreType = AccountStoreType.MAPPED;
+            this.accountTableFile = accountTableFile;
+            return this;
+        }
+
+        /**
+         * Delay between forcing the account table to the storage device, by default 1 second, 0 to force it only when
+         * the bank is closed.
+         */
+        Builder accountTableCheckpointMillis(final long accountTableCheckpointMillis) {
+            if (accountTableCheckpointMillis < 0)
+                throw new IllegalArgumentException("Checkpoint interval (" + accountTableCheckpointMillis
+                        + " ms) cannot be negative");
+
+            this.accountTableCheckpointMillis = accountTableCheckpointMillis;
+            return this;
+        }
+
+        /**
+         * Splits balance of the (hot) account into the given number of stripes, see {@link StripedBalance}.
+         */
+        Builder stripedAccount(final String accountId, final int stripes) {
+            Objects.requireNonNull(accountId);
+
+            if (stripes < 1)
+                throw new IllegalArgumentException("Number of stripes (" + stripes + ") cannot be less than 1");
+
+            stripedAccounts.put(accountId, stripes);
+            return this;
+        }
+
+        /**
+         * Applies transfers of the (hot) account by flat combining, see {@link TransferCombiner}
+         * ({@link TransferEngineType#ADAPTIVE} engine only).
+         */
+        Builder combiningAccount(final String accountId) {
+            Objects.requireNonNull(accountId);
+
+            combiningAccounts.add(accountId);
+            return this;
+        }
+
+        /**
+         * Sets the starting FX rate from one currency of the accounts to another (see {@link FxRates}), which can be
+         * changed later with {@link FixedPointBank#getFxRates()}.
+         */
+        Builder fxRate(final CurrencyUnit from, final CurrencyUnit to, final BigDecimal rate) {
+            fxRates.add(new FxRate(from, to, rate));
+            return this;
+        }
+
+        /**
+         * Number of slots of the ring buffer of {@link TransferEngineType#SEQUENCED} engine (and of every shard of
+         * {@link TransferEngineType#PARTITIONED} engine), has to be a power of 2.
+         */
+        Builder ringSize(final int ringSize) {
+            if (ringSize < 1 || ringSize > MAX_RING_SIZE || Integer.bitCount(ringSize) != 1)
+                throw new IllegalArgumentException("Ring size (" + ringSize + ") has to be a power of 2 between 1 and "
+                        + MAX_RING_SIZE);
+
+            this.ringSize = ringSize;
+            return this;
+        }
+
+        /**
+         * How threads of {@link TransferEngineType#SEQUENCED} and {@link TransferEngineType#PARTITIONED} engines wait
+         * for the ring buffer.
+         */
+        Builder waitStrategy(final WaitStrategy waitStrategy) {
+            Objects.requireNonNull(waitStrategy);
+
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+
+        /**
+         * Number of shards of {@link TransferEngineType#PARTITIONED} engine, by default number of processors.
+         */
+        Builder shards(final int shards) {
+            if (shards < 1 || shards > MAX_SHARDS)
+                throw new IllegalArgumentException("Number of shards (" + shards + ") has to be between 1 and "
+                        + MAX_SHARDS);
+
+            this.shards = shards;
+            return this;
+        }
+
+        /**
+         * Journals successful transfers in the given file (see {@link TransferJournal}). Transfers of the existing
+         * journal are applied to the starting balances of the accounts.
+         */
+        Builder journal(final Path journalFile) {
+            Objects.requireNonNull(journalFile);
+
+            this.journalFile = journalFile;
+            return this;
+        }
+
+        /**
+         * When the journal is forced to the storage device, by default {@link FsyncPolicy#PER_BATCH}.
+         */
+        Builder fsyncPolicy(final FsyncPolicy fsyncPolicy) {
+            Objects.requireNonNull(fsyncPolicy);
+
+            this.fsyncPolicy = fsyncPolicy;
+            return this;
+        }
+
+        /**
+         * Period of forcing the journal with {@link FsyncPolicy#INTERVAL} policy, by default 10 ms.
+         */
+        Builder fsyncIntervalMillis(final long fsyncIntervalMillis) {
+            if (fsyncIntervalMillis < 1)
+                throw new IllegalArgumentException("Fsync interval (" + fsyncIntervalMillis
+                        + " ms) cannot be less than 1 ms");
+
+            this.fsyncIntervalMillis = fsyncIntervalMillis;
+            return this;
+        }
+
+        /**
+         * Periodically writes balances of all accounts to the given file (see {@link LedgerPersistence}), so only
+         * the tail of the journal has to be replayed at start. Requires the journal.
+         */
+        Builder snapshot(final Path snapshotFile) {
+            Objects.requireNonNull(snapshotFile);
+
+            this.snapshotFile = snapshotFile;
+            return this;
+        }
+
+        /**
+         * Delay between the snapshots, by default 1 minute.
+         */
+        Builder snapshotIntervalMillis(final long snapshotIntervalMillis) {
+            if (snapshotIntervalMillis < 1)
+                throw new IllegalArgumentException("Snapshot interval (" + snapshotIntervalMillis
+                        + " ms) cannot be less than 1 ms");
+
+            this.snapshotIntervalMillis = snapshotIntervalMillis;
+            return this;
+        }
+
+        /**
+         * Emits every successful transfer to the given sink, from inside the transfer engine (with the balances after
+         * the transfer). Sink is not closed with the bank. By default transfers of the fixed-point bank are not
+         * audited.
+         */
+        Builder auditSink(final TransferAuditSink auditSink) {
+            Objects.requireNonNull(auditSink);
+
+            this.auditSink = auditSink;
+            return this;
+        }
+
+        /**
+         * Maximum number of idempotency keys kept by {@link IdempotencyStore}, by default 100 000.
+         */
+        Builder idempotencyKeys(final int idempotencyKeys) {
+            if (idempotencyKeys < 1)
+                throw new IllegalArgumentException("Number of idempotency keys (" + idempotencyKeys
+                        + ") cannot be less than 1");
+
+            this.idempotencyKeys = idempotencyKeys;
+            return this;
+        }
+
+        /**
+         * How long the result of the transfer is kept for its idempotency key, by default 1 hour.
+         */
+        Builder idempotencyTtlMillis(final long idempotencyTtlMillis) {
+            if (idempotencyTtlMillis < 1)
+                throw new IllegalArgumentException("Idempotency key TTL (" + idempotencyTtlMillis
+                        + " ms) cannot be less than 1 ms");
+
+            this.idempotencyTtlMillis = idempotencyTtlMillis;
+            return this;
+        }
+
+        /**
+         * Keeps the transaction history of the accounts (see {@link AccountHistory}), the given number of the most
+         * recent entries of every account in memory (a power of 2, by default {@link AccountHistory#DEFAULT_CAPACITY}).
+         * By default the history is not kept.
+         */
+        Builder history(final int historyCapacity) {
+            if (historyCapacity < 2 || Integer.bitCount(historyCapacity) != 1)
+                throw new IllegalArgumentException("History capacity (" + historyCapacity + ") has to be a power of 2 "
+                        + "not less than 2");
+
+            this.historyCapacity = historyCapacity;
+            return this;
+        }
+
+        /**
+         * Keeps the history entries older than the ring in the given file, which is truncated when the bank starts.
+         * Enables the history with the default capacity if it has not been enabled.
+         */
+        Builder historyFile(final Path historyFile) {
+            Objects.requireNonNull(historyFile);
+
+            this.historyFile = historyFile;
+            if (historyCapacity == 0)
+                historyCapacity = AccountHistory.DEFAULT_CAPACITY;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException when the options do not go together, for example
+         *                                  {@link AccountStoreType#MAPPED} store without the account table file
+         */
+        BankConfiguration build() {
+            if (snapshotFile != null && journalFile == null)
+                throw new IllegalArgumentException("Snapshot cannot be written without the journal");
+
+            if (accountStoreType == AccountStoreType.MAPPED && accountTableFile == null) {
+                throw new IllegalArgumentException(AccountStoreType.MAPPED
+                        + " account store requires the account table file");
+            }
+
+            if (accountStoreType == AccountStoreType.MAPPED && journalFile != null)
+                throw new IllegalArgumentException("Account table cannot be combined with the journal");
+
+            return new BankConfiguration(this);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package pl.kamylus.bank;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Bank which keeps balances as {@link BigDecimal} in the {@link Account}s. Both accounts of the transfer are locked in
+ * strictly defined order (by account id).
+ */
+class BigDecimalBank extends Bank {
+    private final Map<String, Account> accounts;
+    private final TransferAuditSink auditSink;
+
+    BigDecimalBank(final List<Account> accounts) {
+        this(accounts, TransferAuditSink.shared());
+    }
+
+    /**
+     * Creates bank which emits every transfer to the given audit sink. Sink is not closed with the bank.
+     */
+    BigDecimalBank(final List<Account> accounts, final TransferAuditSink auditSink) {
+        super(new IdempotencyStore(IdempotencyStore.DEFAULT_MAX_KEYS, IdempotencyStore.DEFAULT_TTL_MILLIS));
+
+        Objects.requireNonNull(accounts);
+        Objects.requireNonNull(auditSink);
+
+        this.accounts = prepareAccountsMap(accounts);
+        this.auditSink = auditSink;
+    }
+
+    private static Map<String, Account> prepareAccountsMap(final List<Account> accounts) {
+        return accounts.stream().collect(Collectors.toMap(Account::getId, account -> account,
+                (a1, a2) -> {
+                    throw new IllegalArgumentException("Duplicated account id: " + a1.getId());
+                },
+                HashMap::new));
+    }
+
+    @Override
+    BigDecimal getMoneyAmount(final String accountId) {
+        final Account account = accounts.get(accountId);
+        if (account == null)
+            throw new IllegalArgumentException("Account '" + accountId + "' does not exist");
+
+        synchronized (account) {
+            return account.getMoneyAmount();
+        }
+    }
+
+    @Override
+    TransferOutcome tryTransferMoney(final String sourceAccountId, final String destinationAccountId,
+                                     final BigDecimal amount) {
+        final TransferOutcome outcome = checkTransferParameters(sourceAccountId, destinationAccountId, amount);
+        if (!outcome.isSuccess())
+            return counted(outcome);
+
+        final TransferOutcome existenceOutcome = checkAccountExistence(sourceAccountId, destinationAccountId);
+        if (!existenceOutcome.isSuccess())
+            return counted(existenceOutcome);
+
+        final Account source = accounts.get(sourceAccountId);
+        final Account destination = accounts.get(destinationAccountId);
+
+        Object lock1;
+        Object lock2;
+        if (sourceAccountId.compareTo(destinationAccountId) < 0) {
+            lock1 = source;
+            lock2 = destination;
+        } else {
+            lock1 = destination;
+            lock2 = source;
+        }
+
+        final long start = System.nanoTime();
+        final long locked;
+        final TransferOutcome transferOutcome;
+        synchronized (lock1) {
+            synchronized (lock2) {
+                locked = System.nanoTime();
+                if (source.getMoneyAmount().compareTo(amount) < 0) {
+                    transferOutcome = TransferOutcome.INSUFFICIENT_FUNDS;
+                } else {
+                    source.withdraw(amount);
+                    destination.deposit(amount);
+
+                    auditSink.transferred(sourceAccountId, destinationAccountId, amount, source.getMoneyAmount(),
+                            destination.getMoneyAmount());
+                    transferOutcome = TransferOutcome.OK;
+                }
+            }
+        }
+        getMetrics().locked(locked - start, System.nanoTime() - locked);
+
+        return counted(transferOutcome);
+    }
+
+    @Override
+    List<TransferResult> transferBatch(final List<Transfer> transfers) {
+        Objects.requireNonNull(transfers);
+        checkBatchSize(transfers.size());
+
+        final TransferResult[] results = new TransferResult[transfers.size()];
+        for (int i = 0; i < results.length; ++i) {
+            final Transfer transfer = transfers.get(i);
+            final String sourceAccountId = transfer.getSourceAccountId();
+            final String destinationAccountId = transfer.getDestinationAccountId();
+
+            TransferOutcome outcome = checkTransferParameters(sourceAccountId, destinationAccountId,
+                    transfer.getAmount());
+            if (outcome.isSuccess())
+                outcome = checkAccountExistence(sourceAccountId, destinationAccountId);
+
+            if (!outcome.isSuccess()) {
+                results[i] = TransferResult.failure(counted(outcome),
+                        rejectionMessage(outcome, sourceAccountId, destinationAccountId, transfer.getAmount()));
+            }
+        }
+
+        transferBatchLocked(transfers, results);
+
+        return Arrays.asList(results);
+    }
+
+    @Override
+    String balanceRejectionMessage(final TransferOutcome outcome, final CharSequence sourceAccountId) {
+        final Account source = accounts.get(sourceAccountId.toString());
+        synchronized (source) {
+            return "Insufficient amount (" + source.getMoneyAmount() + ") on the source account";
+        }
+    }
+
+    private void transferBatchLocked(final List<Transfer> transfers, final TransferResult[] results) {
+        final Set<Account> involvedAccounts = new LinkedHashSet<>();
+        for (int i = 0; i < results.length; ++i) {
+            if (results[i] == null) {
+                involvedAccounts.add(accounts.get(transfers.get(i).getSourceAccountId()));
+                involvedAccounts.add(accounts.get(transfers.get(i).getDestinationAccountId()));
+            }
+        }
+
+        final Account[] locks = involvedAccounts.toArray(new Account[0]);
+        Arrays.sort(locks, Comparator.comparing(Account::getId));
+
+        final long start = System.nanoTime();
+        final long[] locked = new long[1];
+        MonitorLocks.runLocked(locks, () -> {
+            locked[0] = System.nanoTime();
+            for (int i = 0; i < results.length; ++i) {
+                if (results[i] == null)
+                    results[i] = transferLocked(transfers.get(i));
+            }
+        });
+        getMetrics().locked(locked[0] - start, System.nanoTime() - locked[0]);
+    }
+
+    private TransferResult transferLocked(final Transfer transfer) {
+        final Account source = accounts.get(transfer.getSourceAccountId());
+        final Account destination = accounts.get(transfer.getDestinationAccountId());
+        final BigDecimal amount = transfer.getAmount();
+
+        if (source.getMoneyAmount().compareTo(amount) < 0) {
+            getMetrics().rejected(RejectReason.INSUFFICIENT_FUNDS);
+            return TransferResult.failure(TransferOutcome.INSUFFICIENT_FUNDS,
+                    "Insufficient amount (" + source.getMoneyAmount() + ") on the source account");
+        }
+
+        source.withdraw(amount);
+        destination.deposit(amount);
+
+        auditSink.transferred(source.getId(), destination.getId(), amount, source.getMoneyAmount(),
+                destination.getMoneyAmount());
+        getMetrics().transferred();
+
+        return TransferResult.OK;
+    }
+
+    private TransferOutcome checkAccountExistence(final String sourceAccountId, final String destinationAccountId) {
+        if (accounts.get(sourceAccountId) == null)
+            return TransferOutcome.UNKNOWN_SOURCE_ACCOUNT;
+
+        if (accounts.get(destinationAccountId) == null)
+            return TransferOutcome.UNKNOWN_DESTINATION_ACCOUNT;
+
+        return TransferOutcome.OK;
+    }
+}
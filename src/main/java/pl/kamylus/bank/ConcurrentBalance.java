@@ -0,0 +1,17 @@
+package pl.kamylus.bank;
+
+/**
+ * Thread-safe balance (in minor units) used by {@link LockFreeTransferEngine}.
+ */
+interface ConcurrentBalance {
+    long get();
+
+    void deposit(long amount);
+
+    /**
+     * Withdraws the amount only if the balance is greater or equal to it.
+     *
+     * @return false when there is not enough money
+     */
+    boolean tryWithdraw(long amount);
+}
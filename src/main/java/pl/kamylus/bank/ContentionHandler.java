@@ -0,0 +1,71 @@
+package pl.kamylus.bank;
+
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.net.HttpURLConnection;
+import java.util.Objects;
+
+/**
+ * Returns the accounts which waited for their locks the longest, most contended first, one account per line:
+ * {@code accountId,acquisitions,contendedAcquisitions,waitNanos,mode}. At most {@code limit} accounts are returned
+ * (by default {@link #DEFAULT_LIMIT}). Only ADAPTIVE engine records the contention, the list is empty for the other
+ * engines.
+ */
+class ContentionHandler implements Route {
+
+    static final int DEFAULT_LIMIT = 10;
+    static final int MAX_LIMIT = 1000;
+
+    private static final int UNPROCESSABLE_ENTITY_ERROR = 422;
+
+    private final FixedPointBank bank;
+
+    ContentionHandler(final FixedPointBank bank) {
+        Objects.requireNonNull(bank);
+
+        this.bank = bank;
+    }
+
+    @Override
+    public Object handle(final Request request, final Response response) {
+        final StringBuilder responseBuilder = new StringBuilder();
+        try {
+            final int limit = parseLimit(request.queryParams("limit"));
+
+            for (final AccountContention contention : bank.topContendedAccounts(limit)) {
+                responseBuilder.append(bank.accountId(contention.getHandle())).append(',')
+                        .append(contention.getAcquisitions()).append(',')
+                        .append(contention.getContendedAcquisitions()).append(',')
+                        .append(contention.getWaitNanos()).append(',')
+                        .append(contention.getMode()).append('\n');
+            }
+        } catch (final IllegalArgumentException exc) {
+            response.status(UNPROCESSABLE_ENTITY_ERROR);
+            return exc.getMessage();
+        } catch (final Exception exc) {
+            response.status(HttpURLConnection.HTTP_INTERNAL_ERROR);
+            return exc.getMessage();
+        }
+
+        return responseBuilder.toString();
+    }
+
+    private static int parseLimit(final String text) {
+        if (text == null || text.isEmpty())
+            return DEFAULT_LIMIT;
+
+        final int limit;
+        try {
+            limit = Integer.parseInt(text);
+        } catch (final NumberFormatException exc) {
+            throw new IllegalArgumentException("Limit (" + text + ") is not a valid number");
+        }
+
+        if (limit < 1 || limit > MAX_LIMIT)
+            throw new IllegalArgumentException("Limit (" + limit + ") has to be between 1 and " + MAX_LIMIT);
+
+        return limit;
+    }
+}
@@ -0,0 +1,209 @@
+package pl.kamylus.bank;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Currency code together with the number of allowed decimal places. Amounts are represented as {@code long} minor
+ * units, i.e. the amount multiplied by 10^scale (for scale 2: 100.12 -> 10012).
+ */
+final class CurrencyUnit {
+    /**
+     * Returned instead of the minor units of an amount which cannot be represented. It is below the range of the
+     * amounts, which is symmetric.
+     */
+    static final long INVALID_MINOR_UNITS = Long.MIN_VALUE;
+
+    private static final int MAX_SCALE = 18;
+    private static final BigDecimal MIN_MINOR_UNITS = BigDecimal.valueOf(INVALID_MINOR_UNITS);
+    private static final BigDecimal MAX_MINOR_UNITS = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    private static final long NOT_A_NUMBER = -1;
+    private static final long NOT_REPRESENTABLE = -2;
+    private static final long OUT_OF_RANGE = -3;
+
+    private final String code;
+    private final int scale;
+
+    CurrencyUnit(final String code, final int scale) {
+        Objects.requireNonNull(code);
+
+        if (code.isEmpty())
+            throw new IllegalArgumentException("Currency code cannot be empty");
+
+        if (scale < 0 || scale > MAX_SCALE)
+            throw new IllegalArgumentException("Currency scale (" + scale + ") has to be between 0 and " + MAX_SCALE);
+
+        this.code = code;
+        this.scale = scale;
+    }
+
+    String getCode() {
+        return code;
+    }
+
+    int getScale() {
+        return scale;
+    }
+
+    long toMinorUnits(final BigDecimal amount) {
+        Objects.requireNonNull(amount);
+
+        try {
+            return amount.movePointRight(scale).longValueExact();
+        } catch (final ArithmeticException exc) {
+            throw new IllegalArgumentException(notRepresentableMessage(amount.toPlainString()));
+        }
+    }
+
+    /**
+     * Like {@link #toMinorUnits(BigDecimal)}, but returns {@link #INVALID_MINOR_UNITS} instead of throwing when the
+     * amount cannot be represented exactly.
+     */
+    long tryToMinorUnits(final BigDecimal amount) {
+        Objects.requireNonNull(amount);
+
+        final BigDecimal minorUnits = amount.movePointRight(scale);
+        if (minorUnits.scale() > 0 && minorUnits.stripTrailingZeros().scale() > 0)
+            return INVALID_MINOR_UNITS;
+
+        if (minorUnits.compareTo(MIN_MINOR_UNITS) <= 0 || minorUnits.compareTo(MAX_MINOR_UNITS) > 0)
+            return INVALID_MINOR_UNITS;
+
+        return minorUnits.longValue();
+    }
+
+    BigDecimal toBigDecimal(final long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, scale);
+    }
+
+    String format(final long minorUnits) {
+        return toBigDecimal(minorUnits).toPlainString();
+    }
+
+    /**
+     * Parses plain decimal text (optional sign, digits, optional fraction) straight into minor units, without
+     * creating an intermediate {@link BigDecimal}. Trailing fraction digits beyond the scale are accepted only when
+     * they are zeros, so the conversion is always exact.
+     */
+    long parseMinorUnits(final CharSequence text) {
+        final long minorUnits = tryParseMinorUnits(text);
+
+        if (minorUnits == INVALID_MINOR_UNITS)
+            throw new IllegalArgumentException(invalidAmountMessage(text));
+
+        return minorUnits;
+    }
+
+    /**
+     * Like {@link #parseMinorUnits(CharSequence)}, but returns {@link #INVALID_MINOR_UNITS} instead of throwing, for
+     * paths where invalid amounts are frequent. The reason is described by {@link #invalidAmountMessage}.
+     */
+    long tryParseMinorUnits(final CharSequence text) {
+        Objects.requireNonNull(text);
+
+        final boolean signed = text.length() > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+');
+        final long magnitude = parseMagnitude(text, signed ? 1 : 0);
+
+        if (magnitude < 0)
+            return INVALID_MINOR_UNITS;
+
+        return signed && text.charAt(0) == '-' ? -magnitude : magnitude;
+    }
+
+    /**
+     * Returns the message of the exception which {@link #parseMinorUnits(CharSequence)} throws for the text.
+     */
+    String invalidAmountMessage(final CharSequence text) {
+        final boolean signed = text.length() > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+');
+        final long magnitude = parseMagnitude(text, signed ? 1 : 0);
+
+        if (magnitude == NOT_REPRESENTABLE)
+            return notRepresentableMessage(text);
+
+        if (magnitude == OUT_OF_RANGE)
+            return "Amount (" + text + ") is out of range";
+
+        return "Amount (" + text + ") is not a valid number";
+    }
+
+    /**
+     * Returns minor units of the unsigned amount starting at the given position or a negative error code.
+     */
+    private long parseMagnitude(final CharSequence text, final int start) {
+        final int length = text.length();
+
+        long result = 0;
+        int integerDigits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+
+        for (int position = start; position < length; ++position) {
+            final char character = text.charAt(position);
+
+            if (character == '.' && !fraction) {
+                fraction = true;
+                continue;
+            }
+
+            if (character < '0' || character > '9')
+                return NOT_A_NUMBER;
+
+            final int digit = character - '0';
+
+            if (!fraction || fractionDigits < scale) {
+                if (result > (Long.MAX_VALUE - digit) / 10)
+                    return OUT_OF_RANGE;
+
+                result = result * 10 + digit;
+                if (fraction)
+                    fractionDigits++;
+                else
+                    integerDigits++;
+            } else if (digit != 0) {
+                return NOT_REPRESENTABLE;
+            }
+        }
+
+        if (integerDigits == 0 && fractionDigits == 0)
+            return NOT_A_NUMBER;
+
+        for (; fractionDigits < scale; ++fractionDigits) {
+            if (result > Long.MAX_VALUE / 10)
+                return OUT_OF_RANGE;
+
+            result *= 10;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the message of the rejection of the amount which has more decimal places than the currency.
+     */
+    String notRepresentableMessage(final CharSequence amount) {
+        return "Amount (" + amount + ") cannot be represented in " + code + " with " + scale + " decimal places";
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other)
+            return true;
+
+        if (!(other instanceof CurrencyUnit))
+            return false;
+
+        final CurrencyUnit that = (CurrencyUnit) other;
+        return scale == that.scale && code.equals(that.code);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * code.hashCode() + scale;
+    }
+
+    @Override
+    public String toString() {
+        return code;
+    }
+}
@@ -0,0 +1,694 @@
+package pl.kamylus.bank;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Bank which keeps balances as {@code long} minor units of the given currency in the {@link TransferEngine} selected
+ * by the {@link BankConfiguration}. Besides the {@link BigDecimal} amounts it transfers amounts in minor units, between
+ * accounts given by ids (any character sequences) or by handles (see {@link #accountHandle(CharSequence)}), reads
+ * balances without the locks of the transfers and optionally journals the transfers and keeps their history.
+ */
+class FixedPointBank extends Bank {
+    private final CurrencyUnit currency;
+    private final TransferEngine engine;
+    private final LedgerPersistence persistence;
+    private final AccountHistory history;
+    private final FxRates fxRates;
+    /**
+     * Currencies of the accounts by handle and their indexes in {@link #fxRates}, null when all accounts are in the
+     * bank currency.
+     */
+    private final CurrencyUnit[] accountCurrencies;
+    private final int[] currencyIndexes;
+
+    /**
+     * Creates bank which keeps balances as {@code long} minor units of the given currency. Starting amounts of the
+     * accounts have to be exactly representable with the currency scale.
+     */
+    FixedPointBank(final List<Account> accounts, final CurrencyUnit currency) {
+        this(accounts, BankConfiguration.builder(currency).build());
+    }
+
+    FixedPointBank(final List<Account> accounts, final CurrencyUnit currency, final TransferEngineType engineType) {
+        this(accounts, BankConfiguration.builder(currency).engineType(engineType).build());
+    }
+
+    FixedPointBank(final List<Account> accounts, final BankConfiguration configuration) {
+        super(new IdempotencyStore(Objects.requireNonNull(configuration).getIdempotencyKeys(),
+                configuration.getIdempotencyTtlMillis()));
+
+        Objects.requireNonNull(accounts);
+
+        this.currency = configuration.getCurrency();
+
+        this.accountCurrencies = FxRates.accountCurrencies(accounts, currency);
+        if (accountCurrencies != null && configuration.getJournalFile() != null)
+            throw new IllegalArgumentException("Multi-currency accounts cannot be combined with the journal");
+
+        if (accountCurrencies != null && configuration.getAuditSink() != null)
+            throw new IllegalArgumentException("Multi-currency accounts cannot be combined with the audit sink");
+
+        this.fxRates = new FxRates(prepareCurrencies(accountCurrencies, configuration));
+        fxRates.setRates(configuration.getFxRates());
+        this.currencyIndexes = accountCurrencies == null ? null
+                : Arrays.stream(accountCurrencies).mapToInt(fxRates::indexOf).toArray();
+
+        this.persistence = configuration.getJournalFile() == null ? null
+                : new LedgerPersistence(accounts, configuration);
+
+        TransferEngine createdEngine = null;
+        try {
+            createdEngine = configuration.getEngineType().create(accounts, configuration, getMetrics(), persistence);
+            if (persistence != null)
+                persistence.restoreBalances(createdEngine);
+            this.history = configuration.getHistoryCapacity() == 0 ? null
+                    : new AccountHistory(accounts.size(), configuration.getHistoryCapacity(),
+                    configuration.getHistoryFile());
+        } catch (final RuntimeException exc) {
+            if (createdEngine != null)
+                createdEngine.close();
+            if (persistence != null)
+                persistence.close();
+
+            throw exc;
+        }
+        this.engine = createdEngine;
+    }
+
+    /**
+     * Returns currencies of the bank: the bank currency, currencies of the accounts and of the FX rates.
+     */
+    private static Set<CurrencyUnit> prepareCurrencies(final CurrencyUnit[] accountCurrencies,
+                                                       final BankConfiguration configuration) {
+        final Set<CurrencyUnit> currencies = new LinkedHashSet<>();
+        currencies.add(configuration.getCurrency());
+        if (accountCurrencies != null)
+            currencies.addAll(Arrays.asList(accountCurrencies));
+
+        for (final FxRate rate : configuration.getFxRates()) {
+            currencies.add(rate.getFrom());
+            currencies.add(rate.getTo());
+        }
+
+        return currencies;
+    }
+
+    /**
+     * Releases resources of the transfer engine (for example threads), the journal and the history.
+     */
+    @Override
+    public void close() {
+        engine.close();
+
+        if (persistence != null)
+            persistence.close();
+
+        if (history != null)
+            history.close();
+    }
+
+    CurrencyUnit getCurrency() {
+        return currency;
+    }
+
+    /**
+     * Returns currency of the account with the given handle, which differs from the bank currency for multi-currency
+     * accounts.
+     */
+    CurrencyUnit accountCurrency(final int handle) {
+        checkHandle(handle);
+        return currencyOf(handle);
+    }
+
+    /**
+     * Returns currency of the amounts of the transfers from the account: currency of the account or the bank currency
+     * when the account does not exist. Does not allocate.
+     */
+    CurrencyUnit amountCurrency(final CharSequence sourceAccountId) {
+        if (accountCurrencies == null)
+            return currency;
+
+        return currencyOf(findAccountHandle(sourceAccountId));
+    }
+
+    /**
+     * Returns currency of the amounts of the transfers from the account given by the handle found with
+     * {@link #findAccountHandle(CharSequence)}, like {@link #amountCurrency(CharSequence)}.
+     */
+    CurrencyUnit amountCurrency(final int source) {
+        return currencyOf(source);
+    }
+
+    /**
+     * Returns FX rates of the cross-currency transfers, which can be changed while the transfers continue.
+     */
+    FxRates getFxRates() {
+        return fxRates;
+    }
+
+    @Override
+    BigDecimal getMoneyAmount(final String accountId) {
+        final int handle = resolve(accountId);
+        return currencyOf(handle).toBigDecimal(engine.getBalance(handle));
+    }
+
+    @Override
+    TransferOutcome tryTransferMoney(final String sourceAccountId, final String destinationAccountId,
+                                     final BigDecimal amount) {
+        final TransferOutcome outcome = checkTransferParameters(sourceAccountId, destinationAccountId, amount);
+        if (!outcome.isSuccess())
+            return counted(outcome);
+
+        final int source = engine.handleOf(sourceAccountId);
+        final int destination = engine.handleOf(destinationAccountId);
+        final long minorUnits = currencyOf(source).tryToMinorUnits(amount);
+
+        final TransferOutcome resolveOutcome = checkResolved(source, destination, minorUnits);
+        if (!resolveOutcome.isSuccess())
+            return counted(resolveOutcome);
+
+        return tryTransferByEngine(source, destination, minorUnits);
+    }
+
+    @Override
+    String rejectionMessage(final TransferOutcome outcome, final String sourceAccountId,
+                            final String destinationAccountId, final BigDecimal amount) {
+        if (outcome == TransferOutcome.INVALID_AMOUNT)
+            return amountCurrency(sourceAccountId).notRepresentableMessage(amount.toPlainString());
+
+        return super.rejectionMessage(outcome, sourceAccountId, destinationAccountId, amount);
+    }
+
+    /**
+     * Transfers amount given in minor units of the currency of the source account (the bank currency unless accounts
+     * are multi-currency). Ids may be any character sequences (for example reused buffers), they are not kept after
+     * the transfer.
+     */
+    void transferMoney(final CharSequence sourceAccountId, final CharSequence destinationAccountId, final long amount) {
+        final TransferOutcome outcome = tryTransferMoney(sourceAccountId, destinationAccountId, amount);
+
+        if (!outcome.isSuccess()) {
+            throw new IllegalArgumentException(rejectionMessage(outcome, sourceAccountId, destinationAccountId,
+                    amount));
+        }
+    }
+
+    /**
+     * Performs the transfer like {@link #transferMoney(CharSequence, CharSequence, long)}, but returns
+     * {@link TransferOutcome#OK} or the reason of the rejection instead of throwing. Neither a rejected nor
+     * a successful transfer allocates.
+     */
+    TransferOutcome tryTransferMoney(final CharSequence sourceAccountId, final CharSequence destinationAccountId,
+                                     final long amount) {
+        return tryTransferMoney(sourceAccountId, destinationAccountId, findAccountHandle(sourceAccountId),
+                findAccountHandle(destinationAccountId), amount);
+    }
+
+    /**
+     * Performs the transfer like {@link #tryTransferMoney(CharSequence, CharSequence, long)} between the accounts
+     * already found by the caller with {@link #findAccountHandle(CharSequence)}, so the ids are not looked up again.
+     */
+    TransferOutcome tryTransferMoney(final CharSequence sourceAccountId, final CharSequence destinationAccountId,
+                                     final int source, final int destination, final long amount) {
+        TransferOutcome outcome = checkAccountIds(sourceAccountId, destinationAccountId);
+        if (outcome.isSuccess() && amount <= 0)
+            outcome = TransferOutcome.NON_POSITIVE_AMOUNT;
+
+        if (!outcome.isSuccess())
+            return counted(outcome);
+
+        final TransferOutcome resolveOutcome = checkResolved(source, destination, amount);
+        if (!resolveOutcome.isSuccess())
+            return counted(resolveOutcome);
+
+        return tryTransferByEngine(source, destination, amount);
+    }
+
+    /**
+     * Returns the message of the transfer rejected by {@link #tryTransferMoney(CharSequence, CharSequence, long)}, the
+     * same as the message of the exception of {@link #transferMoney(CharSequence, CharSequence, long)}. Balance in the
+     * message of {@link TransferOutcome#INSUFFICIENT_FUNDS} is read after the rejection.
+     */
+    String rejectionMessage(final TransferOutcome outcome, final CharSequence sourceAccountId,
+                            final CharSequence destinationAccountId, final long amount) {
+        if (outcome == TransferOutcome.NON_POSITIVE_AMOUNT)
+            return "Amount (" + amountCurrency(sourceAccountId).format(amount) + ") cannot be less or equal to 0";
+
+        return rejectionMessage(outcome, sourceAccountId, destinationAccountId);
+    }
+
+    /**
+     * Returns handle of the account, which callers may keep and use with {@link #transferMoney(int, int, long)}
+     * instead of looking the id up on every transfer.
+     *
+     * @throws IllegalArgumentException when the account does not exist
+     */
+    int accountHandle(final CharSequence accountId) {
+        if (accountId == null || accountId.length() == 0)
+            throw new IllegalArgumentException("AccountId cannot be null or empty");
+
+        return resolve(accountId);
+    }
+
+    /**
+     * Returns handle of the account or -1 when the id is null or the account does not exist. Does not allocate.
+     */
+    int findAccountHandle(final CharSequence accountId) {
+        return accountId != null ? engine.handleOf(accountId) : -1;
+    }
+
+    /**
+     * Returns id of the account with the given handle.
+     */
+    String accountId(final int handle) {
+        checkHandle(handle);
+        return engine.getAccountId(handle);
+    }
+
+    /**
+     * Reads balances (in minor units) of the accounts given by handles into the array, at the same positions. Never
+     * takes the locks of the transfers (see {@link TransferEngine#readBalances(int[], long[])}), so reads do not slow
+     * the transfers down.
+     *
+     * @throws IllegalArgumentException when an account does not exist
+     */
+    void readBalances(final int[] handles, final long[] balances) {
+        Objects.requireNonNull(handles);
+        Objects.requireNonNull(balances);
+
+        if (handles.length != balances.length)
+            throw new IllegalArgumentException("Number of handles and balances have to be the same");
+
+        for (final int handle : handles)
+            checkHandle(handle);
+
+        engine.readBalances(handles, balances);
+    }
+
+    /**
+     * Opens the snapshot of the balances of all accounts from this moment, while the transfers continue (see
+     * {@link BalanceSnapshot}).
+     *
+     * @throws IllegalStateException when another snapshot is open
+     */
+    BalanceSnapshot openBalanceSnapshot() {
+        return engine.openSnapshot();
+    }
+
+    /**
+     * Writes balances of all accounts from a single point of time, one account per line ({@code accountId,amount}),
+     * while the transfers continue. Balances are streamed from the snapshot, so the export does not need memory
+     * proportional to the number of accounts.
+     *
+     * @return sum of the exported balances in minor units (of different currencies for multi-currency accounts)
+     * @throws UncheckedIOException when the balances cannot be written
+     */
+    long exportBalances(final Writer writer) {
+        Objects.requireNonNull(writer);
+
+        long total = 0;
+        try (BalanceSnapshot snapshot = openBalanceSnapshot()) {
+            for (int handle = 0; handle < snapshot.size(); ++handle) {
+                final long balance = snapshot.getBalance(handle);
+                total = Math.addExact(total, balance);
+
+                writer.write(engine.getAccountId(handle));
+                writer.write(',');
+                writer.write(currencyOf(handle).format(balance));
+                writer.write('\n');
+            }
+
+            writer.flush();
+        } catch (final IOException exc) {
+            throw new UncheckedIOException("Cannot export the balances", exc);
+        }
+
+        return total;
+    }
+
+    /**
+     * Returns contention of at most {@code limit} accounts which waited for their locks the longest, most contended
+     * first (see {@link AccountContention}). Only ADAPTIVE engine records the contention (other engines return an
+     * empty list).
+     *
+     * @throws IllegalArgumentException when the limit is not positive
+     */
+    List<AccountContention> topContendedAccounts(final int limit) {
+        return engine.topContended(limit);
+    }
+
+    /**
+     * Returns whether the transaction history is kept (enabled in {@link BankConfiguration}).
+     */
+    boolean hasHistory() {
+        return history != null;
+    }
+
+    /**
+     * Reads the transaction history of the account older than {@code beforeIndex}, newest first, into the page (see
+     * {@link AccountHistory#read}). Counterparties are account handles, amounts are minor units. Does not wait for
+     * the transfers.
+     *
+     * @return number of the read entries, 0 when there are no more
+     * @throws IllegalArgumentException when the account does not exist
+     * @throws IllegalStateException    when the history is not kept (see {@link #hasHistory()})
+     */
+    int readHistory(final CharSequence accountId, final long beforeIndex, final HistoryPage page) {
+        if (history == null)
+            throw new IllegalStateException("Transaction history is not kept by the bank");
+
+        return history.read(accountHandle(accountId), beforeIndex, page);
+    }
+
+    /**
+     * Transfers amount given in minor units of the currency of the source account between accounts given by handles
+     * (see {@link #accountHandle(CharSequence)}).
+     */
+    void transferMoney(final int source, final int destination, final long amount) {
+        final TransferOutcome outcome = tryTransferMoney(source, destination, amount);
+
+        if (!outcome.isSuccess())
+            throw new IllegalArgumentException(handleRejectionMessage(outcome, source, destination, amount));
+    }
+
+    /**
+     * Performs the transfer like {@link #transferMoney(int, int, long)}, but returns {@link TransferOutcome#OK} or the
+     * reason of the rejection instead of throwing.
+     */
+    TransferOutcome tryTransferMoney(final int source, final int destination, final long amount) {
+        final TransferOutcome outcome = checkHandles(source, destination, amount);
+        if (!outcome.isSuccess())
+            return counted(outcome);
+
+        return tryTransferByEngine(source, destination, amount);
+    }
+
+    /**
+     * Performs transfers between accounts given by handles, with amounts in minor units, in the given order and
+     * returns result of each of them, like {@link #transferBatch(List)}.
+     */
+    TransferResult[] transferBatch(final int[] sources, final int[] destinations, final long[] amounts) {
+        Objects.requireNonNull(sources);
+        Objects.requireNonNull(destinations);
+        Objects.requireNonNull(amounts);
+
+        if (sources.length != destinations.length || sources.length != amounts.length)
+            throw new IllegalArgumentException("Number of sources, destinations and amounts have to be the same");
+
+        checkBatchSize(sources.length);
+
+        final TransferResult[] results = new TransferResult[sources.length];
+        for (int i = 0; i < results.length; ++i) {
+            final TransferOutcome outcome = checkHandles(sources[i], destinations[i], amounts[i]);
+            if (!outcome.isSuccess()) {
+                results[i] = TransferResult.failure(counted(outcome),
+                        handleRejectionMessage(outcome, sources[i], destinations[i], amounts[i]));
+            }
+        }
+
+        transferBatchByEngine(sources, destinations, amounts, results);
+
+        return results;
+    }
+
+    @Override
+    List<TransferResult> transferBatch(final List<Transfer> transfers) {
+        Objects.requireNonNull(transfers);
+        checkBatchSize(transfers.size());
+
+        final TransferResult[] results = new TransferResult[transfers.size()];
+        final int[] sources = new int[transfers.size()];
+        final int[] destinations = new int[transfers.size()];
+        final long[] amounts = new long[transfers.size()];
+
+        for (int i = 0; i < results.length; ++i) {
+            final Transfer transfer = transfers.get(i);
+            final String sourceAccountId = transfer.getSourceAccountId();
+            final String destinationAccountId = transfer.getDestinationAccountId();
+
+            TransferOutcome outcome = checkTransferParameters(sourceAccountId, destinationAccountId,
+                    transfer.getAmount());
+            if (outcome.isSuccess()) {
+                sources[i] = engine.handleOf(sourceAccountId);
+                destinations[i] = engine.handleOf(destinationAccountId);
+                amounts[i] = currencyOf(sources[i]).tryToMinorUnits(transfer.getAmount());
+                outcome = checkResolved(sources[i], destinations[i], amounts[i]);
+            }
+
+            if (!outcome.isSuccess()) {
+                results[i] = TransferResult.failure(counted(outcome),
+                        rejectionMessage(outcome, sourceAccountId, destinationAccountId, transfer.getAmount()));
+            }
+        }
+
+        transferBatchByEngine(sources, destinations, amounts, results);
+
+        return Arrays.asList(results);
+    }
+
+    @Override
+    String rejectionMessage(final TransferOutcome outcome, final CharSequence sourceAccountId,
+                            final CharSequence destinationAccountId) {
+        if (outcome == TransferOutcome.MISSING_FX_RATE || outcome == TransferOutcome.CONVERTED_AMOUNT_TOO_SMALL) {
+            return conversionRejectionMessage(outcome, engine.handleOf(sourceAccountId),
+                    engine.handleOf(destinationAccountId));
+        }
+
+        return super.rejectionMessage(outcome, sourceAccountId, destinationAccountId);
+    }
+
+    @Override
+    String balanceRejectionMessage(final TransferOutcome outcome, final CharSequence sourceAccountId) {
+        return engine.rejection(outcome, engine.handleOf(sourceAccountId)).getMessage();
+    }
+
+    /**
+     * Performs the validated transfer and counts it.
+     */
+    private TransferOutcome tryTransferByEngine(final int source, final int destination, final long amount) {
+        final long credit = convert(source, destination, amount);
+        final TransferOutcome outcome = credit > 0 ? engine.tryTransfer(source, destination, amount, credit)
+                : conversionRejection(credit);
+
+        if (outcome.isSuccess())
+            journal(source, destination, amount, credit);
+
+        return counted(outcome);
+    }
+
+    /**
+     * Performs the transfers of the batch which passed the validation (their results are not set yet) and counts them.
+     */
+    private void transferBatchByEngine(final int[] sources, final int[] destinations, final long[] amounts,
+                                       final TransferResult[] results) {
+        final long[] credits = convertBatch(sources, destinations, amounts, results);
+        final TransferResult[] validationResults = results.clone();
+        engine.transferBatch(sources, destinations, amounts, credits, results);
+        countEngineResults(validationResults, results);
+        journalBatch(sources, destinations, amounts, credits, results);
+    }
+
+    /**
+     * Converts the amount in minor units of the source account to minor units of the destination account with
+     * the current FX rate (see {@link FxRates#convert(int, int, long)}).
+     */
+    private long convert(final int source, final int destination, final long amount) {
+        if (accountCurrencies == null)
+            return amount;
+
+        return fxRates.convert(currencyIndexes[source], currencyIndexes[destination], amount);
+    }
+
+    private static TransferOutcome conversionRejection(final long credit) {
+        if (credit == FxRates.NO_RATE)
+            return TransferOutcome.MISSING_FX_RATE;
+
+        if (credit == FxRates.TOO_LARGE)
+            return TransferOutcome.OVERFLOW;
+
+        return TransferOutcome.CONVERTED_AMOUNT_TOO_SMALL;
+    }
+
+    /**
+     * Converts amounts of the validated transfers of the batch to the currencies of the destination accounts and
+     * sets results of the transfers rejected by the conversion.
+     *
+     * @return amounts credited to the destination accounts
+     */
+    private long[] convertBatch(final int[] sources, final int[] destinations, final long[] amounts,
+                                final TransferResult[] results) {
+        if (accountCurrencies == null)
+            return amounts;
+
+        final long[] credits = new long[amounts.length];
+        for (int i = 0; i < results.length; ++i) {
+            if (results[i] != null)
+                continue;
+
+            credits[i] = convert(sources[i], destinations[i], amounts[i]);
+            if (credits[i] <= 0) {
+                final TransferOutcome outcome = conversionRejection(credits[i]);
+                results[i] = TransferResult.failure(counted(outcome),
+                        handleRejectionMessage(outcome, sources[i], destinations[i], amounts[i]));
+            }
+        }
+
+        return credits;
+    }
+
+    /**
+     * Counts results set by the engine, that is the ones which passed the validation.
+     */
+    private void countEngineResults(final TransferResult[] validationResults, final TransferResult[] results) {
+        for (int i = 0; i < results.length; ++i) {
+            if (validationResults[i] == null)
+                counted(results[i].getOutcome());
+        }
+    }
+
+    /**
+     * Records the performed transfer in the history and waits until the engine has made its journal record durable
+     * (if the journal is configured).
+     */
+    private void journal(final int source, final int destination, final long amount, final long credit) {
+        if (history != null)
+            history.record(source, destination, amount, credit);
+
+        if (persistence != null)
+            persistence.awaitDurable();
+    }
+
+    /**
+     * Records the performed transfers of the batch like {@link #journal}, waiting once for all of them.
+     */
+    private void journalBatch(final int[] sources, final int[] destinations, final long[] amounts,
+                              final long[] credits, final TransferResult[] results) {
+        boolean transferred = false;
+        for (int i = 0; i < results.length; ++i) {
+            if (results[i].isSuccess()) {
+                transferred = true;
+                if (history != null)
+                    history.record(sources[i], destinations[i], amounts[i], credits[i]);
+            }
+        }
+
+        if (persistence != null && transferred)
+            persistence.awaitDurable();
+    }
+
+    private static TransferOutcome checkAccountIds(final CharSequence sourceAccountId,
+                                                   final CharSequence destinationAccountId) {
+        if (sourceAccountId == null || sourceAccountId.length() == 0)
+            return TransferOutcome.MISSING_SOURCE_ACCOUNT_ID;
+
+        if (destinationAccountId == null || destinationAccountId.length() == 0)
+            return TransferOutcome.MISSING_DESTINATION_ACCOUNT_ID;
+
+        if (CharSequence.compare(sourceAccountId, destinationAccountId) == 0)
+            return TransferOutcome.SAME_ACCOUNT;
+
+        return TransferOutcome.OK;
+    }
+
+    /**
+     * Checks handles resolved from the ids (-1 when there is no such account) and the amount converted to minor units.
+     */
+    private static TransferOutcome checkResolved(final int source, final int destination, final long amount) {
+        if (source < 0)
+            return TransferOutcome.UNKNOWN_SOURCE_ACCOUNT;
+
+        if (destination < 0)
+            return TransferOutcome.UNKNOWN_DESTINATION_ACCOUNT;
+
+        if (amount == CurrencyUnit.INVALID_MINOR_UNITS)
+            return TransferOutcome.INVALID_AMOUNT;
+
+        return TransferOutcome.OK;
+    }
+
+    private TransferOutcome checkHandles(final int source, final int destination, final long amount) {
+        if (handleNotExists(source))
+            return TransferOutcome.UNKNOWN_SOURCE_ACCOUNT;
+
+        if (handleNotExists(destination))
+            return TransferOutcome.UNKNOWN_DESTINATION_ACCOUNT;
+
+        if (source == destination)
+            return TransferOutcome.SAME_ACCOUNT;
+
+        if (amount <= 0)
+            return TransferOutcome.NON_POSITIVE_AMOUNT;
+
+        return TransferOutcome.OK;
+    }
+
+    private String handleRejectionMessage(final TransferOutcome outcome, final int source, final int destination,
+                                          final long amount) {
+        switch (outcome) {
+            case UNKNOWN_SOURCE_ACCOUNT:
+                return "Account handle " + source + " does not exist";
+            case UNKNOWN_DESTINATION_ACCOUNT:
+                return "Account handle " + destination + " does not exist";
+            case SAME_ACCOUNT:
+                return "Source and destination account ids cannot be the same";
+            case NON_POSITIVE_AMOUNT:
+                return "Amount (" + currencyOf(source).format(amount) + ") cannot be less or equal to 0";
+            case MISSING_FX_RATE:
+            case CONVERTED_AMOUNT_TOO_SMALL:
+                return conversionRejectionMessage(outcome, source, destination);
+            default:
+                return engine.rejection(outcome, source).getMessage();
+        }
+    }
+
+    /**
+     * Returns the message of the cross-currency transfer rejected by the conversion of the amount.
+     */
+    private String conversionRejectionMessage(final TransferOutcome outcome, final int source, final int destination) {
+        final CurrencyUnit from = currencyOf(source);
+        final CurrencyUnit to = currencyOf(destination);
+
+        if (outcome == TransferOutcome.MISSING_FX_RATE)
+            return "There is no FX rate from " + from + " to " + to;
+
+        return "Amount converted from " + from + " to " + to + " is less than the minor unit of " + to;
+    }
+
+    /**
+     * Returns handle of the account.
+     *
+     * @throws IllegalArgumentException when the account does not exist
+     */
+    private int resolve(final CharSequence accountId) {
+        final int handle = findAccountHandle(accountId);
+
+        if (handle < 0)
+            throw new IllegalArgumentException("Account '" + accountId + "' does not exist");
+
+        return handle;
+    }
+
+    /**
+     * Returns currency of the account, the bank currency when the handle is -1.
+     */
+    private CurrencyUnit currencyOf(final int handle) {
+        return accountCurrencies == null || handle < 0 ? currency : accountCurrencies[handle];
+    }
+
+    private void checkHandle(final int handle) {
+        if (handleNotExists(handle))
+            throw new IllegalArgumentException("Account handle " + handle + " does not exist");
+    }
+
+    private boolean handleNotExists(final int handle) {
+        return handle < 0 || handle >= engine.accountsCount();
+    }
+}
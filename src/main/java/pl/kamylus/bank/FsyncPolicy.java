@@ -0,0 +1,24 @@
+package pl.kamylus.bank;
+
+/**
+ * When {@link TransferJournal} forces written records to the storage device and when a transfer is acknowledged.
+ */
+enum FsyncPolicy {
+    /**
+     * Every group of records written together is forced before the transfers are acknowledged. Nothing acknowledged
+     * can be lost, concurrent transfers share one fsync.
+     */
+    PER_BATCH,
+
+    /**
+     * Transfers are acknowledged when their records are written to the file, which is forced periodically (see
+     * {@link BankConfiguration.Builder#fsyncIntervalMillis(long)}). Crash of the machine (not only of the process) can
+     * lose transfers of the last interval.
+     */
+    INTERVAL,
+
+    /**
+     * Records are written to the file, but forcing is left to the operating system (and to closing of the journal).
+     */
+    NONE
+}
@@ -0,0 +1,47 @@
+package pl.kamylus.bank;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Exchange rate from one currency to another: a unit of the source currency is worth {@code rate} units of the
+ * destination currency. Rates of both directions are set separately.
+ */
+final class FxRate {
+    private final CurrencyUnit from;
+    private final CurrencyUnit to;
+    private final BigDecimal rate;
+
+    FxRate(final CurrencyUnit from, final CurrencyUnit to, final BigDecimal rate) {
+        Objects.requireNonNull(from);
+        Objects.requireNonNull(to);
+        Objects.requireNonNull(rate);
+
+        if (from.getCode().equals(to.getCode()))
+            throw new IllegalArgumentException("FX rate from " + from + " to itself cannot be set");
+
+        if (rate.signum() <= 0)
+            throw new IllegalArgumentException("FX rate (" + rate.toPlainString() + ") has to be positive");
+
+        this.from = from;
+        this.to = to;
+        this.rate = rate;
+    }
+
+    CurrencyUnit getFrom() {
+        return from;
+    }
+
+    CurrencyUnit getTo() {
+        return to;
+    }
+
+    BigDecimal getRate() {
+        return rate;
+    }
+
+    @Override
+    public String toString() {
+        return from + "/" + to + " " + rate.toPlainString();
+    }
+}
@@ -0,0 +1,221 @@
+package pl.kamylus.bank;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Exchange rates between the currencies of the accounts of the {@link FixedPointBank}, used to convert the amount of
+ * a cross-currency transfer from minor units of the source currency to minor units of the destination currency.
+ * <p>
+ * Rates are kept in an immutable table, which is replaced as a whole (copy-on-write) when rates are set, so a batch of
+ * new rates becomes visible at once and setting the rates never blocks the transfers: a conversion reads the current
+ * table with a single volatile read. Every rate is kept as a reduced fraction of two {@code long}s which already
+ * includes the scales of both currencies, so a conversion is a multiplication and a division of {@code long}s, without
+ * {@link BigDecimal} (128-bit intermediate product for large amounts). Converted amounts are rounded down, the bank
+ * never credits more than the rate gives.
+ */
+final class FxRates {
+    /**
+     * Returned by {@link #convert(int, int, long)} when there is no rate between the currencies.
+     */
+    static final long NO_RATE = -1;
+    /**
+     * Returned by {@link #convert(int, int, long)} when the converted amount does not fit in {@code long}.
+     */
+    static final long TOO_LARGE = -2;
+
+    /**
+     * Rates of all pairs of the currencies, the pair of currencies i and j is at i * count + j.
+     */
+    private static final class Table {
+        private final BigDecimal[] rates;
+        /**
+         * Numerator of the rate in minor units, 0 when there is no rate.
+         */
+        private final long[] numerators;
+        private final long[] denominators;
+
+        private Table(final BigDecimal[] rates, final long[] numerators, final long[] denominators) {
+            this.rates = rates;
+            this.numerators = numerators;
+            this.denominators = denominators;
+        }
+    }
+
+    private final CurrencyUnit[] currencies;
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    private volatile Table table;
+
+    /**
+     * @param currencies currencies between which the rates can be set, with distinct codes
+     */
+    FxRates(final Collection<CurrencyUnit> currencies) {
+        Objects.requireNonNull(currencies);
+
+        this.currencies = currencies.toArray(new CurrencyUnit[0]);
+        for (int i = 0; i < this.currencies.length; ++i) {
+            final Integer previous = indexes.put(this.currencies[i].getCode(), i);
+            if (previous != null)
+                throw new IllegalArgumentException("Duplicated currency: " + this.currencies[i]);
+        }
+
+        final int pairs = this.currencies.length * this.currencies.length;
+        this.table = new Table(new BigDecimal[pairs], new long[pairs], new long[pairs]);
+    }
+
+    /**
+     * Returns currencies of the accounts by handle (position in the list), null when all accounts are in the bank
+     * currency. Account without a currency is in the bank currency.
+     */
+    static CurrencyUnit[] accountCurrencies(final List<Account> accounts, final CurrencyUnit bankCurrency) {
+        final CurrencyUnit[] accountCurrencies = new CurrencyUnit[accounts.size()];
+        boolean multiCurrency = false;
+
+        int handle = 0;
+        for (final Account account : accounts) {
+            final CurrencyUnit currency = Objects.requireNonNullElse(account.getCurrency(), bankCurrency);
+            multiCurrency |= !currency.equals(bankCurrency);
+            accountCurrencies[handle++] = currency;
+        }
+
+        return multiCurrency ? accountCurrencies : null;
+    }
+
+    List<CurrencyUnit> getCurrencies() {
+        return List.of(currencies);
+    }
+
+    /**
+     * Returns index of the currency used by {@link #convert(int, int, long)}, -1 when rates of the currency cannot be
+     * set.
+     */
+    int indexOf(final CurrencyUnit currency) {
+        final Integer index = indexes.get(currency.getCode());
+
+        return index != null && currencies[index].equals(currency) ? index : -1;
+    }
+
+    /**
+     * Returns the rate from one currency to another, null when it has not been set.
+     */
+    BigDecimal getRate(final CurrencyUnit from, final CurrencyUnit to) {
+        return table.rates[pair(checkedIndexOf(from), checkedIndexOf(to))];
+    }
+
+    void setRate(final CurrencyUnit from, final CurrencyUnit to, final BigDecimal rate) {
+        setRates(List.of(new FxRate(from, to, rate)));
+    }
+
+    /**
+     * Sets the rates at once: a conversion sees either all of them or none. Other rates are kept.
+     *
+     * @throws IllegalArgumentException when a currency is unknown or a rate cannot be represented in minor units
+     */
+    synchronized void setRates(final List<FxRate> rates) {
+        Objects.requireNonNull(rates);
+
+        final Table current = table;
+        final BigDecimal[] newRates = current.rates.clone();
+        final long[] numerators = current.numerators.clone();
+        final long[] denominators = current.denominators.clone();
+
+        for (final FxRate rate : new ArrayList<>(rates)) {
+            final int pair = pair(checkedIndexOf(rate.getFrom()), checkedIndexOf(rate.getTo()));
+
+            // rate of the minor units: rate * 10^(destination scale - source scale)
+            final BigDecimal minorRate = rate.getRate()
+                    .movePointRight(rate.getTo().getScale() - rate.getFrom().getScale())
+                    .stripTrailingZeros();
+            BigInteger numerator = minorRate.unscaledValue();
+            BigInteger denominator = BigInteger.ONE;
+            if (minorRate.scale() > 0)
+                denominator = BigInteger.TEN.pow(minorRate.scale());
+            else
+                numerator = numerator.multiply(BigInteger.TEN.pow(-minorRate.scale()));
+
+            final BigInteger divisor = numerator.gcd(denominator);
+            numerator = numerator.divide(divisor);
+            denominator = denominator.divide(divisor);
+            if (numerator.bitLength() >= Long.SIZE || denominator.bitLength() >= Long.SIZE)
+                throw new IllegalArgumentException("FX rate " + rate + " cannot be represented in minor units");
+
+            newRates[pair] = rate.getRate();
+            numerators[pair] = numerator.longValueExact();
+            denominators[pair] = denominator.longValueExact();
+        }
+
+        table = new Table(newRates, numerators, denominators);
+    }
+
+    /**
+     * Converts the positive amount in minor units of the currency {@code from} to minor units of the currency
+     * {@code to} (indexes of {@link #indexOf(CurrencyUnit)}) with the current rate, rounded down. Does not allocate.
+     *
+     * @return converted amount (may be 0), {@link #NO_RATE} or {@link #TOO_LARGE}
+     */
+    long convert(final int from, final int to, final long amount) {
+        if (from == to)
+            return amount;
+
+        final Table current = table;
+        final int pair = pair(from, to);
+        final long numerator = current.numerators[pair];
+        if (numerator == 0)
+            return NO_RATE;
+
+        final long denominator = current.denominators[pair];
+        final long high = Math.multiplyHigh(amount, numerator);
+        final long low = amount * numerator;
+        if (high == 0 && low >= 0)
+            return low / denominator;
+
+        return divide(high, low, denominator);
+    }
+
+    /**
+     * Divides the non-negative 128-bit number by the positive divisor (bit by bit), {@link #TOO_LARGE} when
+     * the quotient does not fit in {@code long}.
+     */
+    private static long divide(final long high, final long low, final long divisor) {
+        if (high >= divisor)
+            return TOO_LARGE;
+
+        long remainder = high;
+        long dividend = low;
+        long quotient = 0;
+        for (int i = 0; i < Long.SIZE; ++i) {
+            // remainder < divisor < 2^63, so the shifted remainder fits in unsigned long
+            remainder = remainder << 1 | dividend >>> (Long.SIZE - 1);
+            dividend <<= 1;
+            quotient <<= 1;
+            if (Long.compareUnsigned(remainder, divisor) >= 0) {
+                remainder -= divisor;
+                quotient |= 1;
+            }
+        }
+
+        return quotient < 0 ? TOO_LARGE : quotient;
+    }
+
+    private int checkedIndexOf(final CurrencyUnit currency) {
+        Objects.requireNonNull(currency);
+
+        final int index = indexOf(currency);
+        if (index < 0)
+            throw new IllegalArgumentException("Currency " + currency + " (scale " + currency.getScale()
+                    + ") is not a currency of the bank");
+
+        return index;
+    }
+
+    private int pair(final int from, final int to) {
+        return from * currencies.length + to;
+    }
+}
@@ -0,0 +1,64 @@
+package pl.kamylus.bank;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * {@link AccountStore} keeping balances in a flat {@code long} array on the Java heap, indexed with
+ * {@link AccountIndex}.
+ */
+class HeapAccountStore implements AccountStore {
+    private final AccountIndex index;
+    private final long[] balances;
+
+    HeapAccountStore(final List<Account> accounts, final CurrencyUnit currency) {
+        Objects.requireNonNull(accounts);
+        Objects.requireNonNull(currency);
+
+        this.index = new AccountIndex(accounts);
+        this.balances = new long[accounts.size()];
+
+        int handle = 0;
+        for (final Account account : accounts)
+            balances[handle++] = account.toMinorUnits(currency);
+    }
+
+    @Override
+    public int indexOf(final CharSequence accountId) {
+        return index.handleOf(accountId);
+    }
+
+    @Override
+    public int size() {
+        return balances.length;
+    }
+
+    @Override
+    public String getAccountId(final int accountIndex) {
+        return index.getAccountId(accountIndex);
+    }
+
+    @Override
+    public long getBalance(final int accountIndex) {
+        return balances[accountIndex];
+    }
+
+    @Override
+    public void deposit(final int accountIndex, final long amount) {
+        validateAmount(amount);
+
+        balances[accountIndex] = Math.addExact(balances[accountIndex], amount);
+    }
+
+    @Override
+    public void withdraw(final int accountIndex, final long amount) {
+        validateAmount(amount);
+
+        balances[accountIndex] = Math.subtractExact(balances[accountIndex], amount);
+    }
+
+    private static void validateAmount(final long amount) {
+        if (amount <= 0)
+            throw new IllegalArgumentException("Amount cannot be less or equal to 0");
+    }
+}
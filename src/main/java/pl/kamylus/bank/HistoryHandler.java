@@ -0,0 +1,73 @@
+package pl.kamylus.bank;
+
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.net.HttpURLConnection;
+import java.util.Objects;
+
+/**
+ * Returns a page of the transaction history of the account ({@code accountId}), newest entry first, one entry per
+ * line: {@code index,sequence,timestamp,counterpartyAccountId,amount}. At most {@code limit} entries are returned
+ * (by default {@link #DEFAULT_LIMIT}), older than {@code before} (index of the last entry of the previous page) when
+ * it is given. Reading the history never waits for the transfers.
+ */
+class HistoryHandler implements Route {
+
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+
+    private static final int UNPROCESSABLE_ENTITY_ERROR = 422;
+
+    private final FixedPointBank bank;
+
+    HistoryHandler(final FixedPointBank bank) {
+        Objects.requireNonNull(bank);
+
+        this.bank = bank;
+    }
+
+    @Override
+    public Object handle(final Request request, final Response response) {
+        final StringBuilder responseBuilder = new StringBuilder();
+        try {
+            final long before = parseNumber(request.queryParams("before"), Long.MAX_VALUE, "Before");
+            final long limit = parseNumber(request.queryParams("limit"), DEFAULT_LIMIT, "Limit");
+            if (limit < 1 || limit > MAX_LIMIT)
+                throw new IllegalArgumentException("Limit (" + limit + ") has to be between 1 and " + MAX_LIMIT);
+
+            final HistoryPage page = new HistoryPage((int) limit);
+            final String accountId = request.queryParams("accountId");
+            bank.readHistory(accountId, before, page);
+
+            final CurrencyUnit currency = bank.accountCurrency(bank.accountHandle(accountId));
+            for (int i = 0; i < page.size(); ++i) {
+                responseBuilder.append(page.getIndex(i)).append(',')
+                        .append(page.getSequence(i)).append(',')
+                        .append(page.getTimestamp(i)).append(',')
+                        .append(bank.accountId(page.getCounterparty(i))).append(',')
+                        .append(currency.format(page.getAmount(i))).append('\n');
+            }
+        } catch (final IllegalArgumentException exc) {
+            response.status(UNPROCESSABLE_ENTITY_ERROR);
+            return exc.getMessage();
+        } catch (final Exception exc) {
+            response.status(HttpURLConnection.HTTP_INTERNAL_ERROR);
+            return exc.getMessage();
+        }
+
+        return responseBuilder.toString();
+    }
+
+    private static long parseNumber(final String text, final long defaultValue, final String name) {
+        if (text == null || text.isEmpty())
+            return defaultValue;
+
+        try {
+            return Long.parseLong(text);
+        } catch (final NumberFormatException exc) {
+            throw new IllegalArgumentException(name + " (" + text + ") is not a valid number");
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package pl.kamylus.bank;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Page of the transaction history of an account read by {@link AccountHistory#read}, newest entry first. Entries are
+ * kept in primitive arrays, so the page can be reused for any number of reads without creating objects. Not
+ * thread-safe.
+ */
+final class HistoryPage {
+    private final long[] indexes;
+    private final long[] amounts;
+    private final int[] counterparties;
+    private final long[] timestamps;
+    private final long[] sequences;
+    private int size;
+    private ByteBuffer fileBuffer;
+
+    /**
+     * @param maxEntries maximum number of entries read at once
+     */
+    HistoryPage(final int maxEntries) {
+        if (maxEntries < 1)
+            throw new IllegalArgumentException("Page size (" + maxEntries + ") cannot be less than 1");
+
+        this.indexes = new long[maxEntries];
+        this.amounts = new long[maxEntries];
+        this.counterparties = new int[maxEntries];
+        this.timestamps = new long[maxEntries];
+        this.sequences = new long[maxEntries];
+    }
+
+    int capacity() {
+        return indexes.length;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Position of the entry in the history of the account (0 is the first transfer of the account). Index of the last
+     * entry of the page is passed to {@link AccountHistory#read} to get the next (older) page.
+     */
+    long getIndex(final int entry) {
+        checkEntry(entry);
+        return indexes[entry];
+    }
+
+    /**
+     * Amount in minor units, negative when the money left the account.
+     */
+    long getAmount(final int entry) {
+        checkEntry(entry);
+        return amounts[entry];
+    }
+
+    /**
+     * Handle of the other account of the transfer.
+     */
+    int getCounterparty(final int entry) {
+        checkEntry(entry);
+        return counterparties[entry];
+    }
+
+    /**
+     * Milliseconds since the epoch.
+     */
+    long getTimestamp(final int entry) {
+        checkEntry(entry);
+        return timestamps[entry];
+    }
+
+    /**
+     * Number of the transfer, increasing across all accounts of the bank.
+     */
+    long getSequence(final int entry) {
+        checkEntry(entry);
+        return sequences[entry];
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    boolean isFull() {
+        return size == indexes.length;
+    }
+
+    void add(final long index, final long amount, final int counterparty, final long timestamp, final long sequence) {
+        indexes[size] = index;
+        amounts[size] = amount;
+        counterparties[size] = counterparty;
+        timestamps[size] = timestamp;
+        sequences[size] = sequence;
+        ++size;
+    }
+
+    /**
+     * Buffer for reading the pages of the history file, created at the first read from the file.
+     */
+    ByteBuffer fileBuffer(final int bytes) {
+        if (fileBuffer == null || fileBuffer.capacity() < bytes)
+            fileBuffer = ByteBuffer.allocate(bytes);
+
+        fileBuffer.clear().limit(bytes);
+        return fileBuffer;
+    }
+
+    private void checkEntry(final int entry) {
+        if (entry < 0 || entry >= size)
+            throw new IndexOutOfBoundsException("Entry " + entry + " is out of the page of " + size + " entries");
+    }
+}
@@ -0,0 +1,61 @@
+package pl.kamylus.bank;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads which run the requests of {@link TransferHttpServer}.
+ */
+enum HttpExecutorType {
+    /**
+     * Fixed pool of platform threads. A request waiting for the bank (for example for the journal) occupies its thread.
+     */
+    PLATFORM {
+        @Override
+        ExecutorService create(final int threads) {
+            final AtomicInteger nextThread = new AtomicInteger();
+            final ThreadFactory threadFactory = runnable -> {
+                final Thread thread = new Thread(runnable, "http-worker-" + nextThread.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+
+            return Executors.newFixedThreadPool(threads, threadFactory);
+        }
+    },
+
+    /**
+     * New virtual thread per request, so waiting requests do not occupy platform threads. Requires Java 21 or newer at
+     * runtime (the application is compiled for Java 11, so the executor is looked up reflectively).
+     */
+    VIRTUAL {
+        @Override
+        ExecutorService create(final int threads) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (final NoSuchMethodException exc) {
+                throw new IllegalStateException("Virtual threads are not supported by Java "
+                        + Runtime.version().feature());
+            } catch (final IllegalAccessException | InvocationTargetException exc) {
+                throw new IllegalStateException("Cannot create virtual thread executor", exc);
+            }
+        }
+    };
+
+    /**
+     * @param threads number of threads of the pool, ignored by {@link #VIRTUAL}
+     */
+    abstract ExecutorService create(int threads);
+
+    static boolean virtualThreadsSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (final NoSuchMethodException exc) {
+            return false;
+        }
+    }
+}
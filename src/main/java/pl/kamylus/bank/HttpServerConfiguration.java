@@ -0,0 +1,158 @@
+package pl.kamylus.bank;
+
+import java.util.Objects;
+
+/**
+ * Configuration of the {@link TransferHttpServer} and {@link TransferNioServer}: port, connection backlog, threads
+ * and limits. Executor type, number of threads and maximum number of concurrent requests are used only by
+ * {@link TransferHttpServer}, number of event loops only by {@link TransferNioServer}.
+ */
+final class HttpServerConfiguration {
+    private final int port;
+    private final int backlog;
+    private final HttpExecutorType executorType;
+    private final int threads;
+    private final int maxConcurrentRequests;
+    private final int maxRequestBodyBytes;
+    private final int eventLoops;
+
+    private HttpServerConfiguration(final Builder builder) {
+        this.port = builder.port;
+        this.backlog = builder.backlog;
+        this.executorType = builder.executorType;
+        this.threads = builder.threads;
+        this.maxConcurrentRequests = builder.maxConcurrentRequests;
+        this.maxRequestBodyBytes = builder.maxRequestBodyBytes;
+        this.eventLoops = builder.eventLoops;
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    int getBacklog() {
+        return backlog;
+    }
+
+    HttpExecutorType getExecutorType() {
+        return executorType;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    int getMaxRequestBodyBytes() {
+        return maxRequestBodyBytes;
+    }
+
+    int getEventLoops() {
+        return eventLoops;
+    }
+
+    static final class Builder {
+        private int port = 4567;
+        private int backlog = 4096;
+        private HttpExecutorType executorType = HttpExecutorType.PLATFORM;
+        private int threads = 200;
+        private int maxConcurrentRequests = 10_000;
+        private int maxRequestBodyBytes = 4096;
+        private int eventLoops = Runtime.getRuntime().availableProcessors();
+
+        private Builder() {
+        }
+
+        /**
+         * Port to listen on, 0 chooses a free port.
+         */
+        Builder port(final int port) {
+            if (port < 0 || port > 0xFFFF)
+                throw new IllegalArgumentException("Port (" + port + ") has to be between 0 and 65535");
+
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * Maximum number of connections waiting to be accepted, by default 4096.
+         */
+        Builder backlog(final int backlog) {
+            if (backlog < 1)
+                throw new IllegalArgumentException("Backlog (" + backlog + ") cannot be less than 1");
+
+            this.backlog = backlog;
+            return this;
+        }
+
+        /**
+         * Threads which run the requests, by default {@link HttpExecutorType#PLATFORM}.
+         */
+        Builder executorType(final HttpExecutorType executorType) {
+            Objects.requireNonNull(executorType);
+
+            this.executorType = executorType;
+            return this;
+        }
+
+        /**
+         * Number of threads of {@link HttpExecutorType#PLATFORM} executor, by default 200.
+         */
+        Builder threads(final int threads) {
+            if (threads < 1)
+                throw new IllegalArgumentException("Number of threads (" + threads + ") cannot be less than 1");
+
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Number of requests processed at once, above it requests are rejected with 503 status, by default 10000.
+         */
+        Builder maxConcurrentRequests(final int maxConcurrentRequests) {
+            if (maxConcurrentRequests < 1) {
+                throw new IllegalArgumentException("Maximum number of concurrent requests (" + maxConcurrentRequests
+                        + ") cannot be less than 1");
+            }
+
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            return this;
+        }
+
+        /**
+         * Longer request bodies are rejected with 413 status, by default 4096 bytes.
+         */
+        Builder maxRequestBodyBytes(final int maxRequestBodyBytes) {
+            if (maxRequestBodyBytes < 1) {
+                throw new IllegalArgumentException("Maximum request body size (" + maxRequestBodyBytes
+                        + " bytes) cannot be less than 1 byte");
+            }
+
+            this.maxRequestBodyBytes = maxRequestBodyBytes;
+            return this;
+        }
+
+        /**
+         * Number of threads of {@link TransferNioServer}, each with its own selector, which read the requests and
+         * perform the transfers, by default number of processors.
+         */
+        Builder eventLoops(final int eventLoops) {
+            if (eventLoops < 1)
+                throw new IllegalArgumentException("Number of event loops (" + eventLoops + ") cannot be less than 1");
+
+            this.eventLoops = eventLoops;
+            return this;
+        }
+
+        HttpServerConfiguration build() {
+            return new HttpServerConfiguration(this);
+        }
+    }
+}
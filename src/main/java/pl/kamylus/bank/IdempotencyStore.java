@@ -0,0 +1,278 @@
+package pl.kamylus.bank;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Results of the recent transfers by their idempotency keys, so a retried request returns the result of the first one
+ * instead of transferring the money again.
+ * <p>
+ * Keys are spread over independently locked stripes, each a small map in order of insertion, so lookups of different
+ * keys rarely meet and no lock is held during the transfer itself. Memory is bounded: a result expires after the TTL
+ * and the oldest results of the stripe are evicted when it is full. A key retried after its result has gone is
+ * performed again. Keys of the transfers in progress are never evicted (their retry would transfer the money twice),
+ * a new key is rejected instead when all keys of its stripe are in progress.
+ */
+final class IdempotencyStore {
+    static final int DEFAULT_MAX_KEYS = 100_000;
+    static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    static final int MAX_KEY_LENGTH = 128;
+
+    private static final int MAX_STRIPES = 64;
+
+    private static final TransferResult INVALID_KEY = TransferResult.failure(TransferOutcome.INVALID_IDEMPOTENCY_KEY,
+            "Invalid idempotency key");
+    private static final TransferResult KEY_REUSED = TransferResult.failure(TransferOutcome.IDEMPOTENCY_KEY_REUSED,
+            "Idempotency key has been used for another transfer");
+    private static final TransferResult KEY_IN_PROGRESS = TransferResult.failure(
+            TransferOutcome.IDEMPOTENCY_KEY_IN_PROGRESS, "Transfer with the idempotency key is in progress");
+    private static final TransferResult STORE_FULL = TransferResult.failure(TransferOutcome.IDEMPOTENCY_STORE_FULL,
+            "Too many transfers with idempotency keys are in progress");
+
+    private final Stripe[] stripes;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    IdempotencyStore(final int maxKeys, final long ttlMillis) {
+        this(maxKeys, ttlMillis, Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, maxKeys))), System::nanoTime);
+    }
+
+    /**
+     * @param stripes   number of stripes, a power of 2 not greater than the number of keys
+     * @param nanoClock source of {@link System#nanoTime()}, replaced in tests
+     */
+    IdempotencyStore(final int maxKeys, final long ttlMillis, final int stripes, final LongSupplier nanoClock) {
+        Objects.requireNonNull(nanoClock);
+
+        if (maxKeys < 1)
+            throw new IllegalArgumentException("Number of idempotency keys (" + maxKeys + ") cannot be less than 1");
+
+        if (ttlMillis < 1)
+            throw new IllegalArgumentException("Idempotency key TTL (" + ttlMillis + " ms) cannot be less than 1 ms");
+
+        if (stripes < 1 || stripes > maxKeys || Integer.bitCount(stripes) != 1)
+            throw new IllegalArgumentException("Number of stripes (" + stripes + ") has to be a power of 2 between 1 "
+                    + "and the number of keys");
+
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; ++i)
+            this.stripes[i] = new Stripe(maxKeys / stripes);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Reserves the key for the transfer with the given fingerprint (see {@link #fingerprint}). Returns null when the
+     * caller has to perform the transfer and then {@link #complete} or {@link #release} the key, otherwise the result
+     * of the transfer already performed with the key.
+     *
+     * @throws IllegalArgumentException when the key is too long, is being used by another request at the moment, has
+     *                                  been used for a different transfer or there is no room for it
+     */
+    TransferResult claim(final String key, final long fingerprint) {
+        final TransferResult result = tryClaim(key, fingerprint);
+
+        if (result != null && isConflict(result.getOutcome()))
+            throw new IllegalArgumentException(conflictMessage(result.getOutcome(), key));
+
+        return result;
+    }
+
+    /**
+     * Like {@link #claim}, but instead of throwing returns a preallocated result with
+     * {@link TransferOutcome#INVALID_IDEMPOTENCY_KEY}, {@link TransferOutcome#IDEMPOTENCY_KEY_REUSED},
+     * {@link TransferOutcome#IDEMPOTENCY_KEY_IN_PROGRESS} or {@link TransferOutcome#IDEMPOTENCY_STORE_FULL} outcome
+     * (see {@link #conflictMessage}).
+     */
+    TransferResult tryClaim(final String key, final long fingerprint) {
+        Objects.requireNonNull(key);
+
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH)
+            return INVALID_KEY;
+
+        final Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            final long now = nanoClock.getAsLong();
+            stripe.evict(now);
+
+            final Entry entry = stripe.entries.get(key);
+            if (entry == null)
+                return stripe.add(key, new Entry(fingerprint, now + ttlNanos)) ? null : STORE_FULL;
+
+            if (entry.fingerprint != fingerprint)
+                return KEY_REUSED;
+
+            if (entry.result == null)
+                return KEY_IN_PROGRESS;
+
+            return entry.result;
+        }
+    }
+
+    /**
+     * Tells whether the outcome is the rejection of the key itself, not of the transfer performed with it.
+     */
+    static boolean isConflict(final TransferOutcome outcome) {
+        return outcome == TransferOutcome.INVALID_IDEMPOTENCY_KEY || outcome == TransferOutcome.IDEMPOTENCY_KEY_REUSED
+                || outcome == TransferOutcome.IDEMPOTENCY_KEY_IN_PROGRESS
+                || outcome == TransferOutcome.IDEMPOTENCY_STORE_FULL;
+    }
+
+    /**
+     * Returns the message of the rejection of the key by {@link #tryClaim}.
+     */
+    static String conflictMessage(final TransferOutcome outcome, final String key) {
+        switch (outcome) {
+            case IDEMPOTENCY_KEY_REUSED:
+                return "Idempotency key '" + key + "' has been used for another transfer";
+            case IDEMPOTENCY_KEY_IN_PROGRESS:
+                return "Transfer with idempotency key '" + key + "' is in progress";
+            case IDEMPOTENCY_STORE_FULL:
+                return "Too many transfers with idempotency keys are in progress, retry later";
+            default:
+                return "Idempotency key has to be between 1 and " + MAX_KEY_LENGTH + " characters long";
+        }
+    }
+
+    /**
+     * Keeps the result of the transfer of the claimed key for the TTL.
+     */
+    void complete(final String key, final TransferResult result) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(result);
+
+        final Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            final Entry entry = stripe.entries.remove(key);
+            if (entry == null)
+                return;
+
+            final long now = nanoClock.getAsLong();
+            entry.result = result;
+            entry.expiresAt = now + ttlNanos;
+            stripe.evict(now);
+            // the entry has just been removed, so there is room for it
+            stripe.add(key, entry);
+        }
+    }
+
+    /**
+     * Forgets the claimed key when the transfer failed in a way which may succeed if retried.
+     */
+    void release(final String key) {
+        Objects.requireNonNull(key);
+
+        final Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.entries.remove(key);
+        }
+    }
+
+    /**
+     * Number of kept keys, including the expired ones not evicted yet.
+     */
+    int size() {
+        int size = 0;
+        for (final Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Fingerprint of the transfer parameters as they were sent, to detect a key reused for a different transfer.
+     */
+    static long fingerprint(final CharSequence sourceAccountId, final CharSequence destinationAccountId,
+                            final CharSequence amount) {
+        long hash = 0xcbf29ce484222325L;
+        hash = fingerprint(hash, sourceAccountId);
+        hash = fingerprint(hash, destinationAccountId);
+        return fingerprint(hash, amount);
+    }
+
+    private static long fingerprint(long hash, final CharSequence value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); ++i)
+                hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+
+        // separator, so moving characters between the values changes the fingerprint
+        return (hash ^ 0x10000) * 0x100000001b3L;
+    }
+
+    private Stripe stripe(final String key) {
+        final int hash = key.hashCode();
+        return stripes[(hash ^ hash >>> 16) & (stripes.length - 1)];
+    }
+
+    private static final class Stripe {
+        private final int capacity;
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+        Stripe(final int capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * Removes the expired results, which are the oldest ones, as completed entries are added in order of their
+         * expiration. Transfers in progress do not expire.
+         */
+        void evict(final long now) {
+            final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Entry entry = iterator.next().getValue();
+                if (entry.result == null)
+                    continue;
+
+                if (entry.expiresAt - now > 0)
+                    return;
+
+                iterator.remove();
+            }
+        }
+
+        /**
+         * Adds the entry, evicting the oldest result when the stripe is full.
+         *
+         * @return false when the stripe is full of transfers in progress
+         */
+        boolean add(final String key, final Entry entry) {
+            if (entries.size() >= capacity && !evictOldestResult())
+                return false;
+
+            entries.put(key, entry);
+            return true;
+        }
+
+        private boolean evictOldestResult() {
+            final Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().result != null) {
+                    iterator.remove();
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Entry {
+        private final long fingerprint;
+        private long expiresAt;
+        /**
+         * Null while the transfer is in progress.
+         */
+        private TransferResult result;
+
+        Entry(final long fingerprint, final long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
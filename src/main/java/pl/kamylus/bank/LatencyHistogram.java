@@ -0,0 +1,142 @@
+package pl.kamylus.bank;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations in nanoseconds with log-linear buckets, like HdrHistogram: every power of 2 is split into
+ * {@link #SUB_BUCKETS} linear buckets, so a recorded value is off by at most 1/16 (about 6%) of its magnitude. Values
+ * above {@link #MAX_VALUE} (about 68 seconds) are counted in the last bucket.
+ * <p>
+ * Recording does not allocate: it increments a counter in a fixed array. To keep threads from contending on the same
+ * cache lines every thread records into its own stripe (chosen by the thread id) and the stripes are summed when
+ * the histogram is read.
+ */
+final class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final long MAX_VALUE = (1L << 36) - 1;
+    static final int BUCKETS = bucketOf(MAX_VALUE) + 1;
+
+    private static final int MAX_STRIPES = 16;
+
+    private final int stripeMask;
+    /**
+     * Counts of all stripes, stripe after stripe.
+     */
+    private final AtomicLongArray counts;
+    /**
+     * Sums of the recorded values, 8 longs (a cache line) apart.
+     */
+    private final AtomicLongArray sums;
+
+    LatencyHistogram() {
+        this(Math.min(MAX_STRIPES, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) * 2));
+    }
+
+    /**
+     * @param stripes number of the stripes, a power of 2
+     */
+    LatencyHistogram(final int stripes) {
+        if (stripes < 1 || Integer.bitCount(stripes) != 1)
+            throw new IllegalArgumentException("Number of stripes (" + stripes + ") has to be a power of 2");
+
+        this.stripeMask = stripes - 1;
+        this.counts = new AtomicLongArray(stripes * BUCKETS);
+        this.sums = new AtomicLongArray(stripes * 8);
+    }
+
+    /**
+     * Returns index of the bucket of the value: values below {@link #SUB_BUCKETS} have their own buckets, above that
+     * every power of 2 has {@link #SUB_BUCKETS} buckets.
+     */
+    static int bucketOf(final long value) {
+        if (value < SUB_BUCKETS)
+            return (int) Math.max(0, value);
+
+        final long clamped = Math.min(value, MAX_VALUE);
+        final int highestBit = 63 - Long.numberOfLeadingZeros(clamped);
+        final int shift = highestBit - SUB_BUCKET_BITS;
+
+        return (shift + 1) * SUB_BUCKETS + (int) ((clamped >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Returns the lowest value counted in the bucket.
+     */
+    static long lowestValueOf(final int bucket) {
+        final int group = bucket >>> SUB_BUCKET_BITS;
+        final int subBucket = bucket & (SUB_BUCKETS - 1);
+
+        return group == 0 ? subBucket : (long) (SUB_BUCKETS + subBucket) << (group - 1);
+    }
+
+    /**
+     * Returns the highest value counted in the bucket.
+     */
+    static long highestValueOf(final int bucket) {
+        return bucket == BUCKETS - 1 ? MAX_VALUE : lowestValueOf(bucket + 1) - 1;
+    }
+
+    void record(final long nanos) {
+        final int stripe = (int) Thread.currentThread().getId() & stripeMask;
+
+        counts.getAndIncrement(stripe * BUCKETS + bucketOf(nanos));
+        sums.getAndAdd(stripe * 8, Math.max(0, nanos));
+    }
+
+    /**
+     * Number of the values counted in the bucket.
+     */
+    long getCount(final int bucket) {
+        long count = 0;
+        for (int stripe = 0; stripe <= stripeMask; ++stripe)
+            count += counts.get(stripe * BUCKETS + bucket);
+
+        return count;
+    }
+
+    long getTotalCount() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); ++i)
+            count += counts.get(i);
+
+        return count;
+    }
+
+    /**
+     * Sum of all recorded values in nanoseconds.
+     */
+    long getSum() {
+        long sum = 0;
+        for (int stripe = 0; stripe <= stripeMask; ++stripe)
+            sum += sums.get(stripe * 8);
+
+        return sum;
+    }
+
+    /**
+     * Returns the highest value of the bucket in which the given percentile (0 to 100) of the values falls, 0 when
+     * nothing has been recorded.
+     */
+    long getValueAtPercentile(final double percentile) {
+        final long[] bucketCounts = new long[BUCKETS];
+        long total = 0;
+        for (int bucket = 0; bucket < BUCKETS; ++bucket) {
+            bucketCounts[bucket] = getCount(bucket);
+            total += bucketCounts[bucket];
+        }
+
+        if (total == 0)
+            return 0;
+
+        final long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; ++bucket) {
+            seen += bucketCounts[bucket];
+            if (seen >= rank)
+                return highestValueOf(bucket);
+        }
+
+        return MAX_VALUE;
+    }
+}
@@ -0,0 +1,225 @@
+package pl.kamylus.bank;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durability of the {@link FixedPointBank}. At construction it recovers balances of the accounts from the latest
+ * {@link AccountSnapshot} and the tail of the {@link TransferJournal}, replayed in sequence order, in minor units
+ * straight into its own balances, which seed the transfer engine (see {@link #restoreBalances(TransferEngine)}).
+ * Afterwards it is the {@link TransferLog} of the engine and periodically writes new snapshots. The engine appends
+ * the records inside the critical sections of the transfers and the bank waits until they are durable (see
+ * {@link #awaitDurable()}) before it acknowledges the transfers.
+ * <p>
+ * Snapshots are built from the journal, not from the live accounts: the snapshot thread applies records written since
+ * the previous snapshot to its own copy of the balances. The copy is a consistent cut at the journal position, taken
+ * without locking any account or pausing transfers, whatever the transfer engine. After a periodic snapshot the
+ * journal is rolled (see {@link TransferJournal#roll}), so it keeps only the records which follow the snapshot.
+ * <p>
+ * Accounts are addressed by the same handles as in the {@link TransferEngine}: positions in the list of accounts.
+ */
+final class LedgerPersistence implements TransferLog, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(LedgerPersistence.class);
+
+    private final CurrencyUnit currency;
+    private final Path journalFile;
+    private final Path snapshotFile;
+    private final TransferJournal journal;
+    private final ScheduledExecutorService snapshotScheduler;
+
+    private final AccountIndex index;
+    private final long[] balances;
+    private TransferJournal.Position balancesPosition;
+
+    LedgerPersistence(final List<Account> accounts, final BankConfiguration configuration) {
+        Objects.requireNonNull(accounts);
+        Objects.requireNonNull(configuration);
+        Objects.requireNonNull(configuration.getJournalFile());
+
+        this.currency = configuration.getCurrency();
+        this.journalFile = configuration.getJournalFile();
+        this.snapshotFile = configuration.getSnapshotFile();
+
+        this.index = new AccountIndex(accounts);
+        this.balances = new long[accounts.size()];
+        int handle = 0;
+        for (final Account account : accounts)
+            balances[handle++] = currency.toMinorUnits(account.getMoneyAmount());
+
+        final long start = System.nanoTime();
+        final TransferJournal.Position snapshotPosition = loadSnapshot();
+
+        final Set<String> unknownAccounts = new LinkedHashSet<>();
+        this.journal = new TransferJournal(journalFile, configuration.getFsyncPolicy(),
+                configuration.getFsyncIntervalMillis(), snapshotPosition,
+                (sequence, sourceAccountId, destinationAccountId, amount) -> {
+                    if (index.handleOf(sourceAccountId) >= 0 && index.handleOf(destinationAccountId) >= 0) {
+                        apply(sequence, sourceAccountId, destinationAccountId, amount);
+                    } else {
+                        unknownAccounts.add(sourceAccountId);
+                        unknownAccounts.add(destinationAccountId);
+                    }
+                });
+        unknownAccounts.removeIf(accountId -> index.handleOf(accountId) >= 0);
+
+        if (!unknownAccounts.isEmpty()) {
+            journal.close();
+            throw new IllegalStateException("Journal refers to not existing accounts: " + unknownAccounts);
+        }
+
+        this.balancesPosition = journal.getWrittenPosition();
+        logger.info("Recovered {} accounts at journal sequence {} in {} ms", balances.length,
+                balancesPosition.getSequence(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        if (snapshotFile != null) {
+            this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "account-snapshot-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.snapshotScheduler.scheduleWithFixedDelay(this::snapshotQuietly,
+                    configuration.getSnapshotIntervalMillis(), configuration.getSnapshotIntervalMillis(),
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.snapshotScheduler = null;
+        }
+    }
+
+    /**
+     * Sets the recovered balances in the engine created for the accounts given at construction, before its first
+     * transfer.
+     */
+    synchronized void restoreBalances(final TransferEngine engine) {
+        engine.restoreBalances(handle -> balances[handle]);
+    }
+
+    /**
+     * Journals the transfer, without waiting until the record is durable.
+     */
+    @Override
+    public void append(final int source, final int destination, final long amount) {
+        journal.append(index.getAccountId(source), index.getAccountId(destination), amount);
+    }
+
+    /**
+     * Waits until all transfers journaled so far are durable.
+     *
+     * @throws java.io.UncheckedIOException when the journal cannot be written
+     */
+    void awaitDurable() {
+        journal.awaitAppendedDurable();
+    }
+
+    /**
+     * Forces the journal, writes the snapshot of the balances covering all records written so far and rolls the journal
+     * at the snapshot. Does nothing when the snapshot file is not configured.
+     */
+    synchronized void snapshot() {
+        if (snapshotFile == null)
+            return;
+
+        journal.force();
+        if (writeSnapshot()) {
+            balancesPosition = journal.roll(balancesPosition);
+            logger.info("Rolled the journal {} at sequence {}", journalFile, balancesPosition.getSequence());
+        }
+    }
+
+    /**
+     * Stops the snapshot thread, closes the journal and writes the final snapshot, so the next start does not have to
+     * replay anything.
+     */
+    @Override
+    public void close() {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdown();
+
+            try {
+                snapshotScheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (final InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        journal.close();
+
+        if (snapshotFile != null)
+            writeSnapshot();
+    }
+
+    private TransferJournal.Position loadSnapshot() {
+        if (snapshotFile == null || !Files.exists(snapshotFile))
+            return TransferJournal.Position.START;
+
+        final Set<String> unknownAccounts = new LinkedHashSet<>();
+        final TransferJournal.Position position = AccountSnapshot.read(snapshotFile, (accountId, balance) -> {
+            final int handle = index.handleOf(accountId);
+
+            if (handle >= 0)
+                balances[handle] = balance;
+            else
+                unknownAccounts.add(accountId.toString());
+        });
+
+        if (!unknownAccounts.isEmpty())
+            throw new IllegalStateException("Snapshot refers to not existing accounts: " + unknownAccounts);
+
+        return position;
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (final RuntimeException exc) {
+            logger.error("Cannot write the snapshot {}", snapshotFile, exc);
+        }
+    }
+
+    /**
+     * Applies records written since the previous snapshot to the balances and writes them. Returns false when there
+     * was nothing new to write.
+     */
+    private synchronized boolean writeSnapshot() {
+        final TransferJournal.Position writtenPosition = journal.getWrittenPosition();
+
+        if (writtenPosition.getSequence() != balancesPosition.getSequence()) {
+            balancesPosition = TransferJournal.replay(journalFile, balancesPosition, writtenPosition.getOffset(),
+                    this::apply);
+        } else if (Files.exists(snapshotFile)) {
+            return false;
+        }
+
+        new AccountSnapshot(balancesPosition, index::getAccountId, balances).write(snapshotFile);
+        logger.info("Written snapshot of {} accounts at journal sequence {}", balances.length,
+                balancesPosition.getSequence());
+        return true;
+    }
+
+    /**
+     * Applies the record to the balances. Records are appended before the transfers change the balances, so a record
+     * which overdraws the account means that the journal does not match the accounts.
+     */
+    private void apply(final long sequence, final String sourceAccountId, final String destinationAccountId,
+                       final long amount) {
+        final int source = index.handleOf(sourceAccountId);
+        final int destination = index.handleOf(destinationAccountId);
+
+        if (balances[source] < amount) {
+            throw new IllegalStateException("Journal record " + sequence + " overdraws account " + sourceAccountId
+                    + " by " + currency.format(amount - balances[source]));
+        }
+
+        balances[source] = Math.subtractExact(balances[source], amount);
+        balances[destination] = Math.addExact(balances[destination], amount);
+    }
+}
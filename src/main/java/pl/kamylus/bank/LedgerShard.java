@@ -0,0 +1,487 @@
+package pl.kamylus.bank;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Group of accounts owned by a single thread. Callers publish commands into a pre-allocated ring buffer and the owner
+ * thread applies them, in sequence order, to the not synchronized {@link AccountStore}, so there are no locks on
+ * accounts at all. Accounts are addressed by their indexes in the store, so commands carry only primitives.
+ * <p>
+ * A caller claims the next sequence, waits until its slot is free (the owner is at most ring size behind), fills
+ * the slot and publishes it by writing the sequence into the slot. Every command gets a {@link TransferFuture}, which
+ * the owner completes with the preallocated {@link TransferOutcome}, so a rejection does not allocate on the owner
+ * thread.
+ * <p>
+ * Besides transfers between its own accounts, the shard supports the steps of a transfer between shards:
+ * reserve (debit of the source account, if there is enough money), credit (of the destination account) and release
+ * (the reserved amount goes back to the source account, when the credit failed). The {@link TransferLog} receives
+ * the transfers on the owner thread, before they change the balances, and the transfers between shards at the credit.
+ * <p>
+ * Shards of a {@link PartitionedTransferEngine} cut their parts of a snapshot of all balances with a snapshot command,
+ * in the order of their rings, so the transfers never stop for it. The shard counts the snapshots it has cut (its
+ * epoch) and every reservation is tagged with the epoch of its shard. A credit tagged with a newer epoch cuts the
+ * snapshot of its shard first, so the snapshots never see money which has not been reserved yet. A credit or release
+ * of a reservation from before the cut is added to the snapshot, so the snapshots never miss money in flight. The
+ * shard counts the reservations and their completions by epoch, so the snapshot waits until all reservations from
+ * before the cut are completed.
+ * <p>
+ * Balances are read directly from the store by the calling thread, not through the ring, so reads never delay the
+ * transfers: the owner thread versions the accounts it modifies with {@link BalanceVersions}.
+ */
+class LedgerShard {
+    private static final Logger logger = LoggerFactory.getLogger(LedgerShard.class);
+
+    private static final int TRANSFER = 0;
+    private static final int RESERVE = 1;
+    private static final int CREDIT = 2;
+    private static final int RELEASE = 3;
+    private static final int CANCELLED = 4;
+    private static final int SNAPSHOT = 5;
+
+    private final CurrencyUnit currency;
+    private final AccountStore store;
+    private final WaitStrategy waitStrategy;
+    private final TransferAuditSink auditSink;
+    private final IntFunction<String> accountIds;
+    private final TransferLog transferLog;
+    private final int[] handles;
+    private final BalanceVersions versions;
+
+    private final Slot[] ring;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicLong consumedSequence = new AtomicLong(-1);
+    private final Thread owner;
+    private volatile boolean running = true;
+
+    /**
+     * Number of the last snapshot cut by the owner thread and the snapshot, owned by the owner thread.
+     */
+    private long epoch;
+    private BalanceSnapshot snapshot;
+    /**
+     * Reservations of this shard and completions (credits and releases) applied by this shard, by the parity of the
+     * epoch of the reservation. Written only by the owner thread.
+     */
+    private final AtomicLongArray reservations = new AtomicLongArray(2);
+    private final AtomicLongArray completions = new AtomicLongArray(2);
+
+    /**
+     * @param auditSink   receives transfers between accounts of this shard, may be null
+     * @param transferLog logs the transfers (with the handles of the engine) on the owner thread, may be null
+     * @param handles     handles of the engine by the indexes of the accounts in the store, null when they are the same
+     */
+    LedgerShard(final String name, final AccountStore store, final CurrencyUnit currency,
+                final int ringSize, final WaitStrategy waitStrategy, final TransferAuditSink auditSink,
+                final TransferLog transferLog, final int[] handles) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(store);
+        Objects.requireNonNull(currency);
+        Objects.requireNonNull(waitStrategy);
+
+        this.currency = currency;
+        this.store = store;
+        this.waitStrategy = waitStrategy;
+        this.auditSink = auditSink;
+        this.accountIds = store::getAccountId;
+        this.transferLog = transferLog;
+        this.handles = handles;
+        this.versions = new BalanceVersions(BalanceVersions.stripesFor(store.size()), store.size(),
+                store::getBalance);
+
+        this.ring = new Slot[ringSize];
+        for (int i = 0; i < ring.length; ++i)
+            ring[i] = new Slot();
+        this.mask = ring.length - 1;
+
+        this.owner = new Thread(this::consume, name);
+        this.owner.setDaemon(true);
+        this.owner.start();
+    }
+
+    /**
+     * Reads balance of the account, which includes all transfers completed before the call.
+     */
+    long readBalance(final int account) {
+        return versions.read(account);
+    }
+
+    /**
+     * Reads balances of the accounts of this shard, all of them from the same point of time.
+     */
+    void readBalances(final int[] accounts, final long[] balances) {
+        versions.read(accounts, balances);
+    }
+
+    /**
+     * Opens the snapshot of the balances of all accounts of this shard, cut while the owner thread keeps applying
+     * commands.
+     */
+    BalanceSnapshot openSnapshot() {
+        return versions.openSnapshot();
+    }
+
+    /**
+     * Sets balances of the accounts of this shard (given by their handles of the engine) from the calling thread. The
+     * owner thread sees them, because it reads the store only after the first command is published.
+     *
+     * @throws IllegalStateException when a command has already been published
+     */
+    void restoreBalances(final IntToLongFunction balances) {
+        if (nextSequence.get() != 0)
+            throw new IllegalStateException("Balances can be restored only before the first transfer");
+
+        for (int i = 0; i < store.size(); ++i)
+            store.setBalance(i, balances.applyAsLong(handleOf(i)));
+    }
+
+    /**
+     * Transfer between two accounts of this shard.
+     */
+    TransferFuture submitTransfer(final int source, final int destination, final long amount) {
+        return submit(TRANSFER, source, destination, amount);
+    }
+
+    /**
+     * Debits the source account, if there is enough money on it. The future keeps the epoch of the reservation.
+     */
+    TransferFuture submitReserve(final int source, final long amount) {
+        return submit(RESERVE, source, -1, amount, 0);
+    }
+
+    /**
+     * Credits the destination account with the amount reserved (in the given epoch) from the source account (given by
+     * its handle of the engine, only for the log) of another shard.
+     */
+    TransferFuture submitCredit(final int source, final int destination, final long amount, final long epoch) {
+        return submit(CREDIT, source, destination, amount, epoch);
+    }
+
+    /**
+     * Returns the amount reserved in the given epoch to the source account.
+     */
+    TransferFuture submitRelease(final int source, final long amount, final long epoch) {
+        return submit(RELEASE, source, -1, amount, epoch);
+    }
+
+    /**
+     * Cuts the snapshot of the given epoch (unless a credit has already cut it) after all previously published
+     * commands. The snapshot is returned by {@link #getSnapshot()} once the future is completed.
+     */
+    TransferFuture submitSnapshot(final long epoch) {
+        return submit(SNAPSHOT, -1, -1, 0, epoch);
+    }
+
+    /**
+     * Returns the last snapshot cut by the owner thread, visible after the completion of
+     * {@link #submitSnapshot(long)}.
+     */
+    BalanceSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns number of the reservations of this shard in the epochs of the same parity as the given one.
+     */
+    long reservations(final long epoch) {
+        return reservations.get((int) epoch & 1);
+    }
+
+    /**
+     * Returns number of the completions applied by this shard of the reservations in the epochs of the same parity as
+     * the given one.
+     */
+    long completions(final long epoch) {
+        return completions.get((int) epoch & 1);
+    }
+
+    /**
+     * Stops the owner thread after all already published commands are applied.
+     */
+    void close() {
+        running = false;
+        LockSupport.unpark(owner);
+
+        try {
+            owner.join();
+        } catch (final InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static <T> T await(final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (final CompletionException exc) {
+            if (exc.getCause() instanceof RuntimeException)
+                throw (RuntimeException) exc.getCause();
+
+            throw exc;
+        }
+    }
+
+    private TransferFuture submit(final int type, final int source, final int destination, final long amount) {
+        return submit(type, source, destination, amount, 0);
+    }
+
+    private TransferFuture submit(final int type, final int source, final int destination, final long amount,
+                                  final long epoch) {
+        final TransferFuture future = new TransferFuture(currency);
+
+        final long sequence = claim();
+        final Slot slot = ring[(int) sequence & mask];
+        slot.type = type;
+        slot.source = source;
+        slot.destination = destination;
+        slot.amount = amount;
+        slot.epoch = epoch;
+        slot.transferFuture = future;
+        publish(slot, sequence);
+
+        return future;
+    }
+
+    private long claim() {
+        final long sequence = nextSequence.getAndIncrement();
+
+        int attempt = 0;
+        while (sequence - ring.length > consumedSequence.get())
+            waitStrategy.idle(attempt++);
+
+        if (!running) {
+            final Slot slot = ring[(int) sequence & mask];
+            slot.type = CANCELLED;
+            publish(slot, sequence);
+
+            throw new IllegalStateException("Transfer engine is closed");
+        }
+
+        return sequence;
+    }
+
+    private void publish(final Slot slot, final long sequence) {
+        slot.publishedSequence = sequence;
+
+        if (waitStrategy.wakesConsumer())
+            LockSupport.unpark(owner);
+    }
+
+    private void consume() {
+        long sequence = 0;
+
+        while (true) {
+            final Slot slot = ring[(int) sequence & mask];
+
+            int attempt = 0;
+            while (slot.publishedSequence != sequence) {
+                if (!running && sequence >= nextSequence.get())
+                    return;
+
+                waitStrategy.idle(attempt++);
+            }
+
+            try {
+                apply(slot);
+            } catch (final RuntimeException exc) {
+                logger.error("Cannot apply command {}", sequence, exc);
+                completeExceptionally(slot, exc);
+            }
+
+            slot.transferFuture = null;
+            consumedSequence.lazySet(sequence);
+            sequence++;
+        }
+    }
+
+    private void apply(final Slot slot) {
+        switch (slot.type) {
+            case TRANSFER:
+                slot.transferFuture.complete(applyTransfer(slot.source, slot.destination, slot.amount,
+                        slot.transferFuture));
+                break;
+            case RESERVE:
+                slot.transferFuture.complete(applyReserve(slot.source, slot.amount, slot.transferFuture));
+                break;
+            case CREDIT:
+                slot.transferFuture.complete(applyCredit(slot.source, slot.destination, slot.amount, slot.epoch));
+                break;
+            case RELEASE:
+                versions.beginWrite(slot.source, slot.source);
+                store.deposit(slot.source, slot.amount);
+                versions.endWrite(slot.source, slot.source);
+                completed(slot.source, slot.amount, slot.epoch);
+                slot.transferFuture.complete(TransferOutcome.OK);
+                break;
+            case SNAPSHOT:
+                cut(slot.epoch);
+                slot.transferFuture.complete(TransferOutcome.OK);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private TransferOutcome applyTransfer(final int source, final int destination, final long amount,
+                                          final TransferFuture future) {
+        if (store.getBalance(source) < amount)
+            return future.insufficientFunds(store.getBalance(source));
+
+        if (store.getBalance(destination) > Long.MAX_VALUE - amount)
+            return TransferOutcome.OVERFLOW;
+
+        if (transferLog != null)
+            transferLog.append(handleOf(source), handleOf(destination), amount);
+
+        versions.beginWrite(source, destination);
+        store.withdraw(source, amount);
+        store.deposit(destination, amount);
+        versions.endWrite(source, destination);
+
+        if (auditSink != null) {
+            auditSink.transferred(accountIds, source, destination, currency, amount, store.getBalance(source),
+                    store.getBalance(destination));
+        }
+
+        return TransferOutcome.OK;
+    }
+
+    private TransferOutcome applyReserve(final int source, final long amount, final TransferFuture future) {
+        if (store.getBalance(source) < amount)
+            return future.insufficientFunds(store.getBalance(source));
+
+        versions.beginWrite(source, source);
+        store.withdraw(source, amount);
+        versions.endWrite(source, source);
+
+        final int parity = (int) epoch & 1;
+        reservations.lazySet(parity, reservations.get(parity) + 1);
+        future.epoch = epoch;
+
+        return TransferOutcome.OK;
+    }
+
+    private TransferOutcome applyCredit(final int sourceHandle, final int destination, final long amount,
+                                        final long reserveEpoch) {
+        // the reservation is after the cut of its shard, so the credit has to be after the cut of this shard
+        cut(reserveEpoch);
+
+        if (store.getBalance(destination) > Long.MAX_VALUE - amount)
+            return TransferOutcome.OVERFLOW;
+
+        // the credit makes the transfer visible, so it is logged here: after the reserve and before any transfer which
+        // spends the credited money
+        if (transferLog != null)
+            transferLog.append(sourceHandle, handleOf(destination), amount);
+
+        versions.beginWrite(destination, destination);
+        store.deposit(destination, amount);
+        versions.endWrite(destination, destination);
+        completed(destination, amount, reserveEpoch);
+
+        return TransferOutcome.OK;
+    }
+
+    /**
+     * Opens the snapshot of the epoch, unless it has already been cut. The previous snapshot has already been closed
+     * by the engine (or abandoned, when its opening failed).
+     */
+    private void cut(final long newEpoch) {
+        if (newEpoch <= epoch)
+            return;
+
+        if (snapshot != null)
+            snapshot.close();
+
+        snapshot = versions.openSnapshot();
+        epoch = newEpoch;
+    }
+
+    /**
+     * Counts the completion of the reservation of the given epoch, which has deposited the amount to the account. When
+     * the reservation was before the cut of this shard, the amount is added to the snapshot too.
+     */
+    private void completed(final int account, final long amount, final long reserveEpoch) {
+        if (reserveEpoch < epoch)
+            versions.addToSnapshot(account, amount);
+
+        final int parity = (int) reserveEpoch & 1;
+        completions.lazySet(parity, completions.get(parity) + 1);
+    }
+
+    private int handleOf(final int account) {
+        return handles == null ? account : handles[account];
+    }
+
+    private static void completeExceptionally(final Slot slot, final RuntimeException exc) {
+        if (slot.transferFuture != null)
+            slot.transferFuture.completeExceptionally(exc);
+    }
+
+    /**
+     * Slot of the ring buffer. Fields are written by the producer before the volatile write of
+     * {@link #publishedSequence} and read by the owner thread after reading it, which makes them visible.
+     */
+    private static final class Slot {
+        private volatile long publishedSequence = -1;
+        private int type;
+        private int source;
+        private int destination;
+        private long amount;
+        private long epoch;
+        private TransferFuture transferFuture;
+    }
+
+    /**
+     * Future of a command, completed by the owner thread with the outcome. When the source account has not enough
+     * money, it also keeps the balance of the account from the moment of the rejection: the message is formatted only
+     * by {@link #toResult()}, on the thread which needs it.
+     */
+    static final class TransferFuture extends CompletableFuture<TransferOutcome> {
+        private final CurrencyUnit currency;
+        /**
+         * Written by the owner thread before the completion, which makes it visible to the threads which waited for it.
+         */
+        private long balance;
+        /**
+         * Epoch of the reservation, written by the owner thread like the balance.
+         */
+        private long epoch;
+
+        private TransferFuture(final CurrencyUnit currency) {
+            this.currency = currency;
+        }
+
+        long getEpoch() {
+            return epoch;
+        }
+
+        private TransferOutcome insufficientFunds(final long balance) {
+            this.balance = balance;
+            return TransferOutcome.INSUFFICIENT_FUNDS;
+        }
+
+        /**
+         * Waits for the outcome and returns it as the result, with the message of the rejection.
+         */
+        TransferResult toResult() {
+            switch (await(this)) {
+                case OK:
+                    return TransferResult.OK;
+                case INSUFFICIENT_FUNDS:
+                    return TransferResult.insufficientAmount(currency, balance);
+                default:
+                    return TransferResult.OVERFLOW;
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package pl.kamylus.bank;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Fixed-point transfer engine without monitors. The source account is debited with a compare-and-set loop, which
+ * checks the balance against the amount on every attempt, so the account can never go below zero and concurrent
+ * updates are never lost (see {@link AtomicBalance}). The destination account is then credited atomically.
+ * Hot accounts can be configured to use {@link StripedBalance}. Balances are kept in an array indexed by the handles of
+ * {@link AccountIndex}.
+ * <p>
+ * Both balances of the transfer change atomically for the readers: the transfer is a concurrent writer of
+ * {@link BalanceVersions}, which counts the writers of the stripes of both accounts without making them wait for each
+ * other, and readers wait until the stripes have no writers. So reads of several accounts never see a transfer in
+ * flight (debited and not yet credited) and the engine takes snapshots of all balances. Striped accounts are versioned
+ * by their stripes, so deposits into a hot account do not serialize on a single version.
+ * <p>
+ * Money only moves between accounts, so no balance can exceed the sum of all positive starting balances. This sum is
+ * checked at construction, therefore the credit can never overflow.
+ */
+class LockFreeTransferEngine implements TransferEngine {
+    private final CurrencyUnit currency;
+    private final AccountIndex index;
+    private final ConcurrentBalance[] balances;
+    private final BalanceVersions versions;
+    private final TransferAuditSink auditSink;
+    private final IntFunction<String> accountIds;
+    private final TransferLog transferLog;
+
+    LockFreeTransferEngine(final List<Account> accounts, final BankConfiguration configuration) {
+        this(accounts, configuration, null);
+    }
+
+    /**
+     * @param transferLog logs the transfers after the debit and before the credit, may be null
+     */
+    LockFreeTransferEngine(final List<Account> accounts, final BankConfiguration configuration,
+                           final TransferLog transferLog) {
+        Objects.requireNonNull(accounts);
+        Objects.requireNonNull(configuration);
+
+        this.currency = configuration.getCurrency();
+        this.index = new AccountIndex(accounts);
+        this.balances = prepareBalances(accounts, configuration);
+        this.versions = new BalanceVersions(BalanceVersions.stripesFor(balances.length), balances.length,
+                account -> balances[account].get(),
+                account -> balances[account] instanceof StripedBalance ? (StripedBalance) balances[account] : null);
+        this.auditSink = configuration.getAuditSink();
+        this.accountIds = index::getAccountId;
+        this.transferLog = transferLog;
+    }
+
+    private static ConcurrentBalance[] prepareBalances(final List<Account> accounts,
+                                                       final BankConfiguration configuration) {
+        final ConcurrentBalance[] result = new ConcurrentBalance[accounts.size()];
+        long total = 0;
+        int handle = 0;
+
+        for (final Account account : accounts) {
+            final long balance = configuration.getCurrency().toMinorUnits(account.getMoneyAmount());
+            final int stripes = configuration.getStripes(account.getId());
+            result[handle++] = stripes > 1
+                    ? new StripedBalance(balance, stripes)
+                    : new AtomicBalance(balance);
+
+            total = addToTotal(total, balance);
+        }
+
+        return result;
+    }
+
+    private static long addToTotal(final long total, final long balance) {
+        if (balance <= 0)
+            return total;
+
+        try {
+            return Math.addExact(total, balance);
+        } catch (final ArithmeticException exc) {
+            throw new IllegalArgumentException("Total amount of the money on the accounts is out of range");
+        }
+    }
+
+    @Override
+    public int handleOf(final CharSequence accountId) {
+        return index.handleOf(accountId);
+    }
+
+    @Override
+    public String getAccountId(final int account) {
+        return index.getAccountId(account);
+    }
+
+    @Override
+    public int accountsCount() {
+        return balances.length;
+    }
+
+    @Override
+    public CurrencyUnit getCurrency() {
+        return currency;
+    }
+
+    @Override
+    public long getBalance(final int account) {
+        return versions.read(account);
+    }
+
+    @Override
+    public void readBalances(final int[] accounts, final long[] balances) {
+        versions.read(accounts, balances);
+    }
+
+    /**
+     * Deposits or withdraws the difference, the total of the restored balances is checked like at construction.
+     *
+     * @throws IllegalArgumentException when the total is out of range or a balance would go below zero
+     */
+    @Override
+    public void restoreBalances(final IntToLongFunction balances) {
+        long total = 0;
+        for (int i = 0; i < this.balances.length; ++i)
+            total = addToTotal(total, balances.applyAsLong(i));
+
+        for (int i = 0; i < this.balances.length; ++i) {
+            final long difference = Math.subtractExact(balances.applyAsLong(i), this.balances[i].get());
+
+            if (difference > 0) {
+                this.balances[i].deposit(difference);
+            } else if (difference < 0 && !this.balances[i].tryWithdraw(-difference)) {
+                throw new IllegalArgumentException("Balance of account " + index.getAccountId(i)
+                        + " cannot be restored below zero");
+            }
+        }
+    }
+
+    @Override
+    public BalanceSnapshot openSnapshot() {
+        return versions.openSnapshot();
+    }
+
+    @Override
+    public TransferOutcome tryTransfer(final int sourceHandle, final int destinationHandle, final long amount) {
+        final ConcurrentBalance source = balances[sourceHandle];
+        final ConcurrentBalance destination = balances[destinationHandle];
+
+        // rejected without changing the versions, which would make the readers retry
+        if (source.get() < amount)
+            return TransferOutcome.INSUFFICIENT_FUNDS;
+
+        final boolean withdrawn;
+        versions.beginWrite(sourceHandle, destinationHandle);
+        try {
+            withdrawn = source.tryWithdraw(amount);
+            if (withdrawn) {
+                appendToLog(source, sourceHandle, destinationHandle, amount);
+                destination.deposit(amount);
+            }
+        } finally {
+            versions.endWrite(sourceHandle, destinationHandle);
+        }
+
+        if (!withdrawn)
+            return TransferOutcome.INSUFFICIENT_FUNDS;
+
+        if (auditSink != null) {
+            auditSink.transferred(accountIds, sourceHandle, destinationHandle, currency, amount, source.get(),
+                    destination.get());
+        }
+
+        return TransferOutcome.OK;
+    }
+
+    /**
+     * Logs the transfer whose amount has been debited and not yet credited, so every transfer which spends the credit
+     * is logged after it. When the log fails, the amount goes back to the source account.
+     */
+    private void appendToLog(final ConcurrentBalance source, final int sourceHandle, final int destinationHandle,
+                             final long amount) {
+        if (transferLog == null)
+            return;
+
+        try {
+            transferLog.append(sourceHandle, destinationHandle, amount);
+        } catch (final RuntimeException exc) {
+            source.deposit(amount);
+            throw exc;
+        }
+    }
+}
@@ -1,21 +1,62 @@
 package pl.kamylus.bank;
 
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.util.LinkedList;
+import java.util.Locale;
 
 class Main {
     private static final int SERVER_PORT = 4567;
+    private static final int BINARY_SERVER_PORT = 4568;
+    private static final CurrencyUnit CURRENCY = new CurrencyUnit("PLN", 2);
+    private static final Path JOURNAL_FILE = Path.of("transfers.journal");
+    private static final Path SNAPSHOT_FILE = Path.of("accounts.snapshot");
+    private static final Path HISTORY_FILE = Path.of("accounts.history");
 
+    /**
+     * Starts the Spark server, with the {@code jdk} argument the JDK HTTP server (optionally followed by the executor
+     * type: {@code platform} or {@code virtual}) or with the {@code nio} argument the NIO server. The binary protocol
+     * server runs alongside on its own port, with the same bank.
+     */
     public static void main(String[] args) {
-        Server.start(SERVER_PORT, prepareBank());
+        final FixedPointBank bank = prepareBank();
+        TransferBinaryServer.start(bank, HttpServerConfiguration.builder()
+                .port(BINARY_SERVER_PORT)
+                .build());
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("nio")) {
+            TransferNioServer.start(bank, HttpServerConfiguration.builder()
+                    .port(SERVER_PORT)
+                    .build());
+            return;
+        }
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("jdk")) {
+            final HttpExecutorType executorType = args.length > 1
+                    ? HttpExecutorType.valueOf(args[1].toUpperCase(Locale.ROOT))
+                    : HttpExecutorType.PLATFORM;
+
+            TransferHttpServer.start(bank, HttpServerConfiguration.builder()
+                    .port(SERVER_PORT)
+                    .executorType(executorType)
+                    .build());
+            return;
+        }
+
+        Server.start(SERVER_PORT, bank);
     }
 
-    private static Bank prepareBank() {
+    private static FixedPointBank prepareBank() {
         final LinkedList<Account> accounts = new LinkedList<>();
         accounts.add(new Account("acc1", new BigDecimal("100")));
         accounts.add(new Account("acc2", new BigDecimal("200")));
         accounts.add(new Account("acc3", BigDecimal.ZERO));
 
-        return new Bank(accounts);
+        return new FixedPointBank(accounts, BankConfiguration.builder(CURRENCY)
+                .journal(JOURNAL_FILE)
+                .snapshot(SNAPSHOT_FILE)
+                .historyFile(HISTORY_FILE)
+                .auditSink(TransferAuditSink.shared())
+                .build());
     }
 }
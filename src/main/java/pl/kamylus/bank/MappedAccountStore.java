@@ -0,0 +1,396 @@
+package pl.kamylus.bank;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AccountStore} whose account table is a memory-mapped file, so the balances are persisted in place: a deposit
+ * or a withdrawal is a store into the mapped record of the account (release store, balances are read with acquire
+ * loads), the page cache writes it to the file and a background thread forces the records to the storage device every
+ * checkpoint interval.
+ * <p>
+ * The file contains a header (magic number, format version, number of accounts, scale of the currency, capacity of
+ * the index and length of the ids), the fixed-width records of the accounts (balance, offset and length of the id),
+ * the open-addressing index laid out like in {@link OffHeapAccountStore} and the ids as UTF-16 characters. A new table
+ * is built in a temporary file and atomically moved, so a crash cannot leave a partially built table. An existing
+ * table is mapped as it is: the index is not rebuilt and the starting amounts of the accounts are ignored, only the ids
+ * are compared with the accounts, which have to be the same and in the same order.
+ * <p>
+ * After a crash of the process the table keeps every completed deposit and withdrawal (the page cache outlives the
+ * process), after a crash of the operating system the balances are those of the last checkpoint at the latest.
+ * A transfer updates two records one after another, so a crash between them can leave a half of a transfer.
+ */
+final class MappedAccountStore implements AccountStore {
+    static final int MAX_ACCOUNTS = OffHeapAccountStore.MAX_ACCOUNTS;
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedAccountStore.class);
+
+    private static final int MAGIC = 0x4D544254;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int SIZE_OFFSET = 2 * Integer.BYTES;
+    private static final int SCALE_OFFSET = 3 * Integer.BYTES;
+    private static final int INDEX_CAPACITY_OFFSET = 4 * Integer.BYTES;
+    private static final int IDS_LENGTH_OFFSET = 5 * Integer.BYTES;
+
+    private static final int RECORD_BYTES = Long.BYTES + 2 * Integer.BYTES;
+    private static final int ID_OFFSET = Long.BYTES;
+    private static final int ID_LENGTH = Long.BYTES + Integer.BYTES;
+    private static final int INDEX_ENTRY_BYTES = 2 * Integer.BYTES;
+
+    private static final VarHandle BALANCE = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int size;
+    private final MappedByteBuffer records;
+    private final ByteBuffer index;
+    private final ByteBuffer ids;
+    private final int indexMask;
+    private final ScheduledExecutorService checkpointScheduler;
+
+    /**
+     * Maps the account table from the file, creating it with the starting amounts of the accounts when it does not
+     * exist.
+     *
+     * @param checkpointIntervalMillis delay between forcing the balances to the storage device, 0 to force them only
+     *                                 when the store is closed
+     * @throws IllegalArgumentException when the account ids are duplicated
+     * @throws IllegalStateException    when the existing table does not match the accounts or the currency
+     * @throws UncheckedIOException     when the table cannot be created or mapped
+     */
+    MappedAccountStore(final Path file, final List<Account> accounts, final CurrencyUnit currency,
+                       final long checkpointIntervalMillis) {
+        Objects.requireNonNull(file);
+        Objects.requireNonNull(accounts);
+        Objects.requireNonNull(currency);
+
+        if (checkpointIntervalMillis < 0) {
+            throw new IllegalArgumentException("Checkpoint interval (" + checkpointIntervalMillis
+                    + " ms) cannot be negative");
+        }
+
+        final long start = System.nanoTime();
+        final boolean created = !Files.exists(file);
+        if (created)
+            create(file, accounts, currency);
+
+        this.file = file;
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (final IOException exc) {
+            throw new UncheckedIOException("Cannot open the account table " + file, exc);
+        }
+
+        try {
+            final ByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt(0) != MAGIC || header.getInt(Integer.BYTES) != VERSION)
+                throw new IllegalStateException("File " + file + " is not an account table");
+
+            this.size = header.getInt(SIZE_OFFSET);
+            if (size != accounts.size()) {
+                throw new IllegalStateException("Account table " + file + " has " + size + " accounts, expected "
+                        + accounts.size());
+            }
+
+            if (header.getInt(SCALE_OFFSET) != currency.getScale()) {
+                throw new IllegalStateException("Account table " + file + " has scale " + header.getInt(SCALE_OFFSET)
+                        + ", expected " + currency.getScale());
+            }
+
+            final int indexCapacity = header.getInt(INDEX_CAPACITY_OFFSET);
+            final long recordsBytes = (long) size * RECORD_BYTES;
+            final long indexBytes = (long) indexCapacity * INDEX_ENTRY_BYTES;
+            final long idsBytes = (long) header.getInt(IDS_LENGTH_OFFSET) * Character.BYTES;
+            if (channel.size() != HEADER_BYTES + recordsBytes + indexBytes + idsBytes)
+                throw new IllegalStateException("Account table " + file + " is corrupted");
+
+            this.records = map(channel, FileChannel.MapMode.READ_WRITE, HEADER_BYTES, recordsBytes);
+            this.index = map(channel, FileChannel.MapMode.READ_ONLY, HEADER_BYTES + recordsBytes, indexBytes);
+            this.ids = map(channel, FileChannel.MapMode.READ_ONLY, HEADER_BYTES + recordsBytes + indexBytes,
+                    idsBytes);
+            this.indexMask = indexCapacity - 1;
+
+            int accountIndex = 0;
+            for (final Account account : accounts) {
+                if (!idEquals(records, ids, accountIndex++, account.getId())) {
+                    throw new IllegalStateException("Account table " + file + " does not match the accounts: "
+                            + account.getId());
+                }
+            }
+        } catch (final IOException | RuntimeException exc) {
+            closeChannel();
+            if (exc instanceof IOException)
+                throw new UncheckedIOException("Cannot map the account table " + file, (IOException) exc);
+            throw (RuntimeException) exc;
+        }
+
+        logger.info("{} account table {} of {} accounts in {} ms", created ? "Created" : "Mapped", file, size,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        if (checkpointIntervalMillis > 0) {
+            this.checkpointScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "account-table-checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.checkpointScheduler.scheduleWithFixedDelay(this::checkpointQuietly, checkpointIntervalMillis,
+                    checkpointIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.checkpointScheduler = null;
+        }
+    }
+
+    @Override
+    public int indexOf(final CharSequence accountId) {
+        final int hash = AccountIndex.hash(accountId);
+
+        for (int entry = hash & indexMask; ; entry = (entry + 1) & indexMask) {
+            final int accountIndex = index.getInt(entry * INDEX_ENTRY_BYTES + Integer.BYTES) - 1;
+
+            if (accountIndex < 0)
+                return -1;
+
+            if (index.getInt(entry * INDEX_ENTRY_BYTES) == hash && idEquals(records, ids, accountIndex, accountId))
+                return accountIndex;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getAccountId(final int accountIndex) {
+        checkIndex(accountIndex);
+
+        final int start = records.getInt(accountIndex * RECORD_BYTES + ID_OFFSET);
+        final char[] chars = new char[records.getInt(accountIndex * RECORD_BYTES + ID_LENGTH)];
+        for (int i = 0; i < chars.length; ++i)
+            chars[i] = ids.getChar((start + i) * Character.BYTES);
+
+        return new String(chars);
+    }
+
+    @Override
+    public long getBalance(final int accountIndex) {
+        checkIndex(accountIndex);
+
+        return (long) BALANCE.getAcquire(records, accountIndex * RECORD_BYTES);
+    }
+
+    @Override
+    public void deposit(final int accountIndex, final long amount) {
+        validateAmount(amount);
+        checkIndex(accountIndex);
+
+        final int record = accountIndex * RECORD_BYTES;
+        BALANCE.setRelease(records, record, Math.addExact((long) BALANCE.get(records, record), amount));
+    }
+
+    @Override
+    public void withdraw(final int accountIndex, final long amount) {
+        validateAmount(amount);
+        checkIndex(accountIndex);
+
+        final int record = accountIndex * RECORD_BYTES;
+        BALANCE.setRelease(records, record, Math.subtractExact((long) BALANCE.get(records, record), amount));
+    }
+
+    /**
+     * Forces the balances to the storage device.
+     */
+    void checkpoint() {
+        records.force();
+    }
+
+    /**
+     * Stops the checkpoint thread, forces the balances and closes the file. The mapping stays valid until it is
+     * garbage collected, but the store cannot be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (checkpointScheduler != null) {
+            checkpointScheduler.shutdown();
+
+            try {
+                checkpointScheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (final InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        checkpoint();
+        closeChannel();
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (final RuntimeException exc) {
+            logger.error("Cannot force the account table {}", file, exc);
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (final IOException exc) {
+            logger.warn("Cannot close the account table {}", file, exc);
+        }
+    }
+
+    /**
+     * Builds the table in a temporary file, forces it and atomically moves it to the given file.
+     */
+    private static void create(final Path file, final List<Account> accounts, final CurrencyUnit currency) {
+        if (accounts.size() > MAX_ACCOUNTS) {
+            throw new IllegalArgumentException("Number of accounts (" + accounts.size() + ") cannot be greater than "
+                    + MAX_ACCOUNTS);
+        }
+
+        long idsLength = 0;
+        for (final Account account : accounts)
+            idsLength += account.getId().length();
+
+        if (idsLength * Character.BYTES > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Account ids are too long to be stored in the account table");
+
+        final int size = accounts.size();
+        final int indexCapacity = Integer.highestOneBit(Math.max(1, size) * 2 - 1) << 1;
+        final int indexMask = indexCapacity - 1;
+        final long recordsBytes = (long) size * RECORD_BYTES;
+        final long indexBytes = (long) indexCapacity * INDEX_ENTRY_BYTES;
+        final Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                final MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+                final MappedByteBuffer records = map(channel, FileChannel.MapMode.READ_WRITE, HEADER_BYTES,
+                        recordsBytes);
+                final MappedByteBuffer index = map(channel, FileChannel.MapMode.READ_WRITE,
+                        HEADER_BYTES + recordsBytes, indexBytes);
+                final MappedByteBuffer ids = map(channel, FileChannel.MapMode.READ_WRITE,
+                        HEADER_BYTES + recordsBytes + indexBytes, idsLength * Character.BYTES);
+
+                int accountIndex = 0;
+                int idOffset = 0;
+                for (final Account account : accounts) {
+                    final String id = account.getId();
+                    final int record = accountIndex * RECORD_BYTES;
+
+                    for (int i = 0; i < id.length(); ++i)
+                        ids.putChar((idOffset + i) * Character.BYTES, id.charAt(i));
+                    records.putLong(record, account.toMinorUnits(currency));
+                    records.putInt(record + ID_OFFSET, idOffset);
+                    records.putInt(record + ID_LENGTH, id.length());
+                    idOffset += id.length();
+
+                    if (!insertIntoIndex(records, index, ids, indexMask, id, accountIndex))
+                        throw new IllegalArgumentException("Duplicated account id: " + id);
+
+                    accountIndex++;
+                }
+
+                header.putInt(0, MAGIC);
+                header.putInt(Integer.BYTES, VERSION);
+                header.putInt(SIZE_OFFSET, size);
+                header.putInt(SCALE_OFFSET, currency.getScale());
+                header.putInt(INDEX_CAPACITY_OFFSET, indexCapacity);
+                header.putInt(IDS_LENGTH_OFFSET, (int) idsLength);
+
+                records.force();
+                index.force();
+                ids.force();
+                header.force();
+            }
+
+            Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException | RuntimeException exc) {
+            try {
+                Files.deleteIfExists(temporaryFile);
+            } catch (final IOException deleteExc) {
+                exc.addSuppressed(deleteExc);
+            }
+
+            if (exc instanceof IOException)
+                throw new UncheckedIOException("Cannot create the account table " + file, (IOException) exc);
+            throw (RuntimeException) exc;
+        }
+    }
+
+    private static MappedByteBuffer map(final FileChannel channel, final FileChannel.MapMode mode,
+                                        final long position, final long bytes) throws IOException {
+        final MappedByteBuffer buffer = channel.map(mode, position, bytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        return buffer;
+    }
+
+    /**
+     * Returns false if the id is already in the index.
+     */
+    private static boolean insertIntoIndex(final ByteBuffer records, final ByteBuffer index, final ByteBuffer ids,
+                                           final int indexMask, final String accountId, final int accountIndex) {
+        final int hash = AccountIndex.hash(accountId);
+
+        for (int entry = hash & indexMask; ; entry = (entry + 1) & indexMask) {
+            final int existingIndex = index.getInt(entry * INDEX_ENTRY_BYTES + Integer.BYTES) - 1;
+
+            if (existingIndex < 0) {
+                index.putInt(entry * INDEX_ENTRY_BYTES, hash);
+                index.putInt(entry * INDEX_ENTRY_BYTES + Integer.BYTES, accountIndex + 1);
+                return true;
+            }
+
+            if (index.getInt(entry * INDEX_ENTRY_BYTES) == hash && idEquals(records, ids, existingIndex, accountId))
+                return false;
+        }
+    }
+
+    private static boolean idEquals(final ByteBuffer records, final ByteBuffer ids, final int accountIndex,
+                                    final CharSequence accountId) {
+        final int record = accountIndex * RECORD_BYTES;
+        if (records.getInt(record + ID_LENGTH) != accountId.length())
+            return false;
+
+        final int start = records.getInt(record + ID_OFFSET);
+        for (int i = 0; i < accountId.length(); ++i) {
+            if (ids.getChar((start + i) * Character.BYTES) != accountId.charAt(i))
+                return false;
+        }
+
+        return true;
+    }
+
+    private void checkIndex(final int accountIndex) {
+        if (accountIndex < 0 || accountIndex >= size)
+            throw new IndexOutOfBoundsException("Account index " + accountIndex + " out of bounds for " + size);
+    }
+
+    private static void validateAmount(final long amount) {
+        if (amount <= 0)
+            throw new IllegalArgumentException("Amount cannot be less or equal to 0");
+    }
+}
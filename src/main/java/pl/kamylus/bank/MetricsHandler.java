@@ -0,0 +1,30 @@
+package pl.kamylus.bank;
+
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.util.Objects;
+
+/**
+ * Returns metrics of the transfers of the bank in the Prometheus text format (see {@link TransferMetrics}).
+ */
+class MetricsHandler implements Route {
+
+    private final Bank bank;
+
+    MetricsHandler(final Bank bank) {
+        Objects.requireNonNull(bank);
+
+        this.bank = bank;
+    }
+
+    @Override
+    public Object handle(final Request request, final Response response) {
+        final StringBuilder responseBuilder = new StringBuilder(8192);
+        bank.getMetrics().writePrometheus(responseBuilder);
+
+        response.type(TransferMetrics.CONTENT_TYPE);
+        return responseBuilder.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package pl.kamylus.bank;
+
+/**
+ * Acquires monitors of many objects at once. Monitors cannot be acquired in a loop, so they are nested recursively:
+ * the stack depth is equal to the number of objects, which is the reason of {@link Bank#MAX_BATCH_SIZE}.
+ */
+final class MonitorLocks {
+    private MonitorLocks() {
+        throw new UnsupportedOperationException("MonitorLocks class cannot be instantiated");
+    }
+
+    /**
+     * Runs the action holding monitors of all the objects. Objects have to be sorted in the same strictly defined order
+     * which is used by single transfers, to prevent deadlocks.
+     */
+    static void runLocked(final Object[] locks, final Runnable action) {
+        runLocked(locks, 0, action);
+    }
+
+    private static void runLocked(final Object[] locks, final int index, final Runnable action) {
+        if (index == locks.length) {
+            action.run();
+            return;
+        }
+
+        synchronized (locks[index]) {
+            runLocked(locks, index + 1, action);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package pl.kamylus.bank;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Fixed-point transfer engine. Balances are kept as minor units in the {@link AccountStore} and guarded by monitors,
+ * which are locked in strictly defined order (by lock index), like accounts of the {@link BigDecimalBank}.
+ * <p>
+ * Handle of the account is its index in the store. Off-heap balances cannot be locked themselves, so the engine has
+ * an array of lock objects and the account with handle i is guarded by the lock i modulo the number of locks. Up to
+ * {@link #MAX_LOCKS} accounts every account has its own lock, above that accounts share locks (lock striping).
+ * <p>
+ * Balances are read without the locks: the lock stripes are versioned by {@link BalanceVersions}, so a read of several
+ * accounts sees every transfer either completely or not at all. The versions also cut snapshots of all balances.
+ * <p>
+ * Accounts may be kept in different currencies: the amount of a cross-currency transfer is converted by
+ * {@link FixedPointBank} before the accounts are locked, the engine withdraws the amount and deposits the converted
+ * credit.
+ */
+class MonitorTransferEngine implements TransferEngine {
+    static final int MAX_LOCKS = 1 << 16;
+
+    private final CurrencyUnit currency;
+    /**
+     * Currencies of the accounts by handle, null when all accounts are in the bank currency.
+     */
+    private final CurrencyUnit[] accountCurrencies;
+    private final AccountStore store;
+    private final TransferAuditSink auditSink;
+    private final IntFunction<String> accountIds;
+    private final Object[] locks;
+    private final int lockMask;
+    private final BalanceVersions versions;
+    private final TransferMetrics metrics;
+    private final TransferLog transferLog;
+
+    MonitorTransferEngine(final List<Account> accounts, final BankConfiguration configuration) {
+        this(accounts, configuration, new TransferMetrics());
+    }
+
+    /**
+     * @param metrics receives the time spent waiting for the locks and holding them
+     */
+    MonitorTransferEngine(final List<Account> accounts, final BankConfiguration configuration,
+                          final TransferMetrics metrics) {
+        this(accounts, configuration, metrics, null);
+    }
+
+    /**
+     * @param transferLog logs the transfers holding the locks of both accounts, may be null
+     */
+    MonitorTransferEngine(final List<Account> accounts, final BankConfiguration configuration,
+                          final TransferMetrics metrics, final TransferLog transferLog) {
+        Objects.requireNonNull(accounts);
+        Objects.requireNonNull(configuration);
+        Objects.requireNonNull(metrics);
+
+        this.currency = configuration.getCurrency();
+        this.accountCurrencies = FxRates.accountCurrencies(accounts, currency);
+        this.store = configuration.getAccountStoreType().create(accounts, configuration);
+        this.auditSink = configuration.getAuditSink();
+        this.accountIds = store::getAccountId;
+
+        final int lockCount = Integer.highestOneBit(Math.max(1, Math.min(store.size(), MAX_LOCKS)) * 2 - 1);
+        this.locks = new Object[lockCount];
+        for (int i = 0; i < locks.length; ++i)
+            locks[i] = new Object();
+        this.lockMask = lockCount - 1;
+        this.versions = new BalanceVersions(lockCount, store.size(), store::getBalance);
+        this.metrics = metrics;
+        this.transferLog = transferLog;
+    }
+
+    @Override
+    public int handleOf(final CharSequence accountId) {
+        return store.indexOf(accountId);
+    }
+
+    @Override
+    public String getAccountId(final int account) {
+        return store.getAccountId(account);
+    }
+
+    @Override
+    public int accountsCount() {
+        return store.size();
+    }
+
+    @Override
+    public CurrencyUnit getCurrency() {
+        return currency;
+    }
+
+    @Override
+    public CurrencyUnit getCurrency(final int account) {
+        return accountCurrencies == null ? currency : accountCurrencies[account];
+    }
+
+    @Override
+    public long getBalance(final int account) {
+        return versions.read(account);
+    }
+
+    @Override
+    public void readBalances(final int[] accounts, final long[] balances) {
+        versions.read(accounts, balances);
+    }
+
+    @Override
+    public void restoreBalances(final IntToLongFunction balances) {
+        for (int i = 0; i < store.size(); ++i)
+            store.setBalance(i, balances.applyAsLong(i));
+    }
+
+    @Override
+    public BalanceSnapshot openSnapshot() {
+        return versions.openSnapshot();
+    }
+
+    @Override
+    public TransferOutcome tryTransfer(final int source, final int destination, final long amount) {
+        return tryTransfer(source, destination, amount, amount);
+    }
+
+    @Override
+    public TransferOutcome tryTransfer(final int source, final int destination, final long amount,
+                                       final long credit) {
+        final int sourceLock = source & lockMask;
+        final int destinationLock = destination & lockMask;
+
+        final long start = System.nanoTime();
+        final long locked;
+        final TransferOutcome outcome;
+        if (sourceLock == destinationLock) {
+            synchronized (locks[sourceLock]) {
+                locked = System.nanoTime();
+                outcome = transferLocked(source, destination, amount, credit);
+            }
+        } else {
+            synchronized (locks[Math.min(sourceLock, destinationLock)]) {
+                synchronized (locks[Math.max(sourceLock, destinationLock)]) {
+                    locked = System.nanoTime();
+                    outcome = transferLocked(source, destination, amount, credit);
+                }
+            }
+        }
+        metrics.locked(locked - start, System.nanoTime() - locked);
+
+        return outcome;
+    }
+
+    /**
+     * Locks all the accounts of the batch once (in the same order as single transfers) and performs the transfers
+     * in the given order.
+     */
+    @Override
+    public void transferBatch(final int[] sources, final int[] destinations, final long[] amounts,
+                              final TransferResult[] results) {
+        transferBatch(sources, destinations, amounts, amounts, results);
+    }
+
+    @Override
+    public void transferBatch(final int[] sources, final int[] destinations, final long[] amounts,
+                              final long[] credits, final TransferResult[] results) {
+        final int[] lockIndexes = new int[2 * results.length];
+        int lockIndexesCount = 0;
+
+        for (int i = 0; i < results.length; ++i) {
+            if (results[i] == null) {
+                lockIndexes[lockIndexesCount++] = sources[i] & lockMask;
+                lockIndexes[lockIndexesCount++] = destinations[i] & lockMask;
+            }
+        }
+
+        final Object[] batchLocks = Arrays.stream(lockIndexes, 0, lockIndexesCount)
+                .sorted()
+                .distinct()
+                .mapToObj(lockIndex -> locks[lockIndex])
+                .toArray();
+
+        final long start = System.nanoTime();
+        final long[] locked = new long[1];
+        MonitorLocks.runLocked(batchLocks, () -> {
+            locked[0] = System.nanoTime();
+            for (int i = 0; i < results.length; ++i) {
+                if (results[i] == null) {
+                    final TransferOutcome outcome = transferLocked(sources[i], destinations[i], amounts[i],
+                            credits[i]);
+                    results[i] = outcome.isSuccess() ? TransferResult.OK : rejection(outcome, sources[i]);
+                }
+            }
+        });
+        metrics.locked(locked[0] - start, System.nanoTime() - locked[0]);
+    }
+
+    /**
+     * Closes the account store. Transfers have to be stopped before.
+     */
+    @Override
+    public void close() {
+        store.close();
+    }
+
+    private TransferOutcome transferLocked(final int source, final int destination, final long amount,
+                                           final long credit) {
+        if (store.getBalance(source) < amount)
+            return TransferOutcome.INSUFFICIENT_FUNDS;
+
+        if (store.getBalance(destination) > Long.MAX_VALUE - credit)
+            return TransferOutcome.OVERFLOW;
+
+        if (transferLog != null)
+            transferLog.append(source, destination, amount);
+
+        versions.beginWrite(source, destination);
+        store.withdraw(source, amount);
+        store.deposit(destination, credit);
+        versions.endWrite(source, destination);
+
+        if (auditSink != null) {
+            auditSink.transferred(accountIds, source, destination, currency, amount, store.getBalance(source),
+                    store.getBalance(destination));
+        }
+
+        return TransferOutcome.OK;
+    }
+}
@@ -0,0 +1,330 @@
+package pl.kamylus.bank;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * TCP server built directly on NIO selectors, shared by {@link TransferNioServer} and {@link TransferBinaryServer},
+ * which provide the {@link RequestHandler} of their protocol.
+ * <p>
+ * An acceptor thread hands the connections over to a fixed number of event loops, each with its own selector and
+ * handler. Every connection has direct buffers for the requests and the responses. All the complete requests in
+ * the input buffer are handled and their responses are written at once (pipelining), as long as the output buffer
+ * has room for another response. When the socket cannot take all the responses, the connection is not read until it
+ * can. Requests are handled by the event loops, so a slow request stalls all connections of its loop.
+ */
+final class NioServer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(NioServer.class);
+
+    /**
+     * Handles requests of the connections of one event loop, not thread-safe.
+     */
+    interface RequestHandler {
+        /**
+         * Returned when the connection has to be closed after the response.
+         */
+        int CLOSE = -1;
+
+        /**
+         * Handles the request starting at position {@code from} of the input buffer (received bytes end at
+         * {@code to}, positions are absolute) and puts the response into the output buffer, which has room for at
+         * least the maximum response. Returns length of the request, 0 when it has not been received completely yet
+         * or {@link #CLOSE}. A request which would not fit into the input buffer has to be rejected with
+         * {@link #CLOSE}.
+         */
+        int handle(ByteBuffer input, int from, int to, ByteBuffer output);
+    }
+
+    private final String name;
+    private final int inputBufferBytes;
+    private final int outputBufferBytes;
+    private final int maxResponseBytes;
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] eventLoops;
+    private final Thread acceptor;
+    private volatile boolean running = true;
+
+    private NioServer(final String name, final HttpServerConfiguration configuration, final int inputBufferBytes,
+                      final int outputBufferBytes, final int maxResponseBytes,
+                      final Supplier<RequestHandler> handlerFactory) throws IOException {
+        this.name = name;
+        this.inputBufferBytes = inputBufferBytes;
+        this.outputBufferBytes = outputBufferBytes;
+        this.maxResponseBytes = maxResponseBytes;
+        this.serverChannel = ServerSocketChannel.open();
+        this.eventLoops = new EventLoop[configuration.getEventLoops()];
+
+        try {
+            serverChannel.bind(new InetSocketAddress(configuration.getPort()), configuration.getBacklog());
+            for (int i = 0; i < eventLoops.length; ++i)
+                eventLoops[i] = new EventLoop(i, handlerFactory.get());
+        } catch (final IOException exc) {
+            closeQuietly(serverChannel);
+            for (final EventLoop eventLoop : eventLoops) {
+                if (eventLoop != null)
+                    closeQuietly(eventLoop.selector);
+            }
+            throw exc;
+        }
+
+        this.acceptor = new Thread(this::accept, name + "-acceptor");
+    }
+
+    /**
+     * Binds the port and starts the threads of the server (they keep the JVM running until the server is closed).
+     *
+     * @param name             prefix of the names of the threads
+     * @param inputBufferBytes size of the input buffer of a connection, the longest request
+     * @param maxResponseBytes the longest response, at most the size of the output buffer
+     * @param handlerFactory   creates handler of every event loop
+     */
+    static NioServer start(final String name, final HttpServerConfiguration configuration,
+                           final int inputBufferBytes, final int outputBufferBytes, final int maxResponseBytes,
+                           final Supplier<RequestHandler> handlerFactory) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(configuration);
+        Objects.requireNonNull(handlerFactory);
+
+        if (inputBufferBytes < 1 || maxResponseBytes < 1 || maxResponseBytes > outputBufferBytes) {
+            throw new IllegalArgumentException("Buffers have to be positive and the maximum response cannot be "
+                    + "longer than the output buffer");
+        }
+
+        final NioServer server;
+        try {
+            server = new NioServer(name, configuration, inputBufferBytes, outputBufferBytes, maxResponseBytes,
+                    handlerFactory);
+        } catch (final IOException exc) {
+            throw new UncheckedIOException("Cannot start the server on port " + configuration.getPort(), exc);
+        }
+
+        for (final EventLoop eventLoop : server.eventLoops)
+            eventLoop.thread.start();
+        server.acceptor.start();
+
+        return server;
+    }
+
+    int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections, closes the open ones and waits for the threads.
+     */
+    @Override
+    public void close() {
+        running = false;
+        closeQuietly(serverChannel);
+
+        try {
+            acceptor.join();
+            for (final EventLoop eventLoop : eventLoops) {
+                eventLoop.selector.wakeup();
+                eventLoop.thread.join();
+            }
+        } catch (final InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void accept() {
+        int nextEventLoop = 0;
+
+        while (running) {
+            try {
+                final SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+                eventLoops[nextEventLoop].register(channel);
+                nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+            } catch (final ClosedChannelException exc) {
+                return;
+            } catch (final IOException exc) {
+                logger.warn("Server {} cannot accept a connection", name, exc);
+            }
+        }
+    }
+
+    private static void closeQuietly(final Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (final IOException exc) {
+            logger.debug("Cannot close {}", closeable, exc);
+        }
+    }
+
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> newChannels = new ConcurrentLinkedQueue<>();
+        private final RequestHandler handler;
+        private final Consumer<SelectionKey> keyHandler = this::handle;
+        private final Thread thread;
+
+        EventLoop(final int index, final RequestHandler handler) throws IOException {
+            this.selector = Selector.open();
+            this.handler = Objects.requireNonNull(handler);
+            this.thread = new Thread(this, name + "-loop-" + index);
+        }
+
+        void register(final SocketChannel channel) {
+            newChannels.add(channel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select(keyHandler);
+                    registerNewChannels();
+                }
+            } catch (final IOException exc) {
+                logger.error("Event loop {} failed", thread.getName(), exc);
+            } finally {
+                for (final SelectionKey key : selector.keys())
+                    closeQuietly(key.channel());
+                for (SocketChannel channel = newChannels.poll(); channel != null; channel = newChannels.poll())
+                    closeQuietly(channel);
+                closeQuietly(selector);
+            }
+        }
+
+        private void registerNewChannels() {
+            for (SocketChannel channel = newChannels.poll(); channel != null; channel = newChannels.poll()) {
+                try {
+                    final SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                    key.attach(new Connection(channel, key, handler));
+                } catch (final IOException exc) {
+                    closeQuietly(channel);
+                }
+            }
+        }
+
+        private void handle(final SelectionKey key) {
+            final Connection connection = (Connection) key.attachment();
+
+            try {
+                if (key.isReadable())
+                    connection.read();
+                else if (key.isWritable())
+                    connection.processAndWrite();
+            } catch (final IOException | RuntimeException exc) {
+                logger.debug("Closing connection {}", key.channel(), exc);
+                connection.close();
+            }
+        }
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final RequestHandler handler;
+        private final ByteBuffer input;
+        private final ByteBuffer output;
+        private boolean closing;
+
+        Connection(final SocketChannel channel, final SelectionKey key, final RequestHandler handler) {
+            this.channel = channel;
+            this.key = key;
+            this.handler = handler;
+            this.input = ByteBuffer.allocateDirect(inputBufferBytes);
+            this.output = ByteBuffer.allocateDirect(outputBufferBytes);
+        }
+
+        void read() throws IOException {
+            if (channel.read(input) < 0) {
+                close();
+                return;
+            }
+
+            processAndWrite();
+        }
+
+        /**
+         * Handles the complete requests, writes the responses and selects what to wait for: more requests, room in
+         * the socket for the rest of the responses or nothing (the connection is closed).
+         */
+        void processAndWrite() throws IOException {
+            while (true) {
+                final boolean outputFull = process();
+
+                output.flip();
+                channel.write(output);
+                final boolean pendingOutput = output.hasRemaining();
+                output.compact();
+
+                if (pendingOutput) {
+                    setInterest(SelectionKey.OP_WRITE);
+                    return;
+                }
+
+                if (closing) {
+                    close();
+                    return;
+                }
+
+                if (!outputFull) {
+                    setInterest(SelectionKey.OP_READ);
+                    return;
+                }
+            }
+        }
+
+        void close() {
+            key.cancel();
+            closeQuietly(channel);
+        }
+
+        private void setInterest(final int operations) {
+            if (key.interestOps() != operations)
+                key.interestOps(operations);
+        }
+
+        /**
+         * Returns true when processing stopped because there is no room for another response.
+         */
+        private boolean process() {
+            input.flip();
+
+            boolean outputFull = false;
+            while (!closing && input.hasRemaining()) {
+                if (output.remaining() < maxResponseBytes) {
+                    outputFull = true;
+                    break;
+                }
+
+                final int consumed = handler.handle(input, input.position(), input.limit(), output);
+                if (consumed == RequestHandler.CLOSE) {
+                    closing = true;
+                    input.position(input.limit());
+                } else if (consumed == 0) {
+                    break;
+                } else {
+                    input.position(input.position() + consumed);
+                }
+            }
+
+            input.compact();
+            return outputFull;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package pl.kamylus.bank;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * {@link AccountStore} keeping all the data in direct memory, so tens of millions of accounts do not load the Java
+ * heap and the garbage collector. Per account it needs a 16-byte slot, 2 bytes per character of the id and
+ * 16 bytes of the index on average.
+ * <p>
+ * Every account has a fixed-width slot in a direct buffer: balance, offset and length of the id, so a lookup touches
+ * the index entry, the slot and the id only. Ids are kept as UTF-16 characters in another buffer, one after another,
+ * so they can be compared with a {@link String} without decoding. The index is laid out like {@link AccountIndex},
+ * but in direct memory.
+ */
+class OffHeapAccountStore implements AccountStore {
+    /**
+     * Limited by the size of a single direct buffer of the index.
+     */
+    static final int MAX_ACCOUNTS = 1 << 26;
+
+    private static final int SLOT_BYTES = Long.BYTES + 2 * Integer.BYTES;
+    private static final int ID_OFFSET = Long.BYTES;
+    private static final int ID_LENGTH = Long.BYTES + Integer.BYTES;
+    private static final int INDEX_ENTRY_BYTES = 2 * Integer.BYTES;
+
+    private final int size;
+    private final ByteBuffer slots;
+    private final ByteBuffer ids;
+    private final ByteBuffer index;
+    private final int indexMask;
+
+    OffHeapAccountStore(final List<Account> accounts, final CurrencyUnit currency) {
+        Objects.requireNonNull(accounts);
+        Objects.requireNonNull(currency);
+
+        if (accounts.size() > MAX_ACCOUNTS) {
+            throw new IllegalArgumentException("Number of accounts (" + accounts.size() + ") cannot be greater than "
+                    + MAX_ACCOUNTS);
+        }
+
+        long idsLength = 0;
+        for (final Account account : accounts)
+            idsLength += account.getId().length();
+
+        if (idsLength * Character.BYTES > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Account ids are too long to be stored off-heap");
+
+        this.size = accounts.size();
+        this.slots = allocate((long) size * SLOT_BYTES);
+        this.ids = allocate(idsLength * Character.BYTES);
+
+        final int indexCapacity = Integer.highestOneBit(Math.max(1, size) * 2 - 1) << 1;
+        this.index = allocate((long) indexCapacity * INDEX_ENTRY_BYTES);
+        this.indexMask = indexCapacity - 1;
+
+        int accountIndex = 0;
+        int idOffset = 0;
+        for (final Account account : accounts) {
+            final String id = account.getId();
+            final int slot = accountIndex * SLOT_BYTES;
+
+            for (int i = 0; i < id.length(); ++i)
+                ids.putChar((idOffset + i) * Character.BYTES, id.charAt(i));
+            slots.putLong(slot, account.toMinorUnits(currency));
+            slots.putInt(slot + ID_OFFSET, idOffset);
+            slots.putInt(slot + ID_LENGTH, id.length());
+            idOffset += id.length();
+
+            if (!insertIntoIndex(id, accountIndex))
+                throw new IllegalArgumentException("Duplicated account id: " + id);
+
+            accountIndex++;
+        }
+    }
+
+    private static ByteBuffer allocate(final long bytes) {
+        return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+    }
+
+    @Override
+    public int indexOf(final CharSequence accountId) {
+        final int hash = AccountIndex.hash(accountId);
+
+        for (int entry = hash & indexMask; ; entry = (entry + 1) & indexMask) {
+            final int accountIndex = index.getInt(entry * INDEX_ENTRY_BYTES + Integer.BYTES) - 1;
+
+            if (accountIndex < 0)
+                return -1;
+
+            if (index.getInt(entry * INDEX_ENTRY_BYTES) == hash && idEquals(accountIndex, accountId))
+                return accountIndex;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getAccountId(final int accountIndex) {
+        checkIndex(accountIndex);
+
+        final int start = slots.getInt(accountIndex * SLOT_BYTES + ID_OFFSET);
+        final char[] chars = new char[slots.getInt(accountIndex * SLOT_BYTES + ID_LENGTH)];
+        for (int i = 0; i < chars.length; ++i)
+            chars[i] = ids.getChar((start + i) * Character.BYTES);
+
+        return new String(chars);
+    }
+
+    @Override
+    public long getBalance(final int accountIndex) {
+        checkIndex(accountIndex);
+
+        return slots.getLong(accountIndex * SLOT_BYTES);
+    }
+
+    @Override
+    public void deposit(final int accountIndex, final long amount) {
+        validateAmount(amount);
+        checkIndex(accountIndex);
+
+        final int slot = accountIndex * SLOT_BYTES;
+        slots.putLong(slot, Math.addExact(slots.getLong(slot), amount));
+    }
+
+    @Override
+    public void withdraw(final int accountIndex, final long amount) {
+        validateAmount(amount);
+        checkIndex(accountIndex);
+
+        final int slot = accountIndex * SLOT_BYTES;
+        slots.putLong(slot, Math.subtractExact(slots.getLong(slot), amount));
+    }
+
+    /**
+     * Returns false if the id is already in the index.
+     */
+    private boolean insertIntoIndex(final String accountId, final int accountIndex) {
+        final int hash = AccountIndex.hash(accountId);
+
+        for (int entry = hash & indexMask; ; entry = (entry + 1) & indexMask) {
+            final int existingIndex = index.getInt(entry * INDEX_ENTRY_BYTES + Integer.BYTES) - 1;
+
+            if (existingIndex < 0) {
+                index.putInt(entry * INDEX_ENTRY_BYTES, hash);
+                index.putInt(entry * INDEX_ENTRY_BYTES + Integer.BYTES, accountIndex + 1);
+                return true;
+            }
+
+            if (index.getInt(entry * INDEX_ENTRY_BYTES) == hash && idEquals(existingIndex, accountId))
+                return false;
+        }
+    }
+
+    private boolean idEquals(final int accountIndex, final CharSequence accountId) {
+        final int slot = accountIndex * SLOT_BYTES;
+        if (slots.getInt(slot + ID_LENGTH) != accountId.length())
+            return false;
+
+        final int start = slots.getInt(slot + ID_OFFSET);
+        for (int i = 0; i < accountId.length(); ++i) {
+            if (ids.getChar((start + i) * Character.BYTES) != accountId.charAt(i))
+                return false;
+        }
+
+        return true;
+    }
+
+    private void checkIndex(final int accountIndex) {
+        if (accountIndex < 0 || accountIndex >= size)
+            throw new IndexOutOfBoundsException("Account index " + accountIndex + " out of bounds for " + size);
+    }
+
+    private static void validateAmount(final long amount) {
+        if (amount <= 0)
+            throw new IllegalArgumentException("Amount cannot be less or equal to 0");
+    }
+}
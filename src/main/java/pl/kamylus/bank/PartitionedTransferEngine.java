@@ -0,0 +1,340 @@
+package pl.kamylus.bank;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Fixed-point transfer engine which partitions accounts (by hash of the id) into {@link LedgerShard}s, each of them
+ * owned by a dedicated thread. Transfer between accounts of the same shard is applied by the owner without any locks.
+ * Transfer between shards is done in two phases: the source shard reserves the amount (debits the source account if
+ * there is enough money) and then the destination shard credits it. If the credit fails, the source shard releases
+ * the reservation. Between the phases the amount is not visible on any of the accounts.
+ * <p>
+ * Balances are read without going through the rings (see {@link LedgerShard#readBalances}). Balances of accounts of
+ * the same shard are read from the same point of time, a transfer between shards may be seen in flight. A snapshot of
+ * all balances is cut by a snapshot command published to every shard, without any lock shared by the transfers.
+ * Reservations are tagged with the epoch (number of the snapshot) of their shard, so every transfer between shards is
+ * either wholly in the snapshot or not at all (see {@link LedgerShard}), but transfers inside different shards may be
+ * cut at slightly different moments. The snapshot is returned when the transfers between shards reserved before the
+ * cut are completed.
+ * <p>
+ * Handles are resolved with the global {@link AccountIndex}, flat arrays map every handle to its shard and to its index
+ * in the store of the shard.
+ * <p>
+ * With uniformly distributed traffic most of the work is spread over all shards, so throughput scales with the number
+ * of shards (and cores). Bank should be closed only after the transfers stop.
+ */
+class PartitionedTransferEngine implements TransferEngine {
+    private final AccountIndex index;
+    private final LedgerShard[] shards;
+    private final int[] shardOfAccount;
+    private final int[] indexInShard;
+    private final CurrencyUnit currency;
+    private final TransferAuditSink auditSink;
+    private final IntFunction<String> accountIds;
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * Epoch of the last snapshot and the snapshot, guarded by this engine.
+     */
+    private long lastEpoch;
+    private PartitionedSnapshot openedSnapshot;
+
+    PartitionedTransferEngine(final List<Account> accounts, final BankConfiguration configuration) {
+        this(accounts, configuration, null);
+    }
+
+    /**
+     * @param transferLog logs the transfers on the owner threads of the shards, the ones between shards at the credit,
+     *                    may be null
+     */
+    PartitionedTransferEngine(final List<Account> accounts, final BankConfiguration configuration,
+                              final TransferLog transferLog) {
+        Objects.requireNonNull(accounts);
+        Objects.requireNonNull(configuration);
+
+        this.index = new AccountIndex(accounts);
+        this.shardOfAccount = new int[accounts.size()];
+        this.indexInShard = new int[accounts.size()];
+        this.currency = configuration.getCurrency();
+        this.auditSink = configuration.getAuditSink();
+        this.accountIds = index::getAccountId;
+        this.waitStrategy = configuration.getWaitStrategy();
+
+        final List<List<Account>> partitions = new ArrayList<>();
+        for (int i = 0; i < configuration.getShards(); ++i)
+            partitions.add(new ArrayList<>());
+
+        int handle = 0;
+        for (final Account account : accounts) {
+            shardOfAccount[handle] = shardOf(account.getId(), partitions.size());
+
+            final List<Account> partition = partitions.get(shardOfAccount[handle]);
+            indexInShard[handle] = partition.size();
+            partition.add(account);
+            handle++;
+        }
+
+        final int[][] handles = new int[partitions.size()][];
+        for (int i = 0; i < handles.length; ++i)
+            handles[i] = new int[partitions.get(i).size()];
+        for (int i = 0; i < shardOfAccount.length; ++i)
+            handles[shardOfAccount[i]][indexInShard[i]] = i;
+
+        this.shards = new LedgerShard[partitions.size()];
+        for (int i = 0; i < shards.length; ++i) {
+            shards[i] = new LedgerShard("ledger-shard-" + i,
+                    configuration.getAccountStoreType().create(partitions.get(i), configuration.getCurrency()),
+                    configuration.getCurrency(), configuration.getRingSize(), configuration.getWaitStrategy(),
+                    auditSink, transferLog, handles[i]);
+        }
+    }
+
+    static int shardOf(final String accountId, final int shards) {
+        final int hash = accountId.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards);
+    }
+
+    int getShards() {
+        return shards.length;
+    }
+
+    @Override
+    public int handleOf(final CharSequence accountId) {
+        return index.handleOf(accountId);
+    }
+
+    @Override
+    public String getAccountId(final int account) {
+        return index.getAccountId(account);
+    }
+
+    @Override
+    public int accountsCount() {
+        return index.size();
+    }
+
+    @Override
+    public CurrencyUnit getCurrency() {
+        return currency;
+    }
+
+    @Override
+    public long getBalance(final int account) {
+        return shards[shardOfAccount[account]].readBalance(indexInShard[account]);
+    }
+
+    /**
+     * Reads the accounts of every shard together.
+     */
+    @Override
+    public void readBalances(final int[] accounts, final long[] balances) {
+        final int[] shardAccounts = new int[accounts.length];
+        final int[] positions = new int[accounts.length];
+        final long[] shardBalances = new long[accounts.length];
+
+        for (int shard = 0; shard < shards.length; ++shard) {
+            int count = 0;
+            for (int i = 0; i < accounts.length; ++i) {
+                if (shardOfAccount[accounts[i]] == shard) {
+                    shardAccounts[count] = indexInShard[accounts[i]];
+                    positions[count++] = i;
+                }
+            }
+
+            if (count == 0)
+                continue;
+
+            final int[] readAccounts = count == accounts.length ? shardAccounts : Arrays.copyOf(shardAccounts, count);
+            shards[shard].readBalances(readAccounts, shardBalances);
+            for (int i = 0; i < count; ++i)
+                balances[positions[i]] = shardBalances[i];
+        }
+    }
+
+    @Override
+    public void restoreBalances(final IntToLongFunction balances) {
+        for (final LedgerShard shard : shards)
+            shard.restoreBalances(balances);
+    }
+
+    /**
+     * Cuts the snapshots of all shards in the order of their rings and waits for the transfers between shards reserved
+     * before the cut.
+     */
+    @Override
+    public synchronized BalanceSnapshot openSnapshot() {
+        if (openedSnapshot != null && !openedSnapshot.closed)
+            throw new IllegalStateException("Another balance snapshot is open");
+
+        final long epoch = ++lastEpoch;
+        final LedgerShard.TransferFuture[] cuts = new LedgerShard.TransferFuture[shards.length];
+        final BalanceSnapshot[] snapshots = new BalanceSnapshot[shards.length];
+        try {
+            for (int i = 0; i < shards.length; ++i)
+                cuts[i] = shards[i].submitSnapshot(epoch);
+            for (int i = 0; i < shards.length; ++i) {
+                LedgerShard.await(cuts[i]);
+                snapshots[i] = shards[i].getSnapshot();
+            }
+
+            awaitTransfersBetweenShards(epoch - 1);
+        } catch (final RuntimeException exc) {
+            for (final BalanceSnapshot snapshot : snapshots) {
+                if (snapshot != null)
+                    snapshot.close();
+            }
+            throw exc;
+        }
+
+        openedSnapshot = new PartitionedSnapshot(snapshots);
+        return openedSnapshot;
+    }
+
+    /**
+     * Waits until all reservations of the given epoch are credited or released. No shard reserves in the epoch any
+     * more and the reservations of the previous epochs of the same parity are already completed.
+     */
+    private void awaitTransfersBetweenShards(final long epoch) {
+        long reservations = 0;
+        for (final LedgerShard shard : shards)
+            reservations += shard.reservations(epoch);
+
+        for (int attempt = 0; ; ++attempt) {
+            long completions = 0;
+            for (final LedgerShard shard : shards)
+                completions += shard.completions(epoch);
+
+            if (completions == reservations)
+                return;
+
+            waitStrategy.idle(attempt);
+        }
+    }
+
+    @Override
+    public TransferOutcome tryTransfer(final int source, final int destination, final long amount) {
+        return LedgerShard.await(transferForFuture(source, destination, amount));
+    }
+
+    /**
+     * Throws with the balance which the shard has seen at the moment of the rejection.
+     */
+    @Override
+    public void transfer(final int source, final int destination, final long amount) {
+        final TransferResult result = transferForFuture(source, destination, amount).toResult();
+
+        if (!result.isSuccess())
+            throw new IllegalArgumentException(result.getMessage());
+    }
+
+    @Override
+    public void transferBatch(final int[] sources, final int[] destinations, final long[] amounts,
+                              final TransferResult[] results) {
+        for (int i = 0; i < results.length; ++i) {
+            if (results[i] == null)
+                results[i] = transferForFuture(sources[i], destinations[i], amounts[i]).toResult();
+        }
+    }
+
+    /**
+     * Performs the transfer and returns the completed future of the step which decided its outcome.
+     */
+    private LedgerShard.TransferFuture transferForFuture(final int source, final int destination, final long amount) {
+        final LedgerShard sourceShard = shards[shardOfAccount[source]];
+        final LedgerShard destinationShard = shards[shardOfAccount[destination]];
+
+        if (sourceShard == destinationShard) {
+            // transfers inside a shard are audited by the shard, with the balances
+            final LedgerShard.TransferFuture future = sourceShard.submitTransfer(indexInShard[source],
+                    indexInShard[destination], amount);
+            LedgerShard.await(future);
+            return future;
+        }
+
+        final LedgerShard.TransferFuture future = transferBetweenShards(source, destination, amount);
+        if (LedgerShard.await(future).isSuccess() && auditSink != null)
+            auditSink.transferred(accountIds, source, destination, currency, amount);
+
+        return future;
+    }
+
+    /**
+     * Reserves the amount in the source shard and credits it in the destination shard. The reservation is released
+     * when the credit fails, also with an exception (for example of the log).
+     */
+    private LedgerShard.TransferFuture transferBetweenShards(final int source, final int destination,
+                                                             final long amount) {
+        final LedgerShard sourceShard = shards[shardOfAccount[source]];
+        final LedgerShard destinationShard = shards[shardOfAccount[destination]];
+
+        final LedgerShard.TransferFuture reserve = sourceShard.submitReserve(indexInShard[source], amount);
+        if (!LedgerShard.await(reserve).isSuccess())
+            return reserve;
+
+        final long epoch = reserve.getEpoch();
+        final LedgerShard.TransferFuture credit;
+        try {
+            credit = destinationShard.submitCredit(source, indexInShard[destination], amount, epoch);
+            if (LedgerShard.await(credit).isSuccess())
+                return credit;
+        } catch (final RuntimeException exc) {
+            LedgerShard.await(sourceShard.submitRelease(indexInShard[source], amount, epoch));
+            throw exc;
+        }
+
+        LedgerShard.await(sourceShard.submitRelease(indexInShard[source], amount, epoch));
+        return credit;
+    }
+
+    /**
+     * Stops owner threads of all shards after all already published commands are applied.
+     */
+    @Override
+    public void close() {
+        for (final LedgerShard shard : shards)
+            shard.close();
+    }
+
+    /**
+     * Snapshots of all shards, addressed by the handles of the engine.
+     */
+    private final class PartitionedSnapshot implements BalanceSnapshot {
+        private final BalanceSnapshot[] snapshots;
+        private volatile boolean closed;
+
+        PartitionedSnapshot(final BalanceSnapshot[] snapshots) {
+            this.snapshots = snapshots;
+        }
+
+        @Override
+        public int size() {
+            return shardOfAccount.length;
+        }
+
+        @Override
+        public long getBalance(final int account) {
+            if (closed)
+                throw new IllegalStateException("Balance snapshot is closed");
+
+            if (account < 0 || account >= shardOfAccount.length)
+                throw new IndexOutOfBoundsException("Account handle " + account + " does not exist");
+
+            return snapshots[shardOfAccount[account]].getBalance(indexInShard[account]);
+        }
+
+        @Override
+        public void close() {
+            if (closed)
+                return;
+
+            closed = true;
+            for (final BalanceSnapshot snapshot : snapshots)
+                snapshot.close();
+        }
+    }
+}
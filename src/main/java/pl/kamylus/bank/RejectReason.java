@@ -0,0 +1,42 @@
+package pl.kamylus.bank;
+
+import java.util.Locale;
+
+/**
+ * Reasons why a transfer is rejected, counted separately by {@link TransferMetrics}.
+ */
+enum RejectReason {
+    /**
+     * Source or destination account id is null or empty.
+     */
+    MISSING_ACCOUNT_ID,
+    UNKNOWN_ACCOUNT,
+    SAME_ACCOUNT,
+    /**
+     * Amount is missing, not a number, not representable in the currency or not positive, or it is less than the minor
+     * unit of the destination currency after the conversion.
+     */
+    INVALID_AMOUNT,
+    INSUFFICIENT_FUNDS,
+    /**
+     * Balance of the destination account would overflow.
+     */
+    OVERFLOW,
+    /**
+     * There is no FX rate between the currencies of the accounts of a cross-currency transfer.
+     */
+    MISSING_FX_RATE,
+    /**
+     * Idempotency key of the request has been used for another transfer or that transfer is in progress.
+     */
+    IDEMPOTENCY_CONFLICT;
+
+    private final String label = name().toLowerCase(Locale.ROOT);
+
+    /**
+     * Returns the value of the {@code reason} label of the metrics.
+     */
+    String getLabel() {
+        return label;
+    }
+}
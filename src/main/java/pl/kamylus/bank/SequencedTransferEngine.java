@@ -0,0 +1,130 @@
+package pl.kamylus.bank;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Single-writer fixed-point transfer engine: all accounts belong to a single {@link LedgerShard}, so one thread applies
+ * all transfers, without any locks on accounts and in a deterministic global order. Balances are read next to the
+ * ring buffer (see {@link LedgerShard#readBalances}), so they see all completed transfers and reads of several accounts
+ * are consistent. Handle of the account is its index in the store of the shard.
+ */
+class SequencedTransferEngine implements TransferEngine {
+    private final CurrencyUnit currency;
+    private final AccountStore store;
+    private final LedgerShard shard;
+
+    SequencedTransferEngine(final List<Account> accounts, final BankConfiguration configuration) {
+        this(accounts, configuration, null);
+    }
+
+    /**
+     * @param transferLog logs the transfers on the consumer thread, may be null
+     */
+    SequencedTransferEngine(final List<Account> accounts, final BankConfiguration configuration,
+                            final TransferLog transferLog) {
+        Objects.requireNonNull(accounts);
+        Objects.requireNonNull(configuration);
+
+        this.currency = configuration.getCurrency();
+        this.store = configuration.getAccountStoreType().create(accounts, configuration);
+        this.shard = new LedgerShard("sequenced-transfer-engine", store, configuration.getCurrency(),
+                configuration.getRingSize(), configuration.getWaitStrategy(), configuration.getAuditSink(),
+                transferLog, null);
+    }
+
+    /**
+     * Reads only the index of the store, which is never modified, so it does not go through the ring buffer.
+     */
+    @Override
+    public int handleOf(final CharSequence accountId) {
+        return store.indexOf(accountId);
+    }
+
+    @Override
+    public String getAccountId(final int account) {
+        return store.getAccountId(account);
+    }
+
+    @Override
+    public int accountsCount() {
+        return store.size();
+    }
+
+    @Override
+    public CurrencyUnit getCurrency() {
+        return currency;
+    }
+
+    @Override
+    public long getBalance(final int account) {
+        return shard.readBalance(account);
+    }
+
+    @Override
+    public void readBalances(final int[] accounts, final long[] balances) {
+        shard.readBalances(accounts, balances);
+    }
+
+    @Override
+    public void restoreBalances(final IntToLongFunction balances) {
+        shard.restoreBalances(balances);
+    }
+
+    @Override
+    public BalanceSnapshot openSnapshot() {
+        return shard.openSnapshot();
+    }
+
+    @Override
+    public TransferOutcome tryTransfer(final int source, final int destination, final long amount) {
+        return LedgerShard.await(submit(source, destination, amount));
+    }
+
+    /**
+     * Throws with the balance which the consumer thread has seen at the moment of the rejection.
+     */
+    @Override
+    public void transfer(final int source, final int destination, final long amount) {
+        final TransferResult result = submit(source, destination, amount).toResult();
+
+        if (!result.isSuccess())
+            throw new IllegalArgumentException(result.getMessage());
+    }
+
+    /**
+     * Publishes all transfers of the batch first and then waits for their results.
+     */
+    @Override
+    public void transferBatch(final int[] sources, final int[] destinations, final long[] amounts,
+                              final TransferResult[] results) {
+        final LedgerShard.TransferFuture[] futures = new LedgerShard.TransferFuture[results.length];
+
+        for (int i = 0; i < results.length; ++i) {
+            if (results[i] == null)
+                futures[i] = submit(sources[i], destinations[i], amounts[i]);
+        }
+
+        for (int i = 0; i < results.length; ++i) {
+            if (futures[i] != null)
+                results[i] = futures[i].toResult();
+        }
+    }
+
+    /**
+     * Publishes the transfer and returns future completed by the consumer thread.
+     */
+    LedgerShard.TransferFuture submit(final int source, final int destination, final long amount) {
+        return shard.submitTransfer(source, destination, amount);
+    }
+
+    /**
+     * Stops the consumer thread after all already published commands are applied and closes the account store.
+     */
+    @Override
+    public void close() {
+        shard.close();
+        store.close();
+    }
+}
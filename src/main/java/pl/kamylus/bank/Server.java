@@ -7,6 +7,10 @@ class Server {
         throw new UnsupportedOperationException("Server class cannot be instantiated");
     }
 
+    /**
+     * Starts the endpoints of the transfers and the metrics, supported by every bank. A {@link FixedPointBank} gets
+     * also the endpoints of the balances and the contention, and of the history when it keeps it.
+     */
     static void start(final int port, final Bank bank) {
         Spark.port(port);
 
@@ -14,6 +18,18 @@ class Server {
         Spark.awaitInitialization();
 
         Spark.post("/transferMoney", new TransferMoneyHandler(bank));
+        Spark.post("/transferBatch", new TransferBatchHandler(bank));
+        Spark.get("/metrics", new MetricsHandler(bank));
+
+        if (bank instanceof FixedPointBank) {
+            final FixedPointBank fixedPointBank = (FixedPointBank) bank;
+            if (fixedPointBank.hasHistory())
+                Spark.get("/history", new HistoryHandler(fixedPointBank));
+            Spark.get("/balance", new BalanceHandler(fixedPointBank));
+            Spark.get("/balances", new BalanceSnapshotHandler(fixedPointBank));
+            Spark.get("/balances/export", new BalanceExportHandler(fixedPointBank));
+            Spark.get("/contention", new ContentionHandler(fixedPointBank));
+        }
     }
 
     static void stop() {
@@ -0,0 +1,112 @@
+package pl.kamylus.bank;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Balance split into a number of sub-balance stripes, for hot accounts which receive most of the deposits.
+ * <p>
+ * Deposit goes to the stripe of the current thread without any coordination, so deposit throughput scales with
+ * the number of cores. Withdrawals are serialized with each other (they are rare for such accounts): a withdrawal
+ * takes the money from the stripe of the current thread and borrows from the other stripes only when it is short.
+ * Stripes only grow while a withdrawal is in progress, so checking the sum before borrowing is enough to guarantee
+ * that the borrowing succeeds.
+ * <p>
+ * {@link #get()} sums the stripes. It is not an atomic snapshot when deposits are running concurrently.
+ * <p>
+ * Every stripe has its own version next to its balance, in the same cache line, which is changed by
+ * {@link BalanceVersions} (the stripes are its {@link BalanceVersions.Cells}), so versioned deposits of different
+ * threads still do not share any memory.
+ */
+class StripedBalance implements ConcurrentBalance, BalanceVersions.Cells {
+    /**
+     * Distance between stripes in the array (8 longs = 64 bytes), so every stripe has its own cache line.
+     */
+    private static final int PADDING = 8;
+    /**
+     * Position of the version of the stripe after its balance.
+     */
+    private static final int VERSION = 1;
+    private static final int MAX_STRIPES = 256;
+
+    private final int stripes;
+    private final AtomicLongArray balances;
+
+    StripedBalance(final long balance, final int stripes) {
+        if (stripes < 1 || stripes > MAX_STRIPES)
+            throw new IllegalArgumentException("Number of stripes (" + stripes + ") has to be between 1 and "
+                    + MAX_STRIPES);
+
+        this.stripes = stripes;
+        this.balances = new AtomicLongArray(stripes * PADDING);
+        this.balances.set(0, balance);
+    }
+
+    int getStripes() {
+        return stripes;
+    }
+
+    @Override
+    public long get() {
+        long sum = 0;
+        for (int stripe = 0; stripe < stripes; ++stripe)
+            sum += balances.get(stripe * PADDING);
+
+        return sum;
+    }
+
+    @Override
+    public void deposit(final long amount) {
+        balances.addAndGet(localStripe() * PADDING, amount);
+    }
+
+    @Override
+    public synchronized boolean tryWithdraw(final long amount) {
+        final int local = localStripe();
+
+        if (balances.get(local * PADDING) >= amount) {
+            balances.addAndGet(local * PADDING, -amount);
+            return true;
+        }
+
+        if (get() < amount)
+            return false;
+
+        long remaining = amount;
+        for (int i = 0; i < stripes && remaining > 0; ++i) {
+            final int index = ((local + i) % stripes) * PADDING;
+            final long taken = Math.min(remaining, balances.get(index));
+
+            if (taken > 0) {
+                balances.addAndGet(index, -taken);
+                remaining -= taken;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public int cellCount() {
+        return stripes;
+    }
+
+    @Override
+    public int localCell() {
+        return localStripe();
+    }
+
+    @Override
+    public long getVersion(final int cell) {
+        return balances.get(cell * PADDING + VERSION);
+    }
+
+    @Override
+    public void addToVersion(final int cell, final long delta) {
+        balances.getAndAdd(cell * PADDING + VERSION, delta);
+    }
+
+    private int localStripe() {
+        final long hash = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) ((hash >>> 32) % stripes);
+    }
+}
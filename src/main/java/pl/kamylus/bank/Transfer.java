@@ -0,0 +1,31 @@
+package pl.kamylus.bank;
+
+import java.math.BigDecimal;
+
+/**
+ * Single transfer of the batch, see {@link Bank#transferBatch}. Parameters are validated by the bank, so they can be
+ * null here.
+ */
+final class Transfer {
+    private final String sourceAccountId;
+    private final String destinationAccountId;
+    private final BigDecimal amount;
+
+    Transfer(final String sourceAccountId, final String destinationAccountId, final BigDecimal amount) {
+        this.sourceAccountId = sourceAccountId;
+        this.destinationAccountId = destinationAccountId;
+        this.amount = amount;
+    }
+
+    String getSourceAccountId() {
+        return sourceAccountId;
+    }
+
+    String getDestinationAccountId() {
+        return destinationAccountId;
+    }
+
+    BigDecimal getAmount() {
+        return amount;
+    }
+}
@@ -0,0 +1,318 @@
+package pl.kamylus.bank;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Audit log of the transfers, which moves formatting and output out of the critical section of the transfer.
+ * The emitting thread only copies the fields of the event (references and primitives, nothing is allocated) into
+ * a pre-allocated slot of the ring buffer and publishes it. Fixed-point transfers are emitted with handles of
+ * the accounts, which are resolved to ids by the background thread. A background thread formats published events and passes
+ * them to the output, by default the logger.
+ * <p>
+ * The ring buffer works like the one of {@link LedgerShard}, but with many producers and a single consumer. When it is
+ * full, the {@link AuditOverflowPolicy} decides whether the emitting thread waits or the event is dropped.
+ */
+final class TransferAuditSink implements AutoCloseable {
+    static final int DEFAULT_CAPACITY = 8192;
+
+    private static final Logger logger = LoggerFactory.getLogger(TransferAuditSink.class);
+    private static final WaitStrategy WAIT_STRATEGY = WaitStrategy.BLOCKING;
+
+    private final AuditOverflowPolicy overflowPolicy;
+    private final Consumer<String> output;
+
+    private final Slot[] ring;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicLong consumedSequence = new AtomicLong(-1);
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final Thread consumer;
+    private volatile boolean running = true;
+
+    /**
+     * Creates sink which writes the events to the logger.
+     */
+    TransferAuditSink(final int capacity, final AuditOverflowPolicy overflowPolicy) {
+        this(capacity, overflowPolicy, logger::info);
+    }
+
+    /**
+     * @param capacity number of slots of the ring buffer, has to be a power of 2
+     * @param output   receives formatted events, called only by the background thread
+     */
+    TransferAuditSink(final int capacity, final AuditOverflowPolicy overflowPolicy, final Consumer<String> output) {
+        Objects.requireNonNull(overflowPolicy);
+        Objects.requireNonNull(output);
+
+        if (capacity < 1 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Capacity (" + capacity + ") has to be a power of 2");
+
+        this.overflowPolicy = overflowPolicy;
+        this.output = output;
+
+        this.ring = new Slot[capacity];
+        for (int i = 0; i < ring.length; ++i)
+            ring[i] = new Slot();
+        this.mask = ring.length - 1;
+
+        this.consumer = new Thread(this::consume, "transfer-audit-sink");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /**
+     * Sink shared by the banks which keep balances as {@link BigDecimal} and by the server, it is never closed.
+     */
+    static TransferAuditSink shared() {
+        return SharedSinkHolder.SINK;
+    }
+
+    /**
+     * Emits transfer of the {@link BigDecimal} amount with the balances after it.
+     */
+    void transferred(final String sourceAccountId, final String destinationAccountId, final BigDecimal amount,
+                     final BigDecimal sourceBalance, final BigDecimal destinationBalance) {
+        final long sequence = claim();
+        if (sequence < 0)
+            return;
+
+        final Slot slot = ring[(int) sequence & mask];
+        slot.sourceAccountId = sourceAccountId;
+        slot.destinationAccountId = destinationAccountId;
+        slot.accountIds = null;
+        slot.currency = null;
+        slot.decimalAmount = amount;
+        slot.decimalSourceBalance = sourceBalance;
+        slot.decimalDestinationBalance = destinationBalance;
+        slot.withBalances = true;
+        slot.publishedSequence = sequence;
+    }
+
+    /**
+     * Emits transfer of the amount in minor units of the currency without the balances, for transfers which do not
+     * see both accounts at once (like transfers between shards of {@link PartitionedTransferEngine}).
+     *
+     * @param accountIds returns id of the account with the given handle, called by the background thread
+     */
+    void transferred(final IntFunction<String> accountIds, final int source, final int destination,
+                     final CurrencyUnit currency, final long amount) {
+        final long sequence = claim();
+        if (sequence < 0)
+            return;
+
+        final Slot slot = ring[(int) sequence & mask];
+        slot.accountIds = accountIds;
+        slot.source = source;
+        slot.destination = destination;
+        slot.currency = currency;
+        slot.amount = amount;
+        slot.withBalances = false;
+        slot.publishedSequence = sequence;
+    }
+
+    /**
+     * Emits transfer of the amount in minor units of the currency with the balances after it.
+     *
+     * @param accountIds returns id of the account with the given handle, called by the background thread
+     */
+    void transferred(final IntFunction<String> accountIds, final int source, final int destination,
+                     final CurrencyUnit currency, final long amount, final long sourceBalance,
+                     final long destinationBalance) {
+        final long sequence = claim();
+        if (sequence < 0)
+            return;
+
+        final Slot slot = ring[(int) sequence & mask];
+        slot.accountIds = accountIds;
+        slot.source = source;
+        slot.destination = destination;
+        slot.currency = currency;
+        slot.amount = amount;
+        slot.sourceBalance = sourceBalance;
+        slot.destinationBalance = destinationBalance;
+        slot.withBalances = true;
+        slot.publishedSequence = sequence;
+    }
+
+    /**
+     * Returns number of events dropped so far, because the ring buffer was full or the sink was closed.
+     */
+    long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * Waits until all events emitted so far are passed to the output.
+     */
+    void flush() {
+        final long lastSequence = nextSequence.get() - 1;
+
+        int attempt = 0;
+        while (consumedSequence.get() < lastSequence && consumer.isAlive()) {
+            LockSupport.unpark(consumer);
+            WAIT_STRATEGY.idle(attempt++);
+        }
+    }
+
+    /**
+     * Stops the background thread after all already emitted events are passed to the output. Events emitted later are
+     * dropped.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(consumer);
+
+        try {
+            consumer.join();
+        } catch (final InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns sequence of the claimed slot or -1 when the event is dropped.
+     */
+    private long claim() {
+        if (!running) {
+            droppedEvents.incrementAndGet();
+            return -1;
+        }
+
+        if (overflowPolicy == AuditOverflowPolicy.DROP) {
+            while (true) {
+                final long sequence = nextSequence.get();
+
+                if (sequence - ring.length > consumedSequence.get()) {
+                    droppedEvents.incrementAndGet();
+                    return -1;
+                }
+
+                if (nextSequence.compareAndSet(sequence, sequence + 1))
+                    return sequence;
+            }
+        }
+
+        final long sequence = nextSequence.getAndIncrement();
+
+        int attempt = 0;
+        while (sequence - ring.length > consumedSequence.get()) {
+            if (!consumer.isAlive()) {
+                droppedEvents.incrementAndGet();
+                return -1;
+            }
+
+            LockSupport.unpark(consumer);
+            WAIT_STRATEGY.idle(attempt++);
+        }
+
+        return sequence;
+    }
+
+    private void consume() {
+        final StringBuilder message = new StringBuilder();
+        long reportedDroppedEvents = 0;
+        long sequence = 0;
+
+        while (true) {
+            final Slot slot = ring[(int) sequence & mask];
+
+            int attempt = 0;
+            while (slot.publishedSequence != sequence) {
+                reportedDroppedEvents = reportDroppedEvents(reportedDroppedEvents);
+
+                if (!running && sequence >= nextSequence.get())
+                    return;
+
+                WAIT_STRATEGY.idle(attempt++);
+            }
+
+            try {
+                message.setLength(0);
+                output.accept(format(slot, message));
+            } catch (final RuntimeException exc) {
+                logger.error("Cannot write audit event {}", sequence, exc);
+            }
+
+            slot.sourceAccountId = null;
+            slot.destinationAccountId = null;
+            slot.accountIds = null;
+            slot.currency = null;
+            slot.decimalAmount = null;
+            slot.decimalSourceBalance = null;
+            slot.decimalDestinationBalance = null;
+            consumedSequence.lazySet(sequence);
+            sequence++;
+        }
+    }
+
+    private long reportDroppedEvents(final long reportedDroppedEvents) {
+        final long dropped = droppedEvents.get();
+
+        if (dropped != reportedDroppedEvents)
+            logger.warn("Dropped {} audit events, {} in total", dropped - reportedDroppedEvents, dropped);
+
+        return dropped;
+    }
+
+    private static String format(final Slot slot, final StringBuilder message) {
+        message.append("Transferred ");
+        appendAmount(slot, slot.amount, slot.decimalAmount, message);
+        if (slot.accountIds != null) {
+            message.append(" from ").append(slot.accountIds.apply(slot.source))
+                    .append(" to ").append(slot.accountIds.apply(slot.destination));
+        } else {
+            message.append(" from ").append(slot.sourceAccountId)
+                    .append(" to ").append(slot.destinationAccountId);
+        }
+        if (slot.withBalances) {
+            message.append(". Amount on source: ");
+            appendAmount(slot, slot.sourceBalance, slot.decimalSourceBalance, message);
+            message.append(". Amount on destination: ");
+            appendAmount(slot, slot.destinationBalance, slot.decimalDestinationBalance, message);
+        }
+
+        return message.toString();
+    }
+
+    private static void appendAmount(final Slot slot, final long minorUnits, final BigDecimal decimal,
+                                     final StringBuilder message) {
+        if (slot.currency != null)
+            message.append(slot.currency.format(minorUnits));
+        else
+            message.append(decimal);
+    }
+
+    /**
+     * Slot of the ring buffer. Fields are written by the producer before the volatile write of
+     * {@link #publishedSequence} and read by the consumer thread after reading it, which makes them visible.
+     */
+    private static final class Slot {
+        private volatile long publishedSequence = -1;
+        private String sourceAccountId;
+        private String destinationAccountId;
+        private IntFunction<String> accountIds;
+        private int source;
+        private int destination;
+        private CurrencyUnit currency;
+        private long amount;
+        private long sourceBalance;
+        private long destinationBalance;
+        private boolean withBalances;
+        private BigDecimal decimalAmount;
+        private BigDecimal decimalSourceBalance;
+        private BigDecimal decimalDestinationBalance;
+    }
+
+    private static final class SharedSinkHolder {
+        private static final TransferAuditSink SINK = new TransferAuditSink(DEFAULT_CAPACITY, AuditOverflowPolicy.BLOCK);
+    }
+}
@@ -0,0 +1,88 @@
+package pl.kamylus.bank;
+
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Handles batch of transfers. Request body contains one transfer per line:
+ * {@code sourceAccountId,destinationAccountId,amount}. Response body contains result of each transfer in a separate
+ * line ({@code OK} or the error message), in the same order.
+ */
+class TransferBatchHandler implements Route {
+
+    private static final int UNPROCESSABLE_ENTITY_ERROR = 422;
+    private static final int FIELDS_COUNT = 3;
+
+    private final Bank bank;
+
+    TransferBatchHandler(final Bank bank) {
+        Objects.requireNonNull(bank);
+
+        this.bank = bank;
+    }
+
+    @Override
+    public Object handle(final Request request, final Response response) {
+        final List<TransferResult> results;
+        try {
+            results = bank.transferBatch(parseTransfers(request.body()));
+        } catch (final IllegalArgumentException exc) {
+            response.status(UNPROCESSABLE_ENTITY_ERROR);
+            return exc.getMessage();
+        } catch (final Exception exc) {
+            response.status(HttpURLConnection.HTTP_INTERNAL_ERROR);
+            return exc.getMessage();
+        }
+
+        final StringBuilder responseBuilder = new StringBuilder();
+        for (final TransferResult result : results)
+            responseBuilder.append(result.getMessage()).append('\n');
+
+        return responseBuilder.toString();
+    }
+
+    private static List<Transfer> parseTransfers(final String body) {
+        if (body == null || body.isEmpty())
+            throw new IllegalArgumentException("Batch cannot be empty");
+
+        final List<Transfer> transfers = new ArrayList<>();
+        final String[] lines = body.split("\n");
+
+        for (int i = 0; i < lines.length; ++i) {
+            final String line = lines[i].trim();
+            if (line.isEmpty())
+                continue;
+
+            final String[] fields = line.split(",", -1);
+            if (fields.length != FIELDS_COUNT) {
+                throw new IllegalArgumentException("Line " + (i + 1)
+                        + ": expected sourceAccountId,destinationAccountId,amount");
+            }
+
+            transfers.add(new Transfer(fields[0].trim(), fields[1].trim(), parseAmount(fields[2].trim(), i + 1)));
+        }
+
+        if (transfers.isEmpty())
+            throw new IllegalArgumentException("Batch cannot be empty");
+
+        return transfers;
+    }
+
+    private static BigDecimal parseAmount(final String amountText, final int line) {
+        if (amountText.isEmpty())
+            throw new IllegalArgumentException("Line " + line + ": Amount cannot be null or empty");
+
+        try {
+            return new BigDecimal(amountText);
+        } catch (final NumberFormatException exc) {
+            throw new IllegalArgumentException("Line " + line + ": " + exc.getMessage());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package pl.kamylus.bank;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Blocking client of the {@link TransferBinaryServer} protocol over one connection, for internal services and tests.
+ * Every call sends one frame and waits for its response. Not thread-safe.
+ */
+final class TransferBinaryClient implements AutoCloseable {
+    private final SocketChannel channel;
+    private final ByteBuffer request = ByteBuffer.allocateDirect(TransferBinaryServer.MAX_FRAME_BYTES);
+    private final ByteBuffer response = ByteBuffer.allocateDirect(TransferBinaryServer.MAX_FRAME_BYTES);
+    private long nextRequestId;
+
+    TransferBinaryClient(final String host, final int port) throws IOException {
+        Objects.requireNonNull(host);
+
+        this.channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    }
+
+    /**
+     * Returns handle of the account, -1 when it does not exist.
+     */
+    int resolve(final String accountId) throws IOException {
+        Objects.requireNonNull(accountId);
+
+        final byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > TransferBinaryServer.MAX_FRAME_BYTES - TransferBinaryServer.HEADER_BYTES - Short.BYTES)
+            throw new IllegalArgumentException("AccountId is too long");
+
+        startRequest(TransferBinaryServer.RESOLVE).putShort((short) id.length).put(id);
+        exchange(TransferBinaryServer.RESOLVE);
+
+        final short status = response.getShort();
+        final int handle = response.getInt();
+        return status == TransferBinaryServer.OK ? handle : -1;
+    }
+
+    /**
+     * Sends a single transfer and returns its status.
+     */
+    short transfer(final int source, final int destination, final long amount) throws IOException {
+        return transfer(new int[]{source}, new int[]{destination}, new long[]{amount})[0];
+    }
+
+    /**
+     * Sends the transfers in one frame and returns their statuses.
+     */
+    short[] transfer(final int[] sources, final int[] destinations, final long[] amounts) throws IOException {
+        Objects.requireNonNull(sources);
+        Objects.requireNonNull(destinations);
+        Objects.requireNonNull(amounts);
+
+        if (sources.length != destinations.length || sources.length != amounts.length)
+            throw new IllegalArgumentException("Number of sources, destinations and amounts have to be the same");
+
+        if (sources.length < 1 || sources.length > Bank.MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Number of transfers has to be between 1 and "
+                    + Bank.MAX_BATCH_SIZE);
+        }
+
+        startRequest(TransferBinaryServer.TRANSFER).putShort((short) sources.length);
+        for (int i = 0; i < sources.length; ++i)
+            request.putInt(sources[i]).putInt(destinations[i]).putLong(amounts[i]);
+        exchange(TransferBinaryServer.TRANSFER);
+
+        final short[] statuses = new short[response.getShort()];
+        for (int i = 0; i < statuses.length; ++i)
+            statuses[i] = response.getShort();
+        return statuses;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer startRequest(final byte type) {
+        request.clear();
+        return request.putInt(0).put(type).putLong(++nextRequestId);
+    }
+
+    /**
+     * Sends the request and reads the response, positioned at its body.
+     */
+    private void exchange(final byte type) throws IOException {
+        request.putInt(0, request.position() - Integer.BYTES).flip();
+        while (request.hasRemaining())
+            channel.write(request);
+
+        response.clear().limit(Integer.BYTES);
+        readFully();
+        final int length = response.getInt(0);
+        if (length < TransferBinaryServer.HEADER_BYTES - Integer.BYTES || length > response.capacity() - Integer.BYTES)
+            throw new IOException("Response has invalid length " + length);
+
+        response.limit(Integer.BYTES + length);
+        readFully();
+        response.flip().position(Integer.BYTES);
+
+        final byte responseType = response.get();
+        final long requestId = response.getLong();
+        if (responseType == TransferBinaryServer.ERROR)
+            throw new IOException("Server rejected the request with status " + response.getShort());
+        if (responseType != type || requestId != nextRequestId)
+            throw new IOException("Response does not match request " + nextRequestId);
+    }
+
+    private void readFully() throws IOException {
+        while (response.hasRemaining()) {
+            if (channel.read(response) < 0)
+                throw new EOFException("Connection closed by the server");
+        }
+    }
+}
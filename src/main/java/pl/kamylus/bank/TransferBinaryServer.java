@@ -0,0 +1,224 @@
+package pl.kamylus.bank;
+
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Compact binary protocol of the transfers over TCP for internal services, built on {@link NioServer} and running
+ * alongside the HTTP endpoint (on another port) with the same {@link FixedPointBank}.
+ * <p>
+ * Frames are length-prefixed, with fixed-width big-endian fields. Every frame starts with its length (int, without
+ * the length itself), type (byte) and request id (long, copied to the response), followed by the body:
+ * <ul>
+ * <li>{@link #TRANSFER} request: number of transfers (short, 1 to {@link Bank#MAX_BATCH_SIZE}) and every transfer:
+ * source and destination account handles (int) and amount in minor units (long). Transfers of the frame are
+ * performed as a batch ({@link FixedPointBank#transferBatch(int[], int[], long[])}). Response: number of transfers
+ * (short) and status of every transfer (short).</li>
+ * <li>{@link #RESOLVE} request: length (short) and UTF-8 bytes of the account id. Response: status (short) and handle
+ * of the account (int, -1 when it does not exist).</li>
+ * </ul>
+ * Statuses mirror the HTTP endpoint: {@link #OK} (200), {@link #REJECTED} (422, for example not enough money or
+ * unknown account) and {@link #FAILED} (500). A frame which cannot be understood is answered with an {@link #ERROR}
+ * frame with status {@link #MALFORMED} (400) and the connection is closed. Requests of a connection may be pipelined,
+ * responses come in the same order. Requires a fixed-point bank.
+ */
+final class TransferBinaryServer implements AutoCloseable {
+    static final byte ERROR = 0;
+    static final byte TRANSFER = 1;
+    static final byte RESOLVE = 2;
+
+    static final short OK = HttpURLConnection.HTTP_OK;
+    static final short MALFORMED = HttpURLConnection.HTTP_BAD_REQUEST;
+    static final short REJECTED = 422;
+    static final short FAILED = HttpURLConnection.HTTP_INTERNAL_ERROR;
+
+    static final int HEADER_BYTES = Integer.BYTES + Byte.BYTES + Long.BYTES;
+    static final int TRANSFER_BYTES = 2 * Integer.BYTES + Long.BYTES;
+    static final int MAX_FRAME_BYTES = HEADER_BYTES + Short.BYTES + Bank.MAX_BATCH_SIZE * TRANSFER_BYTES;
+    private static final int MAX_RESPONSE_BYTES = HEADER_BYTES + Short.BYTES + Bank.MAX_BATCH_SIZE * Short.BYTES;
+    private static final int OUTPUT_BUFFER_BYTES = 8 * MAX_RESPONSE_BYTES;
+
+    private final FixedPointBank bank;
+    private final NioServer server;
+
+    private TransferBinaryServer(final FixedPointBank bank, final HttpServerConfiguration configuration) {
+        this.bank = bank;
+        this.server = NioServer.start("transfer-binary", configuration, MAX_FRAME_BYTES, OUTPUT_BUFFER_BYTES,
+                MAX_RESPONSE_BYTES, BinaryRequestHandler::new);
+    }
+
+    /**
+     * Binds the port and starts the threads of the server (they keep the JVM running until the server is closed).
+     * Port, backlog and number of event loops are taken from the configuration.
+     */
+    static TransferBinaryServer start(final FixedPointBank bank, final HttpServerConfiguration configuration) {
+        Objects.requireNonNull(bank);
+        Objects.requireNonNull(configuration);
+
+        return new TransferBinaryServer(bank, configuration);
+    }
+
+    /**
+     * Port the server listens on, useful when it has been started on port 0.
+     */
+    int getPort() {
+        return server.getPort();
+    }
+
+    /**
+     * Stops accepting connections, closes the open ones and waits for the threads. The bank is not closed.
+     */
+    @Override
+    public void close() {
+        server.close();
+    }
+
+    /**
+     * Handler of one event loop, with its own buffer for the decoded account ids.
+     */
+    private final class BinaryRequestHandler implements NioServer.RequestHandler {
+        private final ByteBuffer accountIdBytes = ByteBuffer.allocate(MAX_FRAME_BYTES);
+        private final CharBuffer accountId = CharBuffer.allocate(MAX_FRAME_BYTES);
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        @Override
+        public int handle(final ByteBuffer input, final int from, final int to, final ByteBuffer output) {
+            if (to - from < Integer.BYTES)
+                return 0;
+
+            final int length = input.getInt(from);
+            if (length < HEADER_BYTES - Integer.BYTES || length > MAX_FRAME_BYTES - Integer.BYTES)
+                return malformed(output, 0);
+
+            if (to - from < Integer.BYTES + length)
+                return 0;
+
+            final int frameEnd = from + Integer.BYTES + length;
+            final byte type = input.get(from + Integer.BYTES);
+            final long requestId = input.getLong(from + Integer.BYTES + Byte.BYTES);
+            final int body = from + HEADER_BYTES;
+
+            switch (type) {
+                case TRANSFER:
+                    return transfer(input, body, frameEnd, requestId, output) ? frameEnd - from
+                            : malformed(output, requestId);
+                case RESOLVE:
+                    return resolve(input, body, frameEnd, requestId, output) ? frameEnd - from
+                            : malformed(output, requestId);
+                default:
+                    return malformed(output, requestId);
+            }
+        }
+
+        /**
+         * Returns false when the body is malformed.
+         */
+        private boolean transfer(final ByteBuffer input, final int body, final int frameEnd, final long requestId,
+                                 final ByteBuffer output) {
+            if (frameEnd - body < Short.BYTES)
+                return false;
+
+            final int count = input.getShort(body);
+            if (count < 1 || count > Bank.MAX_BATCH_SIZE || frameEnd - body != Short.BYTES + count * TRANSFER_BYTES)
+                return false;
+
+            output.putInt(HEADER_BYTES - Integer.BYTES + Short.BYTES + count * Short.BYTES)
+                    .put(TRANSFER)
+                    .putLong(requestId)
+                    .putShort((short) count);
+
+            final int transfers = body + Short.BYTES;
+            if (count == 1) {
+                output.putShort(transferMoney(input.getInt(transfers), input.getInt(transfers + Integer.BYTES),
+                        input.getLong(transfers + 2 * Integer.BYTES)));
+                return true;
+            }
+
+            final int[] sources = new int[count];
+            final int[] destinations = new int[count];
+            final long[] amounts = new long[count];
+            for (int i = 0; i < count; ++i) {
+                final int transfer = transfers + i * TRANSFER_BYTES;
+                sources[i] = input.getInt(transfer);
+                destinations[i] = input.getInt(transfer + Integer.BYTES);
+                amounts[i] = input.getLong(transfer + 2 * Integer.BYTES);
+            }
+
+            TransferResult[] results;
+            try {
+                results = bank.transferBatch(sources, destinations, amounts);
+            } catch (final Exception exc) {
+                results = null;
+            }
+
+            for (int i = 0; i < count; ++i) {
+                if (results == null)
+                    output.putShort(FAILED);
+                else
+                    output.putShort(results[i].isSuccess() ? OK : REJECTED);
+            }
+
+            return true;
+        }
+
+        private short transferMoney(final int source, final int destination, final long amount) {
+            try {
+                return bank.tryTransferMoney(source, destination, amount).isSuccess() ? OK : REJECTED;
+            } catch (final Exception exc) {
+                return FAILED;
+            }
+        }
+
+        private boolean resolve(final ByteBuffer input, final int body, final int frameEnd, final long requestId,
+                                final ByteBuffer output) {
+            if (frameEnd - body < Short.BYTES)
+                return false;
+
+            final int idLength = Short.toUnsignedInt(input.getShort(body));
+            if (frameEnd - body != Short.BYTES + idLength)
+                return false;
+
+            accountIdBytes.clear();
+            for (int i = body + Short.BYTES; i < frameEnd; ++i)
+                accountIdBytes.put(input.get(i));
+            accountIdBytes.flip();
+
+            accountId.clear();
+            decoder.reset();
+            decoder.decode(accountIdBytes, accountId, true);
+            decoder.flush(accountId);
+            accountId.flip();
+
+            short status = OK;
+            int handle;
+            try {
+                handle = bank.accountHandle(accountId);
+            } catch (final IllegalArgumentException exc) {
+                status = REJECTED;
+                handle = -1;
+            }
+
+            output.putInt(HEADER_BYTES - Integer.BYTES + Short.BYTES + Integer.BYTES)
+                    .put(RESOLVE)
+                    .putLong(requestId)
+                    .putShort(status)
+                    .putInt(handle);
+            return true;
+        }
+
+        private int malformed(final ByteBuffer output, final long requestId) {
+            output.putInt(HEADER_BYTES - Integer.BYTES + Short.BYTES)
+                    .put(ERROR)
+                    .putLong(requestId)
+                    .putShort(MALFORMED);
+            return CLOSE;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package pl.kamylus.bank;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Flat combining of the transfers of a hot account of {@link AdaptiveLockTransferEngine}: instead of taking the lock of
+ * the account in turn, threads post their transfers into the publication slots of the account and whichever thread
+ * holds the lock applies all posted transfers in one pass and signals their threads. The balance of the hot account
+ * stays in the cache of the combining thread and the lock changes hands once per pass instead of once per transfer.
+ * <p>
+ * The other account of a posted transfer is locked by the posting thread, which waits until the transfer is applied,
+ * so the combining thread changes both balances without taking any other lock and performs the same checks as
+ * a locked transfer. Lock of the hot account is taken after all other locks (see
+ * {@link AdaptiveLockTransferEngine}), which keeps the locking order free of deadlocks.
+ * <p>
+ * Every release of the lock goes through {@link #unlock()}, which wakes a thread whose transfer is still posted: it
+ * may have posted after the pass, found the lock taken and parked. A thread which finds all slots taken for a while
+ * takes the lock of the account itself instead of spinning.
+ */
+final class TransferCombiner {
+    private static final int MAX_SLOTS = 64;
+    private static final int SPINS = 100;
+
+    private static final int EMPTY = 0;
+    private static final int CLAIMED = 1;
+    private static final int POSTED = 2;
+    private static final int DONE = 3;
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(Slot.class, "state", int.class);
+        } catch (final ReflectiveOperationException exc) {
+            throw new ExceptionInInitializerError(exc);
+        }
+    }
+
+    /**
+     * Applies the transfer holding locks of both accounts.
+     */
+    @FunctionalInterface
+    interface LockedTransfer {
+        TransferOutcome transfer(int source, int destination, long amount, long credit);
+    }
+
+    /**
+     * Publication slot of a single transfer. Parameters and the outcome (or the failure) are published by the volatile
+     * state.
+     */
+    private static final class Slot {
+        private volatile int state;
+        private int source;
+        private int destination;
+        private long amount;
+        private long credit;
+        private Thread waiter;
+        private TransferOutcome outcome;
+        private RuntimeException failure;
+    }
+
+    private final AdaptiveLock lock;
+    private final LockedTransfer lockedTransfer;
+    private final Slot[] slots;
+    private final int slotMask;
+
+    /**
+     * Written only by the holder of the lock.
+     */
+    private volatile long passes;
+    private volatile long combinedTransfers;
+
+    TransferCombiner(final AdaptiveLock lock, final LockedTransfer lockedTransfer) {
+        this(lock, lockedTransfer,
+                Math.min(MAX_SLOTS, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) * 2));
+    }
+
+    /**
+     * @param slots number of the publication slots, a power of 2
+     */
+    TransferCombiner(final AdaptiveLock lock, final LockedTransfer lockedTransfer, final int slots) {
+        Objects.requireNonNull(lock);
+        Objects.requireNonNull(lockedTransfer);
+
+        if (slots < 1 || Integer.bitCount(slots) != 1)
+            throw new IllegalArgumentException("Number of slots (" + slots + ") has to be a power of 2");
+
+        this.lock = lock;
+        this.lockedTransfer = lockedTransfer;
+        this.slots = new Slot[slots];
+        for (int i = 0; i < slots; ++i)
+            this.slots[i] = new Slot();
+        this.slotMask = slots - 1;
+    }
+
+    /**
+     * Posts the transfer and waits until it is applied, combining the posted transfers when the lock is free. Caller
+     * holds the lock of the other account of the transfer. Exception thrown by the transfer is rethrown to the caller.
+     */
+    TransferOutcome transfer(final int source, final int destination, final long amount, final long credit) {
+        final Slot slot = claim();
+        if (slot == null)
+            return transferLocked(source, destination, amount, credit);
+
+        slot.source = source;
+        slot.destination = destination;
+        slot.amount = amount;
+        slot.credit = credit;
+        slot.waiter = Thread.currentThread();
+        slot.state = POSTED;
+
+        int spins = 0;
+        while (true) {
+            if (slot.state == DONE) {
+                final TransferOutcome outcome = slot.outcome;
+                final RuntimeException failure = slot.failure;
+                slot.outcome = null;
+                slot.failure = null;
+                slot.waiter = null;
+                slot.state = EMPTY;
+
+                if (failure != null)
+                    throw failure;
+
+                return outcome;
+            }
+
+            if (lock.tryLock()) {
+                try {
+                    combine();
+                } finally {
+                    unlock();
+                }
+            } else if (++spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    /**
+     * Applies the transfer which could not be posted under the lock, together with the transfers posted so far. The
+     * lock of the hot account is taken after all other locks, so waiting for it cannot deadlock.
+     */
+    private TransferOutcome transferLocked(final int source, final int destination, final long amount,
+                                           final long credit) {
+        lock.lock();
+        try {
+            combine();
+            return lockedTransfer.transfer(source, destination, amount, credit);
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Takes the lock of the account for a transfer which is not posted (both accounts are hot or it is a batch).
+     */
+    void lock() {
+        lock.lock();
+    }
+
+    void unlock() {
+        lock.unlock();
+
+        // a thread which posted while the lock was held may have parked, it combines the rest
+        for (final Slot slot : slots) {
+            if (slot.state == POSTED) {
+                LockSupport.unpark(slot.waiter);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Number of the combining passes which applied at least one transfer.
+     */
+    long getPasses() {
+        return passes;
+    }
+
+    long getCombinedTransfers() {
+        return combinedTransfers;
+    }
+
+    /**
+     * Number of the transfers posted and not applied yet.
+     */
+    int postedCount() {
+        int count = 0;
+        for (final Slot slot : slots) {
+            if (slot.state == POSTED)
+                ++count;
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns a claimed slot or null when all slots stay taken.
+     */
+    private Slot claim() {
+        int index = (int) Thread.currentThread().getId();
+        for (int spins = 0; spins < SPINS; ++spins) {
+            for (int i = 0; i < slots.length; ++i) {
+                final Slot slot = slots[index++ & slotMask];
+                if (slot.state == EMPTY && STATE.compareAndSet(slot, EMPTY, CLAIMED))
+                    return slot;
+            }
+
+            Thread.onSpinWait();
+        }
+
+        return null;
+    }
+
+    /**
+     * Applies all posted transfers in one pass, called by the holder of the lock.
+     */
+    private void combine() {
+        boolean applied = false;
+        for (final Slot slot : slots) {
+            if (slot.state != POSTED)
+                continue;
+
+            // counted before the waiter is woken up, which may read the counters
+            if (!applied) {
+                passes = passes + 1;
+                applied = true;
+            }
+            combinedTransfers = combinedTransfers + 1;
+
+            try {
+                slot.outcome = lockedTransfer.transfer(slot.source, slot.destination, slot.amount, slot.credit);
+            } catch (final RuntimeException exc) {
+                // thrown to the thread which posted the transfer, the other posted transfers are still applied
+                slot.failure = exc;
+            }
+            final Thread waiter = slot.waiter;
+            slot.state = DONE;
+
+            if (waiter != Thread.currentThread())
+                LockSupport.unpark(waiter);
+        }
+    }
+}
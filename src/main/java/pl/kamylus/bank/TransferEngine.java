@@ -0,0 +1,150 @@
+package pl.kamylus.bank;
+
+import java.util.List;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Keeps balances of the fixed-point bank (as minor units) and performs transfers. Accounts are addressed by
+ * {@code int} handles: handle of an account is its position in the list of accounts given at construction (from 0 to
+ * {@link #accountsCount()} - 1), the id is resolved to the handle once with {@link #handleOf(CharSequence)}.
+ * {@link FixedPointBank} validates parameters and handles before calling the engine.
+ */
+interface TransferEngine {
+    /**
+     * Returns handle of the account or -1 when there is no such account.
+     */
+    int handleOf(CharSequence accountId);
+
+    /**
+     * Returns id of the account, resolved by the store of the engine.
+     */
+    String getAccountId(int account);
+
+    int accountsCount();
+
+    /**
+     * Returns currency of the minor units of the balances.
+     */
+    CurrencyUnit getCurrency();
+
+    /**
+     * Returns currency of the minor units of the balance of the account, which differs from {@link #getCurrency()}
+     * for multi-currency accounts.
+     */
+    default CurrencyUnit getCurrency(final int account) {
+        return getCurrency();
+    }
+
+    /**
+     * Reads balance of the account. Never takes the locks of the transfers nor waits in the queue of the transfers.
+     */
+    long getBalance(int account);
+
+    /**
+     * Reads balances of the accounts into the array (at the same positions), without blocking the transfers, like
+     * {@link #getBalance(int)}. Implementations document whether all balances come from the same point of time.
+     */
+    void readBalances(int[] accounts, long[] balances);
+
+    /**
+     * Sets balances of all accounts (by their handles), recovered after a restart by {@link LedgerPersistence}. Called
+     * once, before the first transfer.
+     */
+    void restoreBalances(IntToLongFunction balances);
+
+    /**
+     * Opens the snapshot of the balances of all accounts from this moment, while the transfers continue.
+     *
+     * @throws IllegalStateException when another snapshot is open
+     */
+    BalanceSnapshot openSnapshot();
+
+    /**
+     * Performs the transfer and returns {@link TransferOutcome#OK} or the reason of the rejection
+     * ({@link TransferOutcome#INSUFFICIENT_FUNDS} or {@link TransferOutcome#OVERFLOW}), without throwing nor allocating
+     * the message (see {@link #rejection}).
+     */
+    TransferOutcome tryTransfer(int source, int destination, long amount);
+
+    /**
+     * Performs the cross-currency transfer like {@link #tryTransfer(int, int, long)}: withdraws the amount (in minor
+     * units of the source account) and deposits the credit, the amount converted to minor units of the destination
+     * account (see {@link FxRates}). Engines which do not override it are not created for multi-currency accounts
+     * (see {@link TransferEngineType#create}), so the credit is the amount.
+     */
+    default TransferOutcome tryTransfer(final int source, final int destination, final long amount,
+                                        final long credit) {
+        return tryTransfer(source, destination, amount);
+    }
+
+    /**
+     * @throws IllegalArgumentException when there is not enough money on the source account or the destination account
+     *                                  would overflow
+     */
+    default void transfer(final int source, final int destination, final long amount) {
+        final TransferOutcome outcome = tryTransfer(source, destination, amount);
+
+        if (!outcome.isSuccess())
+            throw new IllegalArgumentException(rejection(outcome, source).getMessage());
+    }
+
+    /**
+     * Returns result of the transfer from the source account rejected by {@link #tryTransfer}, with the balance of the
+     * account read after the rejection.
+     */
+    default TransferResult rejection(final TransferOutcome outcome, final int source) {
+        return outcome == TransferOutcome.INSUFFICIENT_FUNDS
+                ? TransferResult.insufficientAmount(getCurrency(source), getBalance(source))
+                : TransferResult.OVERFLOW;
+    }
+
+    /**
+     * Performs the transfers in the given order, with handles of the accounts and amounts (in minor units) taken from
+     * the arrays. Transfer is skipped when its result is already set (it did not pass validation), otherwise its result
+     * is set.
+     */
+    default void transferBatch(final int[] sources, final int[] destinations, final long[] amounts,
+                               final TransferResult[] results) {
+        for (int i = 0; i < results.length; ++i) {
+            if (results[i] != null)
+                continue;
+
+            final TransferOutcome outcome = tryTransfer(sources[i], destinations[i], amounts[i]);
+            results[i] = outcome.isSuccess() ? TransferResult.OK : rejection(outcome, sources[i]);
+        }
+    }
+
+    /**
+     * Performs the transfers like {@link #transferBatch(int[], int[], long[], TransferResult[])}, depositing the
+     * credits (amounts converted to minor units of the destination accounts) instead of the amounts.
+     */
+    default void transferBatch(final int[] sources, final int[] destinations, final long[] amounts,
+                               final long[] credits, final TransferResult[] results) {
+        for (int i = 0; i < results.length; ++i) {
+            if (results[i] != null)
+                continue;
+
+            final TransferOutcome outcome = tryTransfer(sources[i], destinations[i], amounts[i], credits[i]);
+            results[i] = outcome.isSuccess() ? TransferResult.OK : rejection(outcome, sources[i]);
+        }
+    }
+
+    /**
+     * Returns contention of at most {@code limit} accounts which waited for their locks the longest, most contended
+     * first. Engines which do not record the contention return an empty list.
+     *
+     * @throws IllegalArgumentException when the limit is not positive
+     */
+    default List<AccountContention> topContended(final int limit) {
+        if (limit < 1)
+            throw new IllegalArgumentException("Limit (" + limit + ") has to be positive");
+
+        return List.of();
+    }
+
+    /**
+     * Releases resources of the engine (for example threads). Engine cannot be used afterwards.
+     */
+    default void close() {
+    }
+}
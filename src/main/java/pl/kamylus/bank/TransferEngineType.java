@@ -0,0 +1,115 @@
+package pl.kamylus.bank;
+
+import java.util.List;
+
+/**
+ * Available implementations of {@link TransferEngine}, selected at {@link FixedPointBank} construction.
+ */
+enum TransferEngineType {
+    /**
+     * Locks both accounts in strictly defined order (by account id).
+     */
+    MONITOR {
+        @Override
+        TransferEngine create(final List<Account> accounts, final BankConfiguration configuration,
+                              final TransferMetrics metrics, final TransferLog transferLog) {
+            rejectCombiningAccounts(configuration);
+            rejectStripedAccounts(configuration);
+
+            return new MonitorTransferEngine(accounts, configuration, metrics, transferLog);
+        }
+    },
+
+    /**
+     * Locks both accounts in the same order as {@link #MONITOR}, with locks which adapt to the contention and record
+     * it per account.
+     */
+    ADAPTIVE {
+        @Override
+        TransferEngine create(final List<Account> accounts, final BankConfiguration configuration,
+                              final TransferMetrics metrics, final TransferLog transferLog) {
+            rejectStripedAccounts(configuration);
+
+            return new AdaptiveLockTransferEngine(accounts, configuration, metrics, transferLog);
+        }
+    },
+
+    /**
+     * Updates balances with atomic compare-and-set, without any monitors. Supports striped (hot) accounts, but keeps
+     * balances only on the heap.
+     */
+    LOCK_FREE {
+        @Override
+        TransferEngine create(final List<Account> accounts, final BankConfiguration configuration,
+                              final TransferMetrics metrics, final TransferLog transferLog) {
+            rejectCombiningAccounts(configuration);
+            rejectMultiCurrencyAccounts(accounts, configuration);
+            if (configuration.getAccountStoreType() != AccountStoreType.HEAP) {
+                throw new IllegalArgumentException(configuration.getAccountStoreType()
+                        + " account store is not supported by " + LOCK_FREE + " engine");
+            }
+
+            return new LockFreeTransferEngine(accounts, configuration, transferLog);
+        }
+    },
+
+    /**
+     * Single consumer thread applies transfers published into a ring buffer, without locks on accounts.
+     */
+    SEQUENCED {
+        @Override
+        TransferEngine create(final List<Account> accounts, final BankConfiguration configuration,
+                              final TransferMetrics metrics, final TransferLog transferLog) {
+            rejectCombiningAccounts(configuration);
+            rejectStripedAccounts(configuration);
+            rejectMultiCurrencyAccounts(accounts, configuration);
+
+            return new SequencedTransferEngine(accounts, configuration, transferLog);
+        }
+    },
+
+    /**
+     * Accounts are partitioned into shards, each of them owned by a dedicated thread. Transfers between shards are done
+     * in two phases (reserve and credit).
+     */
+    PARTITIONED {
+        @Override
+        TransferEngine create(final List<Account> accounts, final BankConfiguration configuration,
+                              final TransferMetrics metrics, final TransferLog transferLog) {
+            rejectCombiningAccounts(configuration);
+            rejectStripedAccounts(configuration);
+            rejectMultiCurrencyAccounts(accounts, configuration);
+            if (configuration.getAccountStoreType() == AccountStoreType.MAPPED) {
+                throw new IllegalArgumentException(AccountStoreType.MAPPED + " account store is not supported by "
+                        + PARTITIONED + " engine");
+            }
+
+            return new PartitionedTransferEngine(accounts, configuration, transferLog);
+        }
+    };
+
+    /**
+     * @param metrics     receives the lock wait and hold times of engines which lock accounts
+     * @param transferLog receives the transfers before they change the balances (see {@link TransferLog}), may be null
+     */
+    abstract TransferEngine create(List<Account> accounts, BankConfiguration configuration, TransferMetrics metrics,
+                                   TransferLog transferLog);
+
+    private static void rejectStripedAccounts(final BankConfiguration configuration) {
+        if (configuration.hasStripedAccounts())
+            throw new IllegalArgumentException("Striped accounts are supported only by " + LOCK_FREE + " engine");
+    }
+
+    private static void rejectMultiCurrencyAccounts(final List<Account> accounts,
+                                                    final BankConfiguration configuration) {
+        if (FxRates.accountCurrencies(accounts, configuration.getCurrency()) != null) {
+            throw new IllegalArgumentException("Multi-currency accounts are supported only by " + MONITOR + " and "
+                    + ADAPTIVE + " engines");
+        }
+    }
+
+    private static void rejectCombiningAccounts(final BankConfiguration configuration) {
+        if (configuration.hasCombiningAccounts())
+            throw new IllegalArgumentException("Combining accounts are supported only by " + ADAPTIVE + " engine");
+    }
+}
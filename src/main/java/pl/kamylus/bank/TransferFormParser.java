@@ -0,0 +1,177 @@
+package pl.kamylus.bank;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Extracts parameters of the transfer ({@code sourceAccountId}, {@code destinationAccountId}, {@code amount},
+ * {@code idempotencyKey}) from URL-encoded form bytes in place, without creating any {@link String}. Values are
+ * percent-decoded and UTF-8-decoded into character buffers reused for all requests, which {@link FixedPointBank}
+ * resolves to account handles and {@link CurrencyUnit} parses to minor units directly. Other fields are skipped, names
+ * are matched as sent.
+ * <p>
+ * Not thread-safe: every event loop of {@link TransferNioServer} has its own parser and the returned values are valid
+ * until the next {@link #reset()}.
+ */
+final class TransferFormParser {
+    private static final byte[][] FIELD_NAMES = {
+            "sourceAccountId".getBytes(StandardCharsets.US_ASCII),
+            "destinationAccountId".getBytes(StandardCharsets.US_ASCII),
+            "amount".getBytes(StandardCharsets.US_ASCII),
+            "idempotencyKey".getBytes(StandardCharsets.US_ASCII)
+    };
+    private static final int SOURCE_ACCOUNT_ID = 0;
+    private static final int DESTINATION_ACCOUNT_ID = 1;
+    private static final int AMOUNT = 2;
+    private static final int IDEMPOTENCY_KEY = 3;
+
+    private final ByteBuffer valueBytes;
+    private final CharBuffer[] values = new CharBuffer[FIELD_NAMES.length];
+    private final boolean[] present = new boolean[FIELD_NAMES.length];
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /**
+     * @param maxValueBytes maximum length of an encoded value, longer values are rejected
+     */
+    TransferFormParser(final int maxValueBytes) {
+        if (maxValueBytes < 1)
+            throw new IllegalArgumentException("Maximum value length (" + maxValueBytes + ") cannot be less than 1");
+
+        this.valueBytes = ByteBuffer.allocate(maxValueBytes);
+        for (int i = 0; i < values.length; ++i)
+            values[i] = CharBuffer.allocate(maxValueBytes);
+    }
+
+    /**
+     * Forgets the values of the previous request.
+     */
+    void reset() {
+        for (int i = 0; i < present.length; ++i)
+            present[i] = false;
+    }
+
+    /**
+     * Parses the form in bytes from {@code from} (inclusive) to {@code to} (exclusive) of the buffer, without
+     * changing its position. A field already found (for example in the query string) is not overwritten.
+     *
+     * @throws IllegalArgumentException when a value is longer than the limit or its percent-encoding is malformed
+     */
+    void parse(final ByteBuffer buffer, final int from, final int to) {
+        int fieldStart = from;
+
+        while (fieldStart < to) {
+            int fieldEnd = fieldStart;
+            int separator = -1;
+            for (; fieldEnd < to && buffer.get(fieldEnd) != '&'; ++fieldEnd) {
+                if (separator < 0 && buffer.get(fieldEnd) == '=')
+                    separator = fieldEnd;
+            }
+
+            if (separator > fieldStart) {
+                final int field = field(buffer, fieldStart, separator);
+                if (field >= 0 && !present[field]) {
+                    decode(buffer, separator + 1, fieldEnd, values[field]);
+                    present[field] = true;
+                }
+            }
+
+            fieldStart = fieldEnd + 1;
+        }
+    }
+
+    /**
+     * Returns null when there was no such field.
+     */
+    CharSequence getSourceAccountId() {
+        return value(SOURCE_ACCOUNT_ID);
+    }
+
+    CharSequence getDestinationAccountId() {
+        return value(DESTINATION_ACCOUNT_ID);
+    }
+
+    CharSequence getAmount() {
+        return value(AMOUNT);
+    }
+
+    CharSequence getIdempotencyKey() {
+        return value(IDEMPOTENCY_KEY);
+    }
+
+    private CharSequence value(final int field) {
+        return present[field] ? values[field] : null;
+    }
+
+    private static int field(final ByteBuffer buffer, final int from, final int to) {
+        for (int field = 0; field < FIELD_NAMES.length; ++field) {
+            final byte[] name = FIELD_NAMES[field];
+            if (name.length != to - from)
+                continue;
+
+            int i = 0;
+            while (i < name.length && buffer.get(from + i) == name[i])
+                ++i;
+
+            if (i == name.length)
+                return field;
+        }
+
+        return -1;
+    }
+
+    private void decode(final ByteBuffer buffer, final int from, final int to, final CharBuffer value) {
+        valueBytes.clear();
+        boolean ascii = true;
+
+        for (int i = from; i < to; ++i) {
+            byte character = buffer.get(i);
+
+            if (character == '+') {
+                character = ' ';
+            } else if (character == '%') {
+                if (i + 2 >= to || hexDigit(buffer.get(i + 1)) < 0 || hexDigit(buffer.get(i + 2)) < 0)
+                    throw new IllegalArgumentException("Form contains malformed percent-encoding");
+
+                character = (byte) (hexDigit(buffer.get(i + 1)) << 4 | hexDigit(buffer.get(i + 2)));
+                i += 2;
+            }
+
+            if (!valueBytes.hasRemaining()) {
+                throw new IllegalArgumentException("Form value cannot be longer than " + valueBytes.capacity()
+                        + " bytes");
+            }
+
+            valueBytes.put(character);
+            ascii &= character >= 0;
+        }
+
+        valueBytes.flip();
+        value.clear();
+
+        if (ascii) {
+            while (valueBytes.hasRemaining())
+                value.put((char) valueBytes.get());
+        } else {
+            decoder.reset();
+            decoder.decode(valueBytes, value, true);
+            decoder.flush(value);
+        }
+
+        value.flip();
+    }
+
+    private static int hexDigit(final byte character) {
+        if (character >= '0' && character <= '9')
+            return character - '0';
+        if (character >= 'a' && character <= 'f')
+            return character - 'a' + 10;
+        if (character >= 'A' && character <= 'F')
+            return character - 'A' + 10;
+        return -1;
+    }
+}
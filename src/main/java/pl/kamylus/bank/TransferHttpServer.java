@@ -0,0 +1,201 @@
+package pl.kamylus.bank;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Alternative to the Spark {@link Server} built on the HTTP server of the JDK, serving the same
+ * {@code /transferMoney} endpoint with the same responses.
+ * <p>
+ * Connections are accepted and read by a single selector thread, so an idle kept-alive connection does not occupy
+ * any request thread and the number of open connections is limited only by the backlog and file descriptors.
+ * Requests are run by the executor of {@link HttpServerConfiguration#getExecutorType()}. Requests above
+ * {@link HttpServerConfiguration#getMaxConcurrentRequests()} are rejected at once instead of being queued.
+ */
+final class TransferHttpServer implements AutoCloseable {
+    static final String TRANSFER_MONEY_PATH = "/transferMoney";
+
+    private static final int UNPROCESSABLE_ENTITY_ERROR = 422;
+    private static final int PAYLOAD_TOO_LARGE_ERROR = 413;
+    private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded";
+    private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    static {
+        // Headers and body of the response are written separately, so with Nagle's algorithm the body waits for
+        // the delayed acknowledgement of the client (about 40 ms on Linux). Read once, when the first server starts.
+        if (System.getProperty(NO_DELAY_PROPERTY) == null)
+            System.setProperty(NO_DELAY_PROPERTY, "true");
+    }
+
+    private final Bank bank;
+    private final int maxRequestBodyBytes;
+    private final Semaphore requestPermits;
+    private final ExecutorService executor;
+    private final HttpServer server;
+
+    private TransferHttpServer(final Bank bank, final HttpServerConfiguration configuration) throws IOException {
+        this.bank = bank;
+        this.maxRequestBodyBytes = configuration.getMaxRequestBodyBytes();
+        this.requestPermits = new Semaphore(configuration.getMaxConcurrentRequests());
+        this.executor = configuration.getExecutorType().create(configuration.getThreads());
+
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(configuration.getPort()),
+                    configuration.getBacklog());
+        } catch (final IOException exc) {
+            executor.shutdown();
+            throw exc;
+        }
+
+        server.createContext(TRANSFER_MONEY_PATH, this::handleTransferMoney);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts the server in the background.
+     */
+    static TransferHttpServer start(final Bank bank, final HttpServerConfiguration configuration) {
+        Objects.requireNonNull(bank);
+        Objects.requireNonNull(configuration);
+
+        final TransferHttpServer transferHttpServer;
+        try {
+            transferHttpServer = new TransferHttpServer(bank, configuration);
+        } catch (final IOException exc) {
+            throw new UncheckedIOException("Cannot start the server on port " + configuration.getPort(), exc);
+        }
+
+        transferHttpServer.server.start();
+        return transferHttpServer;
+    }
+
+    /**
+     * Port the server listens on, useful when it has been started on port 0.
+     */
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting connections, closes the open ones and stops the executor. The bank is not closed.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    private void handleTransferMoney(final HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respond(exchange, HttpURLConnection.HTTP_BAD_METHOD, "Method not allowed");
+                return;
+            }
+
+            if (!requestPermits.tryAcquire()) {
+                respond(exchange, HttpURLConnection.HTTP_UNAVAILABLE, "Too many concurrent requests");
+                return;
+            }
+
+            try {
+                final byte[] body = readBody(exchange);
+                if (body == null) {
+                    respond(exchange, PAYLOAD_TOO_LARGE_ERROR, "Request body cannot be longer than "
+                            + maxRequestBodyBytes + " bytes");
+                    return;
+                }
+
+                transferMoney(exchange, body);
+            } finally {
+                requestPermits.release();
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void transferMoney(final HttpExchange exchange, final byte[] body) throws IOException {
+        final TransferResult result;
+        try {
+            final Map<String, String> parameters = parseParameters(exchange, body);
+            result = TransferMoneyHandler.transferMoney(bank, parameters.get("idempotencyKey"),
+                    parameters.get("sourceAccountId"), parameters.get("destinationAccountId"),
+                    parameters.get("amount"));
+        } catch (final IllegalArgumentException exc) {
+            respond(exchange, UNPROCESSABLE_ENTITY_ERROR, exc.getMessage());
+            return;
+        } catch (final Exception exc) {
+            respond(exchange, HttpURLConnection.HTTP_INTERNAL_ERROR, exc.getMessage());
+            return;
+        }
+
+        respond(exchange, result.isSuccess() ? HttpURLConnection.HTTP_OK : UNPROCESSABLE_ENTITY_ERROR,
+                result.getMessage());
+    }
+
+    /**
+     * Returns null when the body is longer than the limit.
+     */
+    private byte[] readBody(final HttpExchange exchange) throws IOException {
+        final InputStream input = exchange.getRequestBody();
+        final byte[] body = input.readNBytes(maxRequestBodyBytes);
+        if (body.length == maxRequestBodyBytes && input.read() >= 0)
+            return null;
+
+        return body;
+    }
+
+    /**
+     * Parameters of the query string and of the form in the body (like in Spark, the query string takes precedence).
+     */
+    private static Map<String, String> parseParameters(final HttpExchange exchange, final byte[] body) {
+        final Map<String, String> parameters = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), parameters);
+
+        final String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType == null || contentType.startsWith(FORM_CONTENT_TYPE))
+            parseForm(new String(body, StandardCharsets.ISO_8859_1), parameters);
+
+        return parameters;
+    }
+
+    private static void parseForm(final String form, final Map<String, String> parameters) {
+        if (form == null || form.isEmpty())
+            return;
+
+        for (final String parameter : form.split("&")) {
+            final int separator = parameter.indexOf('=');
+            if (separator <= 0)
+                continue;
+
+            parameters.putIfAbsent(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+                    URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String message)
+            throws IOException {
+        final byte[] response = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "text/plain;charset=utf-8");
+        exchange.sendResponseHeaders(status, response.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(response);
+        }
+    }
+}
@@ -0,0 +1,854 @@
+package pl.kamylus.bank;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only write-ahead journal of successful transfers of the {@link FixedPointBank}.
+ * <p>
+ * Callers claim space for their records in the active in-memory buffer with a CAS of its tail (which also gives the
+ * sequence), encode them there without any lock or allocation and wait (see {@link #awaitDurable(long)}). A single
+ * writer thread seals the active buffer, makes the spare one active, waits until the claimed records are encoded and
+ * writes them to the file with one {@link FileChannel} write (and, depending on the {@link FsyncPolicy}, one fsync).
+ * Records appended in the meantime go to the other buffer, so all transfers performed during an fsync share the next
+ * one (group commit).
+ * <p>
+ * The file starts with a header (magic number, format version and sequence of the last record dropped by
+ * {@link #roll(Position)}, 0 when the journal has never been rolled) followed by records:
+ * <pre>
+ * int length (of the rest of the record), long sequence, long timestamp (epoch millis), long amount (minor units),
+ * short + bytes source account id (UTF-8), short + bytes destination account id (UTF-8), int CRC32C
+ * </pre>
+ * The record is appended before the transfer changes the balances, inside the critical section of the transfer (see
+ * {@link TransferLog}), so sequences order the transfers sharing an account as they were applied: replay in sequence
+ * order (the order of the file) never overdraws an account. Transfer is acknowledged only when its record is durable.
+ * <p>
+ * After an error of a write or an fsync the journal stops: every following append throws, so no transfer is applied
+ * in memory on top of records which may have been lost, also when the rejected transfer is retried.
+ * A torn or corrupted record ends the journal: it is cut off when the journal is opened.
+ * <p>
+ * Records covered by a snapshot are dropped by rolling the journal: the following records are copied into a new file,
+ * which atomically replaces the old one, so a crash leaves either of them. Journals of version 1 (without the sequence
+ * in the header) are still read and become version 2 at the first roll. The writer pauses while the roll copies the
+ * last records and forces the new file, appends go on into the buffers.
+ */
+class TransferJournal implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(TransferJournal.class);
+
+    private static final int MAGIC = 0x4D544A4C;
+    private static final int VERSION = 2;
+    private static final int VERSION_1 = 1;
+    private static final int VERSION_1_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES;
+    private static final int MAX_ID_BYTES = 0xFFFF;
+    private static final int FIXED_RECORD_BYTES = 3 * Long.BYTES + 2 * Short.BYTES + Integer.BYTES;
+    private static final int MAX_RECORD_BYTES = FIXED_RECORD_BYTES + 2 * MAX_ID_BYTES;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long RECORD = 1L << 32;
+    private static final long SEALED = Long.MIN_VALUE;
+
+    /**
+     * Sequence of the last record and offset of the end of that record in the file.
+     */
+    static final class Position {
+        /**
+         * Beginning of the journal which has never been rolled, before the first record.
+         */
+        static final Position START = new Position(0, HEADER_SIZE);
+
+        private final long sequence;
+        private final long offset;
+
+        Position(final long sequence, final long offset) {
+            this.sequence = sequence;
+            this.offset = offset;
+        }
+
+        long getSequence() {
+            return sequence;
+        }
+
+        long getOffset() {
+            return offset;
+        }
+    }
+
+    /**
+     * Receives records of the journal in sequence order.
+     */
+    @FunctionalInterface
+    interface RecordHandler {
+        void onTransfer(long sequence, String sourceAccountId, String destinationAccountId, long amount);
+    }
+
+    private final Path file;
+    /**
+     * Replaced by {@link #roll(Position)} under the lock, while the writer does not use it.
+     */
+    private FileChannel channel;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+
+    private final Buffer[] buffers = {new Buffer(0), new Buffer(1)};
+    private volatile Buffer activeBuffer = buffers[0];
+    private final ThreadLocal<Encoder> encoders = ThreadLocal.withInitial(Encoder::new);
+
+    /**
+     * Guards the state of the writer, which the callers wait for.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition recordsWritten = lock.newCondition();
+    private final Condition rollFinished = lock.newCondition();
+    private volatile long writtenSequence;
+    private long writtenOffset;
+    private volatile long forcedSequence;
+    private boolean writing;
+    private boolean rolling;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    private final Thread writer;
+
+    /**
+     * Opens (or creates) the journal file. Existing records are passed to the handler, a torn tail is cut off and
+     * new records continue the sequence.
+     */
+    TransferJournal(final Path file, final FsyncPolicy fsyncPolicy, final long fsyncIntervalMillis,
+                    final RecordHandler existingRecords) {
+        this(file, fsyncPolicy, fsyncIntervalMillis, Position.START, existingRecords);
+    }
+
+    /**
+     * Opens (or creates) the journal file and passes to the handler only the records after the given position (for
+     * example the position covered by an {@link AccountSnapshot}).
+     */
+    TransferJournal(final Path file, final FsyncPolicy fsyncPolicy, final long fsyncIntervalMillis,
+                    final Position start, final RecordHandler existingRecords) {
+        Objects.requireNonNull(file);
+        Objects.requireNonNull(fsyncPolicy);
+        Objects.requireNonNull(start);
+        Objects.requireNonNull(existingRecords);
+
+        this.file = file;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (final IOException exc) {
+            throw new UncheckedIOException("Cannot open the journal " + file, exc);
+        }
+
+        final long sequence;
+        try {
+            sequence = prepare(start, existingRecords);
+        } catch (final IOException | RuntimeException exc) {
+            try {
+                channel.close();
+            } catch (final IOException closeExc) {
+                exc.addSuppressed(closeExc);
+            }
+
+            if (exc instanceof IOException)
+                throw new UncheckedIOException("Cannot open the journal " + file, (IOException) exc);
+
+            throw (RuntimeException) exc;
+        }
+
+        this.writtenSequence = sequence;
+        this.forcedSequence = sequence;
+        this.writtenOffset = channelPosition();
+        buffers[0].baseSequence = sequence;
+        buffers[1].tail.set(SEALED);
+
+        this.writer = new Thread(this::write, "transfer-journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Reads all valid records of the journal file, without opening it for writing.
+     */
+    static void replay(final Path file, final RecordHandler handler) {
+        replay(file, Position.START, Long.MAX_VALUE, handler);
+    }
+
+    /**
+     * Reads valid records after the given position, up to the given offset of the file (which may still be written).
+     * Returns position of the last read record.
+     */
+    static Position replay(final Path file, final Position start, final long endOffset, final RecordHandler handler) {
+        Objects.requireNonNull(file);
+        Objects.requireNonNull(start);
+        Objects.requireNonNull(handler);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readRecords(channel, start, endOffset, handler);
+        } catch (final IOException exc) {
+            throw new UncheckedIOException("Cannot read the journal " + file, exc);
+        }
+    }
+
+    /**
+     * Claims space in the active buffer, encodes the record there and returns its sequence. Waits only when the
+     * buffer is full, until the writer swaps the buffers. The record is not durable until
+     * {@link #awaitDurable(long)} returns.
+     */
+    long append(final String sourceAccountId, final String destinationAccountId, final long amount) {
+        final int sourceLength = encodedLength(sourceAccountId);
+        final int destinationLength = encodedLength(destinationAccountId);
+        final int recordSize = Integer.BYTES + FIXED_RECORD_BYTES + sourceLength + destinationLength;
+
+        int waits = 0;
+        while (true) {
+            checkUsable();
+
+            final Buffer buffer = activeBuffer;
+            final long tail = buffer.tail.get();
+            final int offset = (int) tail;
+            if (tail < 0 || offset + recordSize > BUFFER_SIZE) {
+                // sealed or full, the writer makes the other buffer active
+                WaitStrategy.BLOCKING.idle(waits++);
+                continue;
+            }
+
+            if (!buffer.tail.compareAndSet(tail, tail + RECORD + recordSize))
+                continue;
+
+            final long sequence = buffer.baseSequence + (tail >>> 32) + 1;
+            encoders.get().encode(buffer, offset, recordSize, sequence, amount, sourceAccountId, sourceLength,
+                    destinationAccountId, destinationLength);
+            buffer.encoded.addAndGet(recordSize);
+
+            if (offset == 0)
+                LockSupport.unpark(writer);
+
+            return sequence;
+        }
+    }
+
+    /**
+     * Waits until the record is written to the file (and forced, when the policy is {@link FsyncPolicy#PER_BATCH}).
+     *
+     * @throws UncheckedIOException when the journal cannot be written
+     */
+    void awaitDurable(final long sequence) {
+        lock.lock();
+        try {
+            while ((fsyncPolicy == FsyncPolicy.PER_BATCH ? forcedSequence : writtenSequence) < sequence) {
+                if (failure != null)
+                    throw new UncheckedIOException("Cannot write the journal " + file, failure);
+
+                recordsWritten.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until all records appended so far are durable, like {@link #awaitDurable(long)}.
+     */
+    void awaitAppendedDurable() {
+        awaitDurable(appendedSequence());
+    }
+
+    /**
+     * Returns sequence of the last record claimed so far.
+     */
+    private long appendedSequence() {
+        while (true) {
+            final Buffer buffer = activeBuffer;
+            final long baseSequence = buffer.baseSequence;
+            final long tail = buffer.tail.get();
+
+            // the buffer has not been reused in the meantime
+            if (buffer.baseSequence == baseSequence)
+                return baseSequence + ((tail & ~SEALED) >>> 32);
+        }
+    }
+
+    /**
+     * Returns position of the last record written to the file (not necessarily forced).
+     */
+    Position getWrittenPosition() {
+        lock.lock();
+        try {
+            return new Position(writtenSequence, writtenOffset);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces all records written so far to the storage device, regardless of the fsync policy.
+     */
+    void force() {
+        try {
+            channel().force(false);
+        } catch (final IOException exc) {
+            throw new UncheckedIOException("Cannot force the journal " + file, exc);
+        }
+    }
+
+    /**
+     * Writes and forces all appended records and closes the file.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed)
+                return;
+
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        LockSupport.unpark(writer);
+
+        try {
+            writer.join();
+        } catch (final InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            channel().close();
+        } catch (final IOException exc) {
+            logger.error("Cannot close the journal {}", file, exc);
+        }
+    }
+
+    /**
+     * Drops the records up to the position, which has to be covered by a durable {@link AccountSnapshot}: the
+     * following records are copied into a new file, which atomically replaces the journal. Records written so far are
+     * copied while the transfers continue. Then the writer pauses while the records written in the meantime are copied
+     * and the new file is forced, appends go on into the buffers. Returns the position in the new file. Not called
+     * concurrently with another roll.
+     *
+     * @throws IllegalArgumentException when the position has not been written yet
+     * @throws UncheckedIOException     when the journal cannot be rolled, it is then left as it was
+     */
+    Position roll(final Position position) {
+        Objects.requireNonNull(position);
+
+        final Path rolledFile = file.resolveSibling(file.getFileName() + ".roll");
+        FileChannel rolled = null;
+        try {
+            rolled = FileChannel.open(rolledFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            writeHeader(rolled, position.getSequence());
+
+            final long copiedOffset = getWrittenPosition().getOffset();
+            if (position.getOffset() > copiedOffset)
+                throw new IllegalArgumentException("Journal position " + position.getOffset() + " is not written");
+            copy(position.getOffset(), copiedOffset, rolled);
+
+            final long endOffset;
+            lock.lock();
+            try {
+                while (writing)
+                    recordsWritten.awaitUninterruptibly();
+                checkUsable();
+
+                rolling = true;
+                endOffset = writtenOffset;
+            } finally {
+                lock.unlock();
+            }
+
+            // the writer waits, the records of the transfers go on into the buffers
+            FileChannel previous = null;
+            long rolledOffset = 0;
+            try {
+                copy(copiedOffset, endOffset, rolled);
+                rolled.force(true);
+                rolledOffset = rolled.position();
+                Files.move(rolledFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                previous = channel;
+            } finally {
+                lock.lock();
+                try {
+                    if (previous != null) {
+                        channel = rolled;
+                        writtenOffset = rolledOffset;
+                        forcedSequence = writtenSequence;
+                    }
+
+                    rolling = false;
+                    rollFinished.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            rolled = null;
+            closeQuietly(previous, file);
+        } catch (final IOException exc) {
+            throw new UncheckedIOException("Cannot roll the journal " + file, exc);
+        } finally {
+            if (rolled != null) {
+                closeQuietly(rolled, rolledFile);
+                deleteQuietly(rolledFile);
+            }
+        }
+
+        return new Position(position.getSequence(), HEADER_SIZE);
+    }
+
+    private void write() {
+        long lastForceNanos = System.nanoTime();
+
+        while (true) {
+            long waitNanos;
+            while (activeBuffer.tail.get() == 0 && !closed && (waitNanos = forceDelayNanos(lastForceNanos)) > 0) {
+                if (waitNanos == Long.MAX_VALUE)
+                    LockSupport.park(this);
+                else
+                    LockSupport.parkNanos(this, waitNanos);
+            }
+
+            final boolean closing = closed;
+            final FileChannel output;
+
+            lock.lock();
+            try {
+                while (rolling)
+                    rollFinished.awaitUninterruptibly();
+
+                output = channel;
+                writing = true;
+            } finally {
+                lock.unlock();
+            }
+
+            final Buffer batch = activeBuffer;
+            final long tail = batch.seal();
+            final long sequence = batch.baseSequence + (tail >>> 32);
+            final int size = (int) tail;
+            if (!closing)
+                activeBuffer = buffers[1 - batch.index].reuse(sequence);
+
+            boolean forced = false;
+            long offset = 0;
+            IOException exception = null;
+            try {
+                batch.awaitEncoded(size);
+
+                final ByteBuffer buffer = batch.buffer.limit(size).position(0);
+                while (buffer.hasRemaining())
+                    output.write(buffer);
+                offset = output.position();
+
+                if (closing || fsyncPolicy == FsyncPolicy.PER_BATCH
+                        || (fsyncPolicy == FsyncPolicy.INTERVAL && forcedSequence < sequence
+                        && System.nanoTime() - lastForceNanos >= fsyncIntervalNanos)) {
+                    output.force(false);
+                    forced = true;
+                    lastForceNanos = System.nanoTime();
+                }
+            } catch (final IOException exc) {
+                logger.error("Cannot write the journal {}", file, exc);
+                exception = exc;
+            } finally {
+                batch.buffer.clear();
+            }
+
+            lock.lock();
+            try {
+                writing = false;
+                if (exception != null) {
+                    failure = exception;
+                    closed = true;
+                    activeBuffer.seal();
+                } else {
+                    writtenSequence = sequence;
+                    writtenOffset = offset;
+                    if (forced)
+                        forcedSequence = sequence;
+                }
+
+                recordsWritten.signalAll();
+
+                if (closing || exception != null)
+                    return;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns how long the writer may sleep before the next interval fsync is due: 0 when it is due now,
+     * {@link Long#MAX_VALUE} when there is nothing to force.
+     */
+    private long forceDelayNanos(final long lastForceNanos) {
+        if (fsyncPolicy != FsyncPolicy.INTERVAL || forcedSequence == writtenSequence)
+            return Long.MAX_VALUE;
+
+        return Math.max(0, lastForceNanos + fsyncIntervalNanos - System.nanoTime());
+    }
+
+    private FileChannel channel() {
+        lock.lock();
+        try {
+            return channel;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copies bytes of the journal between the offsets to the end of the target file.
+     */
+    private void copy(final long from, final long to, final FileChannel target) throws IOException {
+        long offset = from;
+        while (offset < to) {
+            final long copied = channel.transferTo(offset, to - offset, target);
+            if (copied == 0)
+                throw new IOException("Journal is shorter than the expected position " + to);
+
+            offset += copied;
+        }
+    }
+
+    private void closeQuietly(final FileChannel fileChannel, final Path path) {
+        try {
+            fileChannel.close();
+        } catch (final IOException exc) {
+            logger.error("Cannot close {}", path, exc);
+        }
+    }
+
+    private static void deleteQuietly(final Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (final IOException exc) {
+            logger.error("Cannot delete {}", path, exc);
+        }
+    }
+
+    private long channelPosition() {
+        try {
+            return channel.position();
+        } catch (final IOException exc) {
+            throw new UncheckedIOException("Cannot read position of the journal " + file, exc);
+        }
+    }
+
+    private void checkUsable() {
+        if (failure != null)
+            throw new UncheckedIOException("Cannot write the journal " + file, failure);
+
+        if (closed)
+            throw new IllegalStateException("Journal " + file + " is closed");
+    }
+
+    /**
+     * Writes the header of a new journal or reads records of the existing one, cutting off its torn tail. Returns
+     * sequence of the last record.
+     */
+    private long prepare(final Position start, final RecordHandler existingRecords) throws IOException {
+        final long sequence;
+        final long end;
+
+        if (channel.size() == 0 && start.getSequence() == 0) {
+            writeHeader(channel, 0);
+            channel.force(true);
+            sequence = 0;
+            end = HEADER_SIZE;
+        } else {
+            final Position last = readRecords(channel, start, Long.MAX_VALUE, existingRecords);
+            sequence = last.getSequence();
+            end = last.getOffset();
+
+            logger.info("Read {} records of the journal {}", sequence - start.getSequence(), file);
+        }
+
+        if (end < channel.size()) {
+            logger.warn("Cutting off {} bytes of torn or corrupted records at the end of the journal {}",
+                    channel.size() - end, file);
+            channel.truncate(end);
+            channel.force(true);
+        }
+
+        channel.position(end);
+        return sequence;
+    }
+
+    private static void writeHeader(final FileChannel channel, final long rolledSequence) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(rolledSequence)
+                .flip();
+
+        while (header.hasRemaining())
+            channel.write(header);
+    }
+
+    /**
+     * Reads the header and returns position before the first record of the file: after the sequence at which the
+     * journal has been rolled (0 for version 1), at the end of the header.
+     */
+    private static Position readHeader(final FileChannel channel) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+
+        if (header.position() < VERSION_1_HEADER_SIZE || header.getInt(0) != MAGIC)
+            throw new IOException("File is not a transfer journal");
+
+        final int version = header.getInt(Integer.BYTES);
+        if (version == VERSION_1)
+            return new Position(0, VERSION_1_HEADER_SIZE);
+
+        if (version != VERSION)
+            throw new IOException("Unsupported journal version: " + version);
+
+        if (header.hasRemaining())
+            throw new IOException("File is not a transfer journal");
+
+        return new Position(header.getLong(2 * Integer.BYTES), HEADER_SIZE);
+    }
+
+    /**
+     * Returns position before the first record following the start position: the start position itself or the end of
+     * the header, when the journal has been rolled exactly at the start sequence.
+     */
+    private static Position recordsStart(final FileChannel channel, final Position start) throws IOException {
+        final Position first = readHeader(channel);
+
+        if (start.getSequence() < first.getSequence()) {
+            throw new IOException("Journal has been rolled at sequence " + first.getSequence() + ", records following "
+                    + start.getSequence() + " are missing");
+        }
+
+        final Position result = start.getSequence() == first.getSequence() ? first : start;
+        if (channel.size() < result.getOffset())
+            throw new IOException("Journal is shorter than the expected position " + result.getOffset());
+
+        return result;
+    }
+
+    /**
+     * Reads records following the start position and returns position of the last valid one. Stops before the end
+     * offset, at the end of the file or at the first torn or corrupted record.
+     */
+    private static Position readRecords(final FileChannel channel, final Position start, final long endOffset,
+                                        final RecordHandler handler) throws IOException {
+        final Position from = recordsStart(channel, start);
+
+        channel.position(from.getOffset());
+        final DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+
+        final CRC32C recordCrc = new CRC32C();
+        final byte[] record = new byte[MAX_RECORD_BYTES];
+        long end = from.getOffset();
+        long previousSequence = from.getSequence();
+
+        while (true) {
+            final int length;
+            try {
+                if (end + Integer.BYTES > endOffset)
+                    return new Position(previousSequence, end);
+
+                length = input.readInt();
+                if (length < FIXED_RECORD_BYTES || length > MAX_RECORD_BYTES
+                        || end + Integer.BYTES + length > endOffset) {
+                    return new Position(previousSequence, end);
+                }
+
+                input.readFully(record, 0, length);
+            } catch (final EOFException exc) {
+                return new Position(previousSequence, end);
+            }
+
+            recordCrc.reset();
+            recordCrc.update(record, 0, length - Integer.BYTES);
+
+            final ByteBuffer buffer = ByteBuffer.wrap(record, 0, length);
+            if (buffer.getInt(length - Integer.BYTES) != (int) recordCrc.getValue())
+                return new Position(previousSequence, end);
+
+            final long sequence = buffer.getLong();
+            if (sequence != previousSequence + 1)
+                return new Position(previousSequence, end);
+
+            buffer.getLong();
+            final long amount = buffer.getLong();
+            final String sourceAccountId = decodeId(buffer);
+            final String destinationAccountId = decodeId(buffer);
+
+            handler.onTransfer(sequence, sourceAccountId, destinationAccountId, amount);
+
+            previousSequence = sequence;
+            end += Integer.BYTES + length;
+        }
+    }
+
+    /**
+     * Returns length of the account id in UTF-8, like {@link String#getBytes} (a lone surrogate becomes '?').
+     */
+    private static int encodedLength(final String accountId) {
+        int length = 0;
+        for (int i = 0; i < accountId.length(); ++i) {
+            final char c = accountId.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (!Character.isSurrogate(c)) {
+                length += 3;
+            } else if (Character.isHighSurrogate(c) && i + 1 < accountId.length()
+                    && Character.isLowSurrogate(accountId.charAt(i + 1))) {
+                length += 4;
+                ++i;
+            } else {
+                length++;
+            }
+        }
+
+        if (length > MAX_ID_BYTES)
+            throw new IllegalArgumentException("Account id is too long for the journal: " + accountId);
+
+        return length;
+    }
+
+    private static void putId(final ByteBuffer buffer, final String accountId) {
+        for (int i = 0; i < accountId.length(); ++i) {
+            final char c = accountId.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >>> 6))
+                        .put((byte) (0x80 | c & 0x3F));
+            } else if (!Character.isSurrogate(c)) {
+                buffer.put((byte) (0xE0 | c >>> 12))
+                        .put((byte) (0x80 | c >>> 6 & 0x3F))
+                        .put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < accountId.length()
+                    && Character.isLowSurrogate(accountId.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, accountId.charAt(++i));
+                buffer.put((byte) (0xF0 | codePoint >>> 18))
+                        .put((byte) (0x80 | codePoint >>> 12 & 0x3F))
+                        .put((byte) (0x80 | codePoint >>> 6 & 0x3F))
+                        .put((byte) (0x80 | codePoint & 0x3F));
+            } else {
+                buffer.put((byte) '?');
+            }
+        }
+    }
+
+    private static String decodeId(final ByteBuffer buffer) {
+        final int length = Short.toUnsignedInt(buffer.getShort());
+        final String id = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+
+        return id;
+    }
+
+    /**
+     * In-memory buffer of records. Its tail packs the number of the claimed records (high bits) with the number of the
+     * claimed bytes (low bits), with the sign bit set once the writer has sealed the buffer.
+     */
+    private static final class Buffer {
+        private final int index;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final AtomicLong tail = new AtomicLong();
+        /**
+         * Number of the bytes of the claimed records which have already been encoded.
+         */
+        private final AtomicInteger encoded = new AtomicInteger();
+        /**
+         * Sequence of the record preceding the first record of the buffer.
+         */
+        private volatile long baseSequence;
+
+        Buffer(final int index) {
+            this.index = index;
+        }
+
+        /**
+         * Stops the claims and returns the tail, without the sealed bit.
+         */
+        long seal() {
+            while (true) {
+                final long current = tail.get();
+                if (current < 0 || tail.compareAndSet(current, current | SEALED))
+                    return current & ~SEALED;
+            }
+        }
+
+        /**
+         * Prepares the written buffer for the records following the sequence and opens it for claims.
+         */
+        Buffer reuse(final long sequence) {
+            encoded.set(0);
+            baseSequence = sequence;
+            tail.set(0);
+            return this;
+        }
+
+        void awaitEncoded(final int size) {
+            for (int attempt = 0; encoded.get() != size; ++attempt)
+                WaitStrategy.YIELDING.idle(attempt);
+        }
+    }
+
+    /**
+     * Views of the buffers and the checksum of a single appending thread.
+     */
+    private final class Encoder {
+        private final CRC32C crc = new CRC32C();
+        private final ByteBuffer[] views = new ByteBuffer[buffers.length];
+
+        Encoder() {
+            for (int i = 0; i < views.length; ++i)
+                views[i] = buffers[i].buffer.duplicate();
+        }
+
+        void encode(final Buffer buffer, final int offset, final int recordSize, final long sequence, final long amount,
+                    final String sourceAccountId, final int sourceLength, final String destinationAccountId,
+                    final int destinationLength) {
+            final ByteBuffer view = views[buffer.index];
+            view.limit(offset + recordSize).position(offset);
+
+            view.putInt(recordSize - Integer.BYTES)
+                    .putLong(sequence)
+                    .putLong(System.currentTimeMillis())
+                    .putLong(amount)
+                    .putShort((short) sourceLength);
+            putId(view, sourceAccountId);
+            view.putShort((short) destinationLength);
+            putId(view, destinationAccountId);
+
+            crc.reset();
+            crc.update(view.limit(view.position()).position(offset + Integer.BYTES));
+            view.limit(offset + recordSize).putInt((int) crc.getValue());
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package pl.kamylus.bank;
+
+/**
+ * Write-ahead log of the transfers of a {@link TransferEngine} (see {@link LedgerPersistence}). Accounts are addressed
+ * by the handles of the engine.
+ */
+@FunctionalInterface
+interface TransferLog {
+    /**
+     * Logs the transfer which passed its checks, before it changes the balances. Called inside the critical section of
+     * the transfer, so a transfer which depends on the money of another one is always logged after it. When it throws,
+     * the transfer is not performed.
+     */
+    void append(int source, int destination, long amount);
+}
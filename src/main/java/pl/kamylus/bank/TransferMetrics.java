@@ -0,0 +1,132 @@
+package pl.kamylus.bank;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the transfers of a {@link Bank}: number of the transfers, rejects by reason, time spent waiting for and
+ * holding the account monitors (MONITOR engine and the {@link BigDecimalBank}) and latency of the transfer
+ * requests. Counters are {@link LongAdder}s and latencies go to striped {@link LatencyHistogram}s, so recording
+ * neither allocates nor makes the threads contend.
+ * <p>
+ * Metrics are written in the Prometheus text exposition format, durations in seconds. Transfers per second are
+ * computed between two consecutive writes.
+ */
+final class TransferMetrics {
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final LongAdder transfers = new LongAdder();
+    private final LongAdder[] rejects = new LongAdder[RejectReason.values().length];
+    private final LatencyHistogram lockWait = new LatencyHistogram();
+    private final LatencyHistogram lockHold = new LatencyHistogram();
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+
+    private long lastWriteNanos = System.nanoTime();
+    private long lastWriteTransfers;
+
+    TransferMetrics() {
+        for (int i = 0; i < rejects.length; ++i)
+            rejects[i] = new LongAdder();
+    }
+
+    void transferred() {
+        transfers.increment();
+    }
+
+    void rejected(final RejectReason reason) {
+        rejects[reason.ordinal()].increment();
+    }
+
+    /**
+     * Records time spent waiting for the monitors of the transfer and holding them.
+     */
+    void locked(final long waitNanos, final long holdNanos) {
+        lockWait.record(waitNanos);
+        lockHold.record(holdNanos);
+    }
+
+    /**
+     * Records time of the whole transfer request, successful or not.
+     */
+    void requested(final long nanos) {
+        requestLatency.record(nanos);
+    }
+
+    long getTransfers() {
+        return transfers.sum();
+    }
+
+    long getRejects(final RejectReason reason) {
+        return rejects[reason.ordinal()].sum();
+    }
+
+    LatencyHistogram getLockWait() {
+        return lockWait;
+    }
+
+    LatencyHistogram getLockHold() {
+        return lockHold;
+    }
+
+    LatencyHistogram getRequestLatency() {
+        return requestLatency;
+    }
+
+    /**
+     * Appends all metrics in the Prometheus text format.
+     */
+    synchronized void writePrometheus(final StringBuilder output) {
+        final long now = System.nanoTime();
+        final long transfersCount = transfers.sum();
+        final double elapsedSeconds = (now - lastWriteNanos) / NANOS_PER_SECOND;
+        final double rate = elapsedSeconds > 0 ? (transfersCount - lastWriteTransfers) / elapsedSeconds : 0;
+        lastWriteNanos = now;
+        lastWriteTransfers = transfersCount;
+
+        output.append("# HELP bank_transfers_total Successful transfers.\n")
+                .append("# TYPE bank_transfers_total counter\n")
+                .append("bank_transfers_total ").append(transfersCount).append('\n');
+
+        output.append("# HELP bank_transfers_per_second Successful transfers per second since the previous scrape.\n")
+                .append("# TYPE bank_transfers_per_second gauge\n")
+                .append("bank_transfers_per_second ").append(rate).append('\n');
+
+        output.append("# HELP bank_transfer_rejects_total Rejected transfers by reason.\n")
+                .append("# TYPE bank_transfer_rejects_total counter\n");
+        for (final RejectReason reason : RejectReason.values()) {
+            output.append("bank_transfer_rejects_total{reason=\"").append(reason.getLabel()).append("\"} ")
+                    .append(getRejects(reason)).append('\n');
+        }
+
+        writeHistogram(output, "bank_lock_wait_seconds", "Time spent waiting for the account monitors.", lockWait);
+        writeHistogram(output, "bank_lock_hold_seconds", "Time the account monitors are held by a transfer.",
+                lockHold);
+        writeHistogram(output, "bank_transfer_request_seconds", "Latency of the transfer requests.",
+                requestLatency);
+    }
+
+    /**
+     * Writes cumulative buckets at the powers of 2 (the sub-buckets are merged) to keep the output short.
+     */
+    private static void writeHistogram(final StringBuilder output, final String name, final String help,
+                                       final LatencyHistogram histogram) {
+        output.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(" histogram\n");
+
+        long cumulative = 0;
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKETS; ++bucket) {
+            cumulative += histogram.getCount(bucket);
+
+            if ((bucket & (LatencyHistogram.SUB_BUCKETS - 1)) == LatencyHistogram.SUB_BUCKETS - 1) {
+                output.append(name).append("_bucket{le=\"")
+                        .append((LatencyHistogram.highestValueOf(bucket) + 1) / NANOS_PER_SECOND).append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+        }
+
+        output.append(name).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n')
+                .append(name).append("_sum ").append(histogram.getSum() / NANOS_PER_SECOND).append('\n')
+                .append(name).append("_count ").append(cumulative).append('\n');
+    }
+}
@@ -22,8 +22,9 @@ class TransferMoneyHandler implements Route {
 
     @Override
     public Object handle(final Request request, final Response response) {
+        final TransferResult result;
         try {
-            transferMoney(request);
+            result = transferMoney(request);
         } catch (final IllegalArgumentException exc) {
             response.status(UNPROCESSABLE_ENTITY_ERROR);
             return exc.getMessage();
@@ -32,19 +33,120 @@ class TransferMoneyHandler implements Route {
             return exc.getMessage();
         }
 
-        return "OK";
+        if (!result.isSuccess())
+            response.status(UNPROCESSABLE_ENTITY_ERROR);
+
+        return result.getMessage();
+    }
+
+    private TransferResult transferMoney(final Request request) {
+        return transferMoney(bank, request.queryParams("idempotencyKey"), request.queryParams("sourceAccountId"),
+                request.queryParams("destinationAccountId"), request.queryParams("amount"));
+    }
+
+    /**
+     * Performs the transfer at most once for the idempotency key (optional, may be null): a retry returns the result
+     * of the first request (the same message when it was rejected) without touching the accounts. Failures other than
+     * rejections are not remembered, so the retry performs the transfer. Latency of the request is recorded in the
+     * {@link TransferMetrics} of the bank.
+     * <p>
+     * Rejections are returned, not thrown (see {@link Bank#tryTransferMoney}), so a rejected request costs about as
+     * much as a successful one. The message of the rejection is the only allocation on this path.
+     *
+     * @return {@link TransferResult#OK} or the rejection with its message
+     */
+    static TransferResult transferMoney(final Bank bank, final CharSequence idempotencyKey,
+                                        final CharSequence sourceAccountId, final CharSequence destinationAccountId,
+                                        final CharSequence amountText) {
+        final long start = System.nanoTime();
+        try {
+            return transferMoneyOnce(bank, idempotencyKey, sourceAccountId, destinationAccountId, amountText);
+        } finally {
+            bank.getMetrics().requested(System.nanoTime() - start);
+        }
+    }
+
+    private static TransferResult transferMoneyOnce(final Bank bank, final CharSequence idempotencyKey,
+                                                    final CharSequence sourceAccountId,
+                                                    final CharSequence destinationAccountId,
+                                                    final CharSequence amountText) {
+        if (idempotencyKey == null || idempotencyKey.length() == 0)
+            return transferMoney(bank, sourceAccountId, destinationAccountId, amountText);
+
+        final IdempotencyStore idempotencyStore = bank.getIdempotencyStore();
+        final String key = idempotencyKey.toString();
+        final TransferResult previousResult = idempotencyStore.tryClaim(key,
+                IdempotencyStore.fingerprint(sourceAccountId, destinationAccountId, amountText));
+
+        if (previousResult != null) {
+            final TransferOutcome outcome = previousResult.getOutcome();
+            if (!IdempotencyStore.isConflict(outcome))
+                return previousResult;
+
+            bank.getMetrics().rejected(outcome.getReason());
+            return TransferResult.failure(outcome, IdempotencyStore.conflictMessage(outcome, key));
+        }
+
+        final TransferResult result;
+        try {
+            result = transferMoney(bank, sourceAccountId, destinationAccountId, amountText);
+        } catch (final RuntimeException exc) {
+            idempotencyStore.release(key);
+            throw exc;
+        }
+
+        idempotencyStore.complete(key, result);
+        return result;
     }
 
-    private void transferMoney(final Request request) {
-        final String sourceAccountId = request.queryParams("sourceAccountId");
-        final String destinationAccountId = request.queryParams("destinationAccountId");
-        final String amountText = request.queryParams("amount");
+    /**
+     * Performs the transfer with the parameters as they come in the request, shared with {@link TransferHttpServer}
+     * and {@link TransferNioServer}. Parameters of the fixed-point bank are not converted to strings.
+     *
+     * @return {@link TransferResult#OK} or the rejection with its message
+     */
+    static TransferResult transferMoney(final Bank bank, final CharSequence sourceAccountId,
+                                        final CharSequence destinationAccountId, final CharSequence amountText) {
+        if (amountText == null || amountText.length() == 0)
+            return rejected(bank, TransferOutcome.MISSING_AMOUNT, "Amount cannot be null or empty");
 
-        if (amountText == null || amountText.isEmpty())
-            throw new IllegalArgumentException("Amount cannot be null or empty");
+        if (bank instanceof FixedPointBank) {
+            // the accounts are looked up once, for the currency of the amount and for the transfer
+            final FixedPointBank fixedPointBank = (FixedPointBank) bank;
+            final int source = fixedPointBank.findAccountHandle(sourceAccountId);
+            final int destination = fixedPointBank.findAccountHandle(destinationAccountId);
+            final CurrencyUnit currency = fixedPointBank.amountCurrency(source);
+            final long amount = currency.tryParseMinorUnits(amountText);
+            if (amount == CurrencyUnit.INVALID_MINOR_UNITS) {
+                return rejected(bank, TransferOutcome.INVALID_AMOUNT, currency.invalidAmountMessage(amountText));
+            }
 
-        BigDecimal amount = new BigDecimal(amountText);
+            final TransferOutcome outcome = fixedPointBank.tryTransferMoney(sourceAccountId, destinationAccountId,
+                    source, destination, amount);
+            return outcome.isSuccess() ? TransferResult.OK : TransferResult.failure(outcome,
+                    fixedPointBank.rejectionMessage(outcome, sourceAccountId, destinationAccountId, amount));
+        }
+
+        // the BigDecimal bank parses the amount with BigDecimal, which reports malformed numbers only by throwing
+        final BigDecimal amount;
+        try {
+            amount = new BigDecimal(amountText.toString());
+        } catch (final NumberFormatException exc) {
+            return rejected(bank, TransferOutcome.INVALID_AMOUNT, String.valueOf(exc.getMessage()));
+        }
+
+        final String source = Objects.toString(sourceAccountId, null);
+        final String destination = Objects.toString(destinationAccountId, null);
+        final TransferOutcome outcome = bank.tryTransferMoney(source, destination, amount);
+        return outcome.isSuccess() ? TransferResult.OK
+                : TransferResult.failure(outcome, bank.rejectionMessage(outcome, source, destination, amount));
+    }
 
-        bank.transferMoney(sourceAccountId, destinationAccountId, amount);
+    /**
+     * Counts the rejection of the request, which did not reach the bank.
+     */
+    private static TransferResult rejected(final Bank bank, final TransferOutcome outcome, final String message) {
+        bank.getMetrics().rejected(outcome.getReason());
+        return TransferResult.failure(outcome, message);
     }
 }
@@ -0,0 +1,330 @@
+package pl.kamylus.bank;
+
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Lean HTTP/1.1 server of the {@code /transferMoney} endpoint for high request rates, built on {@link NioServer},
+ * with the same responses as the Spark {@link Server}.
+ * <p>
+ * Keep-alive and pipelining are supported. Parameters are parsed by {@link TransferFormParser} from the input buffer
+ * of the connection straight into account handles and minor units, so a successful transfer of the fixed-point bank
+ * does not allocate. Transfers are performed by the event loops, so a bank waiting for the journal stalls all
+ * connections of the loop (more loops than processors make sense then). Chunked requests and
+ * {@code Expect: 100-continue} are not supported.
+ */
+final class TransferNioServer implements AutoCloseable {
+    static final String TRANSFER_MONEY_PATH = "/transferMoney";
+
+    static final int MAX_HEADER_BYTES = 4096;
+    private static final int OUTPUT_BUFFER_BYTES = 8192;
+    /**
+     * Every response fits in it, longer messages are truncated.
+     */
+    private static final int MAX_RESPONSE_BYTES = 1024;
+    private static final int MAX_MESSAGE_LENGTH = 256;
+
+    private static final int UNPROCESSABLE_ENTITY_ERROR = 422;
+    private static final int PAYLOAD_TOO_LARGE_ERROR = 413;
+    private static final int HEADER_TOO_LARGE_ERROR = 431;
+    private static final int NOT_IMPLEMENTED_ERROR = 501;
+
+    private static final byte[] POST = ascii("POST");
+    private static final byte[] TRANSFER_MONEY_PATH_BYTES = ascii(TRANSFER_MONEY_PATH);
+    private static final byte[] HTTP_1_1 = ascii("HTTP/1.1");
+    private static final byte[] CONTENT_LENGTH = ascii("content-length");
+    private static final byte[] CONTENT_TYPE = ascii("content-type");
+    private static final byte[] CONNECTION = ascii("connection");
+    private static final byte[] TRANSFER_ENCODING = ascii("transfer-encoding");
+    private static final byte[] CONNECTION_CLOSE = ascii("close");
+    private static final byte[] CONNECTION_KEEP_ALIVE = ascii("keep-alive");
+    private static final byte[] FORM_CONTENT_TYPE = ascii("application/x-www-form-urlencoded");
+    private static final byte[] OK_RESPONSE = ascii("HTTP/1.1 200 OK\r\n"
+            + "Content-Type: text/plain;charset=utf-8\r\nContent-Length: 2\r\n\r\nOK");
+    private static final byte[] OK_CLOSE_RESPONSE = ascii("HTTP/1.1 200 OK\r\n"
+            + "Content-Type: text/plain;charset=utf-8\r\nContent-Length: 2\r\nConnection: close\r\n\r\nOK");
+
+    private final Bank bank;
+    private final int maxRequestBodyBytes;
+    private final NioServer server;
+
+    private TransferNioServer(final Bank bank, final HttpServerConfiguration configuration) {
+        this.bank = bank;
+        this.maxRequestBodyBytes = configuration.getMaxRequestBodyBytes();
+        this.server = NioServer.start("transfer-nio", configuration, MAX_HEADER_BYTES + maxRequestBodyBytes,
+                OUTPUT_BUFFER_BYTES, MAX_RESPONSE_BYTES, HttpRequestHandler::new);
+    }
+
+    /**
+     * Binds the port and starts the threads of the server (they keep the JVM running until the server is closed).
+     */
+    static TransferNioServer start(final Bank bank, final HttpServerConfiguration configuration) {
+        Objects.requireNonNull(bank);
+        Objects.requireNonNull(configuration);
+
+        return new TransferNioServer(bank, configuration);
+    }
+
+    /**
+     * Port the server listens on, useful when it has been started on port 0.
+     */
+    int getPort() {
+        return server.getPort();
+    }
+
+    /**
+     * Stops accepting connections, closes the open ones and waits for the threads. The bank is not closed.
+     */
+    @Override
+    public void close() {
+        server.close();
+    }
+
+    private static byte[] ascii(final String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Handler of one event loop, with its own parser.
+     */
+    private final class HttpRequestHandler implements NioServer.RequestHandler {
+        private final TransferFormParser parser = new TransferFormParser(MAX_HEADER_BYTES + maxRequestBodyBytes);
+        private ByteBuffer input;
+        private ByteBuffer output;
+        private boolean closing;
+
+        @Override
+        public int handle(final ByteBuffer input, final int from, final int to, final ByteBuffer output) {
+            this.input = input;
+            this.output = output;
+            this.closing = false;
+
+            final int length = handleRequest(from, to);
+            return closing ? CLOSE : length;
+        }
+
+        /**
+         * Returns length of the request, or 0 when the request is not complete yet. Requests which cannot be framed
+         * are answered and the connection is closed.
+         */
+        private int handleRequest(final int from, final int to) {
+            final int headerEnd = indexOfHeaderEnd(from, to);
+            if (headerEnd < 0 || headerEnd - from > MAX_HEADER_BYTES) {
+                if (headerEnd < 0 && to - from < MAX_HEADER_BYTES)
+                    return 0;
+
+                return reject(HEADER_TOO_LARGE_ERROR, "Request header cannot be longer than " + MAX_HEADER_BYTES
+                        + " bytes", to - from);
+            }
+
+            final int requestLineEnd = indexOf((byte) '\r', from, headerEnd);
+            final int methodEnd = indexOf((byte) ' ', from, requestLineEnd);
+            final int targetEnd = methodEnd < 0 ? -1 : indexOf((byte) ' ', methodEnd + 1, requestLineEnd);
+            if (targetEnd < 0)
+                return reject(HttpURLConnection.HTTP_BAD_REQUEST, "Malformed request line", to - from);
+
+            boolean keepAlive = matches(targetEnd + 1, requestLineEnd, HTTP_1_1);
+            boolean form = true;
+            long contentLength = 0;
+
+            for (int line = requestLineEnd + 2; line < headerEnd - 2; ) {
+                final int lineEnd = indexOf((byte) '\r', line, headerEnd);
+                final int colon = indexOf((byte) ':', line, lineEnd);
+                if (colon < 0)
+                    return reject(HttpURLConnection.HTTP_BAD_REQUEST, "Malformed header", to - from);
+
+                int valueStart = colon + 1;
+                while (valueStart < lineEnd && input.get(valueStart) == ' ')
+                    ++valueStart;
+                int valueEnd = lineEnd;
+                while (valueEnd > valueStart && input.get(valueEnd - 1) == ' ')
+                    --valueEnd;
+
+                if (equalsIgnoreCase(line, colon, CONTENT_LENGTH)) {
+                    contentLength = parseContentLength(valueStart, valueEnd);
+                    if (contentLength < 0)
+                        return reject(HttpURLConnection.HTTP_BAD_REQUEST, "Malformed Content-Length", to - from);
+                } else if (equalsIgnoreCase(line, colon, CONNECTION)) {
+                    if (equalsIgnoreCase(valueStart, valueEnd, CONNECTION_CLOSE))
+                        keepAlive = false;
+                    else if (equalsIgnoreCase(valueStart, valueEnd, CONNECTION_KEEP_ALIVE))
+                        keepAlive = true;
+                } else if (equalsIgnoreCase(line, colon, CONTENT_TYPE)) {
+                    form = equalsIgnoreCase(valueStart, Math.min(valueEnd, valueStart + FORM_CONTENT_TYPE.length),
+                            FORM_CONTENT_TYPE);
+                } else if (equalsIgnoreCase(line, colon, TRANSFER_ENCODING)) {
+                    return reject(NOT_IMPLEMENTED_ERROR, "Transfer-Encoding is not supported", to - from);
+                }
+
+                line = lineEnd + 2;
+            }
+
+            if (contentLength > maxRequestBodyBytes) {
+                return reject(PAYLOAD_TOO_LARGE_ERROR, "Request body cannot be longer than " + maxRequestBodyBytes
+                        + " bytes", to - from);
+            }
+
+            if (to - headerEnd < contentLength)
+                return 0;
+
+            final int requestEnd = headerEnd + (int) contentLength;
+            closing = !keepAlive;
+
+            final int queryStart = indexOf((byte) '?', methodEnd + 1, targetEnd);
+            if (!matches(methodEnd + 1, queryStart < 0 ? targetEnd : queryStart, TRANSFER_MONEY_PATH_BYTES)) {
+                respond(HttpURLConnection.HTTP_NOT_FOUND, "Not found", false);
+            } else if (!matches(from, methodEnd, POST)) {
+                respond(HttpURLConnection.HTTP_BAD_METHOD, "Method not allowed", true);
+            } else {
+                transferMoney(queryStart, targetEnd, form ? headerEnd : requestEnd, requestEnd);
+            }
+
+            return requestEnd - from;
+        }
+
+        private void transferMoney(final int queryStart, final int queryEnd, final int bodyStart, final int bodyEnd) {
+            parser.reset();
+
+            final TransferResult result;
+            try {
+                if (queryStart >= 0)
+                    parser.parse(input, queryStart + 1, queryEnd);
+                parser.parse(input, bodyStart, bodyEnd);
+
+                result = TransferMoneyHandler.transferMoney(bank, parser.getIdempotencyKey(),
+                        parser.getSourceAccountId(), parser.getDestinationAccountId(), parser.getAmount());
+            } catch (final IllegalArgumentException exc) {
+                respond(UNPROCESSABLE_ENTITY_ERROR, exc.getMessage(), false);
+                return;
+            } catch (final Exception exc) {
+                respond(HttpURLConnection.HTTP_INTERNAL_ERROR, exc.getMessage(), false);
+                return;
+            }
+
+            if (!result.isSuccess()) {
+                respond(UNPROCESSABLE_ENTITY_ERROR, result.getMessage(), false);
+                return;
+            }
+
+            output.put(closing ? OK_CLOSE_RESPONSE : OK_RESPONSE);
+        }
+
+        /**
+         * Responds to a request which cannot be framed, skips all the received bytes and closes the connection.
+         */
+        private int reject(final int status, final String message, final int received) {
+            closing = true;
+            respond(status, message, false);
+            return received;
+        }
+
+        private void respond(final int status, final String message, final boolean allowHeader) {
+            String body = String.valueOf(message);
+            if (body.length() > MAX_MESSAGE_LENGTH)
+                body = body.substring(0, MAX_MESSAGE_LENGTH);
+            final byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+
+            output.put(ascii("HTTP/1.1 " + status + " " + reasonPhrase(status) + "\r\n"
+                    + "Content-Type: text/plain;charset=utf-8\r\n"
+                    + "Content-Length: " + bodyBytes.length + "\r\n"
+                    + (allowHeader ? "Allow: POST\r\n" : "")
+                    + (closing ? "Connection: close\r\n" : "")
+                    + "\r\n"));
+            output.put(bodyBytes);
+        }
+
+        /**
+         * Returns position just after the empty line ending the header or -1 when it has not been received yet.
+         */
+        private int indexOfHeaderEnd(final int from, final int to) {
+            for (int i = from + 3; i < to; ++i) {
+                if (input.get(i) == '\n' && input.get(i - 1) == '\r' && input.get(i - 2) == '\n'
+                        && input.get(i - 3) == '\r') {
+                    return i + 1;
+                }
+            }
+
+            return -1;
+        }
+
+        private int indexOf(final byte character, final int from, final int to) {
+            for (int i = from; i < to; ++i) {
+                if (input.get(i) == character)
+                    return i;
+            }
+
+            return -1;
+        }
+
+        private boolean matches(final int from, final int to, final byte[] expected) {
+            if (to - from != expected.length)
+                return false;
+
+            for (int i = 0; i < expected.length; ++i) {
+                if (input.get(from + i) != expected[i])
+                    return false;
+            }
+
+            return true;
+        }
+
+        /**
+         * Compares the bytes with the expected lower case ones ignoring case.
+         */
+        private boolean equalsIgnoreCase(final int from, final int to, final byte[] expected) {
+            if (to - from != expected.length)
+                return false;
+
+            for (int i = 0; i < expected.length; ++i) {
+                final byte character = input.get(from + i);
+                final int lowerCase = character >= 'A' && character <= 'Z' ? character + ('a' - 'A') : character;
+                if (lowerCase != expected[i])
+                    return false;
+            }
+
+            return true;
+        }
+
+        /**
+         * Returns -1 when the value is not a number.
+         */
+        private long parseContentLength(final int from, final int to) {
+            if (from == to)
+                return -1;
+
+            long length = 0;
+            for (int i = from; i < to; ++i) {
+                final byte digit = input.get(i);
+                if (digit < '0' || digit > '9')
+                    return -1;
+
+                length = Math.min(10 * length + digit - '0', Integer.MAX_VALUE);
+            }
+
+            return length;
+        }
+    }
+
+    private static String reasonPhrase(final int status) {
+        switch (status) {
+            case HttpURLConnection.HTTP_BAD_REQUEST:
+                return "Bad Request";
+            case HttpURLConnection.HTTP_NOT_FOUND:
+                return "Not Found";
+            case HttpURLConnection.HTTP_BAD_METHOD:
+                return "Method Not Allowed";
+            case PAYLOAD_TOO_LARGE_ERROR:
+                return "Payload Too Large";
+            case UNPROCESSABLE_ENTITY_ERROR:
+                return "Unprocessable Entity";
+            case HEADER_TOO_LARGE_ERROR:
+                return "Request Header Fields Too Large";
+            case NOT_IMPLEMENTED_ERROR:
+                return "Not Implemented";
+            default:
+                return "Internal Server Error";
+        }
+    }
+}
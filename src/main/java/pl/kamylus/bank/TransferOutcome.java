@@ -0,0 +1,68 @@
+package pl.kamylus.bank;
+
+/**
+ * Outcome of a transfer returned by the result-code API ({@link Bank#tryTransferMoney} and
+ * {@link TransferEngine#tryTransfer}): success or the reason of the rejection. Values are preallocated, so a rejected
+ * transfer does not allocate nor throw and costs about as much as a successful one. The message of the rejection is
+ * rendered separately, only when it is needed (see {@link Bank#rejectionMessage}).
+ */
+enum TransferOutcome {
+    OK(null),
+    MISSING_SOURCE_ACCOUNT_ID(RejectReason.MISSING_ACCOUNT_ID),
+    MISSING_DESTINATION_ACCOUNT_ID(RejectReason.MISSING_ACCOUNT_ID),
+    SAME_ACCOUNT(RejectReason.SAME_ACCOUNT),
+    UNKNOWN_SOURCE_ACCOUNT(RejectReason.UNKNOWN_ACCOUNT),
+    UNKNOWN_DESTINATION_ACCOUNT(RejectReason.UNKNOWN_ACCOUNT),
+    MISSING_AMOUNT(RejectReason.INVALID_AMOUNT),
+    /**
+     * Amount is not a number or cannot be represented in the currency of the source account.
+     */
+    INVALID_AMOUNT(RejectReason.INVALID_AMOUNT),
+    NON_POSITIVE_AMOUNT(RejectReason.INVALID_AMOUNT),
+    INSUFFICIENT_FUNDS(RejectReason.INSUFFICIENT_FUNDS),
+    /**
+     * Balance of the destination account would overflow.
+     */
+    OVERFLOW(RejectReason.OVERFLOW),
+    /**
+     * There is no FX rate from the currency of the source account to the currency of the destination account.
+     */
+    MISSING_FX_RATE(RejectReason.MISSING_FX_RATE),
+    /**
+     * Amount converted to the currency of the destination account is less than its minor unit.
+     */
+    CONVERTED_AMOUNT_TOO_SMALL(RejectReason.INVALID_AMOUNT),
+    /**
+     * Idempotency key is empty or too long.
+     */
+    INVALID_IDEMPOTENCY_KEY(RejectReason.IDEMPOTENCY_CONFLICT),
+    /**
+     * Idempotency key has been used for another transfer.
+     */
+    IDEMPOTENCY_KEY_REUSED(RejectReason.IDEMPOTENCY_CONFLICT),
+    /**
+     * Transfer with the same idempotency key is in progress.
+     */
+    IDEMPOTENCY_KEY_IN_PROGRESS(RejectReason.IDEMPOTENCY_CONFLICT),
+    /**
+     * All idempotency keys which can be kept are taken by the transfers in progress.
+     */
+    IDEMPOTENCY_STORE_FULL(RejectReason.IDEMPOTENCY_CONFLICT);
+
+    private final RejectReason reason;
+
+    TransferOutcome(final RejectReason reason) {
+        this.reason = reason;
+    }
+
+    boolean isSuccess() {
+        return this == OK;
+    }
+
+    /**
+     * Returns reason of the rejection counted by {@link TransferMetrics}, null for {@link #OK}.
+     */
+    RejectReason getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,56 @@
+package pl.kamylus.bank;
+
+import java.util.Objects;
+
+/**
+ * Result of a single transfer of the batch: success or failure with its {@link TransferOutcome} and the same message
+ * which {@link Bank#transferMoney} would throw.
+ */
+final class TransferResult {
+    static final TransferResult OK = new TransferResult(TransferOutcome.OK, "OK");
+    static final TransferResult OVERFLOW = new TransferResult(TransferOutcome.OVERFLOW,
+            "Amount on the destination account would overflow");
+
+    private final TransferOutcome outcome;
+    private final String message;
+
+    private TransferResult(final TransferOutcome outcome, final String message) {
+        this.outcome = outcome;
+        this.message = message;
+    }
+
+    static TransferResult failure(final TransferOutcome outcome, final String message) {
+        Objects.requireNonNull(outcome);
+        Objects.requireNonNull(message);
+
+        if (outcome.isSuccess())
+            throw new IllegalArgumentException("Failure cannot have " + outcome + " outcome");
+
+        return new TransferResult(outcome, message);
+    }
+
+    /**
+     * Returns failure of the transfer from the account with the given balance (in minor units of the currency).
+     */
+    static TransferResult insufficientAmount(final CurrencyUnit currency, final long balance) {
+        return new TransferResult(TransferOutcome.INSUFFICIENT_FUNDS, "Insufficient amount ("
+                + currency.format(balance) + ") on the source account");
+    }
+
+    boolean isSuccess() {
+        return outcome.isSuccess();
+    }
+
+    TransferOutcome getOutcome() {
+        return outcome;
+    }
+
+    String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return message;
+    }
+}
@@ -0,0 +1,43 @@
+package pl.kamylus.bank;
+
+/**
+ * Snapshot cut by {@link BalanceVersions}. It does not copy the balances up front: it reads them lazily and only
+ * balances changed before they are read are copied aside by the transfers.
+ */
+final class VersionedBalanceSnapshot implements BalanceSnapshot {
+    private final BalanceVersions versions;
+    private final long epoch;
+    private final int size;
+    private boolean closed;
+
+    VersionedBalanceSnapshot(final BalanceVersions versions, final long epoch, final int size) {
+        this.versions = versions;
+        this.epoch = epoch;
+        this.size = size;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long getBalance(final int account) {
+        if (closed)
+            throw new IllegalStateException("Balance snapshot is closed");
+
+        if (account < 0 || account >= size)
+            throw new IndexOutOfBoundsException("Account handle " + account + " does not exist");
+
+        return versions.readSnapshot(account, epoch);
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+
+        closed = true;
+        versions.closeSnapshot(epoch);
+    }
+}
@@ -0,0 +1,62 @@
+package pl.kamylus.bank;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How threads of {@link SequencedTransferEngine} wait for the ring buffer: the consumer for the next command and
+ * the producers for a free slot.
+ */
+enum WaitStrategy {
+    /**
+     * Lowest latency, but the waiting thread occupies the whole core.
+     */
+    BUSY_SPIN {
+        @Override
+        void idle(final int attempt) {
+            Thread.onSpinWait();
+        }
+    },
+
+    /**
+     * Spins for a while and then yields the core to other threads.
+     */
+    YIELDING {
+        @Override
+        void idle(final int attempt) {
+            if (attempt < SPIN_ATTEMPTS)
+                Thread.onSpinWait();
+            else
+                Thread.yield();
+        }
+    },
+
+    /**
+     * Spins for a while and then parks. Producers wake the parked consumer up, so an idle engine uses no CPU.
+     */
+    BLOCKING {
+        @Override
+        void idle(final int attempt) {
+            if (attempt < SPIN_ATTEMPTS)
+                Thread.onSpinWait();
+            else
+                LockSupport.parkNanos(PARK_NANOS);
+        }
+
+        @Override
+        boolean wakesConsumer() {
+            return true;
+        }
+    };
+
+    private static final int SPIN_ATTEMPTS = 100;
+    private static final long PARK_NANOS = 100_000;
+
+    /**
+     * Waits a little, {@code attempt} is the number of the previous unsuccessful attempts.
+     */
+    abstract void idle(int attempt);
+
+    boolean wakesConsumer() {
+        return false;
+    }
+}
@@ -0,0 +1,85 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests shared by all {@link AccountStore} implementations.
+ */
+abstract class AbstractAccountStoreTest {
+    private static final CurrencyUnit PLN = new CurrencyUnit("PLN", 2);
+
+    abstract AccountStore createStore(List<Account> accounts, CurrencyUnit currency);
+
+    @Test
+    void constructionDuplicatedAccountIdsTest() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("dup", BigDecimal.ZERO));
+        accounts.add(new Account("dup", BigDecimal.ONE));
+
+        final Exception exc = assertThrows(IllegalArgumentException.class, () -> createStore(accounts, PLN));
+        assertEquals("Duplicated account id: dup", exc.getMessage());
+    }
+
+    @Test
+    void emptyStoreTest() {
+        final AccountStore store = createStore(new LinkedList<>(), PLN);
+
+        assertEquals(0, store.size());
+        assertEquals(-1, store.indexOf("acc1"));
+    }
+
+    @Test
+    void indexOfAndGettersTest() {
+        final List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 10000; ++i)
+            accounts.add(new Account("acc" + i, new BigDecimal(i)));
+        accounts.add(new Account("konto-\u017c", new BigDecimal("0.01")));
+        accounts.add(new Account("", BigDecimal.ONE));
+
+        final AccountStore store = createStore(accounts, PLN);
+
+        assertEquals(accounts.size(), store.size());
+        for (int i = 0; i < accounts.size(); ++i) {
+            final int index = store.indexOf(accounts.get(i).getId());
+
+            assertEquals(accounts.get(i).getId(), store.getAccountId(index));
+            assertEquals(PLN.toMinorUnits(accounts.get(i).getMoneyAmount()), store.getBalance(index));
+        }
+
+        assertEquals(-1, store.indexOf("acc10000"));
+        assertEquals(-1, store.indexOf("konto-z"));
+    }
+
+    @Test
+    void depositAndWithdrawTest() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("acc1", BigDecimal.ONE));
+        final AccountStore store = createStore(accounts, PLN);
+        final int index = store.indexOf("acc1");
+
+        store.deposit(index, 50);
+        store.withdraw(index, 200);
+
+        assertEquals(-50, store.getBalance(index));
+        assertThrows(IllegalArgumentException.class, () -> store.deposit(index, 0));
+        assertThrows(IllegalArgumentException.class, () -> store.withdraw(index, -1));
+    }
+
+    @Test
+    void depositOverflowTest() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("acc1", PLN.toBigDecimal(Long.MAX_VALUE)));
+        final AccountStore store = createStore(accounts, PLN);
+
+        assertThrows(ArithmeticException.class, () -> store.deposit(0, 1));
+        assertEquals(Long.MAX_VALUE, store.getBalance(0));
+    }
+}
@@ -0,0 +1,311 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests shared by all {@link TransferEngine} implementations.
+ */
+abstract class AbstractTransferEngineTest {
+    static final CurrencyUnit PLN = new CurrencyUnit("PLN", 2);
+
+    /**
+     * Handles of the accounts from {@link #prepareAccounts()}.
+     */
+    static final int ACC1 = 0;
+    static final int ACC2 = 1;
+    static final int ACC3 = 2;
+
+    private static final int THREADS_COUNT = 8;
+    private static final int ITERATIONS = 20000;
+
+    private final List<TransferEngine> engines = new ArrayList<>();
+
+    abstract TransferEngine createEngine(List<Account> accounts, CurrencyUnit currency);
+
+    /**
+     * Whether {@link TransferEngine#readBalances(int[], long[])} never sees a transfer in flight.
+     */
+    boolean consistentReads() {
+        return true;
+    }
+
+    TransferEngine newEngine(final List<Account> accounts, final CurrencyUnit currency) {
+        final TransferEngine engine = createEngine(accounts, currency);
+        engines.add(engine);
+
+        return engine;
+    }
+
+    @AfterEach
+    void closeEngines() {
+        engines.forEach(TransferEngine::close);
+    }
+
+    @Test
+    void constructionDuplicatedAccountIdsTest() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("dup", BigDecimal.ZERO));
+        accounts.add(new Account("dup", BigDecimal.ONE));
+
+        final Exception exc = assertThrows(IllegalArgumentException.class, () -> newEngine(accounts, PLN));
+        assertEquals("Duplicated account id: dup", exc.getMessage());
+    }
+
+    @Test
+    void handlesAndGetBalanceTest() {
+        final TransferEngine engine = newEngine(prepareAccounts(), PLN);
+
+        assertEquals(3, engine.accountsCount());
+        assertEquals(ACC1, engine.handleOf("acc1"));
+        assertEquals(ACC2, engine.handleOf("acc2"));
+        assertEquals(ACC3, engine.handleOf("acc3"));
+        assertEquals(-1, engine.handleOf("unknown"));
+        assertEquals("acc2", engine.getAccountId(ACC2));
+        assertEquals(10000, engine.getBalance(ACC1));
+        assertEquals(20000, engine.getBalance(ACC2));
+        assertEquals(0, engine.getBalance(ACC3));
+    }
+
+    @Test
+    void transferTest() {
+        final TransferEngine engine = newEngine(prepareAccounts(), PLN);
+
+        engine.transfer(ACC1, ACC3, 2315);
+        engine.transfer(ACC2, ACC1, 20000);
+
+        assertEquals(27685, engine.getBalance(ACC1));
+        assertEquals(0, engine.getBalance(ACC2));
+        assertEquals(2315, engine.getBalance(ACC3));
+    }
+
+    @Test
+    void restoreBalancesTest() {
+        final TransferEngine engine = newEngine(prepareAccounts(), PLN);
+        final long[] restored = {1000, 25000, 4000};
+
+        engine.restoreBalances(account -> restored[account]);
+        assertEquals(1000, engine.getBalance(ACC1));
+        assertEquals(25000, engine.getBalance(ACC2));
+        assertEquals(4000, engine.getBalance(ACC3));
+
+        engine.transfer(ACC2, ACC3, 25000);
+        assertEquals(0, engine.getBalance(ACC2));
+        assertEquals(29000, engine.getBalance(ACC3));
+        assertThrows(IllegalArgumentException.class, () -> engine.transfer(ACC1, ACC2, 1001));
+    }
+
+    @Test
+    void tryTransferTest() {
+        final TransferEngine engine = newEngine(prepareAccounts(), PLN);
+
+        assertEquals(TransferOutcome.OK, engine.tryTransfer(ACC1, ACC3, 4000));
+        assertEquals(TransferOutcome.INSUFFICIENT_FUNDS, engine.tryTransfer(ACC1, ACC3, 6001));
+        assertEquals("Insufficient amount (60.00) on the source account",
+                engine.rejection(TransferOutcome.INSUFFICIENT_FUNDS, ACC1).getMessage());
+        assertEquals(6000, engine.getBalance(ACC1));
+        assertEquals(4000, engine.getBalance(ACC3));
+    }
+
+    @Test
+    void transferNoEnoughMoneyTest() {
+        final TransferEngine engine = newEngine(prepareAccounts(), PLN);
+
+        final Exception exc = assertThrows(IllegalArgumentException.class,
+                () -> engine.transfer(ACC1, ACC3, 10001));
+        assertEquals("Insufficient amount (100.00) on the source account", exc.getMessage());
+        assertEquals(10000, engine.getBalance(ACC1));
+        assertEquals(0, engine.getBalance(ACC3));
+    }
+
+    @Test
+    void transferBatchTest() {
+        final TransferEngine engine = newEngine(prepareAccounts(), PLN);
+        final int[] sources = {ACC1, ACC3, ACC3, ACC2};
+        final int[] destinations = {ACC3, ACC2, ACC2, ACC1};
+        final long[] amounts = {10000, 6000, 6000, 1};
+        final TransferResult skipped = TransferResult.failure(TransferOutcome.SAME_ACCOUNT, "skipped");
+        final TransferResult[] results = {null, null, null, skipped};
+
+        engine.transferBatch(sources, destinations, amounts, results);
+
+        assertEquals(TransferResult.OK, results[0]);
+        assertEquals(TransferResult.OK, results[1]);
+        assertEquals("Insufficient amount (40.00) on the source account", results[2].getMessage());
+        assertEquals(skipped, results[3]);
+        assertEquals(0, engine.getBalance(ACC1));
+        assertEquals(26000, engine.getBalance(ACC2));
+        assertEquals(4000, engine.getBalance(ACC3));
+    }
+
+    @Test
+    void concurrentTransfersTest() throws InterruptedException {
+        final TransferEngine engine = newEngine(prepareAccounts(), PLN);
+        final int[] handles = {ACC1, ACC2, ACC3};
+
+        final Thread[] threads = new Thread[THREADS_COUNT];
+        for (int i = 0; i < THREADS_COUNT; ++i) {
+            final int seed = i;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < ITERATIONS; ++j) {
+                    final int source = handles[(seed + j) % handles.length];
+                    final int destination = handles[(seed + j + 1 + j % 2) % handles.length];
+
+                    try {
+                        engine.transfer(source, destination, 1 + (seed + j) % 700);
+                    } catch (final IllegalArgumentException exc) {
+                        // not enough money, expected from time to time
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        for (final Thread thread : threads)
+            thread.join();
+
+        long total = 0;
+        for (final int handle : handles) {
+            assertTrue(engine.getBalance(handle) >= 0);
+            total += engine.getBalance(handle);
+        }
+
+        assertEquals(30000, total);
+    }
+
+    @Test
+    void readBalancesTest() {
+        final TransferEngine engine = newEngine(prepareAccounts(), PLN);
+        engine.transfer(ACC1, ACC3, 2315);
+
+        final long[] balances = new long[4];
+        engine.readBalances(new int[]{ACC3, ACC1, ACC2, ACC3}, balances);
+
+        assertArrayEquals(new long[]{2315, 7685, 20000, 2315}, balances);
+    }
+
+    @Test
+    void readBalancesDuringTransfersTest() throws InterruptedException {
+        final TransferEngine engine = newEngine(prepareAccounts(), PLN);
+        final int[] handles = {ACC1, ACC2, ACC3};
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<String> failure = new AtomicReference<>();
+
+        final Thread reader = new Thread(() -> {
+            final long[] balances = new long[handles.length];
+            while (running.get() && failure.get() == null) {
+                engine.readBalances(handles, balances);
+
+                final long total = balances[0] + balances[1] + balances[2];
+                if (balances[0] < 0 || balances[1] < 0 || balances[2] < 0
+                        || (consistentReads() && total != 30000)) {
+                    failure.set("Inconsistent balances " + Arrays.toString(balances));
+                }
+            }
+        });
+        reader.start();
+
+        for (int j = 0; j < ITERATIONS; ++j) {
+            try {
+                engine.transfer(handles[j % 3], handles[(j + 1 + j % 2) % 3], 1 + j % 700);
+            } catch (final IllegalArgumentException exc) {
+                // not enough money, expected from time to time
+            }
+        }
+
+        running.set(false);
+        reader.join();
+
+        assertNull(failure.get());
+    }
+
+    @Test
+    void noContentionTest() {
+        final TransferEngine engine = newEngine(prepareAccounts(), PLN);
+
+        assertTrue(engine.topContended(5).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> engine.topContended(0));
+    }
+
+    @Test
+    void snapshotTest() {
+        final TransferEngine engine = newEngine(prepareAccounts(), PLN);
+
+        final BalanceSnapshot snapshot = engine.openSnapshot();
+        engine.transfer(ACC1, ACC3, 2315);
+        engine.transfer(ACC2, ACC1, 20000);
+
+        assertEquals(3, snapshot.size());
+        assertEquals(20000, snapshot.getBalance(ACC2));
+        assertEquals(10000, snapshot.getBalance(ACC1));
+        assertEquals(0, snapshot.getBalance(ACC3));
+        assertEquals(10000, snapshot.getBalance(ACC1));
+        assertThrows(IllegalStateException.class, engine::openSnapshot);
+
+        snapshot.close();
+        assertThrows(IllegalStateException.class, () -> snapshot.getBalance(ACC1));
+
+        try (BalanceSnapshot next = engine.openSnapshot()) {
+            assertEquals(27685, next.getBalance(ACC1));
+            assertEquals(0, next.getBalance(ACC2));
+        }
+    }
+
+    @Test
+    void snapshotDuringTransfersTest() throws InterruptedException {
+        final TransferEngine engine = newEngine(prepareAccounts(), PLN);
+        final int[] handles = {ACC1, ACC2, ACC3};
+        final AtomicBoolean running = new AtomicBoolean(true);
+
+        final Thread transfers = new Thread(() -> {
+            for (int j = 0; running.get(); ++j) {
+                try {
+                    engine.transfer(handles[j % 3], handles[(j + 1 + j % 2) % 3], 1 + j % 700);
+                } catch (final IllegalArgumentException exc) {
+                    // not enough money, expected from time to time
+                }
+            }
+        });
+        transfers.start();
+
+        try {
+            for (int i = 0; i < 1000; ++i) {
+                try (BalanceSnapshot snapshot = engine.openSnapshot()) {
+                    long total = 0;
+                    for (int handle = snapshot.size() - 1; handle >= 0; --handle) {
+                        Thread.yield();
+                        total += snapshot.getBalance(handle);
+                    }
+
+                    assertEquals(30000, total);
+                }
+            }
+        } finally {
+            running.set(false);
+            transfers.join();
+        }
+    }
+
+    static LinkedList<Account> prepareAccounts() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("acc1", new BigDecimal("100")));
+        accounts.add(new Account("acc2", new BigDecimal("200")));
+        accounts.add(new Account("acc3", BigDecimal.ZERO));
+
+        return accounts;
+    }
+}
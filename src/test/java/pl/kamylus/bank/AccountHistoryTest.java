@@ -0,0 +1,186 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountHistoryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void invalidParametersTest() {
+        assertThrows(IllegalArgumentException.class, () -> new AccountHistory(2, 1, null));
+        assertThrows(IllegalArgumentException.class, () -> new AccountHistory(2, 6, null));
+        assertThrows(IllegalArgumentException.class, () -> new AccountHistory(1 << 20, 1 << 12, null));
+        assertThrows(IllegalArgumentException.class, () -> new HistoryPage(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> new HistoryPage(1).getAmount(0));
+    }
+
+    @Test
+    void recordAndReadTest() {
+        try (AccountHistory history = new AccountHistory(3, 8, null)) {
+            history.record(0, 1, 100);
+            history.record(2, 0, 50);
+
+            final HistoryPage page = new HistoryPage(10);
+            assertEquals(2, history.read(0, Long.MAX_VALUE, page));
+            assertEquals(1, page.getIndex(0));
+            assertEquals(50, page.getAmount(0));
+            assertEquals(2, page.getCounterparty(0));
+            assertEquals(2, page.getSequence(0));
+            assertEquals(0, page.getIndex(1));
+            assertEquals(-100, page.getAmount(1));
+            assertEquals(1, page.getCounterparty(1));
+            assertEquals(1, page.getSequence(1));
+            assertTrue(page.getTimestamp(1) > 0);
+
+            assertEquals(1, history.read(1, Long.MAX_VALUE, page));
+            assertEquals(100, page.getAmount(0));
+            assertEquals(0, page.getCounterparty(0));
+
+            assertEquals(1, history.read(2, Long.MAX_VALUE, page));
+            assertEquals(-50, page.getAmount(0));
+            assertEquals(2, history.size(0));
+        }
+    }
+
+    @Test
+    void ringWithoutFileTest() {
+        try (AccountHistory history = new AccountHistory(2, 4, null)) {
+            for (int i = 1; i <= 10; ++i)
+                history.record(0, 1, i);
+
+            final HistoryPage page = new HistoryPage(100);
+            assertEquals(4, history.read(0, Long.MAX_VALUE, page));
+            assertEquals(9, page.getIndex(0));
+            assertEquals(-10, page.getAmount(0));
+            assertEquals(6, page.getIndex(3));
+            assertEquals(0, history.read(0, 6, page));
+            assertEquals(10, history.size(1));
+        }
+    }
+
+    @Test
+    void paginationWithFileTest() {
+        try (AccountHistory history = new AccountHistory(3, 4, directory.resolve("accounts.history"))) {
+            for (int i = 1; i <= 25; ++i) {
+                history.record(0, 1, i);
+                history.record(2, 0, 1000 + i);
+            }
+
+            final HistoryPage page = new HistoryPage(7);
+            long before = Long.MAX_VALUE;
+            long expectedIndex = 49;
+            int pages = 0;
+            while (history.read(0, before, page) > 0) {
+                for (int i = 0; i < page.size(); ++i, --expectedIndex) {
+                    assertEquals(expectedIndex, page.getIndex(i));
+                    final long transfer = expectedIndex / 2 + 1;
+                    if (expectedIndex % 2 == 0) {
+                        assertEquals(-transfer, page.getAmount(i));
+                        assertEquals(1, page.getCounterparty(i));
+                    } else {
+                        assertEquals(1000 + transfer, page.getAmount(i));
+                        assertEquals(2, page.getCounterparty(i));
+                    }
+                    assertEquals(expectedIndex + 1, page.getSequence(i));
+                }
+
+                before = page.getIndex(page.size() - 1);
+                ++pages;
+            }
+
+            assertEquals(-1, expectedIndex);
+            assertEquals(8, pages);
+
+            assertEquals(3, history.read(1, 3, page));
+            assertEquals(2, page.getIndex(0));
+            assertEquals(3, page.getAmount(0));
+            assertEquals(0, page.getIndex(2));
+        }
+    }
+
+    @Test
+    void readersDuringWritesTest() throws InterruptedException {
+        final int transfers = 200_000;
+
+        try (AccountHistory history = new AccountHistory(2, 16, directory.resolve("accounts.history"))) {
+            final AtomicBoolean running = new AtomicBoolean(true);
+            final AtomicReference<String> failure = new AtomicReference<>();
+
+            final Thread reader = new Thread(() -> {
+                final HistoryPage page = new HistoryPage(40);
+                while (running.get() && failure.get() == null) {
+                    final long size = history.size(0);
+                    final long before = size < 100 ? Long.MAX_VALUE : size - 50;
+                    history.read(0, before, page);
+
+                    for (int i = 0; i < page.size(); ++i) {
+                        final long index = page.getIndex(i);
+                        if (page.getAmount(i) != -(index + 1) || page.getSequence(i) != index + 1
+                                || (i > 0 && index != page.getIndex(i - 1) - 1)) {
+                            failure.set("Entry " + index + " has amount " + page.getAmount(i));
+                        }
+                    }
+                }
+            });
+            reader.start();
+
+            for (int i = 1; i <= transfers; ++i)
+                history.record(0, 1, i);
+
+            running.set(false);
+            reader.join();
+
+            assertNull(failure.get());
+            assertEquals(transfers, history.size(0));
+        }
+    }
+
+    @Test
+    void concurrentWritersWithFileTest() throws InterruptedException {
+        final int writers = 4;
+        final int transfers = 5_000;
+
+        try (AccountHistory history = new AccountHistory(writers + 1, 16, directory.resolve("accounts.history"))) {
+            // pages of the shared account are filled by different threads and written outside its monitor
+            final Thread[] threads = new Thread[writers];
+            for (int i = 0; i < writers; ++i) {
+                final int counterparty = i + 1;
+                threads[i] = new Thread(() -> {
+                    for (int j = 1; j <= transfers; ++j)
+                        history.record(0, counterparty, j);
+                });
+                threads[i].start();
+            }
+            for (final Thread thread : threads)
+                thread.join();
+
+            final long[] totals = new long[writers + 1];
+            final HistoryPage page = new HistoryPage(100);
+            long before = Long.MAX_VALUE;
+            long expectedIndex = (long) writers * transfers - 1;
+            while (history.read(0, before, page) > 0) {
+                for (int i = 0; i < page.size(); ++i, --expectedIndex) {
+                    assertEquals(expectedIndex, page.getIndex(i));
+                    totals[page.getCounterparty(i)] -= page.getAmount(i);
+                }
+                before = page.getIndex(page.size() - 1);
+            }
+
+            assertEquals(-1, expectedIndex);
+            for (int i = 1; i <= writers; ++i)
+                assertEquals(transfers * (transfers + 1L) / 2, totals[i]);
+        }
+    }
+}
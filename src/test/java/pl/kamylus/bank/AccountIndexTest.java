@@ -0,0 +1,53 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AccountIndexTest {
+
+    @Test
+    void constructionDuplicatedAccountIdsTest() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("dup", BigDecimal.ZERO));
+        accounts.add(new Account("dup", BigDecimal.ONE));
+
+        final Exception exc = assertThrows(IllegalArgumentException.class, () -> new AccountIndex(accounts));
+        assertEquals("Duplicated account id: dup", exc.getMessage());
+    }
+
+    @Test
+    void emptyIndexTest() {
+        final AccountIndex index = new AccountIndex(new LinkedList<>());
+
+        assertEquals(0, index.size());
+        assertEquals(-1, index.handleOf("acc1"));
+    }
+
+    @Test
+    void handlesFollowAccountsOrderTest() {
+        final List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 10000; ++i)
+            accounts.add(new Account("acc" + i, BigDecimal.ZERO));
+        accounts.add(new Account("Aa", BigDecimal.ZERO));
+        accounts.add(new Account("BB", BigDecimal.ZERO));
+
+        final AccountIndex index = new AccountIndex(accounts);
+
+        assertEquals(accounts.size(), index.size());
+        for (int handle = 0; handle < accounts.size(); ++handle) {
+            assertEquals(handle, index.handleOf(accounts.get(handle).getId()));
+            assertEquals(accounts.get(handle).getId(), index.getAccountId(handle));
+        }
+
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        assertEquals(-1, index.handleOf("acc10000"));
+        assertEquals(-1, index.handleOf("C#"));
+    }
+}
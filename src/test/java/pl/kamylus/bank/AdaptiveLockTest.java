@@ -0,0 +1,91 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveLockTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void uncontendedTest() {
+        final AdaptiveLock lock = new AdaptiveLock();
+        for (int i = 0; i < 3; ++i) {
+            lock.lock();
+            lock.unlock();
+        }
+
+        assertEquals(3, lock.getAcquisitions());
+        assertEquals(0, lock.getContendedAcquisitions());
+        assertEquals(0, lock.getWaitNanos());
+        assertEquals(AdaptiveLock.Mode.SPINNING, lock.getMode());
+    }
+
+    @Test
+    void contendedTest() throws Exception {
+        final AdaptiveLock lock = new AdaptiveLock();
+        contend(lock, executor);
+
+        assertEquals(2, lock.getAcquisitions());
+        assertEquals(1, lock.getContendedAcquisitions());
+        assertTrue(lock.getWaitNanos() > 0);
+    }
+
+    @Test
+    void promotionAndDemotionTest() throws Exception {
+        final AdaptiveLock lock = new AdaptiveLock();
+
+        // every other acquisition waits, so every window is hot
+        for (int i = 0; i < AdaptiveLock.WINDOW * (AdaptiveLock.PROMOTION_WINDOWS - 1) / 2; ++i)
+            contend(lock, executor);
+        assertEquals(AdaptiveLock.Mode.SPINNING, lock.getMode());
+
+        for (int i = 0; i < AdaptiveLock.WINDOW / 2; ++i)
+            contend(lock, executor);
+        assertEquals(AdaptiveLock.Mode.QUEUED, lock.getMode());
+        assertEquals(1, lock.getPromotions());
+
+        // queued lock still works and is handed over
+        contend(lock, executor);
+
+        for (int i = 0; i < AdaptiveLock.WINDOW * AdaptiveLock.PROMOTION_WINDOWS; ++i) {
+            lock.lock();
+            lock.unlock();
+        }
+        assertEquals(AdaptiveLock.Mode.SPINNING, lock.getMode());
+        assertEquals(1, lock.getPromotions());
+    }
+
+    /**
+     * Takes the lock, lets another thread wait for it and hands it over.
+     */
+    static void contend(final AdaptiveLock lock, final ExecutorService executor) throws Exception {
+        lock.lock();
+        final Future<?> waiter;
+        try {
+            waiter = executor.submit(() -> {
+                lock.lock();
+                lock.unlock();
+            });
+
+            while (!lock.hasQueuedThreads())
+                Thread.yield();
+        } finally {
+            lock.unlock();
+        }
+
+        waiter.get();
+    }
+}
@@ -0,0 +1,93 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveLockTransferEngineTest extends AbstractTransferEngineTest {
+
+    @Override
+    TransferEngine createEngine(final List<Account> accounts, final CurrencyUnit currency) {
+        return new AdaptiveLockTransferEngine(accounts, BankConfiguration.builder(currency).build());
+    }
+
+    @Test
+    void accountsSharingLockTest() {
+        final List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i <= AdaptiveLockTransferEngine.MAX_LOCKS; ++i)
+            accounts.add(new Account("acc" + i, BigDecimal.ONE));
+
+        final TransferEngine engine = newEngine(accounts, PLN);
+        final int last = AdaptiveLockTransferEngine.MAX_LOCKS;
+        engine.transfer(0, last, 100);
+        engine.transfer(1, last, 50);
+
+        assertEquals(0, engine.getBalance(0));
+        assertEquals(50, engine.getBalance(1));
+        assertEquals(250, engine.getBalance(last));
+    }
+
+    @Test
+    void topContendedTest() throws Exception {
+        final AdaptiveLockTransferEngine engine = (AdaptiveLockTransferEngine) newEngine(prepareAccounts(), PLN);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertTrue(engine.topContended(10).isEmpty());
+
+            engine.transfer(ACC1, ACC2, 100);
+            transferWaiting(engine, executor, ACC2, ACC1, 0);
+            transferWaiting(engine, executor, ACC3, ACC2, 50);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final List<AccountContention> contended = engine.topContended(10);
+        assertEquals(2, contended.size());
+
+        final AccountContention hottest = contended.get(0);
+        assertEquals(ACC3, hottest.getHandle());
+        assertEquals(2, hottest.getAcquisitions());
+        assertEquals(1, hottest.getContendedAcquisitions());
+        assertTrue(hottest.getWaitNanos() >= 50_000_000L);
+        assertEquals(AdaptiveLock.Mode.SPINNING, hottest.getMode());
+
+        assertEquals(ACC2, contended.get(1).getHandle());
+        assertEquals(4, contended.get(1).getAcquisitions());
+        assertTrue(contended.get(1).getWaitNanos() < hottest.getWaitNanos());
+
+        assertEquals(1, engine.topContended(1).size());
+        assertEquals(ACC3, engine.topContended(1).get(0).getHandle());
+        assertThrows(IllegalArgumentException.class, () -> engine.topContended(0));
+    }
+
+    /**
+     * Holds the lock of the account while a transfer from another thread waits for it.
+     */
+    private static void transferWaiting(final AdaptiveLockTransferEngine engine, final ExecutorService executor,
+                                        final int lockedAccount, final int otherAccount, final long holdMillis)
+            throws Exception {
+        final AdaptiveLock lock = engine.lockOf(lockedAccount);
+        lock.lock();
+        final Future<?> transfer;
+        try {
+            transfer = executor.submit(() -> engine.transfer(otherAccount, lockedAccount, 1));
+            while (!lock.hasQueuedThreads())
+                Thread.yield();
+
+            Thread.sleep(holdMillis);
+        } finally {
+            lock.unlock();
+        }
+
+        transfer.get();
+    }
+}
@@ -0,0 +1,115 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class BalanceHandlerTest {
+
+    private static final int UNPROCESSABLE_ENTITY_ERROR = 422;
+    private static final CurrencyUnit PLN = new CurrencyUnit("PLN", 2);
+
+    @Test
+    void constructionNullBankTest() {
+        assertThrows(NullPointerException.class, () -> new BalanceHandler(null));
+        assertThrows(NullPointerException.class, () -> new BalanceSnapshotHandler(null));
+        assertThrows(NullPointerException.class, () -> new BalanceExportHandler(null));
+    }
+
+    @Test
+    void handleBalanceTest() {
+        final FixedPointBank bank = prepareBank();
+        bank.transferMoney("acc1", "acc2", new BigDecimal("10.5"));
+
+        final Request request = mock(Request.class);
+        when(request.queryParams("accountId")).thenReturn("acc1");
+        final Response response = mock(Response.class);
+
+        assertEquals("89.50", new BalanceHandler(bank).handle(request, response));
+
+        when(request.queryParams("accountId")).thenReturn("acc9");
+        assertEquals("Account 'acc9' does not exist", new BalanceHandler(bank).handle(request, response));
+        verify(response).status(UNPROCESSABLE_ENTITY_ERROR);
+    }
+
+    @Test
+    void handleSnapshotTest() {
+        final FixedPointBank bank = prepareBank();
+        bank.transferMoney("acc1", "acc2", new BigDecimal("10.5"));
+
+        final BalanceSnapshotHandler handler = new BalanceSnapshotHandler(bank);
+        final Request request = mock(Request.class);
+        when(request.queryParamsValues("accountId")).thenReturn(new String[]{"acc2", "acc1"});
+        final Response response = mock(Response.class);
+
+        assertEquals("acc2,210.50\nacc1,89.50\n", handler.handle(request, response));
+        verify(response, never()).status(anyInt());
+    }
+
+    @Test
+    void handleSnapshotInvalidParametersTest() {
+        final BalanceSnapshotHandler handler = new BalanceSnapshotHandler(prepareBank());
+        final Request request = mock(Request.class);
+        final Response response = mock(Response.class);
+
+        assertEquals("Number of accounts (0) has to be between 1 and 1000", handler.handle(request, response));
+
+        when(request.queryParamsValues("accountId")).thenReturn(new String[BalanceSnapshotHandler.MAX_ACCOUNTS + 1]);
+        assertEquals("Number of accounts (1001) has to be between 1 and 1000", handler.handle(request, response));
+
+        when(request.queryParamsValues("accountId")).thenReturn(new String[]{"acc1", "acc9"});
+        assertEquals("Account 'acc9' does not exist", handler.handle(request, response));
+
+        verify(response, times(3)).status(UNPROCESSABLE_ENTITY_ERROR);
+    }
+
+    @Test
+    void handleExportTest() throws IOException {
+        final FixedPointBank bank = prepareBank();
+        bank.transferMoney("acc1", "acc2", new BigDecimal("10.5"));
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final ServletOutputStream servletOutput = mock(ServletOutputStream.class);
+        doAnswer(invocation -> {
+            output.write(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2));
+            return null;
+        }).when(servletOutput).write(any(byte[].class), anyInt(), anyInt());
+        final HttpServletResponse raw = mock(HttpServletResponse.class);
+        when(raw.getOutputStream()).thenReturn(servletOutput);
+        final Response response = mock(Response.class);
+        when(response.raw()).thenReturn(raw);
+
+        final BalanceExportHandler handler = new BalanceExportHandler(bank);
+        assertEquals("", handler.handle(mock(Request.class), response));
+        assertEquals("acc1,89.50\nacc2,210.50\n", output.toString(StandardCharsets.UTF_8));
+        verify(raw).setContentType(BalanceExportHandler.CONTENT_TYPE);
+
+        try (BalanceSnapshot snapshot = bank.openBalanceSnapshot()) {
+            assertEquals(2, snapshot.size());
+            assertEquals("Another balance snapshot is open", handler.handle(mock(Request.class), response));
+            verify(response).status(HttpURLConnection.HTTP_CONFLICT);
+        }
+    }
+
+    private static FixedPointBank prepareBank() {
+        final List<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("acc1", new BigDecimal("100")));
+        accounts.add(new Account("acc2", new BigDecimal("200")));
+
+        return new FixedPointBank(accounts, PLN);
+    }
+}
@@ -1,21 +1,35 @@
 package pl.kamylus.bank;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.StringWriter;
 import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 class BankTest {
     private static final String SOURCE_ACCOUNT = "source";
     private static final String DESTINATION_ACCOUNT = "destination";
+    private static final CurrencyUnit PLN = new CurrencyUnit("PLN", 2);
 
     @Test
     void constructionNullAccountsTest() {
-        assertThrows(NullPointerException.class, () -> new Bank(null));
+        assertThrows(NullPointerException.class, () -> new BigDecimalBank(null));
     }
 
     @Test
@@ -25,13 +39,13 @@ class BankTest {
         accounts.add(new Account("dup", BigDecimal.ONE));
         accounts.add(new Account("id", BigDecimal.ONE));
 
-        final Exception exc = assertThrows(IllegalArgumentException.class, () -> new Bank(accounts));
+        final Exception exc = assertThrows(IllegalArgumentException.class, () -> new BigDecimalBank(accounts));
         assertEquals("Duplicated account id: dup", exc.getMessage());
     }
 
     @Test
     void transferMoneyNullSourceAccountIdTest() {
-        final Bank bank = new Bank(new LinkedList<>());
+        final Bank bank = new BigDecimalBank(new LinkedList<>());
 
         Exception exc = assertThrows(IllegalArgumentException.class,
                 () -> bank.transferMoney(null, "dest", BigDecimal.ONE));
@@ -40,7 +54,7 @@ class BankTest {
 
     @Test
     void transferMoneyEmptySourceAccountIdTest() {
-        final Bank bank = new Bank(new LinkedList<>());
+        final Bank bank = new BigDecimalBank(new LinkedList<>());
 
         Exception exc = assertThrows(IllegalArgumentException.class,
                 () -> bank.transferMoney("", DESTINATION_ACCOUNT, BigDecimal.ONE));
@@ -49,7 +63,7 @@ class BankTest {
 
     @Test
     void transferMoneyNullDestinationAccountIdTest() {
-        final Bank bank = new Bank(new LinkedList<>());
+        final Bank bank = new BigDecimalBank(new LinkedList<>());
 
         Exception exc = assertThrows(IllegalArgumentException.class,
                 () -> bank.transferMoney(SOURCE_ACCOUNT, null, BigDecimal.ONE));
@@ -58,7 +72,7 @@ class BankTest {
 
     @Test
     void transferMoneyEmptyDestinationAccountIdTest() {
-        final Bank bank = new Bank(new LinkedList<>());
+        final Bank bank = new BigDecimalBank(new LinkedList<>());
 
         Exception exc = assertThrows(IllegalArgumentException.class,
                 () -> bank.transferMoney(SOURCE_ACCOUNT, "", BigDecimal.ONE));
@@ -67,7 +81,7 @@ class BankTest {
 
     @Test
     void transferMoneyNullAmountTest() {
-        final Bank bank = new Bank(new LinkedList<>());
+        final Bank bank = new BigDecimalBank(new LinkedList<>());
 
         Exception exc = assertThrows(IllegalArgumentException.class,
                 () -> bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, null));
@@ -76,7 +90,7 @@ class BankTest {
 
     @Test
     void transferMoneySameAccountsTest() {
-        final Bank bank = new Bank(new LinkedList<>());
+        final Bank bank = new BigDecimalBank(new LinkedList<>());
 
         Exception exc = assertThrows(IllegalArgumentException.class,
                 () -> bank.transferMoney("same", "same", BigDecimal.ONE));
@@ -85,7 +99,7 @@ class BankTest {
 
     @Test
     void transferMoneyZeroAmountTest() {
-        final Bank bank = new Bank(new LinkedList<>());
+        final Bank bank = new BigDecimalBank(new LinkedList<>());
 
         Exception exc = assertThrows(IllegalArgumentException.class,
                 () -> bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, BigDecimal.ZERO));
@@ -94,7 +108,7 @@ class BankTest {
 
     @Test
     void transferMoneyNegativeAmountTest() {
-        final Bank bank = new Bank(new LinkedList<>());
+        final Bank bank = new BigDecimalBank(new LinkedList<>());
 
         Exception exc = assertThrows(IllegalArgumentException.class,
                 () -> bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("-5.12")));
@@ -103,7 +117,7 @@ class BankTest {
 
     @Test
     void transferMoneySourceAccountNotExistsTest() {
-        final Bank bank = new Bank(new LinkedList<>());
+        final Bank bank = new BigDecimalBank(new LinkedList<>());
 
         Exception exc = assertThrows(IllegalArgumentException.class,
                 () -> bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, BigDecimal.ONE));
@@ -114,7 +128,7 @@ class BankTest {
     void transferMoneyDestinationAccountNotExistsTest() {
         final LinkedList<Account> accounts = new LinkedList<>();
         accounts.add(new Account(SOURCE_ACCOUNT, BigDecimal.ZERO));
-        final Bank bank = new Bank(accounts);
+        final Bank bank = new BigDecimalBank(accounts);
 
         Exception exc = assertThrows(IllegalArgumentException.class,
                 () -> bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, BigDecimal.ONE));
@@ -126,13 +140,38 @@ class BankTest {
         final LinkedList<Account> accounts = new LinkedList<>();
         accounts.add(new Account(SOURCE_ACCOUNT, new BigDecimal(10)));
         accounts.add(new Account(DESTINATION_ACCOUNT, BigDecimal.ZERO));
-        final Bank bank = new Bank(accounts);
+        final Bank bank = new BigDecimalBank(accounts);
 
         Exception exc = assertThrows(IllegalArgumentException.class,
                 () -> bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("10.01")));
         assertEquals("Insufficient amount (10) on the source account", exc.getMessage());
     }
 
+    @Test
+    void tryTransferMoneyTest() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account(SOURCE_ACCOUNT, new BigDecimal(10)));
+        accounts.add(new Account(DESTINATION_ACCOUNT, BigDecimal.ZERO));
+        final Bank bank = new BigDecimalBank(accounts);
+
+        assertEquals(TransferOutcome.OK, bank.tryTransferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("4")));
+        assertEquals(TransferOutcome.INSUFFICIENT_FUNDS,
+                bank.tryTransferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("6.01")));
+        assertEquals("Insufficient amount (6) on the source account", bank.rejectionMessage(
+                TransferOutcome.INSUFFICIENT_FUNDS, SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("6.01")));
+        assertEquals(TransferOutcome.UNKNOWN_DESTINATION_ACCOUNT,
+                bank.tryTransferMoney(SOURCE_ACCOUNT, "unknown", BigDecimal.ONE));
+        assertEquals("Account 'unknown' does not exist", bank.rejectionMessage(
+                TransferOutcome.UNKNOWN_DESTINATION_ACCOUNT, SOURCE_ACCOUNT, "unknown", BigDecimal.ONE));
+        assertEquals(TransferOutcome.MISSING_AMOUNT, bank.tryTransferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, null));
+        assertEquals(TransferOutcome.NON_POSITIVE_AMOUNT,
+                bank.tryTransferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("-1")));
+
+        assertThat(bank.getMoneyAmount(SOURCE_ACCOUNT), comparesEqualTo(new BigDecimal("6")));
+        assertEquals(1, bank.getMetrics().getRejects(RejectReason.INSUFFICIENT_FUNDS));
+        assertEquals(2, bank.getMetrics().getRejects(RejectReason.INVALID_AMOUNT));
+    }
+
     @Test
     void transferMoneySuccessTest() {
         final LinkedList<Account> accounts = new LinkedList<>();
@@ -146,7 +185,7 @@ class BankTest {
 
         accounts.add(sourceAccount);
         accounts.add(destinationAccount);
-        final Bank bank = new Bank(accounts);
+        final Bank bank = new BigDecimalBank(accounts);
 
         final BigDecimal amountToTransfer = new BigDecimal("10");
         bank.transferMoney("acc1", "acc2", amountToTransfer);
@@ -155,6 +194,43 @@ class BankTest {
         verify(destinationAccount, times(1)).deposit(amountToTransfer);
     }
 
+    @Test
+    void transferMoneyAuditTest() {
+        final List<String> events = new CopyOnWriteArrayList<>();
+
+        try (final TransferAuditSink sink = new TransferAuditSink(16, AuditOverflowPolicy.BLOCK, events::add)) {
+            final Bank bank = new BigDecimalBank(prepareFixedPointAccounts(), sink);
+            bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("2.5"));
+            sink.flush();
+
+            assertEquals(Collections.singletonList("Transferred 2.5 from " + SOURCE_ACCOUNT + " to "
+                    + DESTINATION_ACCOUNT + ". Amount on source: 7.5. Amount on destination: 7.5"), events);
+        }
+    }
+
+    @Test
+    void fixedPointTransferMoneyAuditTest() {
+        final List<String> events = new CopyOnWriteArrayList<>();
+
+        try (final TransferAuditSink sink = new TransferAuditSink(16, AuditOverflowPolicy.BLOCK, events::add)) {
+            for (final TransferEngineType engineType : TransferEngineType.values()) {
+                final BankConfiguration configuration = BankConfiguration.builder(PLN)
+                        .engineType(engineType)
+                        .auditSink(sink)
+                        .build();
+
+                try (final FixedPointBank bank = new FixedPointBank(prepareFixedPointAccounts(), configuration)) {
+                    bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, 250);
+                }
+            }
+            sink.flush();
+
+            assertEquals(TransferEngineType.values().length, events.size());
+            for (final String event : events)
+                assertTrue(event.startsWith("Transferred 2.50 from " + SOURCE_ACCOUNT + " to " + DESTINATION_ACCOUNT));
+        }
+    }
+
     @Test
     void transferMoneySuccessInverseLockTest() {
         final LinkedList<Account> accounts = new LinkedList<>();
@@ -168,7 +244,7 @@ class BankTest {
 
         accounts.add(sourceAccount);
         accounts.add(destinationAccount);
-        final Bank bank = new Bank(accounts);
+        final Bank bank = new BigDecimalBank(accounts);
 
         final BigDecimal amountToTransfer = new BigDecimal("10");
         bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, amountToTransfer);
@@ -176,4 +252,648 @@ class BankTest {
         verify(sourceAccount, times(1)).withdraw(amountToTransfer);
         verify(destinationAccount, times(1)).deposit(amountToTransfer);
     }
-}
\ No newline at end of file
+
+    @Test
+    void fixedPointConstructionNullCurrencyTest() {
+        assertThrows(NullPointerException.class, () -> new FixedPointBank(new LinkedList<>(), (CurrencyUnit) null));
+    }
+
+    @Test
+    void constructionNullConfigurationTest() {
+        assertThrows(NullPointerException.class,
+                () -> new FixedPointBank(new LinkedList<>(), (BankConfiguration) null));
+    }
+
+    @Test
+    void fixedPointConstructionDuplicatedAccountIdsTest() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("dup", BigDecimal.ZERO));
+        accounts.add(new Account("dup", BigDecimal.ONE));
+
+        final Exception exc = assertThrows(IllegalArgumentException.class, () -> new FixedPointBank(accounts, PLN));
+        assertEquals("Duplicated account id: dup", exc.getMessage());
+    }
+
+    @Test
+    void fixedPointConstructionNotRepresentableAmountTest() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("id", new BigDecimal("0.001")));
+
+        assertThrows(IllegalArgumentException.class, () -> new FixedPointBank(accounts, PLN));
+    }
+
+    @Test
+    void fixedPointTransferMoneySuccessTest() {
+        final FixedPointBank bank = prepareFixedPointBank();
+
+        bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, 1000);
+        bank.transferMoney(DESTINATION_ACCOUNT, SOURCE_ACCOUNT, new BigDecimal("0.01"));
+
+        assertEquals(PLN, bank.getCurrency());
+        assertThat(bank.getMoneyAmount(SOURCE_ACCOUNT), comparesEqualTo(new BigDecimal("0.01")));
+        assertThat(bank.getMoneyAmount(DESTINATION_ACCOUNT), comparesEqualTo(new BigDecimal("14.99")));
+    }
+
+    @Test
+    void fixedPointTransferMoneyNoEnoughMoneyTest() {
+        final FixedPointBank bank = prepareFixedPointBank();
+
+        final Exception exc = assertThrows(IllegalArgumentException.class,
+                () -> bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, 1001));
+        assertEquals("Insufficient amount (10.00) on the source account", exc.getMessage());
+        assertThat(bank.getMoneyAmount(SOURCE_ACCOUNT), comparesEqualTo(BigDecimal.TEN));
+    }
+
+    @Test
+    void fixedPointTransferMoneyValidationTest() {
+        final FixedPointBank bank = prepareFixedPointBank();
+
+        Exception exc = assertThrows(IllegalArgumentException.class,
+                () -> bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, 0));
+        assertEquals("Amount (0.00) cannot be less or equal to 0", exc.getMessage());
+
+        exc = assertThrows(IllegalArgumentException.class,
+                () -> bank.transferMoney(SOURCE_ACCOUNT, SOURCE_ACCOUNT, 1));
+        assertEquals("Source and destination account ids cannot be the same", exc.getMessage());
+
+        exc = assertThrows(IllegalArgumentException.class,
+                () -> bank.transferMoney(SOURCE_ACCOUNT, "unknown", 1));
+        assertEquals("Account 'unknown' does not exist", exc.getMessage());
+
+        exc = assertThrows(IllegalArgumentException.class,
+                () -> bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("0.001")));
+        assertEquals("Amount (0.001) cannot be represented in PLN with 2 decimal places", exc.getMessage());
+    }
+
+    @Test
+    void fixedPointTryTransferMoneyTest() {
+        final FixedPointBank bank = prepareFixedPointBank();
+        final int source = bank.accountHandle(SOURCE_ACCOUNT);
+
+        assertEquals(TransferOutcome.OK, bank.tryTransferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, 250));
+        assertEquals(TransferOutcome.INSUFFICIENT_FUNDS,
+                bank.tryTransferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, 751));
+        assertEquals("Insufficient amount (7.50) on the source account", bank.rejectionMessage(
+                TransferOutcome.INSUFFICIENT_FUNDS, SOURCE_ACCOUNT, DESTINATION_ACCOUNT, 751));
+        assertEquals(TransferOutcome.NON_POSITIVE_AMOUNT, bank.tryTransferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, 0));
+        assertEquals("Amount (0.00) cannot be less or equal to 0", bank.rejectionMessage(
+                TransferOutcome.NON_POSITIVE_AMOUNT, SOURCE_ACCOUNT, DESTINATION_ACCOUNT, 0));
+        assertEquals(TransferOutcome.UNKNOWN_SOURCE_ACCOUNT, bank.tryTransferMoney("unknown", DESTINATION_ACCOUNT, 1));
+        assertEquals(TransferOutcome.SAME_ACCOUNT, bank.tryTransferMoney(SOURCE_ACCOUNT, SOURCE_ACCOUNT, 1));
+        assertEquals(TransferOutcome.MISSING_DESTINATION_ACCOUNT_ID, bank.tryTransferMoney(SOURCE_ACCOUNT, "", 1));
+        assertEquals(TransferOutcome.INVALID_AMOUNT,
+                bank.tryTransferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("0.001")));
+        assertEquals("Amount (0.001) cannot be represented in PLN with 2 decimal places", bank.rejectionMessage(
+                TransferOutcome.INVALID_AMOUNT, SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("0.001")));
+        assertEquals(TransferOutcome.UNKNOWN_DESTINATION_ACCOUNT, bank.tryTransferMoney(source, 2, 1));
+        assertEquals(TransferOutcome.OK, bank.tryTransferMoney(source, bank.accountHandle(DESTINATION_ACCOUNT), 1));
+
+        assertThat(bank.getMoneyAmount(SOURCE_ACCOUNT), comparesEqualTo(new BigDecimal("7.49")));
+        assertEquals(2, bank.getMetrics().getTransfers());
+        assertEquals(2, bank.getMetrics().getRejects(RejectReason.UNKNOWN_ACCOUNT));
+    }
+
+    @Test
+    void fixedPointTransferMoneyOverflowTest() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account(SOURCE_ACCOUNT, BigDecimal.ONE));
+        accounts.add(new Account(DESTINATION_ACCOUNT, PLN.toBigDecimal(Long.MAX_VALUE)));
+        final FixedPointBank bank = new FixedPointBank(accounts, PLN);
+
+        final Exception exc = assertThrows(IllegalArgumentException.class,
+                () -> bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, 1));
+        assertEquals("Amount on the destination account would overflow", exc.getMessage());
+        assertThat(bank.getMoneyAmount(SOURCE_ACCOUNT), comparesEqualTo(BigDecimal.ONE));
+    }
+
+    @Test
+    void lockFreeTransferMoneySuccessTest() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account(SOURCE_ACCOUNT, BigDecimal.TEN));
+        accounts.add(new Account(DESTINATION_ACCOUNT, new BigDecimal("5")));
+        final FixedPointBank bank = new FixedPointBank(accounts, PLN, TransferEngineType.LOCK_FREE);
+
+        bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("2.5"));
+
+        assertThat(bank.getMoneyAmount(SOURCE_ACCOUNT), comparesEqualTo(new BigDecimal("7.5")));
+        assertThat(bank.getMoneyAmount(DESTINATION_ACCOUNT), comparesEqualTo(new BigDecimal("7.5")));
+    }
+
+    @Test
+    void sequencedTransferMoneySuccessTest() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account(SOURCE_ACCOUNT, BigDecimal.TEN));
+        accounts.add(new Account(DESTINATION_ACCOUNT, new BigDecimal("5")));
+
+        try (final FixedPointBank bank = new FixedPointBank(accounts, PLN, TransferEngineType.SEQUENCED)) {
+            bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("2.5"));
+
+            final Exception exc = assertThrows(IllegalArgumentException.class,
+                    () -> bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("7.51")));
+            assertEquals("Insufficient amount (7.50) on the source account", exc.getMessage());
+            assertThat(bank.getMoneyAmount(SOURCE_ACCOUNT), comparesEqualTo(new BigDecimal("7.5")));
+            assertThat(bank.getMoneyAmount(DESTINATION_ACCOUNT), comparesEqualTo(new BigDecimal("7.5")));
+        }
+    }
+
+    @Test
+    void offHeapTransferMoneySuccessTest() {
+        final BankConfiguration configuration = BankConfiguration.builder(PLN)
+                .accountStore(AccountStoreType.OFF_HEAP)
+                .build();
+        final FixedPointBank bank = new FixedPointBank(prepareFixedPointAccounts(), configuration);
+
+        bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("2.5"));
+
+        assertThat(bank.getMoneyAmount(SOURCE_ACCOUNT), comparesEqualTo(new BigDecimal("7.5")));
+        assertThat(bank.getMoneyAmount(DESTINATION_ACCOUNT), comparesEqualTo(new BigDecimal("7.5")));
+    }
+
+    @Test
+    void offHeapLockFreeEngineTest() {
+        final BankConfiguration configuration = BankConfiguration.builder(PLN)
+                .engineType(TransferEngineType.LOCK_FREE)
+                .accountStore(AccountStoreType.OFF_HEAP)
+                .build();
+
+        final Exception exc = assertThrows(IllegalArgumentException.class,
+                () -> new FixedPointBank(prepareFixedPointAccounts(), configuration));
+        assertEquals("OFF_HEAP account store is not supported by LOCK_FREE engine", exc.getMessage());
+    }
+
+    @Test
+    void constructionNullEngineTypeTest() {
+        assertThrows(NullPointerException.class, () -> new FixedPointBank(new LinkedList<>(), PLN, null));
+    }
+
+    @Test
+    void stripedAccountsTransferMoneyTest() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account(SOURCE_ACCOUNT, BigDecimal.TEN));
+        accounts.add(new Account(DESTINATION_ACCOUNT, new BigDecimal("5")));
+        final FixedPointBank bank = new FixedPointBank(accounts, BankConfiguration.builder(PLN)
+                .engineType(TransferEngineType.LOCK_FREE)
+                .stripedAccount(DESTINATION_ACCOUNT, 8)
+                .build());
+
+        bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("2.5"));
+        bank.transferMoney(DESTINATION_ACCOUNT, SOURCE_ACCOUNT, new BigDecimal("7.5"));
+
+        assertThat(bank.getMoneyAmount(SOURCE_ACCOUNT), comparesEqualTo(new BigDecimal("15")));
+        assertThat(bank.getMoneyAmount(DESTINATION_ACCOUNT), comparesEqualTo(BigDecimal.ZERO));
+    }
+
+    @Test
+    void stripedAccountsMonitorEngineTest() {
+        final BankConfiguration configuration = BankConfiguration.builder(PLN)
+                .stripedAccount(DESTINATION_ACCOUNT, 8)
+                .build();
+
+        final Exception exc = assertThrows(IllegalArgumentException.class,
+                () -> new FixedPointBank(new LinkedList<>(), configuration));
+        assertEquals("Striped accounts are supported only by LOCK_FREE engine", exc.getMessage());
+    }
+
+    @Test
+    void combiningAccountsMonitorEngineTest() {
+        final BankConfiguration configuration = BankConfiguration.builder(PLN)
+                .combiningAccount(DESTINATION_ACCOUNT)
+                .build();
+
+        final Exception exc = assertThrows(IllegalArgumentException.class,
+                () -> new FixedPointBank(new LinkedList<>(), configuration));
+        assertEquals("Combining accounts are supported only by ADAPTIVE engine", exc.getMessage());
+    }
+
+    @Test
+    void transferMoneyByHandlesTest() {
+        final FixedPointBank bank = prepareFixedPointBank();
+        final int source = bank.accountHandle(SOURCE_ACCOUNT);
+        final int destination = bank.accountHandle(DESTINATION_ACCOUNT);
+
+        bank.transferMoney(source, destination, 250);
+
+        assertThat(bank.getMoneyAmount(SOURCE_ACCOUNT), comparesEqualTo(new BigDecimal("7.5")));
+        assertThat(bank.getMoneyAmount(DESTINATION_ACCOUNT), comparesEqualTo(new BigDecimal("7.5")));
+    }
+
+    @Test
+    void transferMoneyByHandlesValidationTest() {
+        final FixedPointBank bank = prepareFixedPointBank();
+        final int source = bank.accountHandle(SOURCE_ACCOUNT);
+
+        Exception exc = assertThrows(IllegalArgumentException.class, () -> bank.accountHandle("unknown"));
+        assertEquals("Account 'unknown' does not exist", exc.getMessage());
+
+        exc = assertThrows(IllegalArgumentException.class, () -> bank.transferMoney(source, 2, 1));
+        assertEquals("Account handle 2 does not exist", exc.getMessage());
+
+        exc = assertThrows(IllegalArgumentException.class, () -> bank.transferMoney(-1, source, 1));
+        assertEquals("Account handle -1 does not exist", exc.getMessage());
+
+        exc = assertThrows(IllegalArgumentException.class, () -> bank.transferMoney(source, source, 1));
+        assertEquals("Source and destination account ids cannot be the same", exc.getMessage());
+
+        exc = assertThrows(IllegalArgumentException.class,
+                () -> bank.transferMoney(source, bank.accountHandle(DESTINATION_ACCOUNT), 1001));
+        assertEquals("Insufficient amount (10.00) on the source account", exc.getMessage());
+    }
+
+    @Test
+    void transferBatchTest() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account(SOURCE_ACCOUNT, BigDecimal.TEN));
+        accounts.add(new Account(DESTINATION_ACCOUNT, new BigDecimal("5")));
+        final Bank bank = new BigDecimalBank(accounts);
+
+        final List<TransferResult> results = bank.transferBatch(prepareBatch());
+
+        assertBatchResults(results);
+        assertThat(accounts.get(0).getMoneyAmount(), comparesEqualTo(new BigDecimal("3")));
+        assertThat(accounts.get(1).getMoneyAmount(), comparesEqualTo(new BigDecimal("12")));
+    }
+
+    @Test
+    void fixedPointTransferBatchTest() {
+        final FixedPointBank bank = prepareFixedPointBank();
+
+        final List<TransferResult> results = bank.transferBatch(prepareBatch());
+
+        assertBatchResults(results);
+        assertEquals("Insufficient amount (12.00) on the source account", results.get(3).getMessage());
+        assertThat(bank.getMoneyAmount(SOURCE_ACCOUNT), comparesEqualTo(new BigDecimal("3")));
+        assertThat(bank.getMoneyAmount(DESTINATION_ACCOUNT), comparesEqualTo(new BigDecimal("12")));
+    }
+
+    @Test
+    void fixedPointTransferBatchByHandlesTest() {
+        final FixedPointBank bank = prepareFixedPointBank();
+        final int source = bank.accountHandle(SOURCE_ACCOUNT);
+        final int destination = bank.accountHandle(DESTINATION_ACCOUNT);
+
+        final TransferResult[] results = bank.transferBatch(new int[]{source, source, 7, destination},
+                new int[]{destination, source, destination, source}, new long[]{700, 1, 1, 2000});
+
+        assertTrue(results[0].isSuccess());
+        assertEquals("Source and destination account ids cannot be the same", results[1].getMessage());
+        assertEquals("Account handle 7 does not exist", results[2].getMessage());
+        assertEquals("Insufficient amount (12.00) on the source account", results[3].getMessage());
+        assertThat(bank.getMoneyAmount(SOURCE_ACCOUNT), comparesEqualTo(new BigDecimal("3")));
+        assertThat(bank.getMoneyAmount(DESTINATION_ACCOUNT), comparesEqualTo(new BigDecimal("12")));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> bank.transferBatch(new int[]{source}, new int[0], new long[]{1}));
+    }
+
+    @Test
+    void fixedPointHistoryTest() {
+        final BankConfiguration configuration = BankConfiguration.builder(PLN).history(4).build();
+
+        try (final FixedPointBank bank = new FixedPointBank(prepareFixedPointAccounts(), configuration)) {
+            assertTrue(bank.hasHistory());
+
+            final int source = bank.accountHandle(SOURCE_ACCOUNT);
+            final int destination = bank.accountHandle(DESTINATION_ACCOUNT);
+            bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("2.5"));
+            bank.transferMoney(destination, source, 100);
+            bank.transferBatch(new int[]{source, source}, new int[]{destination, source}, new long[]{50, 1});
+
+            final HistoryPage page = new HistoryPage(10);
+            assertEquals(3, bank.readHistory(SOURCE_ACCOUNT, Long.MAX_VALUE, page));
+            assertEquals(-50, page.getAmount(0));
+            assertEquals(100, page.getAmount(1));
+            assertEquals(-250, page.getAmount(2));
+            assertEquals(DESTINATION_ACCOUNT, bank.accountId(page.getCounterparty(2)));
+
+            assertEquals(1, bank.readHistory(DESTINATION_ACCOUNT, 1, page));
+            assertEquals(250, page.getAmount(0));
+            assertThrows(IllegalArgumentException.class, () -> bank.readHistory("unknown", Long.MAX_VALUE, page));
+            assertThrows(IllegalArgumentException.class, () -> bank.accountId(7));
+        }
+
+        final FixedPointBank bankWithoutHistory = prepareFixedPointBank();
+        assertFalse(bankWithoutHistory.hasHistory());
+        final Exception exc = assertThrows(IllegalStateException.class,
+                () -> bankWithoutHistory.readHistory(SOURCE_ACCOUNT, Long.MAX_VALUE, new HistoryPage(1)));
+        assertEquals("Transaction history is not kept by the bank", exc.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> BankConfiguration.builder(PLN).history(3));
+    }
+
+    @Test
+    void fixedPointReadBalancesTest() {
+        final FixedPointBank bank = prepareFixedPointBank();
+        final int source = bank.accountHandle(SOURCE_ACCOUNT);
+        final int destination = bank.accountHandle(DESTINATION_ACCOUNT);
+        bank.transferMoney(source, destination, 250);
+
+        final long[] balances = new long[2];
+        bank.readBalances(new int[]{destination, source}, balances);
+        assertArrayEquals(new long[]{750, 750}, balances);
+
+        assertThrows(IllegalArgumentException.class, () -> bank.readBalances(new int[]{source, 2}, balances));
+        assertThrows(IllegalArgumentException.class, () -> bank.readBalances(new int[]{source}, balances));
+    }
+
+    @Test
+    void fixedPointExportBalancesTest() {
+        final FixedPointBank bank = prepareFixedPointBank();
+        bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("2.5"));
+
+        final StringWriter writer = new StringWriter();
+        assertEquals(1500, bank.exportBalances(writer));
+        assertEquals(SOURCE_ACCOUNT + ",7.50\n" + DESTINATION_ACCOUNT + ",7.50\n", writer.toString());
+
+        try (BalanceSnapshot snapshot = bank.openBalanceSnapshot()) {
+            assertEquals(750, snapshot.getBalance(0));
+            assertThrows(IllegalStateException.class, () -> bank.exportBalances(new StringWriter()));
+        }
+
+        final FixedPointBank lockFreeBank = new FixedPointBank(prepareFixedPointAccounts(), PLN,
+                TransferEngineType.LOCK_FREE);
+        assertEquals(1500, lockFreeBank.exportBalances(new StringWriter()));
+    }
+
+    @Test
+    void transferBatchTooBigTest() {
+        final Bank bank = new BigDecimalBank(new LinkedList<>());
+        final List<Transfer> transfers = new ArrayList<>();
+        for (int i = 0; i <= Bank.MAX_BATCH_SIZE; ++i)
+            transfers.add(new Transfer(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, BigDecimal.ONE));
+
+        final Exception exc = assertThrows(IllegalArgumentException.class, () -> bank.transferBatch(transfers));
+        assertEquals("Batch size (1001) cannot be greater than 1000", exc.getMessage());
+    }
+
+    @Test
+    void journaledTransfersRecoveryTest(@TempDir final Path directory) {
+        for (final TransferEngineType engineType : TransferEngineType.values()) {
+            final BankConfiguration configuration = BankConfiguration.builder(PLN)
+                    .engineType(engineType)
+                    .journal(directory.resolve(engineType + ".journal"))
+                    .build();
+
+            try (final FixedPointBank bank = new FixedPointBank(prepareFixedPointAccounts(), configuration)) {
+                bank.transferBatch(prepareBatch());
+                bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("2.5"));
+            }
+
+            try (final FixedPointBank bank = new FixedPointBank(prepareFixedPointAccounts(), configuration)) {
+                assertThat(bank.getMoneyAmount(SOURCE_ACCOUNT), comparesEqualTo(new BigDecimal("0.5")));
+                assertThat(bank.getMoneyAmount(DESTINATION_ACCOUNT), comparesEqualTo(new BigDecimal("14.5")));
+            }
+        }
+    }
+
+    @Test
+    void failingTransferLogTest() {
+        for (final TransferEngineType engineType : TransferEngineType.values()) {
+            final TransferEngine engine = engineType.create(prepareFixedPointAccounts(),
+                    BankConfiguration.builder(PLN).engineType(engineType).build(), new TransferMetrics(),
+                    (source, destination, amount) -> {
+                        throw new IllegalStateException("Journal is closed");
+                    });
+
+            try {
+                final int source = engine.handleOf(SOURCE_ACCOUNT);
+                final int destination = engine.handleOf(DESTINATION_ACCOUNT);
+
+                final Exception exc = assertThrows(IllegalStateException.class,
+                        () -> engine.tryTransfer(source, destination, 250));
+                assertEquals("Journal is closed", exc.getMessage());
+                assertEquals(1000, engine.getBalance(source));
+                assertEquals(500, engine.getBalance(destination));
+            } finally {
+                engine.close();
+            }
+        }
+    }
+
+    @Test
+    void journaledTransfersUnknownAccountTest(@TempDir final Path directory) {
+        final BankConfiguration configuration = BankConfiguration.builder(PLN)
+                .journal(directory.resolve("transfers.journal"))
+                .build();
+
+        try (final FixedPointBank bank = new FixedPointBank(prepareFixedPointAccounts(), configuration)) {
+            bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, 1);
+        }
+
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account(SOURCE_ACCOUNT, BigDecimal.TEN));
+
+        final Exception exc = assertThrows(IllegalStateException.class,
+                () -> new FixedPointBank(accounts, configuration));
+        assertEquals("Journal refers to not existing accounts: [" + DESTINATION_ACCOUNT + "]", exc.getMessage());
+    }
+
+    @Test
+    void snapshotWithoutJournalTest(@TempDir final Path directory) {
+        final BankConfiguration.Builder builder = BankConfiguration.builder(PLN)
+                .snapshot(directory.resolve("accounts.snapshot"));
+
+        final Exception exc = assertThrows(IllegalArgumentException.class, builder::build);
+        assertEquals("Snapshot cannot be written without the journal", exc.getMessage());
+    }
+
+    @Test
+    void accountTableTest(@TempDir final Path directory) {
+        final BankConfiguration configuration = BankConfiguration.builder(PLN)
+                .accountTable(directory.resolve("accounts.table"))
+                .build();
+
+        try (final FixedPointBank bank = new FixedPointBank(prepareFixedPointAccounts(), configuration)) {
+            bank.transferBatch(prepareBatch());
+            bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("2.5"));
+        }
+
+        try (final FixedPointBank bank = new FixedPointBank(prepareFixedPointAccounts(), configuration)) {
+            assertThat(bank.getMoneyAmount(SOURCE_ACCOUNT), comparesEqualTo(new BigDecimal("0.5")));
+            assertThat(bank.getMoneyAmount(DESTINATION_ACCOUNT), comparesEqualTo(new BigDecimal("14.5")));
+        }
+    }
+
+    @Test
+    void accountTableInvalidConfigurationTest(@TempDir final Path directory) {
+        Exception exc = assertThrows(IllegalArgumentException.class, () -> BankConfiguration.builder(PLN)
+                .accountTable(directory.resolve("accounts.table"))
+                .journal(directory.resolve("transfers.journal"))
+                .build());
+        assertEquals("Account table cannot be combined with the journal", exc.getMessage());
+
+        exc = assertThrows(IllegalArgumentException.class, () -> BankConfiguration.builder(PLN)
+                .accountStore(AccountStoreType.MAPPED)
+                .build());
+        assertEquals("MAPPED account store requires the account table file", exc.getMessage());
+
+        final BankConfiguration configuration = BankConfiguration.builder(PLN)
+                .accountTable(directory.resolve("accounts.table"))
+                .engineType(TransferEngineType.PARTITIONED)
+                .build();
+        exc = assertThrows(IllegalArgumentException.class, () -> new FixedPointBank(new LinkedList<>(), configuration));
+        assertEquals("MAPPED account store is not supported by PARTITIONED engine", exc.getMessage());
+    }
+
+    @Test
+    void multiCurrencyTransferMoneyTest() {
+        final CurrencyUnit eur = new CurrencyUnit("EUR", 2);
+        final CurrencyUnit jpy = new CurrencyUnit("JPY", 0);
+        final BankConfiguration configuration = BankConfiguration.builder(PLN)
+                .fxRate(eur, PLN, new BigDecimal("4.3"))
+                .fxRate(PLN, jpy, new BigDecimal("37.5"))
+                .build();
+
+        try (final FixedPointBank bank = new FixedPointBank(prepareMultiCurrencyAccounts(eur, jpy), configuration)) {
+            bank.transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("10.50"));
+            bank.transferMoney(DESTINATION_ACCOUNT, "jpy", 1000);
+
+            assertThat(bank.getMoneyAmount(SOURCE_ACCOUNT), comparesEqualTo(new BigDecimal("89.50")));
+            assertThat(bank.getMoneyAmount(DESTINATION_ACCOUNT), comparesEqualTo(new BigDecimal("40.15")));
+            assertThat(bank.getMoneyAmount("jpy"), comparesEqualTo(new BigDecimal("375")));
+            assertEquals(jpy, bank.accountCurrency(bank.accountHandle("jpy")));
+            assertEquals(jpy, bank.amountCurrency("jpy"));
+            assertEquals(PLN, bank.amountCurrency("unknown"));
+
+            final int jpyHandle = bank.accountHandle("jpy");
+            final int source = bank.accountHandle(SOURCE_ACCOUNT);
+            assertEquals(TransferOutcome.MISSING_FX_RATE, bank.tryTransferMoney(jpyHandle, source, 100));
+            Exception exc = assertThrows(IllegalArgumentException.class,
+                    () -> bank.transferMoney("jpy", SOURCE_ACCOUNT, 100));
+            assertEquals("There is no FX rate from JPY to EUR", exc.getMessage());
+
+            bank.getFxRates().setRate(jpy, eur, new BigDecimal("0.0062"));
+            exc = assertThrows(IllegalArgumentException.class, () -> bank.transferMoney(jpyHandle, source, 1));
+            assertEquals("Amount converted from JPY to EUR is less than the minor unit of EUR", exc.getMessage());
+            bank.transferMoney(jpyHandle, source, 300);
+            assertThat(bank.getMoneyAmount(SOURCE_ACCOUNT), comparesEqualTo(new BigDecimal("91.36")));
+
+            exc = assertThrows(IllegalArgumentException.class,
+                    () -> bank.transferMoney("jpy", DESTINATION_ACCOUNT, new BigDecimal("1.5")));
+            assertEquals("Amount (1.5) cannot be represented in JPY with 0 decimal places", exc.getMessage());
+
+            final StringWriter writer = new StringWriter();
+            bank.exportBalances(writer);
+            assertEquals("source,91.36\ndestination,40.15\njpy,75\n", writer.toString());
+
+            assertEquals(2, bank.getMetrics().getRejects(RejectReason.MISSING_FX_RATE));
+            assertEquals(2, bank.getMetrics().getRejects(RejectReason.INVALID_AMOUNT));
+        }
+    }
+
+    @Test
+    void multiCurrencyTransferBatchTest() {
+        final CurrencyUnit eur = new CurrencyUnit("EUR", 2);
+        final CurrencyUnit jpy = new CurrencyUnit("JPY", 0);
+        final BankConfiguration configuration = BankConfiguration.builder(PLN)
+                .engineType(TransferEngineType.ADAPTIVE)
+                .fxRate(eur, PLN, new BigDecimal("4.3"))
+                .history(4)
+                .build();
+
+        try (final FixedPointBank bank = new FixedPointBank(prepareMultiCurrencyAccounts(eur, jpy), configuration)) {
+            final int source = bank.accountHandle(SOURCE_ACCOUNT);
+            final int destination = bank.accountHandle(DESTINATION_ACCOUNT);
+            final int jpyHandle = bank.accountHandle("jpy");
+
+            final TransferResult[] results = bank.transferBatch(new int[]{source, destination, source},
+                    new int[]{destination, jpyHandle, destination}, new long[]{1000, 100, 20000});
+            assertTrue(results[0].isSuccess());
+            assertEquals("There is no FX rate from PLN to JPY", results[1].getMessage());
+            assertEquals(TransferOutcome.INSUFFICIENT_FUNDS, results[2].getOutcome());
+            assertEquals("Insufficient amount (90.00) on the source account", results[2].getMessage());
+
+            final List<TransferResult> listResults = bank.transferBatch(Arrays.asList(
+                    new Transfer(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("0.01")),
+                    new Transfer("jpy", DESTINATION_ACCOUNT, BigDecimal.ONE)));
+            assertTrue(listResults.get(0).isSuccess());
+            assertEquals(TransferOutcome.MISSING_FX_RATE, listResults.get(1).getOutcome());
+
+            assertThat(bank.getMoneyAmount(SOURCE_ACCOUNT), comparesEqualTo(new BigDecimal("89.99")));
+            assertThat(bank.getMoneyAmount(DESTINATION_ACCOUNT), comparesEqualTo(new BigDecimal("48.04")));
+
+            final HistoryPage page = new HistoryPage(10);
+            assertEquals(2, bank.readHistory(DESTINATION_ACCOUNT, Long.MAX_VALUE, page));
+            assertEquals(4, page.getAmount(0));
+            assertEquals(4300, page.getAmount(1));
+            assertEquals(2, bank.readHistory(SOURCE_ACCOUNT, Long.MAX_VALUE, page));
+            assertEquals(-1000, page.getAmount(1));
+        }
+    }
+
+    @Test
+    void multiCurrencyInvalidConfigurationTest(@TempDir final Path directory) {
+        final CurrencyUnit eur = new CurrencyUnit("EUR", 2);
+        final CurrencyUnit jpy = new CurrencyUnit("JPY", 0);
+
+        final BankConfiguration journalConfiguration = BankConfiguration.builder(PLN)
+                .journal(directory.resolve("transfers.journal"))
+                .build();
+        Exception exc = assertThrows(IllegalArgumentException.class,
+                () -> new FixedPointBank(prepareMultiCurrencyAccounts(eur, jpy), journalConfiguration));
+        assertEquals("Multi-currency accounts cannot be combined with the journal", exc.getMessage());
+
+        try (final TransferAuditSink sink = new TransferAuditSink(16, AuditOverflowPolicy.BLOCK, event -> {
+        })) {
+            final BankConfiguration auditConfiguration = BankConfiguration.builder(PLN).auditSink(sink).build();
+            exc = assertThrows(IllegalArgumentException.class,
+                    () -> new FixedPointBank(prepareMultiCurrencyAccounts(eur, jpy), auditConfiguration));
+            assertEquals("Multi-currency accounts cannot be combined with the audit sink", exc.getMessage());
+        }
+
+        exc = assertThrows(IllegalArgumentException.class,
+                () -> new FixedPointBank(prepareMultiCurrencyAccounts(eur, jpy), PLN, TransferEngineType.SEQUENCED));
+        assertEquals("Multi-currency accounts are supported only by MONITOR and ADAPTIVE engines", exc.getMessage());
+
+        exc = assertThrows(IllegalArgumentException.class,
+                () -> new FixedPointBank(Collections.singletonList(new Account(SOURCE_ACCOUNT, BigDecimal.ONE,
+                        new CurrencyUnit("PLN", 3))), PLN));
+        assertEquals("Duplicated currency: PLN", exc.getMessage());
+
+        // accounts tagged with the bank currency are not multi-currency
+        try (final FixedPointBank bank = new FixedPointBank(
+                Collections.singletonList(new Account(SOURCE_ACCOUNT, BigDecimal.ONE, PLN)), PLN,
+                TransferEngineType.LOCK_FREE)) {
+            assertEquals(PLN, bank.accountCurrency(0));
+        }
+    }
+
+    private static List<Account> prepareMultiCurrencyAccounts(final CurrencyUnit eur, final CurrencyUnit jpy) {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account(SOURCE_ACCOUNT, new BigDecimal("100"), eur));
+        accounts.add(new Account(DESTINATION_ACCOUNT, new BigDecimal("5")));
+        accounts.add(new Account("jpy", BigDecimal.ZERO, jpy));
+
+        return accounts;
+    }
+
+    private static List<Transfer> prepareBatch() {
+        return Arrays.asList(
+                new Transfer(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("7")),
+                new Transfer(SOURCE_ACCOUNT, "unknown", BigDecimal.ONE),
+                new Transfer(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("-1")),
+                new Transfer(DESTINATION_ACCOUNT, SOURCE_ACCOUNT, new BigDecimal("12.01")),
+                new Transfer(DESTINATION_ACCOUNT, SOURCE_ACCOUNT, BigDecimal.ONE),
+                new Transfer(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, BigDecimal.ONE));
+    }
+
+    private static void assertBatchResults(final List<TransferResult> results) {
+        assertEquals(6, results.size());
+        assertEquals(TransferResult.OK, results.get(0));
+        assertEquals("Account 'unknown' does not exist", results.get(1).getMessage());
+        assertEquals("Amount (-1) cannot be less or equal to 0", results.get(2).getMessage());
+        assertFalse(results.get(3).isSuccess());
+        assertEquals(TransferResult.OK, results.get(4));
+        assertEquals(TransferResult.OK, results.get(5));
+    }
+
+    private static FixedPointBank prepareFixedPointBank() {
+        return new FixedPointBank(prepareFixedPointAccounts(), PLN);
+    }
+
+    private static List<Account> prepareFixedPointAccounts() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account(SOURCE_ACCOUNT, BigDecimal.TEN));
+        accounts.add(new Account(DESTINATION_ACCOUNT, new BigDecimal("5")));
+
+        return accounts;
+    }
+}
@@ -0,0 +1,95 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class CombiningTransferEngineTest extends AbstractTransferEngineTest {
+
+    @Override
+    TransferEngine createEngine(final List<Account> accounts, final CurrencyUnit currency) {
+        return new AdaptiveLockTransferEngine(accounts, BankConfiguration.builder(currency)
+                .combiningAccount("acc2")
+                .build());
+    }
+
+    @Test
+    void combiningPassTest() throws Exception {
+        final AdaptiveLockTransferEngine engine = (AdaptiveLockTransferEngine) newEngine(prepareAccounts(), PLN);
+        final TransferCombiner combiner = engine.combinerOf(ACC2);
+        assertNull(engine.combinerOf(ACC1));
+        assertEquals(AdaptiveLock.Mode.COMBINING, engine.lockOf(ACC2).getMode());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // both transfers are posted while the hot account is locked and applied by a single pass
+            combiner.lock();
+            final Future<TransferOutcome> deposit = executor.submit(() -> engine.tryTransfer(ACC1, ACC2, 10000));
+            final Future<TransferOutcome> withdrawal = executor.submit(() -> engine.tryTransfer(ACC2, ACC3, 25000));
+            while (combiner.postedCount() < 2)
+                Thread.yield();
+            combiner.unlock();
+
+            assertEquals(TransferOutcome.OK, deposit.get());
+            assertEquals(1, combiner.getPasses());
+            assertEquals(2, combiner.getCombinedTransfers());
+
+            // the withdrawal is checked against the balance at the moment it is applied (before or after the deposit)
+            final boolean withdrawn = withdrawal.get() == TransferOutcome.OK;
+            assertEquals(withdrawn ? 5000 : 30000, engine.getBalance(ACC2));
+            assertEquals(withdrawn ? 25000 : 0, engine.getBalance(ACC3));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(TransferOutcome.INSUFFICIENT_FUNDS, engine.tryTransfer(ACC2, ACC1, 30001));
+        assertEquals(TransferOutcome.OK, engine.tryTransfer(ACC2, ACC1, 1));
+        assertEquals(3, combiner.getPasses());
+    }
+
+    @Test
+    void allSlotsTakenTest() throws Exception {
+        final AtomicInteger applied = new AtomicInteger();
+        final TransferCombiner combiner = new TransferCombiner(new AdaptiveLock(),
+                (source, destination, amount, credit) -> {
+                    applied.incrementAndGet();
+                    return TransferOutcome.OK;
+                }, 1);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            combiner.lock();
+            final Future<TransferOutcome> posted = executor.submit(() -> combiner.transfer(0, 1, 1, 1));
+            while (combiner.postedCount() < 1)
+                Thread.yield();
+
+            // the only slot is taken, so the next transfer waits for the lock instead of spinning
+            final AtomicReference<Thread> waiting = new AtomicReference<>();
+            final Future<TransferOutcome> locked = executor.submit(() -> {
+                waiting.set(Thread.currentThread());
+                return combiner.transfer(2, 1, 1, 1);
+            });
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                while (waiting.get() == null || waiting.get().getState() != Thread.State.WAITING)
+                    Thread.yield();
+            });
+            combiner.unlock();
+
+            assertEquals(TransferOutcome.OK, posted.get());
+            assertEquals(TransferOutcome.OK, locked.get());
+            assertEquals(2, applied.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+import spark.Request;
+import spark.Response;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class ContentionHandlerTest {
+
+    private static final int UNPROCESSABLE_ENTITY_ERROR = 422;
+    private static final CurrencyUnit PLN = new CurrencyUnit("PLN", 2);
+
+    @Test
+    void constructionNullBankTest() {
+        assertThrows(NullPointerException.class, () -> new ContentionHandler(null));
+    }
+
+    @Test
+    void handleTest() throws Exception {
+        final AdaptiveLock lock = new AdaptiveLock();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            AdaptiveLockTest.contend(lock, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final FixedPointBank bank = mock(FixedPointBank.class);
+        when(bank.topContendedAccounts(ContentionHandler.DEFAULT_LIMIT))
+                .thenReturn(Collections.singletonList(new AccountContention(1, lock)));
+        when(bank.accountId(1)).thenReturn("acc2");
+        final Response response = mock(Response.class);
+
+        assertEquals("acc2,2,1," + lock.getWaitNanos() + ",SPINNING\n",
+                new ContentionHandler(bank).handle(mock(Request.class), response));
+        verify(response, never()).status(anyInt());
+    }
+
+    @Test
+    void handleInvalidParametersTest() {
+        try (FixedPointBank bank = prepareBank(TransferEngineType.ADAPTIVE)) {
+            final ContentionHandler handler = new ContentionHandler(bank);
+            final Request request = mock(Request.class);
+            final Response response = mock(Response.class);
+
+            when(request.queryParams("limit")).thenReturn("0");
+            assertEquals("Limit (0) has to be between 1 and 1000", handler.handle(request, response));
+
+            when(request.queryParams("limit")).thenReturn("x");
+            assertEquals("Limit (x) is not a valid number", handler.handle(request, response));
+
+            verify(response, times(2)).status(UNPROCESSABLE_ENTITY_ERROR);
+        }
+    }
+
+    @Test
+    void handleNotRecordingEngineTest() {
+        try (FixedPointBank bank = prepareBank(TransferEngineType.MONITOR)) {
+            final Response response = mock(Response.class);
+
+            assertEquals("", new ContentionHandler(bank).handle(mock(Request.class), response));
+            verify(response, never()).status(anyInt());
+        }
+    }
+
+    private static FixedPointBank prepareBank(final TransferEngineType engineType) {
+        final List<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("acc1", new BigDecimal("100")));
+        accounts.add(new Account("acc2", new BigDecimal("200")));
+
+        return new FixedPointBank(accounts, PLN, engineType);
+    }
+}
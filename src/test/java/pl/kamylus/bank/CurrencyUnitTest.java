@@ -0,0 +1,108 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CurrencyUnitTest {
+    private static final CurrencyUnit PLN = new CurrencyUnit("PLN", 2);
+
+    @Test
+    void constructionNullCodeTest() {
+        assertThrows(NullPointerException.class, () -> new CurrencyUnit(null, 2));
+    }
+
+    @Test
+    void constructionInvalidScaleTest() {
+        assertThrows(IllegalArgumentException.class, () -> new CurrencyUnit("PLN", -1));
+        assertThrows(IllegalArgumentException.class, () -> new CurrencyUnit("PLN", 19));
+    }
+
+    @Test
+    void toMinorUnitsTest() {
+        assertEquals(10012, PLN.toMinorUnits(new BigDecimal("100.12")));
+        assertEquals(10000, PLN.toMinorUnits(new BigDecimal("100")));
+        assertEquals(10010, PLN.toMinorUnits(new BigDecimal("100.1000")));
+        assertEquals(-5, PLN.toMinorUnits(new BigDecimal("-0.05")));
+    }
+
+    @Test
+    void toMinorUnitsTooManyDecimalPlacesTest() {
+        final Exception exc = assertThrows(IllegalArgumentException.class,
+                () -> PLN.toMinorUnits(new BigDecimal("23.1523456")));
+        assertEquals("Amount (23.1523456) cannot be represented in PLN with 2 decimal places", exc.getMessage());
+    }
+
+    @Test
+    void toMinorUnitsOverflowTest() {
+        assertThrows(IllegalArgumentException.class, () -> PLN.toMinorUnits(new BigDecimal("100000000000000000")));
+    }
+
+    @Test
+    void toBigDecimalTest() {
+        assertThat(PLN.toBigDecimal(10012), comparesEqualTo(new BigDecimal("100.12")));
+        assertEquals("0.05", PLN.format(5));
+    }
+
+    @Test
+    void parseMinorUnitsTest() {
+        assertEquals(10012, PLN.parseMinorUnits("100.12"));
+        assertEquals(10000, PLN.parseMinorUnits("100"));
+        assertEquals(10000, PLN.parseMinorUnits("100."));
+        assertEquals(50, PLN.parseMinorUnits(".5"));
+        assertEquals(150, PLN.parseMinorUnits("+1.500"));
+        assertEquals(-1000, PLN.parseMinorUnits("-10"));
+        assertEquals(123456789098765L, new CurrencyUnit("JPY", 0).parseMinorUnits("123456789098765"));
+    }
+
+    @Test
+    void parseMinorUnitsNotNumberTest() {
+        Exception exc = assertThrows(IllegalArgumentException.class, () -> PLN.parseMinorUnits("abc"));
+        assertEquals("Amount (abc) is not a valid number", exc.getMessage());
+
+        assertThrows(IllegalArgumentException.class, () -> PLN.parseMinorUnits("-"));
+        assertThrows(IllegalArgumentException.class, () -> PLN.parseMinorUnits("."));
+        assertThrows(IllegalArgumentException.class, () -> PLN.parseMinorUnits("1.2.3"));
+        assertThrows(IllegalArgumentException.class, () -> PLN.parseMinorUnits("1e5"));
+    }
+
+    @Test
+    void tryParseMinorUnitsTest() {
+        assertEquals(-1000, PLN.tryParseMinorUnits("-10"));
+        assertEquals(CurrencyUnit.INVALID_MINOR_UNITS, PLN.tryParseMinorUnits("1.2.3"));
+        assertEquals(CurrencyUnit.INVALID_MINOR_UNITS, PLN.tryParseMinorUnits("10.255"));
+        assertEquals(CurrencyUnit.INVALID_MINOR_UNITS, PLN.tryParseMinorUnits("100000000000000000"));
+        assertEquals(Long.MAX_VALUE, new CurrencyUnit("JPY", 0).tryParseMinorUnits("9223372036854775807"));
+
+        assertEquals("Amount (1.2.3) is not a valid number", PLN.invalidAmountMessage("1.2.3"));
+        assertEquals("Amount (10.255) cannot be represented in PLN with 2 decimal places",
+                PLN.invalidAmountMessage("10.255"));
+        assertEquals("Amount (100000000000000000) is out of range", PLN.invalidAmountMessage("100000000000000000"));
+    }
+
+    @Test
+    void tryToMinorUnitsTest() {
+        assertEquals(10010, PLN.tryToMinorUnits(new BigDecimal("100.1000")));
+        assertEquals(100000, PLN.tryToMinorUnits(new BigDecimal("1E+3")));
+        assertEquals(CurrencyUnit.INVALID_MINOR_UNITS, PLN.tryToMinorUnits(new BigDecimal("23.1523456")));
+        assertEquals(CurrencyUnit.INVALID_MINOR_UNITS, PLN.tryToMinorUnits(new BigDecimal("100000000000000000")));
+    }
+
+    @Test
+    void parseMinorUnitsTooManyDecimalPlacesTest() {
+        final Exception exc = assertThrows(IllegalArgumentException.class, () -> PLN.parseMinorUnits("0.001"));
+        assertEquals("Amount (0.001) cannot be represented in PLN with 2 decimal places", exc.getMessage());
+    }
+
+    @Test
+    void parseMinorUnitsOverflowTest() {
+        final Exception exc = assertThrows(IllegalArgumentException.class,
+                () -> PLN.parseMinorUnits("100000000000000000"));
+        assertEquals("Amount (100000000000000000) is out of range", exc.getMessage());
+    }
+}
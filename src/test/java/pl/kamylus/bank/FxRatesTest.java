@@ -0,0 +1,131 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FxRatesTest {
+    private static final CurrencyUnit EUR = new CurrencyUnit("EUR", 2);
+    private static final CurrencyUnit JPY = new CurrencyUnit("JPY", 0);
+    private static final CurrencyUnit BHD = new CurrencyUnit("BHD", 3);
+
+    @Test
+    void convertTest() {
+        final FxRates rates = new FxRates(Arrays.asList(EUR, JPY, BHD));
+        rates.setRate(EUR, JPY, new BigDecimal("161.37"));
+        rates.setRate(JPY, EUR, new BigDecimal("0.0062"));
+        rates.setRate(EUR, BHD, new BigDecimal("0.4105"));
+
+        final int eur = rates.indexOf(EUR);
+        final int jpy = rates.indexOf(JPY);
+        final int bhd = rates.indexOf(BHD);
+        assertEquals(16137, rates.convert(eur, jpy, 10000));
+        assertEquals(620, rates.convert(jpy, eur, 1000));
+        assertEquals(41050, rates.convert(eur, bhd, 10000));
+        assertEquals(10000, rates.convert(eur, eur, 10000));
+    }
+
+    @Test
+    void convertRoundedDownTest() {
+        final FxRates rates = new FxRates(Arrays.asList(EUR, JPY));
+        rates.setRate(EUR, JPY, new BigDecimal("161.37"));
+        rates.setRate(JPY, EUR, new BigDecimal("0.0062"));
+
+        assertEquals(1, rates.convert(rates.indexOf(EUR), rates.indexOf(JPY), 1));
+        assertEquals(161, rates.convert(rates.indexOf(EUR), rates.indexOf(JPY), 100));
+        assertEquals(0, rates.convert(rates.indexOf(JPY), rates.indexOf(EUR), 1));
+        assertEquals(61, rates.convert(rates.indexOf(JPY), rates.indexOf(EUR), 99));
+    }
+
+    @Test
+    void convertLargeAmountTest() {
+        final FxRates rates = new FxRates(Arrays.asList(EUR, JPY));
+        rates.setRate(EUR, JPY, new BigDecimal("161.37"));
+
+        // the product of the amount and the numerator of the rate does not fit in long
+        final long amount = Long.MAX_VALUE / 1000;
+        final long expected = BigDecimal.valueOf(amount).multiply(new BigDecimal("1.6137"))
+                .setScale(0, RoundingMode.DOWN).longValueExact();
+        assertEquals(expected, rates.convert(rates.indexOf(EUR), rates.indexOf(JPY), amount));
+
+        assertEquals(FxRates.TOO_LARGE, rates.convert(rates.indexOf(EUR), rates.indexOf(JPY), Long.MAX_VALUE));
+    }
+
+    @Test
+    void missingRateTest() {
+        final FxRates rates = new FxRates(Arrays.asList(EUR, JPY));
+        rates.setRate(EUR, JPY, new BigDecimal("161.37"));
+
+        assertEquals(FxRates.NO_RATE, rates.convert(rates.indexOf(JPY), rates.indexOf(EUR), 1000));
+        assertNull(rates.getRate(JPY, EUR));
+        assertThat(rates.getRate(EUR, JPY), comparesEqualTo(new BigDecimal("161.37")));
+    }
+
+    @Test
+    void setRatesTest() {
+        final FxRates rates = new FxRates(Arrays.asList(EUR, JPY));
+        rates.setRate(EUR, JPY, new BigDecimal("161.37"));
+
+        rates.setRates(List.of(new FxRate(EUR, JPY, new BigDecimal("160")),
+                new FxRate(JPY, EUR, new BigDecimal("0.00625"))));
+
+        assertEquals(16000, rates.convert(rates.indexOf(EUR), rates.indexOf(JPY), 10000));
+        assertEquals(625, rates.convert(rates.indexOf(JPY), rates.indexOf(EUR), 1000));
+    }
+
+    @Test
+    void setRatesRejectedKeepsRatesTest() {
+        final FxRates rates = new FxRates(Arrays.asList(EUR, JPY));
+        rates.setRate(EUR, JPY, new BigDecimal("161.37"));
+
+        final Exception exc = assertThrows(IllegalArgumentException.class,
+                () -> rates.setRates(List.of(new FxRate(EUR, JPY, new BigDecimal("160")),
+                        new FxRate(EUR, BHD, new BigDecimal("0.4105")))));
+        assertEquals("Currency BHD (scale 3) is not a currency of the bank", exc.getMessage());
+
+        assertEquals(16137, rates.convert(rates.indexOf(EUR), rates.indexOf(JPY), 10000));
+    }
+
+    @Test
+    void unknownCurrencyTest() {
+        final FxRates rates = new FxRates(Arrays.asList(EUR, JPY));
+
+        assertEquals(-1, rates.indexOf(BHD));
+        assertEquals(-1, rates.indexOf(new CurrencyUnit("JPY", 2)));
+        assertThrows(IllegalArgumentException.class,
+                () -> rates.setRate(new CurrencyUnit("JPY", 2), EUR, BigDecimal.ONE));
+    }
+
+    @Test
+    void invalidRateTest() {
+        final FxRates rates = new FxRates(Arrays.asList(EUR, JPY));
+
+        Exception exc = assertThrows(IllegalArgumentException.class,
+                () -> rates.setRate(EUR, JPY, new BigDecimal("-1")));
+        assertEquals("FX rate (-1) has to be positive", exc.getMessage());
+
+        exc = assertThrows(IllegalArgumentException.class, () -> rates.setRate(EUR, EUR, BigDecimal.ONE));
+        assertEquals("FX rate from EUR to itself cannot be set", exc.getMessage());
+
+        exc = assertThrows(IllegalArgumentException.class,
+                () -> rates.setRate(EUR, JPY, new BigDecimal("1.00000000000000000000001")));
+        assertEquals("FX rate EUR/JPY 1.00000000000000000000001 cannot be represented in minor units",
+                exc.getMessage());
+    }
+
+    @Test
+    void duplicatedCurrencyTest() {
+        final Exception exc = assertThrows(IllegalArgumentException.class,
+                () -> new FxRates(Arrays.asList(EUR, JPY, new CurrencyUnit("EUR", 3))));
+        assertEquals("Duplicated currency: EUR", exc.getMessage());
+    }
+}
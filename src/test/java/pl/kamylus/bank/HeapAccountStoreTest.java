@@ -0,0 +1,11 @@
+package pl.kamylus.bank;
+
+import java.util.List;
+
+class HeapAccountStoreTest extends AbstractAccountStoreTest {
+
+    @Override
+    AccountStore createStore(final List<Account> accounts, final CurrencyUnit currency) {
+        return new HeapAccountStore(accounts, currency);
+    }
+}
@@ -0,0 +1,84 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+import spark.Request;
+import spark.Response;
+
+import java.math.BigDecimal;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+class HistoryHandlerTest {
+
+    private static final int UNPROCESSABLE_ENTITY_ERROR = 422;
+    private static final CurrencyUnit PLN = new CurrencyUnit("PLN", 2);
+
+    @Test
+    void constructionNullBankTest() {
+        assertThrows(NullPointerException.class, () -> new HistoryHandler(null));
+    }
+
+    @Test
+    void handlePagesTest() {
+        try (FixedPointBank bank = prepareBank()) {
+            bank.transferMoney("acc1", "acc2", new BigDecimal("10"));
+            bank.transferMoney("acc2", "acc1", new BigDecimal("2.5"));
+            bank.transferMoney("acc1", "acc2", new BigDecimal("1"));
+
+            final HistoryHandler handler = new HistoryHandler(bank);
+            final Request request = mock(Request.class);
+            when(request.queryParams("accountId")).thenReturn("acc1");
+            when(request.queryParams("limit")).thenReturn("2");
+            final Response response = mock(Response.class);
+
+            final String firstPage = (String) handler.handle(request, response);
+            final String[] lines = firstPage.split("\n");
+            assertEquals(2, lines.length);
+            assertTrue(lines[0].startsWith("2,3,"));
+            assertTrue(lines[0].endsWith(",acc2,-1.00"));
+            assertTrue(lines[1].startsWith("1,2,"));
+            assertTrue(lines[1].endsWith(",acc2,2.50"));
+
+            when(request.queryParams("before")).thenReturn("1");
+            final String secondPage = (String) handler.handle(request, response);
+            assertTrue(secondPage.startsWith("0,1,"));
+            assertTrue(secondPage.endsWith(",acc2,-10.00\n"));
+
+            verify(response, never()).status(anyInt());
+        }
+    }
+
+    @Test
+    void handleInvalidParametersTest() {
+        try (FixedPointBank bank = prepareBank()) {
+            final HistoryHandler handler = new HistoryHandler(bank);
+            final Request request = mock(Request.class);
+            final Response response = mock(Response.class);
+
+            when(request.queryParams("accountId")).thenReturn("acc9");
+            assertEquals("Account 'acc9' does not exist", handler.handle(request, response));
+
+            when(request.queryParams("accountId")).thenReturn("acc1");
+            when(request.queryParams("limit")).thenReturn("1001");
+            assertEquals("Limit (1001) has to be between 1 and 1000", handler.handle(request, response));
+
+            when(request.queryParams("limit")).thenReturn("x");
+            assertEquals("Limit (x) is not a valid number", handler.handle(request, response));
+
+            verify(response, times(3)).status(UNPROCESSABLE_ENTITY_ERROR);
+        }
+    }
+
+    private static FixedPointBank prepareBank() {
+        final List<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("acc1", new BigDecimal("100")));
+        accounts.add(new Account("acc2", new BigDecimal("200")));
+
+        return new FixedPointBank(accounts, BankConfiguration.builder(PLN).history(8).build());
+    }
+}
@@ -0,0 +1,195 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdempotencyStoreTest {
+
+    private static final long FINGERPRINT = IdempotencyStore.fingerprint("acc1", "acc2", "10");
+
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    @Test
+    void invalidParametersTest() {
+        assertThrows(IllegalArgumentException.class, () -> new IdempotencyStore(0, 1000));
+        assertThrows(IllegalArgumentException.class, () -> new IdempotencyStore(10, 0));
+        assertThrows(IllegalArgumentException.class, () -> new IdempotencyStore(10, 1000, 3, nanoTime::get));
+        assertThrows(IllegalArgumentException.class, () -> new IdempotencyStore(2, 1000, 4, nanoTime::get));
+        assertThrows(NullPointerException.class, () -> new IdempotencyStore(10, 1000, 1, null));
+
+        final IdempotencyStore store = new IdempotencyStore(10, 1000);
+        assertThrows(NullPointerException.class, () -> store.claim(null, FINGERPRINT));
+        assertThrows(IllegalArgumentException.class, () -> store.claim("", FINGERPRINT));
+        assertThrows(IllegalArgumentException.class,
+                () -> store.claim("k".repeat(IdempotencyStore.MAX_KEY_LENGTH + 1), FINGERPRINT));
+    }
+
+    @Test
+    void tryClaimTest() {
+        final IdempotencyStore store = new IdempotencyStore(10, 1000, 1, nanoTime::get);
+
+        assertNull(store.tryClaim("key", FINGERPRINT));
+        assertEquals(TransferOutcome.IDEMPOTENCY_KEY_IN_PROGRESS, store.tryClaim("key", FINGERPRINT).getOutcome());
+        assertEquals(TransferOutcome.IDEMPOTENCY_KEY_REUSED, store.tryClaim("key", FINGERPRINT + 1).getOutcome());
+        assertEquals(TransferOutcome.INVALID_IDEMPOTENCY_KEY, store.tryClaim("", FINGERPRINT).getOutcome());
+        assertEquals("Transfer with idempotency key 'key' is in progress",
+                IdempotencyStore.conflictMessage(TransferOutcome.IDEMPOTENCY_KEY_IN_PROGRESS, "key"));
+
+        store.complete("key", TransferResult.OK);
+        assertSame(TransferResult.OK, store.tryClaim("key", FINGERPRINT));
+    }
+
+    @Test
+    void claimCompleteTest() {
+        final IdempotencyStore store = new IdempotencyStore(10, 1000, 1, nanoTime::get);
+
+        assertNull(store.claim("key", FINGERPRINT));
+        assertEquals("Transfer with idempotency key 'key' is in progress",
+                assertThrows(IllegalArgumentException.class, () -> store.claim("key", FINGERPRINT)).getMessage());
+
+        store.complete("key", TransferResult.OK);
+        assertSame(TransferResult.OK, store.claim("key", FINGERPRINT));
+        assertEquals("Idempotency key 'key' has been used for another transfer",
+                assertThrows(IllegalArgumentException.class,
+                        () -> store.claim("key", IdempotencyStore.fingerprint("acc1", "acc2", "11"))).getMessage());
+
+        final TransferResult failure = TransferResult.failure(TransferOutcome.INSUFFICIENT_FUNDS,
+                "Insufficient amount (0.00) on the source account");
+        assertNull(store.claim("other", FINGERPRINT));
+        store.complete("other", failure);
+        assertSame(failure, store.claim("other", FINGERPRINT));
+    }
+
+    @Test
+    void releaseTest() {
+        final IdempotencyStore store = new IdempotencyStore(10, 1000, 1, nanoTime::get);
+
+        assertNull(store.claim("key", FINGERPRINT));
+        store.release("key");
+
+        assertNull(store.claim("key", FINGERPRINT));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void fingerprintTest() {
+        assertEquals(FINGERPRINT, IdempotencyStore.fingerprint(new StringBuilder("acc1"), "acc2", "10"));
+        assertNotEquals(FINGERPRINT, IdempotencyStore.fingerprint("acc", "1acc2", "10"));
+        assertNotEquals(FINGERPRINT, IdempotencyStore.fingerprint("acc2", "acc1", "10"));
+        assertNotEquals(FINGERPRINT, IdempotencyStore.fingerprint("acc1", "acc2", null));
+    }
+
+    @Test
+    void expirationTest() {
+        final IdempotencyStore store = new IdempotencyStore(10, 1000, 1, nanoTime::get);
+
+        assertNull(store.claim("key", FINGERPRINT));
+        nanoTime.set(TimeUnit.MILLISECONDS.toNanos(500));
+        store.complete("key", TransferResult.OK);
+
+        nanoTime.set(TimeUnit.MILLISECONDS.toNanos(1499));
+        assertSame(TransferResult.OK, store.claim("key", FINGERPRINT));
+
+        nanoTime.set(TimeUnit.MILLISECONDS.toNanos(1500));
+        assertNull(store.claim("key", FINGERPRINT));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void sizeEvictionTest() {
+        final IdempotencyStore store = new IdempotencyStore(3, 1000, 1, nanoTime::get);
+
+        for (int i = 0; i < 5; ++i) {
+            assertNull(store.claim("key" + i, FINGERPRINT));
+            store.complete("key" + i, TransferResult.OK);
+        }
+
+        assertEquals(3, store.size());
+        assertSame(TransferResult.OK, store.claim("key4", FINGERPRINT));
+        assertSame(TransferResult.OK, store.claim("key2", FINGERPRINT));
+        assertNull(store.claim("key0", FINGERPRINT));
+    }
+
+    @Test
+    void inProgressNotEvictedTest() {
+        final IdempotencyStore store = new IdempotencyStore(3, 1000, 1, nanoTime::get);
+
+        assertNull(store.claim("open", FINGERPRINT));
+        for (int i = 0; i < 4; ++i) {
+            assertNull(store.claim("key" + i, FINGERPRINT));
+            store.complete("key" + i, TransferResult.OK);
+        }
+
+        assertEquals(3, store.size());
+        assertEquals(TransferOutcome.IDEMPOTENCY_KEY_IN_PROGRESS, store.tryClaim("open", FINGERPRINT).getOutcome());
+
+        // expired results are evicted, the claim still open is kept
+        nanoTime.set(TimeUnit.MILLISECONDS.toNanos(2000));
+        assertNull(store.claim("key0", FINGERPRINT));
+        assertEquals(TransferOutcome.IDEMPOTENCY_KEY_IN_PROGRESS, store.tryClaim("open", FINGERPRINT).getOutcome());
+        assertNull(store.claim("key1", FINGERPRINT));
+
+        assertEquals(TransferOutcome.IDEMPOTENCY_STORE_FULL, store.tryClaim("key2", FINGERPRINT).getOutcome());
+        assertEquals("Too many transfers with idempotency keys are in progress, retry later",
+                assertThrows(IllegalArgumentException.class, () -> store.claim("key2", FINGERPRINT)).getMessage());
+
+        store.complete("open", TransferResult.OK);
+        assertNull(store.claim("key2", FINGERPRINT));
+        assertEquals(TransferOutcome.IDEMPOTENCY_KEY_IN_PROGRESS, store.tryClaim("key0", FINGERPRINT).getOutcome());
+        assertEquals(3, store.size());
+    }
+
+    @Test
+    void concurrentClaimsTest() throws Exception {
+        final int threads = 8;
+        final IdempotencyStore store = new IdempotencyStore(IdempotencyStore.DEFAULT_MAX_KEYS, 60_000);
+        final AtomicInteger performed = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; ++t) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 512; ++i) {
+                        final String key = "key" + i;
+                        try {
+                            if (store.claim(key, FINGERPRINT) == null) {
+                                performed.incrementAndGet();
+                                store.complete(key, TransferResult.OK);
+                            }
+                        } catch (final IllegalArgumentException exc) {
+                            // in progress in another thread
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (final Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(512, performed.get());
+        assertEquals(512, store.size());
+    }
+}
@@ -0,0 +1,62 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void invalidStripesTest() {
+        assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram(3));
+        assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram(0));
+    }
+
+    @Test
+    void bucketsTest() {
+        assertEquals(0, LatencyHistogram.bucketOf(-5));
+        assertEquals(15, LatencyHistogram.bucketOf(15));
+        assertEquals(16, LatencyHistogram.bucketOf(16));
+        assertEquals(32, LatencyHistogram.bucketOf(32));
+        assertEquals(32, LatencyHistogram.bucketOf(33));
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKETS; ++bucket) {
+            final long lowest = LatencyHistogram.lowestValueOf(bucket);
+            final long highest = LatencyHistogram.highestValueOf(bucket);
+            assertEquals(bucket, LatencyHistogram.bucketOf(lowest));
+            assertEquals(bucket, LatencyHistogram.bucketOf(highest));
+            assertTrue(highest - lowest <= lowest / LatencyHistogram.SUB_BUCKETS);
+        }
+    }
+
+    @Test
+    void recordTest() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram(4);
+        assertEquals(0, histogram.getValueAtPercentile(99));
+
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i] = new Thread(() -> {
+                for (long value = 1; value <= 1000; ++value)
+                    histogram.record(value * 1000);
+            });
+            threads[i].start();
+        }
+
+        for (final Thread thread : threads)
+            thread.join();
+
+        assertEquals(4000, histogram.getTotalCount());
+        assertEquals(4 * 500_500_000L, histogram.getSum());
+
+        final long median = histogram.getValueAtPercentile(50);
+        assertTrue(median >= 500_000 && median <= 500_000 * 17 / 16, "median " + median);
+        final long p99 = histogram.getValueAtPercentile(99);
+        assertTrue(p99 >= 990_000 && p99 <= 990_000 * 17 / 16, "p99 " + p99);
+        assertEquals(LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(1_000_000)),
+                histogram.getValueAtPercentile(100));
+    }
+}
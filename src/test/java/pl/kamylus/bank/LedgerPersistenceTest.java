@@ -0,0 +1,182 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LedgerPersistenceTest {
+    private static final CurrencyUnit PLN = new CurrencyUnit("PLN", 2);
+    private static final int THREADS_COUNT = 4;
+    private static final int ITERATIONS = 500;
+    private static final TransferJournal.RecordHandler IGNORE = (sequence, source, destination, amount) -> {
+    };
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoveryReplaysOnlyJournalTailTest() {
+        final TransferJournal.Position snapshotPosition;
+        try (final TransferJournal journal = new TransferJournal(journalFile(), FsyncPolicy.PER_BATCH, 10, IGNORE)) {
+            journal.append("acc1", "acc2", 1);
+            journal.awaitDurable(journal.append("acc1", "acc2", 2));
+            snapshotPosition = journal.getWrittenPosition();
+            journal.awaitDurable(journal.append("acc1", "acc2", 3));
+        }
+
+        assertEquals(2, snapshotPosition.getSequence());
+        new AccountSnapshot(snapshotPosition, new String[]{"acc1", "acc2"}, new long[]{1000, 0}).write(snapshotFile());
+
+        assertRecoveredBalances(997, 3, 100);
+    }
+
+    @Test
+    void snapshotRollsJournalTest() throws IOException {
+        try (final LedgerPersistence persistence = new LedgerPersistence(prepareAccounts(), prepareConfiguration())) {
+            persistence.append(0, 1, 5);
+            persistence.awaitDurable();
+            persistence.snapshot();
+
+            assertEquals(1, AccountSnapshot.load(snapshotFile()).getJournalPosition().getSequence());
+            assertEquals(List.of(), readJournal());
+
+            persistence.append(1, 2, 2);
+            persistence.awaitDurable();
+            assertEquals(List.of(2L), readJournal());
+        }
+
+        assertRecoveredBalances(9995, 3, 102);
+        Files.delete(snapshotFile());
+
+        final Exception exc = assertThrows(UncheckedIOException.class,
+                () -> new LedgerPersistence(prepareAccounts(), prepareConfiguration()));
+        assertEquals("Journal has been rolled at sequence 1, records following 0 are missing",
+                exc.getCause().getMessage());
+    }
+
+    @Test
+    void snapshotWhileTransfersAreJournaledTest() throws InterruptedException {
+        try (final LedgerPersistence persistence = new LedgerPersistence(prepareAccounts(), prepareConfiguration())) {
+            final Thread[] threads = new Thread[THREADS_COUNT];
+            for (int i = 0; i < THREADS_COUNT; ++i) {
+                threads[i] = new Thread(() -> {
+                    for (int j = 0; j < ITERATIONS; ++j) {
+                        persistence.append(0, 2, 1);
+                        persistence.awaitDurable();
+                    }
+                });
+                threads[i].start();
+            }
+
+            for (int i = 0; i < 10; ++i) {
+                persistence.snapshot();
+
+                final AccountSnapshot snapshot = AccountSnapshot.load(snapshotFile());
+                assertEquals(snapshot.getJournalPosition().getSequence(), -(snapshot.getBalance(0) - 10000));
+                assertEquals(snapshot.getJournalPosition().getSequence(), snapshot.getBalance(2) - 100);
+            }
+
+            for (final Thread thread : threads)
+                thread.join();
+        }
+
+        final AccountSnapshot snapshot = AccountSnapshot.load(snapshotFile());
+        assertEquals(THREADS_COUNT * ITERATIONS, snapshot.getJournalPosition().getSequence());
+        assertEquals(10000 - THREADS_COUNT * ITERATIONS, snapshot.getBalance(0));
+        assertEquals(0, snapshot.getBalance(1));
+        assertEquals(100 + THREADS_COUNT * ITERATIONS, snapshot.getBalance(2));
+    }
+
+    @Test
+    void recoveryOverdrawingRecordTest() {
+        try (final TransferJournal journal = new TransferJournal(journalFile(), FsyncPolicy.PER_BATCH, 10, IGNORE)) {
+            journal.append("acc3", "acc1", 100);
+            journal.awaitDurable(journal.append("acc3", "acc2", 1));
+        }
+
+        final Exception exc = assertThrows(IllegalStateException.class,
+                () -> new LedgerPersistence(prepareAccounts(), prepareConfiguration()));
+        assertEquals("Journal record 2 overdraws account acc3 by 0.01", exc.getMessage());
+    }
+
+    @Test
+    void snapshotUnknownAccountTest() {
+        new AccountSnapshot(TransferJournal.Position.START, new String[]{"acc4"}, new long[]{1}).write(snapshotFile());
+
+        final Exception exc = assertThrows(IllegalStateException.class,
+                () -> new LedgerPersistence(prepareAccounts(), prepareConfiguration()));
+        assertEquals("Snapshot refers to not existing accounts: [acc4]", exc.getMessage());
+    }
+
+    @Test
+    void corruptedSnapshotTest() throws IOException {
+        new AccountSnapshot(TransferJournal.Position.START, new String[]{"acc1"}, new long[]{1}).write(snapshotFile());
+
+        final byte[] bytes = Files.readAllBytes(snapshotFile());
+        bytes[bytes.length - 5] ^= 1;
+        Files.write(snapshotFile(), bytes);
+
+        assertThrows(UncheckedIOException.class, () -> AccountSnapshot.load(snapshotFile()));
+    }
+
+    private void assertRecoveredBalances(final long... balances) {
+        final BankConfiguration configuration = prepareConfiguration();
+
+        final TransferEngine engine = new MonitorTransferEngine(prepareAccounts(), configuration);
+        try (final LedgerPersistence persistence = new LedgerPersistence(prepareAccounts(), configuration)) {
+            persistence.restoreBalances(engine);
+
+            for (int i = 0; i < balances.length; ++i)
+                assertEquals(balances[i], engine.getBalance(i));
+        } finally {
+            engine.close();
+        }
+    }
+
+    /**
+     * Returns sequences of the records following the snapshot.
+     */
+    private List<Long> readJournal() {
+        final List<Long> sequences = new ArrayList<>();
+        TransferJournal.replay(journalFile(), AccountSnapshot.load(snapshotFile()).getJournalPosition(),
+                Long.MAX_VALUE, (sequence, source, destination, amount) -> sequences.add(sequence));
+
+        return sequences;
+    }
+
+    private BankConfiguration prepareConfiguration() {
+        return BankConfiguration.builder(PLN)
+                .journal(journalFile())
+                .snapshot(snapshotFile())
+                .snapshotIntervalMillis(60_000)
+                .build();
+    }
+
+    private Path journalFile() {
+        return directory.resolve("transfers.journal");
+    }
+
+    private Path snapshotFile() {
+        return directory.resolve("accounts.snapshot");
+    }
+
+    private static List<Account> prepareAccounts() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("acc1", new BigDecimal("100")));
+        accounts.add(new Account("acc2", BigDecimal.ZERO));
+        accounts.add(new Account("acc3", BigDecimal.ONE));
+
+        return accounts;
+    }
+}
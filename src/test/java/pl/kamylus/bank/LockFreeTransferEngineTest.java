@@ -0,0 +1,111 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class LockFreeTransferEngineTest extends AbstractTransferEngineTest {
+
+    @Override
+    TransferEngine createEngine(final List<Account> accounts, final CurrencyUnit currency) {
+        return new LockFreeTransferEngine(accounts, BankConfiguration.builder(currency).build());
+    }
+
+    @Test
+    void constructionTotalAmountOutOfRangeTest() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("acc1", PLN.toBigDecimal(Long.MAX_VALUE)));
+        accounts.add(new Account("acc2", new BigDecimal("0.01")));
+
+        final Exception exc = assertThrows(IllegalArgumentException.class, () -> newEngine(accounts, PLN));
+        assertEquals("Total amount of the money on the accounts is out of range", exc.getMessage());
+    }
+
+    @Test
+    void snapshotDuringConcurrentTransfersTest() throws InterruptedException {
+        final TransferEngine engine = newEngine(prepareAccounts(), PLN);
+        final int[] handles = {ACC1, ACC2, ACC3};
+        final AtomicBoolean running = new AtomicBoolean(true);
+
+        final List<Thread> transfers = new ArrayList<>();
+        for (int t = 0; t < 4; ++t) {
+            final int offset = t;
+            final Thread thread = new Thread(() -> {
+                for (int j = offset; running.get(); ++j) {
+                    try {
+                        engine.transfer(handles[j % 3], handles[(j + 1 + j % 2) % 3], 1 + j % 700);
+                    } catch (final IllegalArgumentException exc) {
+                        // not enough money, expected from time to time
+                    }
+                }
+            });
+            thread.start();
+            transfers.add(thread);
+        }
+
+        try {
+            final long[] balances = new long[handles.length];
+            for (int i = 0; i < 200; ++i) {
+                engine.readBalances(handles, balances);
+                assertEquals(30000, balances[0] + balances[1] + balances[2]);
+
+                try (BalanceSnapshot snapshot = engine.openSnapshot()) {
+                    long total = 0;
+                    for (int handle = snapshot.size() - 1; handle >= 0; --handle) {
+                        Thread.yield();
+                        total += snapshot.getBalance(handle);
+                    }
+
+                    assertEquals(30000, total);
+                }
+            }
+        } finally {
+            running.set(false);
+            for (final Thread thread : transfers)
+                thread.join();
+        }
+    }
+
+    @Test
+    void waitingReaderDoesNotStopWritersOfOtherStripesTest() throws InterruptedException, ExecutionException,
+            TimeoutException {
+        final long[] balances = {10, 20};
+        final BalanceVersions versions = new BalanceVersions(2, balances.length, account -> balances[account],
+                account -> null);
+        versions.beginWrite(0, 0);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Long> read = executor.submit(() -> versions.read(0));
+            assertThrows(TimeoutException.class, () -> read.get(50, TimeUnit.MILLISECONDS));
+
+            // the reader waits for the writer of stripe 0 and asks its writers to back off, not the ones of stripe 1
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                versions.beginWrite(1, 1);
+                balances[1] = 25;
+                versions.endWrite(1, 1);
+            });
+            assertEquals(25, versions.read(1));
+
+            versions.endWrite(0, 0);
+            assertEquals(10, read.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
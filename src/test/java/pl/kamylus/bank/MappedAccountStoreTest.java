@@ -0,0 +1,125 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedAccountStoreTest extends AbstractAccountStoreTest {
+    private static final CurrencyUnit PLN = new CurrencyUnit("PLN", 2);
+
+    @TempDir
+    Path directory;
+
+    private final List<AccountStore> stores = new ArrayList<>();
+
+    @Override
+    AccountStore createStore(final List<Account> accounts, final CurrencyUnit currency) {
+        return open(directory.resolve("accounts" + stores.size() + ".table"), accounts, currency);
+    }
+
+    @AfterEach
+    void closeStores() {
+        stores.forEach(AccountStore::close);
+    }
+
+    @Test
+    void reopenTest() {
+        final Path file = directory.resolve("accounts.table");
+        final AccountStore store = open(file, prepareAccounts(), PLN);
+        store.withdraw(0, 2500);
+        store.deposit(1, 2500);
+        store.close();
+
+        // existing table is mapped as it is, starting amounts of the accounts are ignored
+        final AccountStore reopened = open(file, prepareAccounts(), PLN);
+        assertEquals(7500, reopened.getBalance(0));
+        assertEquals(22500, reopened.getBalance(1));
+        assertEquals(1, reopened.indexOf("acc2"));
+        assertEquals("acc2", reopened.getAccountId(1));
+        assertFalse(Files.exists(directory.resolve("accounts.table.tmp")));
+    }
+
+    @Test
+    void inPlaceUpdateTest() throws IOException {
+        final Path file = directory.resolve("accounts.table");
+        final MappedAccountStore store = (MappedAccountStore) open(file, prepareAccounts(), PLN);
+        store.deposit(0, 1);
+        store.checkpoint();
+
+        // the deposit is in the file without closing the store
+        final List<Account> accounts = new ArrayList<>();
+        accounts.add(new Account("acc1", BigDecimal.ZERO));
+        accounts.add(new Account("acc2", BigDecimal.ZERO));
+        final Path copy = Files.copy(file, directory.resolve("copy.table"));
+        assertEquals(10001, open(copy, accounts, PLN).getBalance(0));
+    }
+
+    @Test
+    void notMatchingTableTest() throws IOException {
+        final Path file = directory.resolve("accounts.table");
+        open(file, prepareAccounts(), PLN).close();
+
+        final List<Account> otherAccounts = new ArrayList<>();
+        otherAccounts.add(new Account("acc1", BigDecimal.ZERO));
+        otherAccounts.add(new Account("acc3", BigDecimal.ZERO));
+        Exception exc = assertThrows(IllegalStateException.class, () -> open(file, otherAccounts, PLN));
+        assertEquals("Account table " + file + " does not match the accounts: acc3", exc.getMessage());
+
+        exc = assertThrows(IllegalStateException.class, () -> open(file, otherAccounts.subList(0, 1), PLN));
+        assertEquals("Account table " + file + " has 2 accounts, expected 1", exc.getMessage());
+
+        exc = assertThrows(IllegalStateException.class,
+                () -> open(file, prepareAccounts(), new CurrencyUnit("JPY", 0)));
+        assertEquals("Account table " + file + " has scale 2, expected 0", exc.getMessage());
+
+        final Path otherFile = Files.write(directory.resolve("other.table"), new byte[64]);
+        exc = assertThrows(IllegalStateException.class, () -> open(otherFile, prepareAccounts(), PLN));
+        assertEquals("File " + otherFile + " is not an account table", exc.getMessage());
+    }
+
+    @Test
+    void duplicatedAccountIdsLeaveNoFileTest() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("dup", BigDecimal.ZERO));
+        accounts.add(new Account("dup", BigDecimal.ONE));
+        final Path file = directory.resolve("accounts.table");
+
+        assertThrows(IllegalArgumentException.class, () -> open(file, accounts, PLN));
+        assertFalse(Files.exists(file));
+        assertFalse(Files.exists(directory.resolve("accounts.table.tmp")));
+    }
+
+    @Test
+    void storeTypeWithoutTableFileTest() {
+        final Exception exc = assertThrows(IllegalStateException.class,
+                () -> AccountStoreType.MAPPED.create(prepareAccounts(), PLN));
+        assertEquals("MAPPED account store requires the account table file", exc.getMessage());
+    }
+
+    private AccountStore open(final Path file, final List<Account> accounts, final CurrencyUnit currency) {
+        final AccountStore store = new MappedAccountStore(file, accounts, currency, 0);
+        stores.add(store);
+
+        return store;
+    }
+
+    private static List<Account> prepareAccounts() {
+        final List<Account> accounts = new ArrayList<>();
+        accounts.add(new Account("acc1", new BigDecimal("100")));
+        accounts.add(new Account("acc2", new BigDecimal("200")));
+
+        return accounts;
+    }
+}
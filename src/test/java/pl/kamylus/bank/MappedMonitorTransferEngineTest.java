@@ -0,0 +1,21 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+class MappedMonitorTransferEngineTest extends AbstractTransferEngineTest {
+
+    @TempDir
+    Path directory;
+
+    private int tables;
+
+    @Override
+    TransferEngine createEngine(final List<Account> accounts, final CurrencyUnit currency) {
+        return new MonitorTransferEngine(accounts, BankConfiguration.builder(currency)
+                .accountTable(directory.resolve("accounts" + tables++ + ".table"))
+                .build());
+    }
+}
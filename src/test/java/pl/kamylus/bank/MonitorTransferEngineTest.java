@@ -0,0 +1,33 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MonitorTransferEngineTest extends AbstractTransferEngineTest {
+
+    @Override
+    TransferEngine createEngine(final List<Account> accounts, final CurrencyUnit currency) {
+        return new MonitorTransferEngine(accounts, BankConfiguration.builder(currency).build());
+    }
+
+    @Test
+    void accountsSharingLockTest() {
+        final List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i <= MonitorTransferEngine.MAX_LOCKS; ++i)
+            accounts.add(new Account("acc" + i, BigDecimal.ONE));
+
+        final TransferEngine engine = newEngine(accounts, PLN);
+        final int last = MonitorTransferEngine.MAX_LOCKS;
+        engine.transfer(0, last, 100);
+        engine.transfer(1, last, 50);
+
+        assertEquals(0, engine.getBalance(0));
+        assertEquals(50, engine.getBalance(1));
+        assertEquals(250, engine.getBalance(last));
+    }
+}
@@ -0,0 +1,27 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OffHeapAccountStoreTest extends AbstractAccountStoreTest {
+
+    @Override
+    AccountStore createStore(final List<Account> accounts, final CurrencyUnit currency) {
+        return new OffHeapAccountStore(accounts, currency);
+    }
+
+    @Test
+    void indexOutOfBoundsTest() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("acc1", BigDecimal.ONE));
+        final AccountStore store = createStore(accounts, new CurrencyUnit("PLN", 2));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> store.getBalance(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.deposit(-1, 1));
+    }
+}
@@ -0,0 +1,13 @@
+package pl.kamylus.bank;
+
+import java.util.List;
+
+class OffHeapMonitorTransferEngineTest extends AbstractTransferEngineTest {
+
+    @Override
+    TransferEngine createEngine(final List<Account> accounts, final CurrencyUnit currency) {
+        return new MonitorTransferEngine(accounts, BankConfiguration.builder(currency)
+                .accountStore(AccountStoreType.OFF_HEAP)
+                .build());
+    }
+}
@@ -0,0 +1,21 @@
+package pl.kamylus.bank;
+
+import java.util.List;
+
+class OffHeapPartitionedTransferEngineTest extends AbstractTransferEngineTest {
+
+    @Override
+    TransferEngine createEngine(final List<Account> accounts, final CurrencyUnit currency) {
+        return new PartitionedTransferEngine(accounts, BankConfiguration.builder(currency)
+                .engineType(TransferEngineType.PARTITIONED)
+                .accountStore(AccountStoreType.OFF_HEAP)
+                .shards(2)
+                .ringSize(16)
+                .build());
+    }
+
+    @Override
+    boolean consistentReads() {
+        return false;
+    }
+}
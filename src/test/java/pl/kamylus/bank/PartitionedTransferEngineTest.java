@@ -0,0 +1,98 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PartitionedTransferEngineTest extends AbstractTransferEngineTest {
+
+    @Override
+    TransferEngine createEngine(final List<Account> accounts, final CurrencyUnit currency) {
+        return new PartitionedTransferEngine(accounts, BankConfiguration.builder(currency)
+                .shards(2)
+                .ringSize(16)
+                .build());
+    }
+
+    @Override
+    boolean consistentReads() {
+        return false;
+    }
+
+    @Test
+    void transferBetweenShardsTest() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("a", BigDecimal.TEN));
+        accounts.add(new Account("b", BigDecimal.ZERO));
+        accounts.add(new Account("d", PLN.toBigDecimal(Long.MAX_VALUE)));
+        assertNotEquals(PartitionedTransferEngine.shardOf("a", 2), PartitionedTransferEngine.shardOf("b", 2));
+        assertNotEquals(PartitionedTransferEngine.shardOf("a", 2), PartitionedTransferEngine.shardOf("d", 2));
+
+        final TransferEngine engine = newEngine(accounts, PLN);
+        engine.transfer(0, 1, 400);
+
+        Exception exc = assertThrows(IllegalArgumentException.class, () -> engine.transfer(0, 1, 601));
+        assertEquals("Insufficient amount (6.00) on the source account", exc.getMessage());
+
+        exc = assertThrows(IllegalArgumentException.class, () -> engine.transfer(0, 2, 1));
+        assertEquals("Amount on the destination account would overflow", exc.getMessage());
+
+        assertEquals(600, engine.getBalance(0));
+        assertEquals(400, engine.getBalance(1));
+    }
+
+    @Test
+    void snapshotDuringTransfersBetweenShardsTest() throws InterruptedException {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("a", new BigDecimal("100")));
+        accounts.add(new Account("b", new BigDecimal("100")));
+        accounts.add(new Account("d", PLN.toBigDecimal(Long.MAX_VALUE)));
+
+        final TransferEngine engine = newEngine(accounts, PLN);
+        final AtomicBoolean running = new AtomicBoolean(true);
+
+        // credits of the d account fail, so their reservations are released
+        final Thread[] threads = new Thread[3];
+        for (int i = 0; i < threads.length; ++i) {
+            final int source = i % 2;
+            final int destination = i == 2 ? 2 : 1 - source;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; running.get(); ++j) {
+                    try {
+                        engine.transfer(source, destination, 1 + j % 300);
+                    } catch (final IllegalArgumentException exc) {
+                        // not enough money or overflow, expected
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        try {
+            for (int i = 0; i < 1000; ++i) {
+                try (BalanceSnapshot snapshot = engine.openSnapshot()) {
+                    assertEquals(20000, snapshot.getBalance(0) + snapshot.getBalance(1));
+                    assertEquals(Long.MAX_VALUE, snapshot.getBalance(2));
+                }
+            }
+        } finally {
+            running.set(false);
+            for (final Thread thread : threads)
+                thread.join();
+        }
+
+        assertEquals(20000, engine.getBalance(0) + engine.getBalance(1));
+    }
+
+    @Test
+    void invalidShardsTest() {
+        assertThrows(IllegalArgumentException.class, () -> BankConfiguration.builder(PLN).shards(0));
+    }
+}
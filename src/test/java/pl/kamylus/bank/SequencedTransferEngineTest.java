@@ -0,0 +1,62 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SequencedTransferEngineTest extends AbstractTransferEngineTest {
+
+    @Override
+    TransferEngine createEngine(final List<Account> accounts, final CurrencyUnit currency) {
+        return new SequencedTransferEngine(accounts, BankConfiguration.builder(currency).ringSize(8).build());
+    }
+
+    @Test
+    void submitInSequenceOrderTest() {
+        final SequencedTransferEngine engine = (SequencedTransferEngine) newEngine(prepareAccounts(), PLN);
+
+        final LedgerShard.TransferFuture first = engine.submit(ACC1, ACC3, 10000);
+        final LedgerShard.TransferFuture second = engine.submit(ACC3, ACC2, 10000);
+        final LedgerShard.TransferFuture third = engine.submit(ACC1, ACC2, 1);
+
+        assertEquals(TransferOutcome.OK, first.join());
+        assertEquals(TransferOutcome.OK, second.join());
+        assertEquals(TransferOutcome.INSUFFICIENT_FUNDS, third.join());
+        assertEquals("Insufficient amount (0.00) on the source account", third.toResult().getMessage());
+        assertEquals(0, engine.getBalance(ACC1));
+        assertEquals(30000, engine.getBalance(ACC2));
+    }
+
+    @Test
+    void waitStrategiesTest() {
+        for (final WaitStrategy waitStrategy : WaitStrategy.values()) {
+            final SequencedTransferEngine engine = new SequencedTransferEngine(prepareAccounts(),
+                    BankConfiguration.builder(PLN).ringSize(2).waitStrategy(waitStrategy).build());
+
+            for (int i = 0; i < 100; ++i)
+                engine.transfer(ACC1, ACC2, 1);
+
+            assertEquals(9900, engine.getBalance(ACC1));
+            engine.close();
+        }
+    }
+
+    @Test
+    void closedEngineTest() {
+        final TransferEngine engine = newEngine(prepareAccounts(), PLN);
+        engine.transfer(ACC1, ACC2, 1);
+
+        engine.close();
+
+        assertThrows(IllegalStateException.class, () -> engine.transfer(ACC1, ACC2, 1));
+    }
+
+    @Test
+    void invalidRingSizeTest() {
+        assertThrows(IllegalArgumentException.class, () -> BankConfiguration.builder(PLN).ringSize(0));
+        assertThrows(IllegalArgumentException.class, () -> BankConfiguration.builder(PLN).ringSize(1000));
+    }
+}
@@ -0,0 +1,76 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StripedBalanceTest {
+    private static final int THREADS_COUNT = 8;
+    private static final int ITERATIONS = 10000;
+
+    @Test
+    void constructionInvalidStripesTest() {
+        assertThrows(IllegalArgumentException.class, () -> new StripedBalance(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new StripedBalance(0, 257));
+    }
+
+    @Test
+    void depositAndWithdrawTest() {
+        final StripedBalance balance = new StripedBalance(100, 4);
+
+        balance.deposit(50);
+
+        assertEquals(4, balance.getStripes());
+        assertEquals(150, balance.get());
+        assertTrue(balance.tryWithdraw(150));
+        assertEquals(0, balance.get());
+        assertFalse(balance.tryWithdraw(1));
+    }
+
+    @Test
+    void withdrawBorrowingFromOtherStripesTest() throws InterruptedException {
+        final StripedBalance balance = new StripedBalance(0, 16);
+
+        final Thread[] threads = new Thread[THREADS_COUNT];
+        for (int i = 0; i < THREADS_COUNT; ++i) {
+            threads[i] = new Thread(() -> balance.deposit(10));
+            threads[i].start();
+        }
+
+        for (final Thread thread : threads)
+            thread.join();
+
+        assertFalse(balance.tryWithdraw(THREADS_COUNT * 10 + 1));
+        assertTrue(balance.tryWithdraw(THREADS_COUNT * 10));
+        assertEquals(0, balance.get());
+    }
+
+    @Test
+    void concurrentDepositsAndWithdrawalsTest() throws InterruptedException {
+        final StripedBalance balance = new StripedBalance(0, 4);
+
+        final Thread[] threads = new Thread[THREADS_COUNT];
+        for (int i = 0; i < THREADS_COUNT; ++i) {
+            final boolean depositing = i % 2 == 0;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < ITERATIONS; ++j) {
+                    if (depositing) {
+                        balance.deposit(3);
+                    } else {
+                        while (!balance.tryWithdraw(3))
+                            Thread.yield();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        for (final Thread thread : threads)
+            thread.join();
+
+        assertEquals(0, balance.get());
+    }
+}
@@ -0,0 +1,66 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StripedLockFreeTransferEngineTest extends AbstractTransferEngineTest {
+    private static final int DEPOSITORS = 4;
+    private static final int DEPOSITS = 5000;
+
+    @Override
+    TransferEngine createEngine(final List<Account> accounts, final CurrencyUnit currency) {
+        return new LockFreeTransferEngine(accounts, BankConfiguration.builder(currency)
+                .stripedAccount("acc2", 4)
+                .stripedAccount("acc3", 8)
+                .build());
+    }
+
+    @Test
+    void readBalancesDuringConcurrentDepositsTest() throws InterruptedException {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("hot", BigDecimal.ZERO));
+        for (int i = 0; i < DEPOSITORS; ++i)
+            accounts.add(new Account("source" + i, new BigDecimal("100")));
+
+        final TransferEngine engine = newEngine(accounts, PLN);
+        final int hot = engine.handleOf("hot");
+        final int[] handles = new int[DEPOSITORS + 1];
+        handles[0] = hot;
+
+        final Thread[] threads = new Thread[DEPOSITORS];
+        for (int i = 0; i < DEPOSITORS; ++i) {
+            final int source = engine.handleOf("source" + i);
+            handles[i + 1] = source;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < DEPOSITS; ++j)
+                    engine.transfer(source, hot, 1);
+            });
+            threads[i].start();
+        }
+
+        // deposits of the threads go to different stripes of the hot account, reads still see whole transfers
+        final long[] balances = new long[handles.length];
+        boolean depositing = true;
+        while (depositing) {
+            engine.readBalances(handles, balances);
+            long total = 0;
+            for (final long balance : balances)
+                total += balance;
+            assertEquals(DEPOSITORS * 10000L, total);
+
+            depositing = false;
+            for (final Thread thread : threads)
+                depositing |= thread.isAlive();
+        }
+
+        for (final Thread thread : threads)
+            thread.join();
+
+        assertEquals(DEPOSITORS * DEPOSITS, engine.getBalance(hot));
+    }
+}
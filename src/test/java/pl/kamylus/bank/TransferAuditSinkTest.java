@@ -0,0 +1,118 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransferAuditSinkTest {
+    private static final CurrencyUnit PLN = new CurrencyUnit("PLN", 2);
+    private static final List<String> ACCOUNT_IDS = Arrays.asList("acc1", "acc2");
+
+    @Test
+    void invalidCapacityTest() {
+        assertThrows(IllegalArgumentException.class, () -> new TransferAuditSink(0, AuditOverflowPolicy.BLOCK));
+        assertThrows(IllegalArgumentException.class, () -> new TransferAuditSink(100, AuditOverflowPolicy.BLOCK));
+    }
+
+    @Test
+    void formatEventsTest() {
+        final List<String> events = new CopyOnWriteArrayList<>();
+
+        try (final TransferAuditSink sink = new TransferAuditSink(4, AuditOverflowPolicy.BLOCK, events::add)) {
+            sink.transferred("acc1", "acc2", new BigDecimal("1.5"), new BigDecimal("8.5"), BigDecimal.TEN);
+            sink.transferred(ACCOUNT_IDS::get, 1, 0, PLN, 150, 850, 1000);
+            sink.transferred(ACCOUNT_IDS::get, 0, 1, PLN, 1);
+            sink.flush();
+
+            assertEquals(Arrays.asList(
+                    "Transferred 1.5 from acc1 to acc2. Amount on source: 8.5. Amount on destination: 10",
+                    "Transferred 1.50 from acc2 to acc1. Amount on source: 8.50. Amount on destination: 10.00",
+                    "Transferred 0.01 from acc1 to acc2"), events);
+        }
+    }
+
+    @Test
+    void dropPolicyTest() throws InterruptedException {
+        final CountDownLatch outputBlocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> events = new CopyOnWriteArrayList<>();
+
+        try (final TransferAuditSink sink = new TransferAuditSink(2, AuditOverflowPolicy.DROP, event -> {
+            outputBlocked.countDown();
+            awaitQuietly(release);
+            events.add(event);
+        })) {
+            sink.transferred(ACCOUNT_IDS::get, 0, 1, PLN, 1);
+            assertTrue(outputBlocked.await(10, TimeUnit.SECONDS));
+
+            for (int i = 2; i <= 5; ++i)
+                sink.transferred(ACCOUNT_IDS::get, 0, 1, PLN, i);
+
+            assertEquals(3, sink.getDroppedEvents());
+
+            release.countDown();
+            sink.flush();
+
+            assertEquals(Arrays.asList("Transferred 0.01 from acc1 to acc2", "Transferred 0.02 from acc1 to acc2"),
+                    events);
+        }
+    }
+
+    @Test
+    void blockPolicyTest() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> events = new CopyOnWriteArrayList<>();
+
+        try (final TransferAuditSink sink = new TransferAuditSink(2, AuditOverflowPolicy.BLOCK, event -> {
+            awaitQuietly(release);
+            events.add(event);
+        })) {
+            final Thread producer = new Thread(() -> {
+                for (int i = 1; i <= 10; ++i)
+                    sink.transferred(ACCOUNT_IDS::get, 0, 1, PLN, i);
+            });
+            producer.start();
+
+            producer.join(200);
+            assertTrue(producer.isAlive());
+
+            release.countDown();
+            producer.join();
+            sink.flush();
+
+            assertEquals(10, events.size());
+            assertEquals("Transferred 0.10 from acc1 to acc2", events.get(9));
+            assertEquals(0, sink.getDroppedEvents());
+        }
+    }
+
+    @Test
+    void closedSinkTest() {
+        final List<String> events = new CopyOnWriteArrayList<>();
+        final TransferAuditSink sink = new TransferAuditSink(4, AuditOverflowPolicy.BLOCK, events::add);
+        sink.transferred(ACCOUNT_IDS::get, 0, 1, PLN, 1);
+
+        sink.close();
+        sink.transferred(ACCOUNT_IDS::get, 0, 1, PLN, 2);
+
+        assertEquals(Arrays.asList("Transferred 0.01 from acc1 to acc2"), events);
+        assertEquals(1, sink.getDroppedEvents());
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
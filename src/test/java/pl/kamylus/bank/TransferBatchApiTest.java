@@ -0,0 +1,88 @@
+package pl.kamylus.bank;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.kamylus.bank.helper.HttpUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.util.LinkedList;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TransferBatchApiTest {
+
+    private static final int UNPROCESSABLE_ENTITY_ERROR = 422;
+    private static final String TRANSFER_BATCH_PATH = "/transferBatch";
+
+    private HttpURLConnection connection;
+
+    private FixedPointBank bank;
+
+    @BeforeEach
+    void prepareServerAndConnection() throws IOException {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("acc1", new BigDecimal("100")));
+        accounts.add(new Account("acc2", new BigDecimal("200")));
+        accounts.add(new Account("acc3", BigDecimal.ZERO));
+        bank = new FixedPointBank(accounts, new CurrencyUnit("PLN", 2));
+
+        Server.start(HttpUtils.SERVER_PORT, bank);
+        connection = HttpUtils.prepareConnection(TRANSFER_BATCH_PATH);
+    }
+
+    @AfterEach
+    void stopServer() {
+        connection.disconnect();
+        Server.stop();
+    }
+
+    @Test
+    void transferBatchTest() throws IOException {
+        HttpUtils.writeHttpRequest("acc1,acc3,60\nacc1,acc3,60\nacc2,acc1,0.01\nacc3,acc4,1\n", connection);
+        final int responseCode = connection.getResponseCode();
+        final String response = HttpUtils.readHttpResponse(connection);
+
+        assertEquals(HttpURLConnection.HTTP_OK, responseCode);
+        assertEquals("OK" + "Insufficient amount (40.00) on the source account" + "OK"
+                + "Account 'acc4' does not exist", response);
+        assertAmountEqualTo("acc1", new BigDecimal("40.01"));
+        assertAmountEqualTo("acc2", new BigDecimal("199.99"));
+        assertAmountEqualTo("acc3", new BigDecimal("60"));
+    }
+
+    @Test
+    void malformedBatchTest() throws IOException {
+        HttpUtils.writeHttpRequest("acc1,acc3,60\nacc1;acc3;60\n", connection);
+        final int responseCode = connection.getResponseCode();
+        final String response = HttpUtils.readHttpResponse(connection);
+
+        assertEquals(UNPROCESSABLE_ENTITY_ERROR, responseCode);
+        assertEquals("Line 2: expected sourceAccountId,destinationAccountId,amount", response);
+        assertAmountEqualTo("acc1", new BigDecimal("100"));
+    }
+
+    @Test
+    void fixedPointEndpointsOfBankTest() throws IOException {
+        // the endpoints follow the bank, not the static type the server is started with
+        Server.stop();
+        Server.start(HttpUtils.SERVER_PORT, (Bank) bank);
+
+        final HttpURLConnection balance = HttpUtils.prepareConnection("/balance?accountId=acc2");
+        balance.setRequestMethod("GET");
+        try {
+            assertEquals(HttpURLConnection.HTTP_OK, balance.getResponseCode());
+            assertEquals("200.00", HttpUtils.readHttpResponse(balance));
+        } finally {
+            balance.disconnect();
+        }
+    }
+
+    private void assertAmountEqualTo(final String accountId, final BigDecimal expectedAmount) {
+        assertThat(bank.getMoneyAmount(accountId), Matchers.comparesEqualTo(expectedAmount));
+    }
+}
@@ -0,0 +1,105 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+import spark.Request;
+import spark.Response;
+
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class TransferBatchHandlerTest {
+
+    private static final int UNPROCESSABLE_ENTITY_ERROR = 422;
+
+    @Test
+    void constructionNullBankTest() {
+        assertThrows(NullPointerException.class, () -> new TransferBatchHandler(null));
+    }
+
+    @Test
+    void handleEmptyBodyTest() {
+        final Bank bank = mock(Bank.class);
+        final TransferBatchHandler handler = new TransferBatchHandler(bank);
+        final Request request = mock(Request.class);
+        when(request.body()).thenReturn("\n\n");
+        final Response response = mock(Response.class);
+
+        final Object result = handler.handle(request, response);
+
+        assertEquals("Batch cannot be empty", result);
+        verify(response, times(1)).status(UNPROCESSABLE_ENTITY_ERROR);
+        verify(bank, never()).transferBatch(anyList());
+    }
+
+    @Test
+    void handleMalformedLineTest() {
+        final Bank bank = mock(Bank.class);
+        final TransferBatchHandler handler = new TransferBatchHandler(bank);
+        final Request request = mock(Request.class);
+        when(request.body()).thenReturn("acc1,acc2,10\nacc1,acc2\n");
+        final Response response = mock(Response.class);
+
+        final Object result = handler.handle(request, response);
+
+        assertEquals("Line 2: expected sourceAccountId,destinationAccountId,amount", result);
+        verify(response, times(1)).status(UNPROCESSABLE_ENTITY_ERROR);
+    }
+
+    @Test
+    void handleNotNumberAmountTest() {
+        final Bank bank = mock(Bank.class);
+        final TransferBatchHandler handler = new TransferBatchHandler(bank);
+        final Request request = mock(Request.class);
+        when(request.body()).thenReturn("acc1,acc2,abc");
+        final Response response = mock(Response.class);
+
+        final Object result = handler.handle(request, response);
+
+        assertEquals("Line 1: Character a is neither a decimal digit number, decimal point, nor \"e\" notation " +
+                "exponential mark.", result);
+        verify(response, times(1)).status(UNPROCESSABLE_ENTITY_ERROR);
+    }
+
+    @Test
+    void handleSuccessTest() {
+        final Bank bank = mock(Bank.class);
+        when(bank.transferBatch(any())).thenReturn(Arrays.asList(TransferResult.OK,
+                TransferResult.failure(TransferOutcome.INSUFFICIENT_FUNDS, "error")));
+        final TransferBatchHandler handler = new TransferBatchHandler(bank);
+        final Request request = mock(Request.class);
+        when(request.body()).thenReturn("acc1,acc2,10\r\n acc2 , acc3 , 0.5 \r\n");
+        final Response response = mock(Response.class);
+
+        final Object result = handler.handle(request, response);
+
+        assertEquals("OK\nerror\n", result);
+        verify(response, never()).status(anyInt());
+        verify(bank, times(1)).transferBatch(argThat((List<Transfer> transfers) -> transfers.size() == 2
+                && transfers.get(1).getSourceAccountId().equals("acc2")
+                && transfers.get(1).getDestinationAccountId().equals("acc3")
+                && transfers.get(1).getAmount().equals(new BigDecimal("0.5"))));
+    }
+
+    @Test
+    void handleOtherExceptionTest() {
+        final Bank bank = mock(Bank.class);
+        when(bank.transferBatch(any())).thenThrow(new RuntimeException("error"));
+        final TransferBatchHandler handler = new TransferBatchHandler(bank);
+        final Request request = mock(Request.class);
+        when(request.body()).thenReturn("acc1,acc2,10");
+        final Response response = mock(Response.class);
+
+        final Object result = handler.handle(request, response);
+
+        assertEquals("error", result);
+        verify(response, times(1)).status(HttpURLConnection.HTTP_INTERNAL_ERROR);
+    }
+}
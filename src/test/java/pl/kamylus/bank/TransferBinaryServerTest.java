@@ -0,0 +1,177 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.kamylus.bank.helper.HttpUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransferBinaryServerTest {
+
+    private static final CurrencyUnit CURRENCY = new CurrencyUnit("PLN", 2);
+
+    private FixedPointBank bank;
+    private TransferBinaryServer server;
+
+    @BeforeEach
+    void startServer() {
+        bank = prepareBank();
+        server = TransferBinaryServer.start(bank, HttpServerConfiguration.builder()
+                .port(HttpUtils.SERVER_PORT)
+                .eventLoops(2)
+                .build());
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+        bank.close();
+    }
+
+    @Test
+    void startInvalidParametersTest() {
+        final HttpServerConfiguration configuration = HttpServerConfiguration.builder().port(0).build();
+
+        assertThrows(NullPointerException.class, () -> TransferBinaryServer.start(null, configuration));
+        assertThrows(NullPointerException.class, () -> TransferBinaryServer.start(bank, null));
+    }
+
+    @Test
+    void resolveAndTransferTest() throws IOException {
+        try (TransferBinaryClient client = new TransferBinaryClient("localhost", HttpUtils.SERVER_PORT)) {
+            final int acc1 = client.resolve("acc1");
+            final int acc2 = client.resolve("acc2");
+
+            assertEquals(bank.accountHandle("acc1"), acc1);
+            assertEquals(bank.accountHandle("acc\u017c"), client.resolve("acc\u017c"));
+            assertEquals(-1, client.resolve("acc9"));
+
+            assertEquals(TransferBinaryServer.OK, client.transfer(acc1, acc2, 9999));
+            assertEquals(TransferBinaryServer.REJECTED, client.transfer(acc1, acc2, 2));
+            assertEquals(TransferBinaryServer.REJECTED, client.transfer(acc1, acc1, 1));
+            assertEquals(TransferBinaryServer.REJECTED, client.transfer(acc1, 9, 1));
+            assertEquals(TransferBinaryServer.REJECTED, client.transfer(acc2, acc1, 0));
+        }
+
+        assertEquals(new BigDecimal("0.01"), bank.getMoneyAmount("acc1"));
+        assertEquals(new BigDecimal("299.99"), bank.getMoneyAmount("acc2"));
+    }
+
+    @Test
+    void transferBatchTest() throws IOException {
+        final int acc1 = bank.accountHandle("acc1");
+        final int acc2 = bank.accountHandle("acc2");
+        final int acc3 = bank.accountHandle("acc 3");
+
+        try (TransferBinaryClient client = new TransferBinaryClient("localhost", HttpUtils.SERVER_PORT)) {
+            final short[] statuses = client.transfer(new int[]{acc1, acc3, acc2, acc1},
+                    new int[]{acc3, acc1, acc3, acc2}, new long[]{5000, 6000, 100, 1});
+
+            assertArrayEquals(new short[]{TransferBinaryServer.OK, TransferBinaryServer.REJECTED,
+                    TransferBinaryServer.OK, TransferBinaryServer.OK}, statuses);
+        }
+
+        assertEquals(new BigDecimal("49.99"), bank.getMoneyAmount("acc1"));
+        assertEquals(new BigDecimal("199.01"), bank.getMoneyAmount("acc2"));
+        assertEquals(new BigDecimal("51.00"), bank.getMoneyAmount("acc 3"));
+    }
+
+    @Test
+    void pipelinedFramesTest() throws IOException {
+        final ByteBuffer frames = ByteBuffer.allocate(3 * transferFrameBytes());
+        for (long requestId = 1; requestId <= 3; ++requestId)
+            putTransferFrame(frames, requestId, bank.accountHandle("acc1"), bank.accountHandle("acc2"), 100);
+
+        try (Socket socket = new Socket("localhost", HttpUtils.SERVER_PORT)) {
+            final OutputStream output = socket.getOutputStream();
+            final byte[] bytes = frames.array();
+            // split in the middle of the second frame
+            output.write(bytes, 0, transferFrameBytes() + 7);
+            output.flush();
+            output.write(bytes, transferFrameBytes() + 7, bytes.length - transferFrameBytes() - 7);
+            output.flush();
+
+            final InputStream input = socket.getInputStream();
+            for (long requestId = 1; requestId <= 3; ++requestId) {
+                final ByteBuffer response = ByteBuffer.wrap(input.readNBytes(TransferBinaryServer.HEADER_BYTES
+                        + 2 * Short.BYTES));
+
+                assertEquals(TransferBinaryServer.HEADER_BYTES - Integer.BYTES + 2 * Short.BYTES, response.getInt());
+                assertEquals(TransferBinaryServer.TRANSFER, response.get());
+                assertEquals(requestId, response.getLong());
+                assertEquals(1, response.getShort());
+                assertEquals(TransferBinaryServer.OK, response.getShort());
+            }
+        }
+
+        assertEquals(new BigDecimal("97.00"), bank.getMoneyAmount("acc1"));
+        assertEquals(new BigDecimal("203.00"), bank.getMoneyAmount("acc2"));
+    }
+
+    @Test
+    void malformedFrameTest() throws IOException {
+        assertMalformed(ByteBuffer.allocate(TransferBinaryServer.HEADER_BYTES)
+                .putInt(TransferBinaryServer.HEADER_BYTES - Integer.BYTES)
+                .put((byte) 7)
+                .putLong(42), 42);
+
+        assertMalformed(ByteBuffer.allocate(TransferBinaryServer.HEADER_BYTES + Short.BYTES)
+                .putInt(TransferBinaryServer.HEADER_BYTES - Integer.BYTES + Short.BYTES)
+                .put(TransferBinaryServer.TRANSFER)
+                .putLong(43)
+                .putShort((short) 2), 43);
+
+        assertMalformed(ByteBuffer.allocate(Integer.BYTES).putInt(TransferBinaryServer.MAX_FRAME_BYTES), 0);
+
+        assertEquals(new BigDecimal("100.00"), bank.getMoneyAmount("acc1"));
+    }
+
+    private static void assertMalformed(final ByteBuffer frame, final long requestId) throws IOException {
+        try (Socket socket = new Socket("localhost", HttpUtils.SERVER_PORT)) {
+            socket.getOutputStream().write(frame.array());
+
+            final ByteBuffer response = ByteBuffer.wrap(socket.getInputStream().readAllBytes());
+            assertEquals(TransferBinaryServer.HEADER_BYTES + Short.BYTES, response.remaining());
+            assertEquals(TransferBinaryServer.HEADER_BYTES - Integer.BYTES + Short.BYTES, response.getInt());
+            assertEquals(TransferBinaryServer.ERROR, response.get());
+            assertEquals(requestId, response.getLong());
+            assertEquals(TransferBinaryServer.MALFORMED, response.getShort());
+        }
+    }
+
+    private static int transferFrameBytes() {
+        return TransferBinaryServer.HEADER_BYTES + Short.BYTES + TransferBinaryServer.TRANSFER_BYTES;
+    }
+
+    private static void putTransferFrame(final ByteBuffer buffer, final long requestId, final int source,
+                                         final int destination, final long amount) {
+        buffer.putInt(transferFrameBytes() - Integer.BYTES)
+                .put(TransferBinaryServer.TRANSFER)
+                .putLong(requestId)
+                .putShort((short) 1)
+                .putInt(source)
+                .putInt(destination)
+                .putLong(amount);
+    }
+
+    private static FixedPointBank prepareBank() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("acc1", new BigDecimal("100")));
+        accounts.add(new Account("acc2", new BigDecimal("200")));
+        accounts.add(new Account("acc 3", BigDecimal.ZERO));
+        accounts.add(new Account("acc\u017c", new BigDecimal("10")));
+
+        return new FixedPointBank(accounts, CURRENCY);
+    }
+}
@@ -0,0 +1,103 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransferFormParserTest {
+
+    @Test
+    void constructionTest() {
+        assertThrows(IllegalArgumentException.class, () -> new TransferFormParser(0));
+    }
+
+    @Test
+    void parseTest() {
+        final TransferFormParser parser = new TransferFormParser(64);
+        final ByteBuffer buffer = buffer("xx&sourceAccountId=acc1&other=1&destinationAccountId=acc2&amount=100.12");
+        parser.parse(buffer, 2, buffer.limit());
+
+        assertEquals("acc1", parser.getSourceAccountId().toString());
+        assertEquals("acc2", parser.getDestinationAccountId().toString());
+        assertEquals("100.12", parser.getAmount().toString());
+    }
+
+    @Test
+    void parseMissingAndEmptyFieldsTest() {
+        final TransferFormParser parser = new TransferFormParser(64);
+        final ByteBuffer buffer = buffer("sourceAccountId=&amount&=1&&destinationAccountId");
+        parser.parse(buffer, 0, buffer.limit());
+
+        assertEquals("", parser.getSourceAccountId().toString());
+        assertNull(parser.getDestinationAccountId());
+        assertNull(parser.getAmount());
+    }
+
+    @Test
+    void parseDecodingTest() {
+        final TransferFormParser parser = new TransferFormParser(64);
+        final ByteBuffer buffer = buffer("sourceAccountId=acc+1%2f&destinationAccountId=acc%C5%BC&amount=%31");
+        parser.parse(buffer, 0, buffer.limit());
+
+        assertEquals("acc 1/", parser.getSourceAccountId().toString());
+        assertEquals("acc\u017c", parser.getDestinationAccountId().toString());
+        assertEquals("1", parser.getAmount().toString());
+    }
+
+    @Test
+    void parseFirstValueWinsTest() {
+        final TransferFormParser parser = new TransferFormParser(64);
+        final ByteBuffer query = buffer("amount=1");
+        final ByteBuffer body = buffer("amount=2&sourceAccountId=acc1");
+        parser.parse(query, 0, query.limit());
+        parser.parse(body, 0, body.limit());
+
+        assertEquals("1", parser.getAmount().toString());
+        assertEquals("acc1", parser.getSourceAccountId().toString());
+    }
+
+    @Test
+    void resetTest() {
+        final TransferFormParser parser = new TransferFormParser(64);
+        final ByteBuffer buffer = buffer("amount=1");
+        parser.parse(buffer, 0, buffer.limit());
+        parser.reset();
+
+        assertNull(parser.getAmount());
+    }
+
+    @Test
+    void parseMalformedTest() {
+        final TransferFormParser parser = new TransferFormParser(8);
+        final ByteBuffer malformed = buffer("amount=%4");
+        final ByteBuffer tooLong = buffer("amount=123456789");
+
+        assertThrows(IllegalArgumentException.class, () -> parser.parse(malformed, 0, malformed.limit()));
+        assertThrows(IllegalArgumentException.class, () -> parser.parse(tooLong, 0, tooLong.limit()));
+    }
+
+    @Test
+    void resolveParsedAccountTest() {
+        final FixedPointBank bank = new FixedPointBank(List.of(new Account("acc\u017c", BigDecimal.ONE)),
+                new CurrencyUnit("PLN", 2));
+        final TransferFormParser parser = new TransferFormParser(64);
+        final ByteBuffer buffer = buffer("sourceAccountId=acc%C5%BC");
+        parser.parse(buffer, 0, buffer.limit());
+
+        assertEquals(0, bank.accountHandle(parser.getSourceAccountId()));
+    }
+
+    private static ByteBuffer buffer(final String text) {
+        final byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer;
+    }
+}
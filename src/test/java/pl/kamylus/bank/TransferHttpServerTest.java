@@ -0,0 +1,212 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import pl.kamylus.bank.helper.HttpUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.util.LinkedList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TransferHttpServerTest {
+
+    private static final int UNPROCESSABLE_ENTITY_ERROR = 422;
+    private static final int PAYLOAD_TOO_LARGE_ERROR = 413;
+    private static final CurrencyUnit CURRENCY = new CurrencyUnit("PLN", 2);
+
+    private FixedPointBank bank;
+    private TransferHttpServer server;
+
+    @AfterEach
+    void stopServer() {
+        if (server != null)
+            server.close();
+        if (bank != null)
+            bank.close();
+    }
+
+    @Test
+    void startNullParametersTest() {
+        final HttpServerConfiguration configuration = HttpServerConfiguration.builder().build();
+
+        assertThrows(NullPointerException.class, () -> TransferHttpServer.start(null, configuration));
+        assertThrows(NullPointerException.class, () -> TransferHttpServer.start(prepareBank(), null));
+    }
+
+    @Test
+    void configurationValidationTest() {
+        assertThrows(IllegalArgumentException.class, () -> HttpServerConfiguration.builder().port(-1));
+        assertThrows(IllegalArgumentException.class, () -> HttpServerConfiguration.builder().port(65536));
+        assertThrows(IllegalArgumentException.class, () -> HttpServerConfiguration.builder().backlog(0));
+        assertThrows(IllegalArgumentException.class, () -> HttpServerConfiguration.builder().threads(0));
+        assertThrows(IllegalArgumentException.class, () -> HttpServerConfiguration.builder().maxConcurrentRequests(0));
+        assertThrows(IllegalArgumentException.class, () -> HttpServerConfiguration.builder().maxRequestBodyBytes(0));
+        assertThrows(NullPointerException.class, () -> HttpServerConfiguration.builder().executorType(null));
+    }
+
+    @Test
+    void transferTest() throws IOException {
+        startServer(HttpServerConfiguration.builder().port(HttpUtils.SERVER_PORT).build());
+
+        final HttpURLConnection connection = HttpUtils.prepareConnection();
+        HttpUtils.writeHttpRequest("sourceAccountId=acc1&destinationAccountId=acc2&amount=99.99", connection);
+
+        assertEquals(HttpUtils.OK_RESPONSE, HttpUtils.readHttpResponse(connection));
+        assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+        assertEquals(new BigDecimal("0.01"), bank.getMoneyAmount("acc1"));
+        assertEquals(new BigDecimal("299.99"), bank.getMoneyAmount("acc2"));
+    }
+
+    @Test
+    void transferEncodedParametersTest() throws IOException {
+        startServer(HttpServerConfiguration.builder().port(HttpUtils.SERVER_PORT).build());
+
+        final HttpURLConnection connection = HttpUtils.prepareConnection(TransferHttpServer.TRANSFER_MONEY_PATH
+                + "?sourceAccountId=acc%201");
+        HttpUtils.writeHttpRequest("destinationAccountId=acc3&amount=10", connection);
+
+        assertEquals(HttpUtils.OK_RESPONSE, HttpUtils.readHttpResponse(connection));
+        assertEquals(new BigDecimal("0.00"), bank.getMoneyAmount("acc 1"));
+        assertEquals(new BigDecimal("10.00"), bank.getMoneyAmount("acc3"));
+    }
+
+    @Test
+    void transferFailureTest() throws IOException {
+        startServer(HttpServerConfiguration.builder().port(HttpUtils.SERVER_PORT).build());
+
+        final HttpURLConnection connection = HttpUtils.prepareConnection();
+        HttpUtils.writeHttpRequest("sourceAccountId=acc3&destinationAccountId=acc1&amount=1", connection);
+
+        assertEquals("Insufficient amount (0.00) on the source account", HttpUtils.readHttpResponse(connection));
+        assertEquals(UNPROCESSABLE_ENTITY_ERROR, connection.getResponseCode());
+        assertEquals(new BigDecimal("100.00"), bank.getMoneyAmount("acc1"));
+    }
+
+    @Test
+    void missingAmountTest() throws IOException {
+        startServer(HttpServerConfiguration.builder().port(HttpUtils.SERVER_PORT).build());
+
+        final HttpURLConnection connection = HttpUtils.prepareConnection();
+        HttpUtils.writeHttpRequest("sourceAccountId=acc1&destinationAccountId=acc2", connection);
+
+        assertEquals("Amount cannot be null or empty", HttpUtils.readHttpResponse(connection));
+        assertEquals(UNPROCESSABLE_ENTITY_ERROR, connection.getResponseCode());
+    }
+
+    @Test
+    void methodNotAllowedTest() throws IOException {
+        startServer(HttpServerConfiguration.builder().port(HttpUtils.SERVER_PORT).build());
+
+        final HttpURLConnection connection = HttpUtils.prepareConnection(TransferHttpServer.TRANSFER_MONEY_PATH
+                + "?sourceAccountId=acc1&destinationAccountId=acc2&amount=1");
+        connection.setRequestMethod("GET");
+        connection.setDoOutput(false);
+
+        assertEquals(HttpURLConnection.HTTP_BAD_METHOD, connection.getResponseCode());
+        assertEquals("POST", connection.getHeaderField("Allow"));
+        assertEquals(new BigDecimal("100.00"), bank.getMoneyAmount("acc1"));
+    }
+
+    @Test
+    void requestBodyTooLargeTest() throws IOException {
+        startServer(HttpServerConfiguration.builder()
+                .port(HttpUtils.SERVER_PORT)
+                .maxRequestBodyBytes(64)
+                .build());
+
+        final HttpURLConnection connection = HttpUtils.prepareConnection();
+        HttpUtils.writeHttpRequest("sourceAccountId=acc1&destinationAccountId=acc2&amount=1&padding="
+                + "x".repeat(64), connection);
+
+        assertEquals("Request body cannot be longer than 64 bytes", HttpUtils.readHttpResponse(connection));
+        assertEquals(PAYLOAD_TOO_LARGE_ERROR, connection.getResponseCode());
+        assertEquals(new BigDecimal("100.00"), bank.getMoneyAmount("acc1"));
+    }
+
+    @Test
+    void tooManyConcurrentRequestsTest() throws Exception {
+        final CountDownLatch transferStarted = new CountDownLatch(1);
+        final CountDownLatch releaseTransfer = new CountDownLatch(1);
+        final Bank blockingBank = mock(Bank.class);
+        when(blockingBank.getMetrics()).thenReturn(new TransferMetrics());
+        doAnswer(invocation -> {
+            transferStarted.countDown();
+            releaseTransfer.await(10, TimeUnit.SECONDS);
+            return TransferOutcome.OK;
+        }).when(blockingBank).tryTransferMoney(anyString(), anyString(), any(BigDecimal.class));
+
+        server = TransferHttpServer.start(blockingBank, HttpServerConfiguration.builder()
+                .port(HttpUtils.SERVER_PORT)
+                .maxConcurrentRequests(1)
+                .threads(2)
+                .build());
+
+        final CompletableFuture<Integer> blockedRequest = CompletableFuture.supplyAsync(() -> {
+            try {
+                final HttpURLConnection connection = HttpUtils.prepareConnection();
+                HttpUtils.writeHttpRequest("sourceAccountId=acc1&destinationAccountId=acc2&amount=1", connection);
+                return connection.getResponseCode();
+            } catch (final IOException exc) {
+                throw new IllegalStateException(exc);
+            }
+        });
+        assertTrue(transferStarted.await(10, TimeUnit.SECONDS));
+
+        final HttpURLConnection rejectedConnection = HttpUtils.prepareConnection();
+        HttpUtils.writeHttpRequest("sourceAccountId=acc1&destinationAccountId=acc2&amount=1", rejectedConnection);
+        assertEquals("Too many concurrent requests", HttpUtils.readHttpResponse(rejectedConnection));
+        assertEquals(HttpURLConnection.HTTP_UNAVAILABLE, rejectedConnection.getResponseCode());
+
+        releaseTransfer.countDown();
+        assertEquals(HttpURLConnection.HTTP_OK, blockedRequest.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void virtualExecutorTest() throws IOException {
+        final HttpServerConfiguration configuration = HttpServerConfiguration.builder()
+                .port(HttpUtils.SERVER_PORT)
+                .executorType(HttpExecutorType.VIRTUAL)
+                .build();
+
+        if (!HttpExecutorType.virtualThreadsSupported()) {
+            assertThrows(IllegalStateException.class, () -> TransferHttpServer.start(prepareBank(), configuration));
+            return;
+        }
+
+        startServer(configuration);
+
+        final HttpURLConnection connection = HttpUtils.prepareConnection();
+        HttpUtils.writeHttpRequest("sourceAccountId=acc1&destinationAccountId=acc2&amount=1", connection);
+
+        assertEquals(HttpUtils.OK_RESPONSE, HttpUtils.readHttpResponse(connection));
+        assertEquals(new BigDecimal("99.00"), bank.getMoneyAmount("acc1"));
+    }
+
+    private void startServer(final HttpServerConfiguration configuration) {
+        bank = prepareBank();
+        server = TransferHttpServer.start(bank, configuration);
+    }
+
+    private static FixedPointBank prepareBank() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("acc1", new BigDecimal("100")));
+        accounts.add(new Account("acc2", new BigDecimal("200")));
+        accounts.add(new Account("acc3", BigDecimal.ZERO));
+        accounts.add(new Account("acc 1", new BigDecimal("10")));
+
+        return new FixedPointBank(accounts, CURRENCY);
+    }
+}
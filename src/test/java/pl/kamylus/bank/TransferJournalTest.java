@@ -0,0 +1,261 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransferJournalTest {
+    private static final int THREADS_COUNT = 8;
+    private static final int ITERATIONS = 500;
+    private static final TransferJournal.RecordHandler IGNORE = (sequence, source, destination, amount) -> {
+    };
+
+    @Test
+    void appendAndReplayTest(@TempDir final Path directory) {
+        final Path file = directory.resolve("transfers.journal");
+
+        try (final TransferJournal journal = new TransferJournal(file, FsyncPolicy.PER_BATCH, 10, IGNORE)) {
+            assertEquals(1, journal.append("acc1", "acc2", 100));
+            assertEquals(2, journal.append("acc2", "konto-\u017c", Long.MAX_VALUE));
+            journal.awaitDurable(2);
+        }
+
+        final List<String> records = readRecords(file);
+        assertEquals(List.of("1:acc1->acc2:100", "2:acc2->konto-\u017c:" + Long.MAX_VALUE), records);
+    }
+
+    @Test
+    void reopenContinuesSequenceTest(@TempDir final Path directory) {
+        final Path file = directory.resolve("transfers.journal");
+
+        try (final TransferJournal journal = new TransferJournal(file, FsyncPolicy.NONE, 10, IGNORE)) {
+            journal.append("acc1", "acc2", 1);
+        }
+
+        final List<String> existing = new ArrayList<>();
+        try (final TransferJournal journal = new TransferJournal(file, FsyncPolicy.NONE, 10,
+                (sequence, source, destination, amount) -> existing.add(sequence + ":" + source))) {
+            assertEquals(2, journal.append("acc2", "acc1", 1));
+        }
+
+        assertEquals(List.of("1:acc1"), existing);
+        assertEquals(2, readRecords(file).size());
+    }
+
+    @Test
+    void tornTailIsCutOffTest(@TempDir final Path directory) throws IOException {
+        final Path file = directory.resolve("transfers.journal");
+
+        try (final TransferJournal journal = new TransferJournal(file, FsyncPolicy.PER_BATCH, 10, IGNORE)) {
+            journal.append("acc1", "acc2", 1);
+            journal.awaitDurable(journal.append("acc2", "acc3", 2));
+        }
+
+        final long validSize = Files.size(file);
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(validSize - 3);
+        }
+
+        try (final TransferJournal journal = new TransferJournal(file, FsyncPolicy.PER_BATCH, 10, IGNORE)) {
+            journal.awaitDurable(journal.append("acc3", "acc1", 3));
+        }
+
+        assertEquals(List.of("1:acc1->acc2:1", "2:acc3->acc1:3"), readRecords(file));
+    }
+
+    @Test
+    void rollDropsCoveredRecordsTest(@TempDir final Path directory) {
+        final Path file = directory.resolve("transfers.journal");
+
+        final TransferJournal.Position snapshotPosition;
+        final TransferJournal.Position rolledPosition;
+        try (final TransferJournal journal = new TransferJournal(file, FsyncPolicy.PER_BATCH, 10, IGNORE)) {
+            journal.append("acc1", "acc2", 1);
+            journal.awaitDurable(journal.append("acc2", "acc3", 2));
+            snapshotPosition = journal.getWrittenPosition();
+            journal.awaitDurable(journal.append("acc3", "acc1", 3));
+
+            rolledPosition = journal.roll(snapshotPosition);
+            journal.awaitDurable(journal.append("acc1", "acc3", 4));
+        }
+
+        assertEquals(2, rolledPosition.getSequence());
+        assertThrows(UncheckedIOException.class, () -> readRecords(file));
+
+        // a crash between the snapshot and the roll leaves the snapshot with the offset in the previous file
+        for (final TransferJournal.Position start : List.of(snapshotPosition, rolledPosition)) {
+            final List<String> records = new ArrayList<>();
+            TransferJournal.replay(file, start, Long.MAX_VALUE, (sequence, source, destination, amount) ->
+                    records.add(sequence + ":" + source + "->" + destination + ":" + amount));
+
+            assertEquals(List.of("3:acc3->acc1:3", "4:acc1->acc3:4"), records);
+        }
+
+        try (final TransferJournal journal = new TransferJournal(file, FsyncPolicy.NONE, 10, rolledPosition,
+                IGNORE)) {
+            assertEquals(5, journal.append("acc3", "acc2", 5));
+        }
+    }
+
+    @Test
+    void rollVersion1JournalTest(@TempDir final Path directory) throws IOException {
+        final Path file = directory.resolve("transfers.journal");
+
+        try (final TransferJournal journal = new TransferJournal(file, FsyncPolicy.PER_BATCH, 10, IGNORE)) {
+            journal.awaitDurable(journal.append("acc1", "acc2", 1));
+        }
+
+        // version 1 header has no rolled sequence
+        final byte[] bytes = Files.readAllBytes(file);
+        final byte[] version1 = new byte[bytes.length - Long.BYTES];
+        System.arraycopy(bytes, 0, version1, 0, Integer.BYTES);
+        version1[2 * Integer.BYTES - 1] = 1;
+        System.arraycopy(bytes, 2 * Integer.BYTES + Long.BYTES, version1, 2 * Integer.BYTES,
+                version1.length - 2 * Integer.BYTES);
+        Files.write(file, version1);
+
+        try (final TransferJournal journal = new TransferJournal(file, FsyncPolicy.PER_BATCH, 10, IGNORE)) {
+            journal.awaitDurable(journal.append("acc2", "acc1", 2));
+            journal.roll(new TransferJournal.Position(1, version1.length));
+        }
+
+        final List<String> records = new ArrayList<>();
+        TransferJournal.replay(file, new TransferJournal.Position(1, 0), Long.MAX_VALUE,
+                (sequence, source, destination, amount) -> records.add(sequence + ":" + source));
+        assertEquals(List.of("2:acc2"), records);
+    }
+
+    @Test
+    void notJournalFileTest(@TempDir final Path directory) throws IOException {
+        final Path file = directory.resolve("transfers.journal");
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        assertThrows(UncheckedIOException.class, () -> new TransferJournal(file, FsyncPolicy.NONE, 10, IGNORE));
+    }
+
+    @Test
+    void appendToClosedJournalTest(@TempDir final Path directory) {
+        final TransferJournal journal = new TransferJournal(directory.resolve("transfers.journal"),
+                FsyncPolicy.PER_BATCH, 10, IGNORE);
+        journal.close();
+
+        assertThrows(IllegalStateException.class, () -> journal.append("acc1", "acc2", 1));
+    }
+
+    @Test
+    void encodeIdsLikeStringTest(@TempDir final Path directory) {
+        final Path file = directory.resolve("transfers.journal");
+
+        try (final TransferJournal journal = new TransferJournal(file, FsyncPolicy.NONE, 10, IGNORE)) {
+            journal.awaitDurable(journal.append("\uD83D\uDCB0-\u20AC", "lone-\uD800", 1));
+        }
+
+        // the lone surrogate is replaced like by String.getBytes
+        assertEquals(List.of("1:\uD83D\uDCB0-\u20AC->lone-?:1"), readRecords(file));
+    }
+
+    @Test
+    void appendsBeyondBufferTest(@TempDir final Path directory) {
+        final Path file = directory.resolve("transfers.journal");
+        final String source = "source-" + "x".repeat(100);
+        final int records = 20000;
+
+        try (final TransferJournal journal = new TransferJournal(file, FsyncPolicy.NONE, 10, IGNORE)) {
+            for (int i = 1; i <= records; ++i)
+                assertEquals(i, journal.append(source, "destination", i));
+            journal.awaitAppendedDurable();
+        }
+
+        final long[] total = new long[2];
+        TransferJournal.replay(file, (sequence, sourceId, destination, amount) -> {
+            total[0]++;
+            total[1] += amount;
+        });
+        assertEquals(records, total[0]);
+        assertEquals(records * (records + 1L) / 2, total[1]);
+    }
+
+    @Test
+    void appendsDuringRollTest(@TempDir final Path directory) throws InterruptedException {
+        final Path file = directory.resolve("transfers.journal");
+        final TransferJournal.Position rolledPosition;
+
+        try (final TransferJournal journal = new TransferJournal(file, FsyncPolicy.PER_BATCH, 10, IGNORE)) {
+            journal.awaitDurable(journal.append("acc1", "acc2", 1));
+
+            final Thread appender = new Thread(() -> {
+                for (int i = 0; i < ITERATIONS; ++i)
+                    journal.awaitDurable(journal.append("acc2", "acc1", 1));
+            });
+            appender.start();
+
+            rolledPosition = journal.roll(journal.getWrittenPosition());
+            appender.join();
+        }
+
+        final List<Long> sequences = new ArrayList<>();
+        TransferJournal.replay(file, rolledPosition, Long.MAX_VALUE,
+                (sequence, source, destination, amount) -> sequences.add(sequence));
+        assertEquals(ITERATIONS + 1 - rolledPosition.getSequence(), sequences.size());
+        for (int i = 0; i < sequences.size(); ++i)
+            assertEquals(rolledPosition.getSequence() + i + 1, sequences.get(i));
+    }
+
+    @Test
+    void concurrentAppendsPerBatchTest(@TempDir final Path directory) throws InterruptedException {
+        concurrentAppendsTest(FsyncPolicy.PER_BATCH, directory);
+    }
+
+    @Test
+    void concurrentAppendsIntervalTest(@TempDir final Path directory) throws InterruptedException {
+        concurrentAppendsTest(FsyncPolicy.INTERVAL, directory);
+    }
+
+    @Test
+    void concurrentAppendsNoFsyncTest(@TempDir final Path directory) throws InterruptedException {
+        concurrentAppendsTest(FsyncPolicy.NONE, directory);
+    }
+
+    private static void concurrentAppendsTest(final FsyncPolicy fsyncPolicy, final Path directory)
+            throws InterruptedException {
+        final Path file = directory.resolve("transfers.journal");
+
+        try (final TransferJournal journal = new TransferJournal(file, fsyncPolicy, 1, IGNORE)) {
+            final Thread[] threads = new Thread[THREADS_COUNT];
+            for (int i = 0; i < THREADS_COUNT; ++i) {
+                final String source = "acc" + i;
+                threads[i] = new Thread(() -> {
+                    for (int j = 0; j < ITERATIONS; ++j)
+                        journal.awaitDurable(journal.append(source, "collection", 1));
+                });
+                threads[i].start();
+            }
+
+            for (final Thread thread : threads)
+                thread.join();
+        }
+
+        final long[] total = new long[1];
+        TransferJournal.replay(file, (sequence, source, destination, amount) -> total[0] += amount);
+        assertEquals(THREADS_COUNT * ITERATIONS, total[0]);
+    }
+
+    private static List<String> readRecords(final Path file) {
+        final List<String> records = new ArrayList<>();
+        TransferJournal.replay(file, (sequence, source, destination, amount) ->
+                records.add(sequence + ":" + source + "->" + destination + ":" + amount));
+
+        return records;
+    }
+}
@@ -0,0 +1,104 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.Test;
+import spark.Request;
+import spark.Response;
+
+import java.math.BigDecimal;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+class TransferMetricsTest {
+
+    private static final CurrencyUnit PLN = new CurrencyUnit("PLN", 2);
+
+    @Test
+    void fixedPointBankTest() {
+        final FixedPointBank bank = new FixedPointBank(prepareAccounts(), PLN);
+        final TransferMetrics metrics = bank.getMetrics();
+
+        bank.transferMoney("acc1", "acc2", new BigDecimal("10"));
+        bank.transferMoney("acc1", "acc2", 100);
+        bank.transferBatch(new int[]{0, 0, 1}, new int[]{1, 1, 1}, new long[]{1, 1_000_000, 1});
+        assertThrows(IllegalArgumentException.class, () -> bank.transferMoney("acc1", "acc9", new BigDecimal("1")));
+        assertThrows(IllegalArgumentException.class, () -> bank.transferMoney("acc1", "", 1));
+        assertThrows(IllegalArgumentException.class, () -> bank.transferMoney("acc1", "acc2", new BigDecimal("0.001")));
+        assertThrows(IllegalArgumentException.class, () -> bank.accountHandle("acc9"));
+
+        assertEquals(3, metrics.getTransfers());
+        assertEquals(1, metrics.getRejects(RejectReason.INSUFFICIENT_FUNDS));
+        assertEquals(1, metrics.getRejects(RejectReason.SAME_ACCOUNT));
+        assertEquals(1, metrics.getRejects(RejectReason.UNKNOWN_ACCOUNT));
+        assertEquals(1, metrics.getRejects(RejectReason.MISSING_ACCOUNT_ID));
+        assertEquals(1, metrics.getRejects(RejectReason.INVALID_AMOUNT));
+        assertEquals(3, metrics.getLockWait().getTotalCount());
+        assertEquals(3, metrics.getLockHold().getTotalCount());
+    }
+
+    @Test
+    void bigDecimalBankTest() {
+        final Bank bank = new BigDecimalBank(prepareAccounts());
+        final TransferMetrics metrics = bank.getMetrics();
+
+        bank.transferMoney("acc1", "acc2", new BigDecimal("10"));
+        assertThrows(IllegalArgumentException.class, () -> bank.transferMoney("acc1", "acc2", new BigDecimal("1000")));
+
+        assertEquals(1, metrics.getTransfers());
+        assertEquals(1, metrics.getRejects(RejectReason.INSUFFICIENT_FUNDS));
+        assertEquals(2, metrics.getLockHold().getTotalCount());
+    }
+
+    @Test
+    void requestsTest() {
+        final FixedPointBank bank = new FixedPointBank(prepareAccounts(), PLN);
+
+        assertEquals(TransferResult.OK, TransferMoneyHandler.transferMoney(bank, "key", "acc1", "acc2", "1.5"));
+        assertEquals(TransferOutcome.IDEMPOTENCY_KEY_REUSED,
+                TransferMoneyHandler.transferMoney(bank, "key", "acc1", "acc2", "2").getOutcome());
+        assertEquals(TransferOutcome.INVALID_AMOUNT,
+                TransferMoneyHandler.transferMoney(bank, null, "acc1", "acc2", "x").getOutcome());
+
+        final TransferMetrics metrics = bank.getMetrics();
+        assertEquals(1, metrics.getTransfers());
+        assertEquals(1, metrics.getRejects(RejectReason.IDEMPOTENCY_CONFLICT));
+        assertEquals(1, metrics.getRejects(RejectReason.INVALID_AMOUNT));
+        assertEquals(3, metrics.getRequestLatency().getTotalCount());
+    }
+
+    @Test
+    void prometheusFormatTest() {
+        final FixedPointBank bank = new FixedPointBank(prepareAccounts(), PLN);
+        bank.transferMoney("acc1", "acc2", 100);
+        assertThrows(IllegalArgumentException.class, () -> bank.transferMoney("acc1", "acc1", 100));
+
+        final Response response = mock(Response.class);
+        final String text = (String) new MetricsHandler(bank).handle(mock(Request.class), response);
+        verify(response).type(TransferMetrics.CONTENT_TYPE);
+
+        assertTrue(text.contains("# TYPE bank_transfers_total counter\nbank_transfers_total 1\n"));
+        assertTrue(text.contains("bank_transfer_rejects_total{reason=\"same_account\"} 1\n"));
+        assertTrue(text.contains("bank_transfer_rejects_total{reason=\"overflow\"} 0\n"));
+        assertTrue(text.contains("# TYPE bank_lock_hold_seconds histogram\n"));
+        assertTrue(text.contains("bank_lock_hold_seconds_bucket{le=\"+Inf\"} 1\nbank_lock_hold_seconds_count 1\n")
+                || text.contains("bank_lock_hold_seconds_count 1\n"));
+        assertTrue(text.contains("bank_transfer_request_seconds_count 0\n"));
+
+        for (final String line : text.split("\n")) {
+            assertTrue(line.startsWith("# HELP ") || line.startsWith("# TYPE ")
+                    || line.matches("[a-z_]+(\\{[a-z]+=\"[^\"]+\"})? [0-9.E+-]+"), line);
+        }
+    }
+
+    private static List<Account> prepareAccounts() {
+        final List<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("acc1", new BigDecimal("100")));
+        accounts.add(new Account("acc2", new BigDecimal("200")));
+
+        return accounts;
+    }
+}
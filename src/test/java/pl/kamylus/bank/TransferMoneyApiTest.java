@@ -312,7 +312,7 @@ class TransferMoneyApiTest {
 
         accounts = accountsList.stream().collect(Collectors.toMap(Account::getId, account -> account));
 
-        bank = new Bank(accountsList);
+        bank = new BigDecimalBank(accountsList);
     }
 
 }
@@ -6,7 +6,11 @@ import spark.Response;
 
 import java.math.BigDecimal;
 import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
@@ -18,6 +22,7 @@ class TransferMoneyHandlerTest {
     private static final String AMOUNT_PARAMETER = "amount";
     private static final String SOURCE_ACCOUNT_PARAMETER = "sourceAccountId";
     private static final String DESTINATION_ACCOUNT_PARAMETER = "destinationAccountId";
+    private static final String IDEMPOTENCY_KEY_PARAMETER = "idempotencyKey";
 
     private static final String SOURCE_ACCOUNT = "source";
     private static final String DESTINATION_ACCOUNT = "destination";
@@ -32,7 +37,7 @@ class TransferMoneyHandlerTest {
 
     @Test
     void handleNullAmountTest() {
-        final Bank bank = mock(Bank.class);
+        final Bank bank = mockBank();
         final TransferMoneyHandler handler = new TransferMoneyHandler(bank);
         final Request request = mock(Request.class);
         when(request.queryParams(AMOUNT_PARAMETER)).thenReturn(null);
@@ -46,7 +51,7 @@ class TransferMoneyHandlerTest {
 
     @Test
     void handleEmptyAmountTest() {
-        final Bank bank = mock(Bank.class);
+        final Bank bank = mockBank();
         final TransferMoneyHandler handler = new TransferMoneyHandler(bank);
         final Request request = mock(Request.class);
         when(request.queryParams(AMOUNT_PARAMETER)).thenReturn("");
@@ -60,7 +65,7 @@ class TransferMoneyHandlerTest {
 
     @Test
     void handleNotNumberAmountTest() {
-        final Bank bank = mock(Bank.class);
+        final Bank bank = mockBank();
         final TransferMoneyHandler handler = new TransferMoneyHandler(bank);
         final Request request = mock(Request.class);
         when(request.queryParams(AMOUNT_PARAMETER)).thenReturn("abc");
@@ -74,7 +79,7 @@ class TransferMoneyHandlerTest {
 
     @Test
     void handleSuccessTest() {
-        final Bank bank = mock(Bank.class);
+        final Bank bank = mockBank();
         final TransferMoneyHandler handler = new TransferMoneyHandler(bank);
         final Request request = mock(Request.class);
         when(request.queryParams(SOURCE_ACCOUNT_PARAMETER)).thenReturn(SOURCE_ACCOUNT);
@@ -84,15 +89,14 @@ class TransferMoneyHandlerTest {
 
         final Object result = handler.handle(request, response);
 
-        verify(bank, times(1)).transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("10"));
+        verify(bank, times(1)).tryTransferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("10"));
         assertEquals(OK, result);
     }
 
     @Test
-    void handleIllegalArgumentTest() {
-        final Bank bank = mock(Bank.class);
-        doThrow(new IllegalArgumentException(ERROR)).when(bank).transferMoney(
-                SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("10"));
+    void handleRejectionTest() {
+        final Bank bank = mockBank();
+        reject(bank, SOURCE_ACCOUNT, DESTINATION_ACCOUNT);
         final TransferMoneyHandler handler = new TransferMoneyHandler(bank);
         final Request request = mock(Request.class);
         when(request.queryParams(SOURCE_ACCOUNT_PARAMETER)).thenReturn(SOURCE_ACCOUNT);
@@ -102,15 +106,15 @@ class TransferMoneyHandlerTest {
 
         final Object result = handler.handle(request, response);
 
-        verify(bank, times(1)).transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("10"));
+        verify(bank, times(1)).tryTransferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("10"));
         verify(response, times(1)).status(UNPROCESSABLE_ENTITY_ERROR);
         assertEquals(ERROR, result);
     }
 
     @Test
     void handleOtherExceptionTest() {
-        final Bank bank = mock(Bank.class);
-        doThrow(new RuntimeException(ERROR)).when(bank).transferMoney(
+        final Bank bank = mockBank();
+        doThrow(new RuntimeException(ERROR)).when(bank).tryTransferMoney(
                 SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("10"));
         final TransferMoneyHandler handler = new TransferMoneyHandler(bank);
         final Request request = mock(Request.class);
@@ -121,8 +125,177 @@ class TransferMoneyHandlerTest {
 
         final Object result = handler.handle(request, response);
 
-        verify(bank, times(1)).transferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("10"));
+        verify(bank, times(1)).tryTransferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("10"));
         verify(response, times(1)).status(HttpURLConnection.HTTP_INTERNAL_ERROR);
         assertEquals(ERROR, result);
     }
-}
\ No newline at end of file
+
+    @Test
+    void handleFixedPointSuccessTest() {
+        final FixedPointBank bank = mockFixedPointBank();
+        final TransferMoneyHandler handler = new TransferMoneyHandler(bank);
+        final Request request = mock(Request.class);
+        when(request.queryParams(SOURCE_ACCOUNT_PARAMETER)).thenReturn(SOURCE_ACCOUNT);
+        when(request.queryParams(DESTINATION_ACCOUNT_PARAMETER)).thenReturn(DESTINATION_ACCOUNT);
+        when(request.queryParams(AMOUNT_PARAMETER)).thenReturn("10.25");
+        final Response response = mock(Response.class);
+
+        final Object result = handler.handle(request, response);
+
+        // the ids are looked up once, for the currency and for the transfer
+        verify(bank, times(1)).findAccountHandle(SOURCE_ACCOUNT);
+        verify(bank, times(1)).findAccountHandle(DESTINATION_ACCOUNT);
+        verify(bank, times(1)).tryTransferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, 0, 1, 1025L);
+        verify(bank, never()).tryTransferMoney(any(CharSequence.class), any(CharSequence.class), anyLong());
+        assertEquals(OK, result);
+    }
+
+    @Test
+    void handleFixedPointTooManyDecimalPlacesTest() {
+        final FixedPointBank bank = mockFixedPointBank();
+        final TransferMoneyHandler handler = new TransferMoneyHandler(bank);
+        final Request request = mock(Request.class);
+        when(request.queryParams(AMOUNT_PARAMETER)).thenReturn("10.255");
+        final Response response = mock(Response.class);
+
+        final Object result = handler.handle(request, response);
+
+        assertEquals("Amount (10.255) cannot be represented in PLN with 2 decimal places", result);
+        verify(response, times(1)).status(UNPROCESSABLE_ENTITY_ERROR);
+        verify(bank, never()).tryTransferMoney(any(CharSequence.class), any(CharSequence.class), anyInt(), anyInt(),
+                anyLong());
+    }
+
+    @Test
+    void handleFixedPointRejectionTest() {
+        final List<Account> accounts = new ArrayList<>();
+        accounts.add(new Account(SOURCE_ACCOUNT, BigDecimal.TEN));
+        accounts.add(new Account(DESTINATION_ACCOUNT, BigDecimal.ZERO));
+        final FixedPointBank bank = new FixedPointBank(accounts, new CurrencyUnit("PLN", 2));
+        final TransferMoneyHandler handler = new TransferMoneyHandler(bank);
+        final Request request = mock(Request.class);
+        when(request.queryParams(SOURCE_ACCOUNT_PARAMETER)).thenReturn(SOURCE_ACCOUNT);
+        when(request.queryParams(DESTINATION_ACCOUNT_PARAMETER)).thenReturn(DESTINATION_ACCOUNT);
+        when(request.queryParams(AMOUNT_PARAMETER)).thenReturn("10.01");
+        final Response response = mock(Response.class);
+
+        assertEquals("Insufficient amount (10.00) on the source account", handler.handle(request, response));
+
+        when(request.queryParams(AMOUNT_PARAMETER)).thenReturn("1x");
+        assertEquals("Amount (1x) is not a valid number", handler.handle(request, response));
+
+        verify(response, times(2)).status(UNPROCESSABLE_ENTITY_ERROR);
+        assertEquals(1, bank.getMetrics().getRejects(RejectReason.INSUFFICIENT_FUNDS));
+        assertEquals(1, bank.getMetrics().getRejects(RejectReason.INVALID_AMOUNT));
+    }
+
+    @Test
+    void handleFixedPointSourceCurrencyTest() {
+        final CurrencyUnit pln = new CurrencyUnit("PLN", 2);
+        final CurrencyUnit jpy = new CurrencyUnit("JPY", 0);
+        final List<Account> accounts = new ArrayList<>();
+        accounts.add(new Account(SOURCE_ACCOUNT, new BigDecimal("1000"), jpy));
+        accounts.add(new Account(DESTINATION_ACCOUNT, BigDecimal.ZERO));
+        final FixedPointBank bank = new FixedPointBank(accounts, BankConfiguration.builder(pln)
+                .fxRate(jpy, pln, new BigDecimal("0.0266"))
+                .build());
+        final TransferMoneyHandler handler = new TransferMoneyHandler(bank);
+        final Request request = mock(Request.class);
+        when(request.queryParams(SOURCE_ACCOUNT_PARAMETER)).thenReturn(SOURCE_ACCOUNT);
+        when(request.queryParams(DESTINATION_ACCOUNT_PARAMETER)).thenReturn(DESTINATION_ACCOUNT);
+        when(request.queryParams(AMOUNT_PARAMETER)).thenReturn("10.5");
+        final Response response = mock(Response.class);
+
+        assertEquals("Amount (10.5) cannot be represented in JPY with 0 decimal places",
+                handler.handle(request, response));
+
+        when(request.queryParams(AMOUNT_PARAMETER)).thenReturn("500");
+        assertEquals(OK, handler.handle(request, response));
+        assertThat(bank.getMoneyAmount(SOURCE_ACCOUNT), comparesEqualTo(new BigDecimal("500")));
+        assertThat(bank.getMoneyAmount(DESTINATION_ACCOUNT), comparesEqualTo(new BigDecimal("13.30")));
+    }
+
+    @Test
+    void handleIdempotentRetryTest() {
+        final Bank bank = mockBank();
+        when(bank.getIdempotencyStore()).thenReturn(new IdempotencyStore(16, 60_000));
+        final TransferMoneyHandler handler = new TransferMoneyHandler(bank);
+        final Request request = mock(Request.class);
+        when(request.queryParams(IDEMPOTENCY_KEY_PARAMETER)).thenReturn("key1");
+        when(request.queryParams(SOURCE_ACCOUNT_PARAMETER)).thenReturn(SOURCE_ACCOUNT);
+        when(request.queryParams(DESTINATION_ACCOUNT_PARAMETER)).thenReturn(DESTINATION_ACCOUNT);
+        when(request.queryParams(AMOUNT_PARAMETER)).thenReturn("10");
+        final Response response = mock(Response.class);
+
+        assertEquals(OK, handler.handle(request, response));
+        assertEquals(OK, handler.handle(request, response));
+
+        verify(bank, times(1)).tryTransferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("10"));
+
+        when(request.queryParams(AMOUNT_PARAMETER)).thenReturn("11");
+        assertEquals("Idempotency key 'key1' has been used for another transfer", handler.handle(request, response));
+        verify(response, times(1)).status(UNPROCESSABLE_ENTITY_ERROR);
+    }
+
+    @Test
+    void handleIdempotentFailureTest() {
+        final Bank bank = mockBank();
+        final IdempotencyStore idempotencyStore = new IdempotencyStore(16, 60_000);
+        when(bank.getIdempotencyStore()).thenReturn(idempotencyStore);
+        reject(bank, SOURCE_ACCOUNT, DESTINATION_ACCOUNT);
+        final TransferMoneyHandler handler = new TransferMoneyHandler(bank);
+        final Request request = mock(Request.class);
+        when(request.queryParams(IDEMPOTENCY_KEY_PARAMETER)).thenReturn("key1");
+        when(request.queryParams(SOURCE_ACCOUNT_PARAMETER)).thenReturn(SOURCE_ACCOUNT);
+        when(request.queryParams(DESTINATION_ACCOUNT_PARAMETER)).thenReturn(DESTINATION_ACCOUNT);
+        when(request.queryParams(AMOUNT_PARAMETER)).thenReturn("10");
+        final Response response = mock(Response.class);
+
+        assertEquals(ERROR, handler.handle(request, response));
+        assertEquals(ERROR, handler.handle(request, response));
+
+        verify(bank, times(1)).tryTransferMoney(SOURCE_ACCOUNT, DESTINATION_ACCOUNT, new BigDecimal("10"));
+        verify(response, times(2)).status(UNPROCESSABLE_ENTITY_ERROR);
+
+        doThrow(new RuntimeException(ERROR)).when(bank).tryTransferMoney(
+                DESTINATION_ACCOUNT, SOURCE_ACCOUNT, new BigDecimal("10"));
+        when(request.queryParams(IDEMPOTENCY_KEY_PARAMETER)).thenReturn("key2");
+        when(request.queryParams(SOURCE_ACCOUNT_PARAMETER)).thenReturn(DESTINATION_ACCOUNT);
+        when(request.queryParams(DESTINATION_ACCOUNT_PARAMETER)).thenReturn(SOURCE_ACCOUNT);
+
+        assertEquals(ERROR, handler.handle(request, response));
+        assertEquals(ERROR, handler.handle(request, response));
+
+        verify(bank, times(2)).tryTransferMoney(DESTINATION_ACCOUNT, SOURCE_ACCOUNT, new BigDecimal("10"));
+        verify(response, times(2)).status(HttpURLConnection.HTTP_INTERNAL_ERROR);
+        assertEquals(1, idempotencyStore.size());
+    }
+
+    private static Bank mockBank() {
+        final Bank bank = mock(Bank.class);
+        when(bank.getMetrics()).thenReturn(new TransferMetrics());
+        when(bank.tryTransferMoney(anyString(), anyString(), any(BigDecimal.class))).thenReturn(TransferOutcome.OK);
+
+        return bank;
+    }
+
+    private static FixedPointBank mockFixedPointBank() {
+        final FixedPointBank bank = mock(FixedPointBank.class);
+        when(bank.getMetrics()).thenReturn(new TransferMetrics());
+        when(bank.findAccountHandle(SOURCE_ACCOUNT)).thenReturn(0);
+        when(bank.findAccountHandle(DESTINATION_ACCOUNT)).thenReturn(1);
+        when(bank.amountCurrency(anyInt())).thenReturn(new CurrencyUnit("PLN", 2));
+        when(bank.tryTransferMoney(any(CharSequence.class), any(CharSequence.class), anyInt(), anyInt(), anyLong()))
+                .thenReturn(TransferOutcome.OK);
+
+        return bank;
+    }
+
+    private static void reject(final Bank bank, final String sourceAccountId, final String destinationAccountId) {
+        final BigDecimal amount = new BigDecimal("10");
+        when(bank.tryTransferMoney(sourceAccountId, destinationAccountId, amount))
+                .thenReturn(TransferOutcome.INSUFFICIENT_FUNDS);
+        when(bank.rejectionMessage(TransferOutcome.INSUFFICIENT_FUNDS, sourceAccountId, destinationAccountId, amount))
+                .thenReturn(ERROR);
+    }
+}
@@ -0,0 +1,213 @@
+package pl.kamylus.bank;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.kamylus.bank.helper.HttpUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransferNioServerTest {
+
+    private static final int UNPROCESSABLE_ENTITY_ERROR = 422;
+    private static final int PAYLOAD_TOO_LARGE_ERROR = 413;
+    private static final CurrencyUnit CURRENCY = new CurrencyUnit("PLN", 2);
+    private static final String OK_RESPONSE = "HTTP/1.1 200 OK\r\nContent-Type: text/plain;charset=utf-8\r\n"
+            + "Content-Length: 2\r\n\r\nOK";
+
+    private FixedPointBank bank;
+    private TransferNioServer server;
+
+    @BeforeEach
+    void startServer() {
+        bank = prepareBank();
+        server = TransferNioServer.start(bank, HttpServerConfiguration.builder()
+                .port(HttpUtils.SERVER_PORT)
+                .eventLoops(2)
+                .maxRequestBodyBytes(256)
+                .build());
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+        bank.close();
+    }
+
+    @Test
+    void startNullParametersTest() {
+        final HttpServerConfiguration configuration = HttpServerConfiguration.builder().port(0).build();
+
+        assertThrows(NullPointerException.class, () -> TransferNioServer.start(null, configuration));
+        assertThrows(NullPointerException.class, () -> TransferNioServer.start(bank, null));
+        assertThrows(IllegalArgumentException.class, () -> HttpServerConfiguration.builder().eventLoops(0));
+    }
+
+    @Test
+    void transferTest() throws IOException {
+        final HttpURLConnection connection = HttpUtils.prepareConnection();
+        HttpUtils.writeHttpRequest("sourceAccountId=acc1&destinationAccountId=acc2&amount=99.99", connection);
+
+        assertEquals(HttpUtils.OK_RESPONSE, HttpUtils.readHttpResponse(connection));
+        assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+        assertEquals(new BigDecimal("0.01"), bank.getMoneyAmount("acc1"));
+        assertEquals(new BigDecimal("299.99"), bank.getMoneyAmount("acc2"));
+    }
+
+    @Test
+    void transferEncodedParametersTest() throws IOException {
+        final HttpURLConnection connection = HttpUtils.prepareConnection(TransferNioServer.TRANSFER_MONEY_PATH
+                + "?sourceAccountId=acc%C5%BC");
+        HttpUtils.writeHttpRequest("destinationAccountId=acc+3&amount=10", connection);
+
+        assertEquals(HttpUtils.OK_RESPONSE, HttpUtils.readHttpResponse(connection));
+        assertEquals(new BigDecimal("0.00"), bank.getMoneyAmount("acc\u017c"));
+        assertEquals(new BigDecimal("10.00"), bank.getMoneyAmount("acc 3"));
+    }
+
+    @Test
+    void transferFailureTest() throws IOException {
+        assertFailure("sourceAccountId=acc%203&destinationAccountId=acc1&amount=1",
+                "Insufficient amount (0.00) on the source account");
+        assertFailure("sourceAccountId=acc1&destinationAccountId=acc2", "Amount cannot be null or empty");
+        assertFailure("sourceAccountId=acc1&destinationAccountId=acc2&amount=1x", "Amount (1x) is not a valid number");
+        assertFailure("destinationAccountId=acc2&amount=1", "SourceAccountId cannot be null or empty");
+        assertFailure("sourceAccountId=acc1&destinationAccountId=acc1&amount=1",
+                "Source and destination account ids cannot be the same");
+        assertFailure("sourceAccountId=acc1&destinationAccountId=acc9&amount=1", "Account 'acc9' does not exist");
+        assertFailure("sourceAccountId=acc1&destinationAccountId=acc2&amount=0",
+                "Amount (0.00) cannot be less or equal to 0");
+
+        assertEquals(new BigDecimal("100.00"), bank.getMoneyAmount("acc1"));
+    }
+
+    @Test
+    void idempotentRetryTest() throws IOException {
+        for (int i = 0; i < 2; ++i) {
+            final HttpURLConnection connection = HttpUtils.prepareConnection();
+            HttpUtils.writeHttpRequest("idempotencyKey=retry-1&sourceAccountId=acc1&destinationAccountId=acc2"
+                    + "&amount=10", connection);
+            assertEquals(HttpUtils.OK_RESPONSE, HttpUtils.readHttpResponse(connection));
+        }
+
+        assertFailure("idempotencyKey=retry-1&sourceAccountId=acc1&destinationAccountId=acc2&amount=20",
+                "Idempotency key 'retry-1' has been used for another transfer");
+        assertEquals(new BigDecimal("90.00"), bank.getMoneyAmount("acc1"));
+        assertEquals(new BigDecimal("210.00"), bank.getMoneyAmount("acc2"));
+    }
+
+    @Test
+    void notFoundAndMethodNotAllowedTest() throws IOException {
+        final HttpURLConnection notFound = HttpUtils.prepareConnection("/transfer");
+        HttpUtils.writeHttpRequest("sourceAccountId=acc1&destinationAccountId=acc2&amount=1", notFound);
+        assertEquals(HttpURLConnection.HTTP_NOT_FOUND, notFound.getResponseCode());
+
+        final HttpURLConnection get = HttpUtils.prepareConnection(TransferNioServer.TRANSFER_MONEY_PATH
+                + "?sourceAccountId=acc1&destinationAccountId=acc2&amount=1");
+        get.setRequestMethod("GET");
+        get.setDoOutput(false);
+        assertEquals(HttpURLConnection.HTTP_BAD_METHOD, get.getResponseCode());
+        assertEquals("POST", get.getHeaderField("Allow"));
+
+        assertEquals(new BigDecimal("100.00"), bank.getMoneyAmount("acc1"));
+    }
+
+    @Test
+    void requestBodyTooLargeTest() throws IOException {
+        final HttpURLConnection connection = HttpUtils.prepareConnection();
+        HttpUtils.writeHttpRequest("sourceAccountId=acc1&destinationAccountId=acc2&amount=1&padding="
+                + "x".repeat(256), connection);
+
+        assertEquals("Request body cannot be longer than 256 bytes", HttpUtils.readHttpResponse(connection));
+        assertEquals(PAYLOAD_TOO_LARGE_ERROR, connection.getResponseCode());
+        assertEquals(new BigDecimal("100.00"), bank.getMoneyAmount("acc1"));
+    }
+
+    @Test
+    void pipelinedRequestsTest() throws IOException {
+        final String body = "sourceAccountId=acc1&destinationAccountId=acc2&amount=1";
+        final String request = "POST /transferMoney HTTP/1.1\r\nHost: localhost\r\n"
+                + "Content-Type: application/x-www-form-urlencoded\r\nContent-Length: " + body.length() + "\r\n\r\n"
+                + body;
+
+        try (Socket socket = new Socket("localhost", HttpUtils.SERVER_PORT)) {
+            final OutputStream output = socket.getOutputStream();
+            output.write((request + request + request).getBytes(StandardCharsets.US_ASCII));
+            output.flush();
+
+            final String expected = OK_RESPONSE + OK_RESPONSE + OK_RESPONSE;
+            assertEquals(expected, read(socket.getInputStream(), expected.length()));
+
+            output.write(request.getBytes(StandardCharsets.US_ASCII));
+            output.flush();
+            assertEquals(OK_RESPONSE, read(socket.getInputStream(), OK_RESPONSE.length()));
+        }
+
+        assertEquals(new BigDecimal("96.00"), bank.getMoneyAmount("acc1"));
+        assertEquals(new BigDecimal("204.00"), bank.getMoneyAmount("acc2"));
+    }
+
+    @Test
+    void requestSplitIntoManyWritesTest() throws IOException {
+        final String body = "sourceAccountId=acc1&destinationAccountId=acc2&amount=1";
+        final String request = "POST /transferMoney HTTP/1.0\r\nContent-Length: " + body.length() + "\r\n\r\n" + body;
+
+        try (Socket socket = new Socket("localhost", HttpUtils.SERVER_PORT)) {
+            socket.setTcpNoDelay(true);
+            final OutputStream output = socket.getOutputStream();
+            for (final byte character : request.getBytes(StandardCharsets.US_ASCII)) {
+                output.write(character);
+                output.flush();
+            }
+
+            final String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+            assertTrue(response.startsWith("HTTP/1.1 200 OK\r\n"));
+            assertTrue(response.contains("Connection: close\r\n"));
+        }
+
+        assertEquals(new BigDecimal("99.00"), bank.getMoneyAmount("acc1"));
+    }
+
+    @Test
+    void malformedRequestTest() throws IOException {
+        try (Socket socket = new Socket("localhost", HttpUtils.SERVER_PORT)) {
+            socket.getOutputStream().write("GARBAGE\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+
+            final String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+            assertTrue(response.startsWith("HTTP/1.1 400 Bad Request\r\n"));
+        }
+    }
+
+    private void assertFailure(final String form, final String message) throws IOException {
+        final HttpURLConnection connection = HttpUtils.prepareConnection();
+        HttpUtils.writeHttpRequest(form, connection);
+
+        assertEquals(message, HttpUtils.readHttpResponse(connection));
+        assertEquals(UNPROCESSABLE_ENTITY_ERROR, connection.getResponseCode());
+    }
+
+    private static String read(final InputStream input, final int length) throws IOException {
+        return new String(input.readNBytes(length), StandardCharsets.US_ASCII);
+    }
+
+    private static FixedPointBank prepareBank() {
+        final LinkedList<Account> accounts = new LinkedList<>();
+        accounts.add(new Account("acc1", new BigDecimal("100")));
+        accounts.add(new Account("acc2", new BigDecimal("200")));
+        accounts.add(new Account("acc 3", BigDecimal.ZERO));
+        accounts.add(new Account("acc\u017c", new BigDecimal("10")));
+
+        return new FixedPointBank(accounts, CURRENCY);
+    }
+}
@@ -9,14 +9,19 @@ public class HttpUtils {
     public static final int SERVER_PORT = 4567;
     public static final String OK_RESPONSE = "OK";
 
-    private static final String SERVER_URL = "http://localhost:" + SERVER_PORT + "/transferMoney";
+    private static final String SERVER_URL = "http://localhost:" + SERVER_PORT;
+    private static final String TRANSFER_MONEY_PATH = "/transferMoney";
 
     private HttpUtils() {
         throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
     }
 
     public static HttpURLConnection prepareConnection() throws IOException {
-        final URL url = new URL(SERVER_URL);
+        return prepareConnection(TRANSFER_MONEY_PATH);
+    }
+
+    public static HttpURLConnection prepareConnection(final String path) throws IOException {
+        final URL url = new URL(SERVER_URL + path);
 
         final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
         connection.setRequestMethod("POST");